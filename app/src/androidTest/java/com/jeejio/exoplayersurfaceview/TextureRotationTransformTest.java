@@ -0,0 +1,72 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented test for {@link TextureRotationTransform}, which runs on every layout pass of a
+ * rotated {@link android.view.TextureView} and so must not allocate. Allocations are counted by the
+ * runtime, which is only possible on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextureRotationTransformTest {
+
+    private static final int ITERATIONS = 1_000;
+
+    @Test
+    public void update_unchangedLayout_doesNotAllocate() {
+        TextureRotationTransform transform = new TextureRotationTransform();
+        transform.update(1920, 1080, 90);
+
+        int allocations = countAllocations(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertFalse(transform.update(1920, 1080, 90));
+            }
+        });
+
+        assertEquals(0, allocations);
+    }
+
+    @Test
+    public void update_changedLayout_doesNotAllocate() {
+        TextureRotationTransform transform = new TextureRotationTransform();
+        transform.update(1080, 1920, 270);
+
+        int allocations = countAllocations(() -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                transform.update(i % 2 == 0 ? 1920 : 1080, i % 2 == 0 ? 1080 : 1920, 270);
+            }
+        });
+
+        assertEquals(0, allocations);
+    }
+
+    @Test
+    public void reset_recomputesOnNextUpdate() {
+        TextureRotationTransform transform = new TextureRotationTransform();
+        assertTrue(transform.update(1920, 1080, 90));
+
+        transform.reset();
+
+        assertTrue(transform.update(1920, 1080, 90));
+    }
+
+    private static int countAllocations(Runnable runnable) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            runnable.run();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocCount();
+    }
+}
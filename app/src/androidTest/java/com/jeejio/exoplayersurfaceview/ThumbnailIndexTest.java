@@ -0,0 +1,158 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented test for {@link ThumbnailIndex}, and for finding the index of a content URI by the
+ * file name {@link TrickPlayThumbnailer} gives it. Thumbnails are copied in and out of the mapped
+ * file as {@link Bitmap.Config#RGB_565} pixels, which only a device implements.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailIndexTest {
+
+    private static final long INTERVAL_MS = 10_000;
+    private static final int CAPACITY = 16;
+
+    private File tempDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        tempDirectory = Util.createTempDirectory(context, "ThumbnailIndexTest");
+    }
+
+    @After
+    public void tearDown() {
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void get_returnsThumbnailOfSlot() throws IOException {
+        ThumbnailIndex index = openIndex(new File(tempDirectory, "index"));
+        index.put(/* positionMs= */ 12_000, createThumbnail(index, Color.RED));
+        index.put(/* positionMs= */ 25_000, createThumbnail(index, Color.BLUE));
+        Bitmap bitmap = index.createBitmap();
+
+        assertTrue(index.get(/* positionMs= */ 19_999, bitmap));
+        assertEquals(Color.RED, bitmap.getPixel(0, 0));
+        assertTrue(index.get(/* positionMs= */ 20_000, bitmap));
+        assertEquals(Color.BLUE, bitmap.getPixel(0, 0));
+        assertEquals(2, index.getThumbnailCount());
+        index.close();
+    }
+
+    @Test
+    public void get_emptySlot_returnsNearestNeighbour() throws IOException {
+        ThumbnailIndex index = openIndex(new File(tempDirectory, "index"));
+        index.put(/* positionMs= */ 0, createThumbnail(index, Color.RED));
+        index.put(/* positionMs= */ 50_000, createThumbnail(index, Color.BLUE));
+        Bitmap bitmap = index.createBitmap();
+
+        assertFalse(index.contains(/* positionMs= */ 40_000));
+        assertTrue(index.get(/* positionMs= */ 40_000, bitmap));
+        assertEquals(Color.BLUE, bitmap.getPixel(0, 0));
+        // Further than any neighbour searched.
+        assertFalse(index.get(/* positionMs= */ 150_000, bitmap));
+        index.close();
+    }
+
+    @Test
+    public void put_pastEnd_isIgnored() throws IOException {
+        ThumbnailIndex index = openIndex(new File(tempDirectory, "index"));
+
+        index.put(CAPACITY * INTERVAL_MS, createThumbnail(index, Color.RED));
+
+        assertEquals(0, index.getThumbnailCount());
+        assertFalse(index.get(CAPACITY * INTERVAL_MS, index.createBitmap()));
+        index.close();
+    }
+
+    @Test
+    public void reopenedIndex_keepsThumbnails() throws IOException {
+        File file = new File(tempDirectory, "index");
+        ThumbnailIndex index = openIndex(file);
+        index.put(/* positionMs= */ 30_000, createThumbnail(index, Color.GREEN));
+        index.close();
+
+        ThumbnailIndex reopenedIndex = openIndex(file);
+        Bitmap bitmap = reopenedIndex.createBitmap();
+
+        assertEquals(1, reopenedIndex.getThumbnailCount());
+        assertTrue(reopenedIndex.get(/* positionMs= */ 30_000, bitmap));
+        assertEquals(Color.GREEN, bitmap.getPixel(0, 0));
+        reopenedIndex.close();
+    }
+
+    @Test
+    public void reopenedWithOtherLayout_startsEmpty() throws IOException {
+        File file = new File(tempDirectory, "index");
+        ThumbnailIndex index = openIndex(file);
+        index.put(/* positionMs= */ 30_000, createThumbnail(index, Color.GREEN));
+        index.close();
+
+        ThumbnailIndex reopenedIndex =
+                new ThumbnailIndex(file, /* width= */ 64, /* height= */ 36, INTERVAL_MS, CAPACITY);
+
+        assertEquals(0, reopenedIndex.getThumbnailCount());
+        assertFalse(reopenedIndex.contains(/* positionMs= */ 30_000));
+        reopenedIndex.close();
+    }
+
+    @Test
+    public void indexOfUri_isFoundByEqualUriOnly() throws IOException {
+        // Equal hash codes, so naming files by hash code would make the second find the first.
+        Uri uri = Uri.parse("https://example.com/Aa.mp4");
+        Uri otherUri = Uri.parse("https://example.com/BB.mp4");
+        ThumbnailIndex index = openIndex(getIndexFile(uri));
+        index.put(/* positionMs= */ 0, createThumbnail(index, Color.RED));
+        index.close();
+
+        ThumbnailIndex foundIndex = openIndex(getIndexFile(Uri.parse(uri.toString())));
+        ThumbnailIndex otherIndex = openIndex(getIndexFile(otherUri));
+
+        assertTrue(foundIndex.contains(/* positionMs= */ 0));
+        assertFalse(otherIndex.contains(/* positionMs= */ 0));
+        foundIndex.close();
+        otherIndex.close();
+    }
+
+    private File getIndexFile(Uri uri) {
+        return new File(tempDirectory, TrickPlayThumbnailer.getFileName(uri));
+    }
+
+    private static ThumbnailIndex openIndex(File file) throws IOException {
+        return new ThumbnailIndex(
+                file,
+                ThumbnailIndex.DEFAULT_WIDTH,
+                ThumbnailIndex.DEFAULT_HEIGHT,
+                INTERVAL_MS,
+                CAPACITY);
+    }
+
+    /** Returns a thumbnail filled with {@code color}, which RGB_565 represents exactly. */
+    private static Bitmap createThumbnail(ThumbnailIndex index, int color) {
+        Bitmap bitmap = index.createBitmap();
+        bitmap.eraseColor(color);
+        return bitmap;
+    }
+}
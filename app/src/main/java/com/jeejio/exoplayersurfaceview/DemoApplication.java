@@ -0,0 +1,29 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.Application;
+import android.os.Process;
+
+/** Starts the {@link DemoUtil} initialisers in the background as soon as the process starts. */
+public class DemoApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            // Traces the first launch, until MainActivity renders its first frame.
+            StartupTrace.setEnabled(true);
+            StartupTrace.record(
+                    StartupTrace.SPAN_PROCESS_START,
+                    Process.getStartElapsedRealtime() * 1_000_000,
+                    StartupTrace.begin());
+        }
+        configureDemoUtil();
+        DemoUtil.initializeAsync(this);
+    }
+
+    /**
+     * Called before the {@link DemoUtil} initialisers start, which is the last chance to call its
+     * setters, such as {@link DemoUtil#setHttpDataSourceFactory}. Does nothing by default.
+     */
+    protected void configureDemoUtil() {}
+}
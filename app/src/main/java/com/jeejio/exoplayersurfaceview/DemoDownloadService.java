@@ -0,0 +1,64 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.Notification;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadService;
+import com.google.android.exoplayer2.scheduler.Scheduler;
+
+import java.util.List;
+
+/** A service for downloading media into {@link DemoUtil}'s download cache. */
+public class DemoDownloadService extends DownloadService {
+
+    private static final int FOREGROUND_NOTIFICATION_ID = 1;
+
+    public DemoDownloadService() {
+        super(
+                FOREGROUND_NOTIFICATION_ID,
+                DEFAULT_FOREGROUND_NOTIFICATION_UPDATE_INTERVAL,
+                DemoUtil.DOWNLOAD_NOTIFICATION_CHANNEL_ID,
+                R.string.exo_download_notification_channel_name,
+                /* channelDescriptionResourceId= */ 0);
+    }
+
+    @Override
+    @NonNull
+    protected DownloadManager getDownloadManager() {
+        return DemoUtil.getDownloadManager(/* context= */ this);
+    }
+
+    @Override
+    @Nullable
+    protected Scheduler getScheduler() {
+        // Downloads are resumed when the service is next started, rather than scheduled.
+        return null;
+    }
+
+    @Override
+    @NonNull
+    protected Notification getForegroundNotification(@NonNull List<Download> downloads) {
+        float totalPercentage = 0;
+        int downloadingCount = 0;
+        for (int i = 0; i < downloads.size(); i++) {
+            Download download = downloads.get(i);
+            if (download.state == Download.STATE_DOWNLOADING) {
+                downloadingCount++;
+                totalPercentage += Math.max(0, download.getPercentDownloaded());
+            }
+        }
+        int progress = downloadingCount == 0 ? 0 : (int) (totalPercentage / downloadingCount);
+        return new NotificationCompat.Builder(this, DemoUtil.DOWNLOAD_NOTIFICATION_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(getString(R.string.exo_download_downloading))
+                .setProgress(/* max= */ 100, progress, /* indeterminate= */ downloadingCount == 0)
+                .setOngoing(true)
+                .setShowWhen(false)
+                .build();
+    }
+}
@@ -5,41 +5,87 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.IBinder;
+import android.view.Menu;
+import android.view.Surface;
 import android.util.Log;
 import android.util.Pair;
 import android.view.MenuItem;
+import android.view.View;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.MediaMetadata;
 import com.google.android.exoplayer2.Player;
-import com.google.android.exoplayer2.RenderersFactory;
 import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
 import com.google.android.exoplayer2.audio.AudioAttributes;
 import com.google.android.exoplayer2.mediacodec.MediaCodecRenderer;
 import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
-import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
-import com.google.android.exoplayer2.source.MediaSourceFactory;
-import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
-import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.util.ErrorMessageProvider;
-import com.google.android.exoplayer2.util.EventLogger;
 import com.google.android.exoplayer2.util.Util;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
+    /* package */ static final Uri CONTENT_URI =
+            Uri.parse("http://ivi.bupt.edu.cn/hls/cctv1hd.m3u8");
+    /** The channels played in turn. The next one is preloaded while the current one plays. */
+    private static final Uri[] PLAYLIST_URIS = {
+            CONTENT_URI,
+            Uri.parse("http://ivi.bupt.edu.cn/hls/cctv3hd.m3u8"),
+            Uri.parse("http://ivi.bupt.edu.cn/hls/cctv6hd.m3u8")
+    };
+    private static final int MENU_ITEM_NEXT = Menu.FIRST;
+    private static final int MENU_ITEM_PICTURE_IN_PICTURE = Menu.FIRST + 1;
 
     protected ExoPlayerView playerView;
+    private ExoPlayerView pipPlayerView;
+    /** The view the player is on, {@link #playerView} or {@link #pipPlayerView}. */
+    private ExoPlayerView targetPlayerView;
+    @Nullable private SurfaceHandoff surfaceHandoff;
     protected SimpleExoPlayer player;
-    private MediaItem mediaItem;
-    private DataSource.Factory dataSourceFactory;
+    @Nullable private PlaybackService playbackService;
+    private ServiceConnection playbackServiceConnection;
+    @Nullable private PlayerPool.PooledPlayer pooledPlayer;
+    @Nullable private PlayerEventListener playerEventListener;
+    @Nullable private QoeCollector qoeCollector;
+    @Nullable private PrefetchAnalyticsListener prefetchAnalyticsListener;
+    @Nullable private StartupTraceListener startupTraceListener;
+    private LiveLatencyMonitor liveLatencyMonitor;
+    @Nullable private PlaylistPreloader playlistPreloader;
+    @Nullable private CacheAwareStartup cacheAwareStartup;
+    private List<MediaItem> mediaItems;
+    @Nullable private Uri currentUri;
     private DefaultTrackSelector trackSelector;
     private DefaultTrackSelector.Parameters trackSelectorParameters;
+    @Nullable private SegmentPrefetcher segmentPrefetcher;
+    private TrickPlayThumbnailer trickPlayThumbnailer;
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_ITEM_NEXT, Menu.NONE, R.string.exo_controls_next_description)
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        menu.add(Menu.NONE, MENU_ITEM_PICTURE_IN_PICTURE, Menu.NONE, R.string.picture_in_picture)
+                .setShowAsAction(MenuItem.SHOW_AS_ACTION_NEVER);
+        return super.onCreateOptionsMenu(menu);
+    }
 
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
@@ -47,55 +93,196 @@ public class MainActivity extends AppCompatActivity {
             finish();
             return true;
         }
+        if (item.getItemId() == MENU_ITEM_NEXT) {
+            if (player != null && player.hasNext()) {
+                player.next();
+            }
+            return true;
+        }
+        if (item.getItemId() == MENU_ITEM_PICTURE_IN_PICTURE) {
+            togglePictureInPicture();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        long startTimeNs = StartupTrace.begin();
         super.onCreate(savedInstanceState);
         ActionBar actionBar = getSupportActionBar();
         actionBar.setDisplayHomeAsUpEnabled(true);
-        dataSourceFactory = DemoUtil.getDataSourceFactory(this);
         setContentView(R.layout.activity_main);
 
         DefaultTrackSelector.ParametersBuilder builder =
                 new DefaultTrackSelector.ParametersBuilder(this);
         trackSelectorParameters = builder.build();
+        liveLatencyMonitor = new LiveLatencyMonitor();
+        trickPlayThumbnailer = new TrickPlayThumbnailer(this);
+
+        playbackServiceConnection = new PlaybackServiceConnection();
 
         playerView = findViewById(R.id.player_view);
         playerView.setErrorMessageProvider(new PlayerErrorMessageProvider());
+        playerView.setKeepContentOnPlayerReset(true);
+        playerView.setSeekPreviewProvider(trickPlayThumbnailer);
         playerView.requestFocus();
+        pipPlayerView = findViewById(R.id.pip_player_view);
+        targetPlayerView = playerView;
+        StartupTrace.end(StartupTrace.SPAN_ACTIVITY_CREATE, startTimeNs);
     }
 
     protected boolean initializePlayer() {
+        if (playbackService == null) {
+            // Called again once the service is connected.
+            return false;
+        }
+        long startTimeNs = StartupTrace.begin();
         if (player == null) {
-            mediaItem = createMediaItem();
-
-            RenderersFactory renderersFactory = DemoUtil.buildRenderersFactory(this,false);
-            MediaSourceFactory mediaSourceFactory =
-                    new DefaultMediaSourceFactory(dataSourceFactory);
+            mediaItems = createMediaItems();
 
-            trackSelector = new DefaultTrackSelector(this);
+            pooledPlayer = playbackService.attach(mediaItems.get(0));
+            player = pooledPlayer.player;
+            trackSelector = pooledPlayer.trackSelector;
             trackSelector.setParameters(trackSelectorParameters);
-            player = new SimpleExoPlayer.Builder(this, renderersFactory)
-                            .setMediaSourceFactory(mediaSourceFactory)
-                            .setTrackSelector(trackSelector)
-                            .build();
-            player.addListener(new PlayerEventListener());
-            player.addAnalyticsListener(new EventLogger(trackSelector));
+            playerEventListener = new PlayerEventListener();
+            qoeCollector = DemoUtil.getQoeCollector(this);
+            qoeCollector.startSession();
+            prefetchAnalyticsListener = new PrefetchAnalyticsListener();
+            player.addListener(playerEventListener);
+            player.addAnalyticsListener(qoeCollector);
+            player.addAnalyticsListener(prefetchAnalyticsListener);
+            player.addAnalyticsListener(liveLatencyMonitor);
+            liveLatencyMonitor.setPlayer(player);
+            player.addAnalyticsListener(getPlaylistPreloader());
+            if (StartupTrace.isEnabled()) {
+                startupTraceListener = new StartupTraceListener(startTimeNs);
+                player.addAnalyticsListener(startupTraceListener);
+            }
             player.setAudioAttributes(AudioAttributes.DEFAULT,true);
+            targetPlayerView.setPlayer(player);
+            surfaceHandoff = new SurfaceHandoff(player, new SurfaceHandoffListener());
+        }
+
+        if (player.getPlaybackState() == Player.STATE_IDLE || !hasPlaylist(player)) {
+            getCacheAwareStartup().start(PLAYLIST_URIS[0]);
+            player.setMediaItems(mediaItems);
+            player.setRepeatMode(Player.REPEAT_MODE_ALL);
             player.setPlayWhenReady(true);
-            playerView.setPlayer(player);
+            player.prepare();
+        } else if (player.isCurrentWindowLive()) {
+            // A warm player is still prepared, but has fallen behind the live edge while idle.
+            player.seekToDefaultPosition();
         }
+        getPlaylistPreloader().setPlayer(player, trackSelector);
+        onCurrentMediaItemChanged(player.getCurrentMediaItem());
+        StartupTrace.end(StartupTrace.SPAN_INITIALIZE_PLAYER, startTimeNs);
+        return true;
+    }
+
+    /**
+     * Returns the preloader, building it on first use so that creating the activity does not wait
+     * for the {@link DemoUtil} initialisers.
+     */
+    private PlaylistPreloader getPlaylistPreloader() {
+        if (playlistPreloader == null) {
+            playlistPreloader =
+                    new PlaylistPreloader(
+                            DemoUtil.getUpstreamDataSourceFactory(this),
+                            DemoUtil.getPrefetchDataSourceFactory(this),
+                            DemoUtil.getBandwidthMeter(this),
+                            PlaylistPreloader.DEFAULT_SEGMENTS_TO_PRELOAD);
+        }
+        return playlistPreloader;
+    }
+
+    /** Returns the cache-aware startup, building it on first use as the preloader is. */
+    private CacheAwareStartup getCacheAwareStartup() {
+        if (cacheAwareStartup == null) {
+            cacheAwareStartup =
+                    new CacheAwareStartup(
+                            DemoUtil.getUpstreamDataSourceFactory(this),
+                            DemoUtil.getPrefetchDataSourceFactory(this),
+                            DemoUtil.getManifestCache(this));
+        }
+        return cacheAwareStartup;
+    }
 
-        player.setMediaItem(mediaItem);
-        player.prepare();
+    private boolean hasPlaylist(Player player) {
+        if (player.getMediaItemCount() != mediaItems.size()) {
+            return false;
+        }
+        for (int i = 0; i < mediaItems.size(); i++) {
+            if (!mediaItems.get(i).equals(player.getMediaItemAt(i))) {
+                return false;
+            }
+        }
         return true;
     }
 
+    /** Points the helpers that follow a single item at the item now playing. */
+    private void onCurrentMediaItemChanged(@Nullable MediaItem mediaItem) {
+        @Nullable Uri uri =
+                mediaItem != null && mediaItem.playbackProperties != null
+                        ? mediaItem.playbackProperties.uri
+                        : null;
+        if (player == null || Util.areEqual(uri, currentUri)) {
+            return;
+        }
+        currentUri = uri;
+        releaseSegmentPrefetcher();
+        trickPlayThumbnailer.detach();
+        if (uri != null) {
+            trickPlayThumbnailer.attach(player, playerView, uri);
+            startSegmentPrefetcher(uri);
+        }
+    }
+
+    /**
+     * Moves the player between the full-size view and the picture-in-picture one, creating the
+     * target's surface first.
+     */
+    private void togglePictureInPicture() {
+        if (surfaceHandoff == null) {
+            return;
+        }
+        ExoPlayerView oldPlayerView = targetPlayerView;
+        targetPlayerView = oldPlayerView == playerView ? pipPlayerView : playerView;
+        surfaceHandoff.preload(targetPlayerView);
+        surfaceHandoff.switchTo(oldPlayerView, targetPlayerView);
+    }
+
+    private void startSegmentPrefetcher(Uri uri) {
+        if (segmentPrefetcher != null || Util.inferContentType(uri) != C.TYPE_HLS) {
+            return;
+        }
+        segmentPrefetcher =
+                new SegmentPrefetcher(
+                        uri,
+                        DemoUtil.getUpstreamDataSourceFactory(this),
+                        DemoUtil.getPrefetchDataSourceFactory(this),
+                        SegmentPrefetcher.DEFAULT_SEGMENTS_AHEAD,
+                        SegmentPrefetcher.DEFAULT_MAX_CONCURRENT_LOADS);
+        segmentPrefetcher.start();
+    }
+
+    private void releaseSegmentPrefetcher() {
+        if (segmentPrefetcher != null) {
+            segmentPrefetcher.release();
+            segmentPrefetcher = null;
+        }
+    }
+
 
-    private MediaItem createMediaItem(){
-        Uri uri = Uri.parse("http://ivi.bupt.edu.cn/hls/cctv1hd.m3u8");
+    private List<MediaItem> createMediaItems() {
+        List<MediaItem> mediaItems = new ArrayList<>();
+        for (Uri uri : PLAYLIST_URIS) {
+            mediaItems.add(createMediaItem(uri));
+        }
+        return mediaItems;
+    }
+
+    private MediaItem createMediaItem(Uri uri){
         MediaItem.Builder mediaItem = new MediaItem.Builder();
         String adaptiveMimeType =
                 Util.getAdaptiveMimeTypeForContentType(Util.inferContentType(uri));
@@ -103,48 +290,81 @@ public class MainActivity extends AppCompatActivity {
                 .setUri(uri)
                 .setMediaMetadata(new MediaMetadata.Builder().setTitle("title").build())
                 .setMimeType(adaptiveMimeType);
+        liveLatencyMonitor.applyTo(mediaItem);
         return mediaItem.build();
     }
 
     @Override
     public void onStart() {
         super.onStart();
-        initializePlayer();
-    }
-
-    @Override
-    public void onResume() {
-        super.onResume();
-        if (player == null) {
-            initializePlayer();
-        }
-    }
-
-    @Override
-    public void onPause() {
-        super.onPause();
-        releasePlayer();
+        bindService(
+                new Intent(this, PlaybackService.class),
+                playbackServiceConnection,
+                BIND_AUTO_CREATE);
     }
 
     @Override
     public void onStop() {
         super.onStop();
         releasePlayer();
+        unbindService(playbackServiceConnection);
+        playbackService = null;
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (playlistPreloader != null) {
+            playlistPreloader.release();
+            playlistPreloader = null;
+        }
+        if (cacheAwareStartup != null) {
+            cacheAwareStartup.release();
+            cacheAwareStartup = null;
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        DemoUtil.getPlayerPool(this).onTrimMemory(level);
+        DemoUtil.getHotSegmentCache().onTrimMemory(level);
     }
 
     protected void releasePlayer() {
         if (player != null) {
             updateTrackSelectorParameters();
-            player.release();
+            player.removeListener(playerEventListener);
+            player.removeAnalyticsListener(qoeCollector);
+            qoeCollector.endSession();
+            player.removeAnalyticsListener(prefetchAnalyticsListener);
+            if (startupTraceListener != null) {
+                player.removeAnalyticsListener(startupTraceListener);
+                startupTraceListener = null;
+            }
+            player.removeAnalyticsListener(liveLatencyMonitor);
+            liveLatencyMonitor.setPlayer(null);
+            player.removeAnalyticsListener(getPlaylistPreloader());
+            getPlaylistPreloader().setPlayer(/* player= */ null, /* trackSelector= */ null);
+            trickPlayThumbnailer.detach();
+            surfaceHandoff.release();
+            surfaceHandoff = null;
+            targetPlayerView.setPlayer(null);
+            if (playbackService != null) {
+                // Null once the service has disconnected, leaving nothing to detach from.
+                playbackService.detach();
+            }
+            DemoUtil.getBandwidthHistory(this).flush();
+            pooledPlayer = null;
+            playerEventListener = null;
+            qoeCollector = null;
+            prefetchAnalyticsListener = null;
             player = null;
-            mediaItem = null;
+            mediaItems = null;
+            currentUri = null;
             trackSelector = null;
         }
+        releaseSegmentPrefetcher();
 
     }
 
@@ -154,24 +374,120 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private class PlaybackServiceConnection implements ServiceConnection {
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            playbackService = ((PlaybackService.LocalBinder) service).getService();
+            initializePlayer();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            playbackService = null;
+        }
+    }
+
+    /**
+     * Follows the item now playing. State changes and errors are recorded by the {@link
+     * QoeCollector}.
+     */
     private class PlayerEventListener implements Player.EventListener {
 
         @Override
-        public void onPlaybackStateChanged(@Player.State int playbackState) {
-            Log.d(TAG,"onPlaybackStateChanged: "+playbackState);
+        public void onMediaItemTransition(
+                @Nullable MediaItem mediaItem, @Player.MediaItemTransitionReason int reason) {
+            onCurrentMediaItemChanged(mediaItem);
+        }
+    }
+
+    /** Hides the view the player left once the view it moved to shows its first frame. */
+    private class SurfaceHandoffListener implements SurfaceHandoff.Listener {
+
+        @Override
+        public void onSwitchCompleted(
+                ExoPlayerView target,
+                long surfaceGapMs,
+                long firstFrameLatencyMs,
+                int droppedFrames) {
+            (target == playerView ? pipPlayerView : playerView).setVisibility(View.INVISIBLE);
+        }
+    }
+
+    private class PrefetchAnalyticsListener implements AnalyticsListener {
+
+        @Override
+        public void onLoadStarted(
+                @NonNull EventTime eventTime,
+                @NonNull LoadEventInfo loadEventInfo,
+                @NonNull MediaLoadData mediaLoadData) {
+            if (segmentPrefetcher != null
+                    && mediaLoadData.dataType == C.DATA_TYPE_MEDIA
+                    && mediaLoadData.trackFormat != null) {
+                segmentPrefetcher.onVariantSelected(mediaLoadData.trackFormat);
+            }
         }
 
         @Override
-        public void onPlayerError(@NonNull ExoPlaybackException e) {
-            Log.d(TAG,"onPlayerError: "+e.toString());
+        public void onLoadCompleted(
+                @NonNull EventTime eventTime,
+                @NonNull LoadEventInfo loadEventInfo,
+                @NonNull MediaLoadData mediaLoadData) {
+            if (segmentPrefetcher != null && mediaLoadData.dataType == C.DATA_TYPE_MEDIA) {
+                segmentPrefetcher.onSegmentLoaded(loadEventInfo.dataSpec.uri);
+            }
+        }
+    }
+
+    /**
+     * Records manifest loads and the time to the first frame, then writes the {@link StartupTrace}
+     * and disables it.
+     */
+    private class StartupTraceListener implements AnalyticsListener {
+
+        private final long initializeTimeNs;
+
+        public StartupTraceListener(long initializeTimeNs) {
+            this.initializeTimeNs = initializeTimeNs;
         }
 
         @Override
-        @SuppressWarnings("ReferenceEquality")
-        public void onTracksChanged(
-                @NonNull TrackGroupArray trackGroups, @NonNull TrackSelectionArray trackSelections) {
-            Log.d(TAG,"onTracksChanged");
+        public void onLoadCompleted(
+                @NonNull EventTime eventTime,
+                @NonNull LoadEventInfo loadEventInfo,
+                @NonNull MediaLoadData mediaLoadData) {
+            if (mediaLoadData.dataType == C.DATA_TYPE_MANIFEST) {
+                long endTimeNs = loadEventInfo.elapsedRealtimeMs * 1_000_000;
+                StartupTrace.record(
+                        StartupTrace.SPAN_MANIFEST_LOAD,
+                        endTimeNs - loadEventInfo.loadDurationMs * 1_000_000,
+                        endTimeNs);
+            }
+        }
 
+        @Override
+        public void onRenderedFirstFrame(@NonNull EventTime eventTime, @Nullable Surface surface) {
+            if (!StartupTrace.isEnabled()) {
+                return;
+            }
+            StartupTrace.record(
+                    StartupTrace.SPAN_TIME_TO_FIRST_FRAME,
+                    initializeTimeNs,
+                    eventTime.realtimeMs * 1_000_000);
+            StartupTrace.setEnabled(false);
+            File traceFile = DemoUtil.getStartupTraceFile(MainActivity.this);
+            // Keeps the write off the main thread, which is busy with the first frames.
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            executor.execute(
+                    () -> {
+                        try {
+                            StartupTrace.writeTo(traceFile);
+                        } catch (IOException e) {
+                            Log.e(TAG, "Failed to write startup trace", e);
+                        }
+                    });
+            // Lets the thread exit once the write completes.
+            executor.shutdown();
         }
     }
 
@@ -0,0 +1,98 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.widget.GridLayout;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays several live channels at once in a grid, for monitoring. The channels are given as the
+ * {@link #URI_LIST_EXTRA} string array extra, and default to {@link #DEFAULT_TILE_COUNT} copies of
+ * the main content.
+ */
+public class MosaicActivity extends AppCompatActivity {
+
+    /** The extra holding the URIs of the channels to play, as a string array. */
+    public static final String URI_LIST_EXTRA = "uri_list";
+    /** The number of tiles shown when no URIs are given. */
+    public static final int DEFAULT_TILE_COUNT = 4;
+
+    private MosaicController mosaicController;
+    private List<MediaItem> mediaItems;
+    private List<ExoPlayerView> playerViews;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mediaItems = createMediaItems(getIntent().getStringArrayExtra(URI_LIST_EXTRA));
+
+        int tileCount = mediaItems.size();
+        int columnCount = (int) Math.ceil(Math.sqrt(tileCount));
+        GridLayout gridLayout = new GridLayout(this);
+        gridLayout.setColumnCount(columnCount);
+        playerViews = new ArrayList<>(tileCount);
+        for (int i = 0; i < tileCount; i++) {
+            ExoPlayerView playerView = new ExoPlayerView(this);
+            GridLayout.LayoutParams layoutParams =
+                    new GridLayout.LayoutParams(
+                            GridLayout.spec(i / columnCount, /* weight= */ 1f),
+                            GridLayout.spec(i % columnCount, /* weight= */ 1f));
+            layoutParams.width = 0;
+            layoutParams.height = 0;
+            gridLayout.addView(playerView, layoutParams);
+            playerViews.add(playerView);
+        }
+        setContentView(gridLayout);
+
+        mosaicController = new MosaicController(this, MosaicController.getDeviceDecoderSlots());
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        mosaicController.start(mediaItems, playerViews);
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        mosaicController.release();
+        DemoUtil.getBandwidthHistory(this).flush();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        DemoUtil.getPlayerPool(this).onTrimMemory(level);
+        DemoUtil.getHotSegmentCache().onTrimMemory(level);
+    }
+
+    private static List<MediaItem> createMediaItems(@Nullable String[] uriStrings) {
+        List<MediaItem> mediaItems = new ArrayList<>();
+        if (uriStrings == null || uriStrings.length == 0) {
+            for (int i = 0; i < DEFAULT_TILE_COUNT; i++) {
+                mediaItems.add(createMediaItem(MainActivity.CONTENT_URI));
+            }
+        } else {
+            for (String uriString : uriStrings) {
+                mediaItems.add(createMediaItem(Uri.parse(uriString)));
+            }
+        }
+        return mediaItems;
+    }
+
+    private static MediaItem createMediaItem(Uri uri) {
+        return new MediaItem.Builder()
+                .setUri(uri)
+                .setMimeType(Util.getAdaptiveMimeTypeForContentType(Util.inferContentType(uri)))
+                .build();
+    }
+}
@@ -0,0 +1,254 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.Service;
+import android.content.ComponentCallbacks2;
+import android.content.Intent;
+import android.os.Binder;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * A service that hosts the playback session, so that the player, its buffer and its connections
+ * outlive the activity that displays it.
+ *
+ * <p>An activity {@link #attach(MediaItem) attaches} to the session when it starts and {@link
+ * #detach() detaches} when it stops, taking its surface with it. A detached session is paused and
+ * kept alive for {@link #setKeepAliveMs(long) the keep-alive window}, after which the player is
+ * released and the service stops. The service is the only keep-alive owner of its player: it is
+ * {@link PlayerPool#discard discarded} rather than idled in {@link DemoUtil#getPlayerPool the
+ * pool}, so that the pool's idle timeout does not stack on top of the window. The time from
+ * re-attaching to the first frame rendered on the new surface is recorded. Once a session ends
+ * with no other player acquired and no download running, the cache index is compacted. All
+ * methods must be called on the main thread.
+ */
+public final class PlaybackService extends Service {
+
+    /** The default time a detached session is kept alive, in milliseconds. */
+    public static final long DEFAULT_KEEP_ALIVE_MS = 30_000;
+
+    /** The binder returned to clients, giving direct access to the service. */
+    public final class LocalBinder extends Binder {
+
+        public PlaybackService getService() {
+            return PlaybackService.this;
+        }
+    }
+
+    private final IBinder binder;
+    private final Handler handler;
+    private final Runnable endSessionRunnable;
+    private final ResumeListener resumeListener;
+
+    private long keepAliveMs;
+    @Nullable private PlayerPool.PooledPlayer pooledPlayer;
+    @Nullable private MediaItem mediaItem;
+    private boolean attached;
+    private boolean started;
+    private boolean playWhenReadyOnAttach;
+    private int resumeCount;
+    private int resumeFirstFrameCount;
+    private long resumeFirstFrameTotalMs;
+    private long lastResumeFirstFrameMs;
+
+    public PlaybackService() {
+        binder = new LocalBinder();
+        handler = new Handler(Looper.getMainLooper());
+        endSessionRunnable = this::endSession;
+        resumeListener = new ResumeListener();
+        keepAliveMs = DEFAULT_KEEP_ALIVE_MS;
+        lastResumeFirstFrameMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Sets how long a detached session is kept alive before its player is released.
+     *
+     * @param keepAliveMs The keep-alive window, in milliseconds. Zero ends a session on detach.
+     */
+    public void setKeepAliveMs(long keepAliveMs) {
+        Assertions.checkArgument(keepAliveMs >= 0);
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /**
+     * Attaches to the session for {@code mediaItem}. The player of a session kept alive since the
+     * last {@link #detach()} is returned as is; otherwise a player is acquired from the pool.
+     *
+     * @param mediaItem The item that will be played.
+     * @return The player of the session.
+     */
+    public PlayerPool.PooledPlayer attach(MediaItem mediaItem) {
+        Assertions.checkState(!attached);
+        handler.removeCallbacks(endSessionRunnable);
+        if (pooledPlayer != null && mediaItem.equals(this.mediaItem)) {
+            resumeCount++;
+            resumeListener.onResumed(SystemClock.elapsedRealtime());
+            pooledPlayer.player.setPlayWhenReady(playWhenReadyOnAttach);
+        } else {
+            // The player is handed straight back out, so it can be reused for the new item.
+            releaseSessionPlayer(/* reuse= */ true);
+            pooledPlayer = DemoUtil.getPlayerPool(this).acquire(mediaItem);
+            pooledPlayer.player.addAnalyticsListener(resumeListener);
+            this.mediaItem = mediaItem;
+        }
+        if (!started) {
+            // Keep the service running while detached, so that unbinding does not destroy it.
+            startService(new Intent(this, PlaybackService.class));
+            started = true;
+        }
+        attached = true;
+        return pooledPlayer;
+    }
+
+    /**
+     * Detaches from the session. The caller must have cleared its surface from the player. The
+     * player is paused, and resumes as it was on the next {@link #attach(MediaItem)}; the session
+     * is ended once {@link #setKeepAliveMs(long) the keep-alive window} elapses without one.
+     */
+    public void detach() {
+        if (!attached) {
+            return;
+        }
+        attached = false;
+        if (pooledPlayer != null) {
+            // Nothing is shown while detached, so hold the position rather than play on unseen.
+            playWhenReadyOnAttach = pooledPlayer.player.getPlayWhenReady();
+            pooledPlayer.player.setPlayWhenReady(false);
+        }
+        resumeListener.onResumed(C.TIME_UNSET);
+        handler.postDelayed(endSessionRunnable, keepAliveMs);
+    }
+
+    /** Returns the number of attachments that resumed a session kept alive. */
+    public int getResumeCount() {
+        return resumeCount;
+    }
+
+    /**
+     * Returns the time from the last resumed attachment to its first rendered frame, in
+     * milliseconds, or {@link C#TIME_UNSET} if unknown.
+     */
+    public long getLastResumeTimeToFirstFrameMs() {
+        return lastResumeFirstFrameMs;
+    }
+
+    /**
+     * Returns the mean time from a resumed attachment to its first rendered frame, in milliseconds,
+     * or {@link C#TIME_UNSET} if unknown.
+     */
+    public long getAverageResumeTimeToFirstFrameMs() {
+        return resumeFirstFrameCount == 0
+                ? C.TIME_UNSET
+                : resumeFirstFrameTotalMs / resumeFirstFrameCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PlaybackService{session=" + (pooledPlayer != null)
+                + ", attached=" + attached
+                + ", resumes=" + resumeCount
+                + ", lastResumeTtffMs=" + lastResumeFirstFrameMs
+                + ", resumeTtffMs=" + getAverageResumeTimeToFirstFrameMs()
+                + "}";
+    }
+
+    // Service implementation
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (pooledPlayer != null) {
+            // The session's player is shrunk here too, as no activity may be left to forward this.
+            pooledPlayer.loadControl.onTrimMemory(level);
+        }
+        if (!attached && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            endSession();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(endSessionRunnable);
+        releaseSessionPlayer(/* reuse= */ false);
+        super.onDestroy();
+    }
+
+    private void endSession() {
+        handler.removeCallbacks(endSessionRunnable);
+        releaseSessionPlayer(/* reuse= */ false);
+        if (!attached) {
+            stopSelf();
+            started = false;
+            maintainCacheIndex();
+        }
+    }
+
+    /**
+     * Compacts the cache index if nothing is loading into the cache, as compaction locks the
+     * database for its whole run.
+     */
+    private void maintainCacheIndex() {
+        if (DemoUtil.getPlayerPool(this).getAcquiredPlayerCount() == 0
+                && DemoUtil.isDownloadManagerIdle()) {
+            DemoUtil.getCacheIndexMaintenance(this).runAsync();
+        }
+    }
+
+    private void releaseSessionPlayer(boolean reuse) {
+        if (pooledPlayer != null) {
+            pooledPlayer.player.removeAnalyticsListener(resumeListener);
+            PlayerPool playerPool = DemoUtil.getPlayerPool(this);
+            if (reuse) {
+                playerPool.release(pooledPlayer);
+            } else {
+                playerPool.discard(pooledPlayer);
+            }
+            pooledPlayer = null;
+            mediaItem = null;
+        }
+    }
+
+    private final class ResumeListener implements AnalyticsListener {
+
+        private long resumedAtMs;
+
+        public ResumeListener() {
+            resumedAtMs = C.TIME_UNSET;
+        }
+
+        public void onResumed(long resumedAtMs) {
+            this.resumedAtMs = resumedAtMs;
+        }
+
+        @Override
+        public void onRenderedFirstFrame(@NonNull EventTime eventTime, @Nullable Surface surface) {
+            if (resumedAtMs != C.TIME_UNSET) {
+                lastResumeFirstFrameMs = eventTime.realtimeMs - resumedAtMs;
+                resumeFirstFrameCount++;
+                resumeFirstFrameTotalMs += lastResumeFirstFrameMs;
+                resumedAtMs = C.TIME_UNSET;
+            }
+        }
+    }
+}
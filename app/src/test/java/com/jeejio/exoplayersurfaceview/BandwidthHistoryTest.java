@@ -0,0 +1,146 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.common.collect.Range;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowNetworkInfo;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests the estimates of {@link BandwidthHistory} by replaying {@link BandwidthTrace bandwidth
+ * traces} through the {@link DefaultBandwidthMeter} it builds, on a Wi-Fi network.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BandwidthHistoryTest {
+
+    /** The transfer time after which a sample makes up half of the estimate. */
+    private static final long HALF_LIFE_MS = 2_000;
+
+    /** Segment downloads on a congested cell, in the format of recorded traces. */
+    private static final String CONGESTED_TRACE =
+            "# durationMs bytes\n"
+                    + "820 250000\n"
+                    + "1460 250000\n"
+                    + "640 250000\n"
+                    + "2900 250000\n"
+                    + "1210 250000\n"
+                    + "\n"
+                    + "430 125000\n"
+                    + "3800 250000\n"
+                    + "950 250000\n";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        setActiveNetworkInfo(
+                ShadowNetworkInfo.newInstance(
+                        NetworkInfo.DetailedState.CONNECTED,
+                        ConnectivityManager.TYPE_WIFI,
+                        /* subType= */ 0,
+                        /* isAvailable= */ true,
+                        NetworkInfo.State.CONNECTED));
+    }
+
+    @Test
+    public void constantTrace_estimatesItsBitrate() {
+        BandwidthHistory history = createHistory();
+
+        replay(history, BandwidthTrace.constant(/* count= */ 10, /* durationMs= */ 500, 1_000_000));
+
+        assertThat(history.getBitrateEstimate(C.NETWORK_TYPE_WIFI)).isEqualTo(1_000_000);
+    }
+
+    @Test
+    public void stepTrace_movesHalfwayAfterHalfLife() {
+        BandwidthHistory history = createHistory();
+
+        replay(history, BandwidthTrace.parse("1000 125000\n" + HALF_LIFE_MS + " 750000\n"));
+
+        assertThat(history.getBitrateEstimate(C.NETWORK_TYPE_WIFI)).isEqualTo(2_000_000);
+    }
+
+    @Test
+    public void shortTransfer_movesEstimateByItsDuration() {
+        BandwidthHistory history = createHistory();
+
+        replay(history, BandwidthTrace.parse("1000 125000\n100 37500\n"));
+
+        double weight = 1 - Math.pow(2, -100.0 / HALF_LIFE_MS);
+        assertThat((double) history.getBitrateEstimate(C.NETWORK_TYPE_WIFI))
+                .isWithin(1)
+                .of(1_000_000 + weight * 2_000_000);
+    }
+
+    @Test
+    public void recordedTrace_givesSameEstimateOnEveryReplay() {
+        BandwidthTrace trace = BandwidthTrace.parse(CONGESTED_TRACE);
+        BandwidthHistory first = createHistory();
+        BandwidthHistory second = createHistory();
+
+        replay(first, trace);
+        replay(second, trace);
+
+        long estimate = first.getBitrateEstimate(C.NETWORK_TYPE_WIFI);
+        assertThat(second.getBitrateEstimate(C.NETWORK_TYPE_WIFI)).isEqualTo(estimate);
+        long minBitrate = Long.MAX_VALUE;
+        long maxBitrate = 0;
+        for (int i = 0; i < trace.durationsMs.size(); i++) {
+            minBitrate = Math.min(minBitrate, trace.getBitrate(i));
+            maxBitrate = Math.max(maxBitrate, trace.getBitrate(i));
+        }
+        assertThat(estimate).isIn(Range.closed(minBitrate, maxBitrate));
+    }
+
+    @Test
+    public void estimate_seedsNextBandwidthMeter() {
+        BandwidthHistory history = createHistory();
+        replay(history, BandwidthTrace.parse(CONGESTED_TRACE));
+
+        DefaultBandwidthMeter bandwidthMeter = history.buildBandwidthMeter();
+
+        assertThat(bandwidthMeter.getBitrateEstimate())
+                .isEqualTo(history.getBitrateEstimate(C.NETWORK_TYPE_WIFI));
+    }
+
+    @Test
+    public void offline_recordsNothing() {
+        setActiveNetworkInfo(null);
+        BandwidthHistory history = createHistory();
+
+        replay(history, BandwidthTrace.parse(CONGESTED_TRACE));
+
+        assertThat(history.getBitrateEstimate(C.NETWORK_TYPE_WIFI)).isEqualTo(C.LENGTH_UNSET);
+        assertThat(history.getBitrateEstimate(C.NETWORK_TYPE_OFFLINE)).isEqualTo(C.LENGTH_UNSET);
+    }
+
+    private BandwidthHistory createHistory() {
+        return new BandwidthHistory(context, TestUtil.getInMemoryDatabaseProvider());
+    }
+
+    private void setActiveNetworkInfo(NetworkInfo networkInfo) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        shadowOf(connectivityManager).setActiveNetworkInfo(networkInfo);
+    }
+
+    /** Replays {@code trace} through a bandwidth meter built by {@code history}. */
+    private static void replay(BandwidthHistory history, BandwidthTrace trace) {
+        trace.replay(history.buildBandwidthMeter());
+    }
+}
@@ -0,0 +1,92 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A recorded sequence of network transfers, which can be replayed into a {@link TransferListener}
+ * such as a bandwidth meter in simulated time, so that the estimates it produces are the same on
+ * every run.
+ *
+ * <p>Traces are text with one transfer per line, as its duration in milliseconds and the number of
+ * bytes transferred, separated by whitespace. Blank lines and lines starting with {@code #} are
+ * ignored.
+ */
+/* package */ final class BandwidthTrace {
+
+    private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://example.com/seg"));
+
+    /** The durations of the transfers, in milliseconds. */
+    public final List<Long> durationsMs;
+    /** The bytes transferred by each transfer. */
+    public final List<Long> bytes;
+
+    private BandwidthTrace(List<Long> durationsMs, List<Long> bytes) {
+        this.durationsMs = Collections.unmodifiableList(durationsMs);
+        this.bytes = Collections.unmodifiableList(bytes);
+    }
+
+    /** Parses a trace in the text format described above. */
+    public static BandwidthTrace parse(String trace) {
+        List<Long> durationsMs = new ArrayList<>();
+        List<Long> bytes = new ArrayList<>();
+        for (String line : trace.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("Malformed transfer: " + line);
+            }
+            durationsMs.add(Long.parseLong(fields[0]));
+            bytes.add(Long.parseLong(fields[1]));
+        }
+        return new BandwidthTrace(durationsMs, bytes);
+    }
+
+    /** Returns a trace of {@code count} transfers, each at {@code bitrate}. */
+    public static BandwidthTrace constant(int count, long durationMs, long bitrate) {
+        List<Long> durationsMs = new ArrayList<>();
+        List<Long> bytes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            durationsMs.add(durationMs);
+            bytes.add(bitrate * durationMs / 8000);
+        }
+        return new BandwidthTrace(durationsMs, bytes);
+    }
+
+    /** Returns the raw bitrate of transfer {@code index}, in bits per second. */
+    public long getBitrate(int index) {
+        return bytes.get(index) * 8000 / durationsMs.get(index);
+    }
+
+    /**
+     * Replays the transfers, one after the other, into {@code transferListener}. Each transfer
+     * advances Robolectric's system clock by its duration and runs the main looper tasks due by
+     * then, so that a meter on the default clock times it exactly and delivers its samples. Must be
+     * called on the main thread.
+     */
+    public void replay(TransferListener transferListener) {
+        FakeDataSource source = new FakeDataSource();
+        for (int i = 0; i < durationsMs.size(); i++) {
+            transferListener.onTransferInitializing(source, DATA_SPEC, /* isNetwork= */ true);
+            transferListener.onTransferStart(source, DATA_SPEC, /* isNetwork= */ true);
+            ShadowLooper.idleMainLooper(durationsMs.get(i), TimeUnit.MILLISECONDS);
+            transferListener.onBytesTransferred(
+                    source, DATA_SPEC, /* isNetwork= */ true, (int) (long) bytes.get(i));
+            transferListener.onTransferEnd(source, DATA_SPEC, /* isNetwork= */ true);
+        }
+        ShadowLooper.idleMainLooper();
+    }
+}
@@ -0,0 +1,287 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link CacheAwareStartup} against a local live origin whose responses can be delayed, with
+ * playback loads going through a {@link ManifestDataSource} as they do in the app.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class CacheAwareStartupTest {
+
+    private static final int SEGMENT_LENGTH = 16 * 1024;
+    private static final int WINDOW_SEGMENT_COUNT = 4;
+    private static final long ORIGIN_DELAY_MS = 2_000;
+
+    private MockWebServer server;
+    private File tempDirectory;
+    private SimpleCache cache;
+    private CacheDataSource.Factory cacheDataSourceFactory;
+    private ManifestCache manifestCache;
+    private ManifestDataSource.Factory playbackDataSourceFactory;
+    private CacheAwareStartup cacheAwareStartup;
+
+    private volatile int liveMediaSequence;
+    private volatile long originDelayMs;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new LiveOriginDispatcher());
+        server.start();
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "CacheAwareStartupTest");
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                        TestUtil.getInMemoryDatabaseProvider());
+        DefaultHttpDataSourceFactory httpDataSourceFactory = new DefaultHttpDataSourceFactory("test");
+        cacheDataSourceFactory =
+                DemoUtil.buildCacheDataSourceFactory(
+                        httpDataSourceFactory,
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        /* eventListener= */ null);
+        manifestCache =
+                new ManifestCache(
+                        new File(tempDirectory, "manifests"),
+                        ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+        playbackDataSourceFactory =
+                new ManifestDataSource.Factory(
+                        cacheDataSourceFactory, httpDataSourceFactory, manifestCache);
+        cacheAwareStartup =
+                new CacheAwareStartup(httpDataSourceFactory, cacheDataSourceFactory, manifestCache);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cacheAwareStartup.release();
+        cache.release();
+        Util.recursiveDelete(tempDirectory);
+        server.shutdown();
+    }
+
+    @Test
+    public void cachedStartup_doesNotWaitForDelayedOrigin() throws Exception {
+        storePlaylist(/* storedAtMs= */ System.currentTimeMillis());
+        cacheStartupSegments();
+        originDelayMs = ORIGIN_DELAY_MS;
+
+        long startNs = System.nanoTime();
+        cacheAwareStartup.start(getPlaylistUri());
+        HlsMediaPlaylist playlist = loadPlaylist();
+        byte[] firstSegment = loadSegment(playlist, /* index= */ 1);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+
+        assertThat(cacheAwareStartup.isStartedFromCache()).isTrue();
+        assertThat(firstSegment).hasLength(SEGMENT_LENGTH);
+        assertThat(elapsedMs).isLessThan(ORIGIN_DELAY_MS / 2);
+    }
+
+    @Test
+    public void cachedStartup_revalidatesStoredPlaylistInParallel() throws Exception {
+        storePlaylist(/* storedAtMs= */ System.currentTimeMillis());
+        cacheStartupSegments();
+
+        cacheAwareStartup.start(getPlaylistUri());
+        loadPlaylist();
+
+        RecordedRequest request = takePlaylistRequest();
+        assertThat(request.getMethod()).isEqualTo("GET");
+        assertThat(request.getHeader("If-None-Match")).isEqualTo(getETag(/* mediaSequence= */ 0));
+    }
+
+    @Test
+    public void cachedStartup_nextRefreshPromotesToLivePlaylist() throws Exception {
+        storePlaylist(/* storedAtMs= */ System.currentTimeMillis());
+        cacheStartupSegments();
+
+        cacheAwareStartup.start(getPlaylistUri());
+        HlsMediaPlaylist storedPlaylist = loadPlaylist();
+        liveMediaSequence = 1;
+        HlsMediaPlaylist livePlaylist = loadPlaylist();
+
+        assertThat(storedPlaylist.mediaSequence).isEqualTo(0);
+        // The live playlist carries on from the stored one, so playback has no discontinuity.
+        assertThat(livePlaylist.mediaSequence).isEqualTo(1);
+        assertThat(livePlaylist.segments.get(0).url)
+                .isEqualTo(storedPlaylist.segments.get(1).url);
+    }
+
+    @Test
+    public void stalePlaylist_startsFromNetwork() throws Exception {
+        // The startup segments have slid out of the live window since the playlist was stored.
+        storePlaylist(/* storedAtMs= */ System.currentTimeMillis() - 60_000);
+        cacheStartupSegments();
+        liveMediaSequence = 15;
+
+        cacheAwareStartup.start(getPlaylistUri());
+        HlsMediaPlaylist playlist = loadPlaylist();
+
+        assertThat(cacheAwareStartup.isStartupCached()).isTrue();
+        assertThat(cacheAwareStartup.isStartedFromCache()).isFalse();
+        assertThat(playlist.mediaSequence).isEqualTo(15);
+    }
+
+    @Test
+    public void uncachedSegments_startFromNetwork() throws Exception {
+        storePlaylist(/* storedAtMs= */ System.currentTimeMillis());
+        liveMediaSequence = 1;
+
+        cacheAwareStartup.start(getPlaylistUri());
+        HlsMediaPlaylist playlist = loadPlaylist();
+
+        assertThat(cacheAwareStartup.isStartupCached()).isFalse();
+        assertThat(cacheAwareStartup.isStartedFromCache()).isFalse();
+        assertThat(playlist.mediaSequence).isEqualTo(1);
+    }
+
+    /** Stores the playlist with media sequence zero, as an earlier session would have. */
+    private void storePlaylist(long storedAtMs) {
+        manifestCache.put(
+                new ManifestCache.Entry(
+                        getPlaylistUri(),
+                        getPlaylistUri(),
+                        getETag(/* mediaSequence= */ 0),
+                        /* lastModified= */ null,
+                        buildPlaylist(/* mediaSequence= */ 0).getBytes(StandardCharsets.UTF_8),
+                        storedAtMs));
+    }
+
+    /** Caches the segments that live playback of the stored playlist starts from. */
+    private void cacheStartupSegments() throws Exception {
+        for (int i = 1; i < WINDOW_SEGMENT_COUNT; i++) {
+            new CacheWriter(
+                            cacheDataSourceFactory.createDataSourceForDownloading(),
+                            new DataSpec(getSegmentUri(i)),
+                            /* allowShortContent= */ false,
+                            /* temporaryBuffer= */ null,
+                            /* progressListener= */ null)
+                    .cache();
+        }
+        // Only the requests made during startup are of interest.
+        for (int i = server.getRequestCount(); i > 0; i--) {
+            server.takeRequest();
+        }
+    }
+
+    /** Loads the playlist as the player does. */
+    private HlsMediaPlaylist loadPlaylist() throws IOException {
+        return (HlsMediaPlaylist)
+                ParsingLoadable.load(
+                        playbackDataSourceFactory.createDataSource(),
+                        new HlsPlaylistParser(),
+                        new DataSpec(getPlaylistUri()),
+                        C.DATA_TYPE_MANIFEST);
+    }
+
+    private byte[] loadSegment(HlsMediaPlaylist playlist, int index) throws IOException {
+        Uri segmentUri = Uri.parse(server.url("/" + playlist.segments.get(index).url).toString());
+        DataSourceInputStream inputStream =
+                new DataSourceInputStream(
+                        playbackDataSourceFactory.createDataSource(), new DataSpec(segmentUri));
+        try {
+            return Util.toByteArray(inputStream);
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+    }
+
+    private RecordedRequest takePlaylistRequest() throws InterruptedException {
+        RecordedRequest request;
+        do {
+            request = server.takeRequest(/* timeout= */ 5, TimeUnit.SECONDS);
+            assertThat(request).isNotNull();
+        } while (!"/live.m3u8".equals(request.getPath()));
+        return request;
+    }
+
+    private Uri getPlaylistUri() {
+        return Uri.parse(server.url("/live.m3u8").toString());
+    }
+
+    private Uri getSegmentUri(int sequence) {
+        return Uri.parse(server.url("/segment" + sequence + ".ts").toString());
+    }
+
+    private static String getETag(int mediaSequence) {
+        return "\"v" + mediaSequence + "\"";
+    }
+
+    private static String buildPlaylist(int mediaSequence) {
+        StringBuilder playlist =
+                new StringBuilder()
+                        .append("#EXTM3U\n")
+                        .append("#EXT-X-TARGETDURATION:4\n")
+                        .append("#EXT-X-MEDIA-SEQUENCE:")
+                        .append(mediaSequence)
+                        .append('\n');
+        for (int i = mediaSequence; i < mediaSequence + WINDOW_SEGMENT_COUNT; i++) {
+            playlist.append("#EXTINF:4.0,\n").append("segment").append(i).append(".ts\n");
+        }
+        return playlist.toString();
+    }
+
+    /**
+     * Serves a live playlist at the current media sequence, revalidated by ETag, and its segments,
+     * after {@link #originDelayMs}.
+     */
+    private final class LiveOriginDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            MockResponse response;
+            String path = request.getPath();
+            if ("/live.m3u8".equals(path)) {
+                int mediaSequence = liveMediaSequence;
+                String eTag = getETag(mediaSequence);
+                response =
+                        eTag.equals(request.getHeader("If-None-Match"))
+                                ? new MockResponse().setResponseCode(304)
+                                : new MockResponse().setBody(buildPlaylist(mediaSequence));
+                response.setHeader("ETag", eTag);
+            } else if (path.endsWith(".ts")) {
+                response = new MockResponse().setBody(new Buffer().write(new byte[SEGMENT_LENGTH]));
+            } else {
+                response = new MockResponse().setResponseCode(404);
+            }
+            return response.setHeadersDelay(originDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
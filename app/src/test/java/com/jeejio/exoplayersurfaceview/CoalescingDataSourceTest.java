@@ -0,0 +1,124 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests {@link CoalescingDataSource} with requests taking turns on one thread. */
+@RunWith(AndroidJUnit4.class)
+public final class CoalescingDataSourceTest {
+
+    private static final int DATA_LENGTH = 1_000;
+    private static final DataSpec DATA_SPEC =
+            new DataSpec(Uri.parse("https://example.com/segment.ts"));
+
+    private byte[] data;
+
+    @Before
+    public void setUp() {
+        data = new byte[DATA_LENGTH];
+        new Random(0).nextBytes(data);
+    }
+
+    @Test
+    public void lateRequest_replaysPrefixFromStart() throws IOException {
+        CoalescingDataSource.Factory factory =
+                new CoalescingDataSource.Factory(() -> new ByteArrayDataSource(data));
+        CoalescingDataSource leader = factory.createDataSource();
+        CoalescingDataSource follower = factory.createDataSource();
+        leader.open(DATA_SPEC);
+        byte[] buffer = new byte[DATA_LENGTH];
+        assertThat(leader.read(buffer, 0, 100)).isEqualTo(100);
+
+        follower.open(DATA_SPEC);
+        int bytesReplayed = follower.read(buffer, 0, DATA_LENGTH);
+
+        assertThat(bytesReplayed).isEqualTo(100);
+        assertThat(Arrays.copyOf(buffer, 100)).isEqualTo(Arrays.copyOf(data, 100));
+        readToEnd(leader);
+        assertThat(readToEnd(follower)).isEqualTo(Arrays.copyOfRange(data, 100, DATA_LENGTH));
+        assertThat(factory.getOriginBytes()).isEqualTo(DATA_LENGTH);
+        assertThat(factory.getCoalescedBytes()).isEqualTo(DATA_LENGTH);
+        leader.close();
+        follower.close();
+    }
+
+    @Test
+    public void requestAfterLoadFinished_isServedFromBuffer() throws IOException {
+        CoalescingDataSource.Factory factory =
+                new CoalescingDataSource.Factory(() -> new ByteArrayDataSource(data));
+        CoalescingDataSource leader = factory.createDataSource();
+        CoalescingDataSource follower = factory.createDataSource();
+        leader.open(DATA_SPEC);
+        readToEnd(leader);
+
+        follower.open(DATA_SPEC);
+
+        assertThat(readToEnd(follower)).isEqualTo(data);
+        assertThat(factory.getOriginBytes()).isEqualTo(DATA_LENGTH);
+        leader.close();
+        follower.close();
+    }
+
+    @Test
+    public void requestAfterCap_opensOwnUpstream() throws IOException {
+        CoalescingDataSource.Factory factory =
+                new CoalescingDataSource.Factory(
+                        () -> new ByteArrayDataSource(data), /* maxBufferBytes= */ 100);
+        CoalescingDataSource leader = factory.createDataSource();
+        CoalescingDataSource follower = factory.createDataSource();
+        leader.open(DATA_SPEC);
+        readToEnd(leader);
+
+        follower.open(DATA_SPEC);
+
+        assertThat(readToEnd(follower)).isEqualTo(data);
+        assertThat(factory.getOriginBytes()).isEqualTo(2 * DATA_LENGTH);
+        assertThat(factory.getCoalescedBytes()).isEqualTo(0);
+        leader.close();
+        follower.close();
+    }
+
+    @Test
+    public void requestAfterLeaderClosed_opensOwnUpstream() throws IOException {
+        CoalescingDataSource.Factory factory =
+                new CoalescingDataSource.Factory(() -> new ByteArrayDataSource(data));
+        CoalescingDataSource leader = factory.createDataSource();
+        CoalescingDataSource follower = factory.createDataSource();
+        leader.open(DATA_SPEC);
+        leader.read(new byte[DATA_LENGTH], 0, 100);
+        leader.close();
+
+        follower.open(DATA_SPEC);
+
+        assertThat(readToEnd(follower)).isEqualTo(data);
+        assertThat(factory.getOriginBytes()).isEqualTo(100 + DATA_LENGTH);
+        follower.close();
+    }
+
+    private static byte[] readToEnd(DataSource dataSource) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int bytesRead;
+        while ((bytesRead = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+            output.write(buffer, 0, bytesRead);
+        }
+        return output.toByteArray();
+    }
+}
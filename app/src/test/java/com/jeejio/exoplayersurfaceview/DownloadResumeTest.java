@@ -0,0 +1,402 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.offline.Download;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.offline.DownloadRequest;
+import com.google.android.exoplayer2.scheduler.Requirements;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests that a download interrupted by the process going away resumes from the bytes already in the
+ * cache, with the download manager that {@link DemoUtil#buildDownloadManager} builds, for a
+ * progressive stream and for the segments of an HLS media playlist.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class DownloadResumeTest {
+
+    private static final String DOWNLOAD_ID = "download";
+    private static final String MEDIA_PATH = "/media.mp4";
+    private static final String PLAYLIST_PATH = "/playlist.m3u8";
+    private static final int CONTENT_LENGTH = 512 * 1024;
+    private static final int SEGMENT_COUNT = 8;
+    private static final int SEGMENT_LENGTH = CONTENT_LENGTH / SEGMENT_COUNT;
+    /** About 1.6 seconds for the whole content. */
+    private static final int BYTES_PER_THROTTLE_PERIOD = 16 * 1024;
+    private static final long THROTTLE_PERIOD_MS = 50;
+    private static final long TIMEOUT_MS = 10_000;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-");
+
+    private byte[] data;
+    private MockWebServer server;
+    private List<ServedRequest> servedRequests;
+    private File tempDirectory;
+    private DatabaseProvider databaseProvider;
+    @Nullable private SimpleCache cache;
+    @Nullable private DownloadManager downloadManager;
+    @Nullable private DownloadListener downloadListener;
+
+    @Before
+    public void setUp() throws IOException {
+        data = new byte[CONTENT_LENGTH];
+        new Random(0).nextBytes(data);
+        servedRequests = new CopyOnWriteArrayList<>();
+        server = new MockWebServer();
+        server.setDispatcher(new OriginDispatcher());
+        server.start();
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "DownloadResumeTest");
+        // Outlives the simulated process, as the database file would.
+        databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        releaseProcess();
+        Util.recursiveDelete(tempDirectory);
+        server.shutdown();
+    }
+
+    @Test
+    public void interruptedDownload_resumesFromCachedBytes() throws Exception {
+        TransferCounter transferCounter = new TransferCounter(CONTENT_LENGTH / 4);
+        openCache();
+        startDownloadManager(transferCounter);
+        downloadManager.addDownload(
+                new DownloadRequest.Builder(DOWNLOAD_ID, getUri(MEDIA_PATH)).build());
+        // Take the process away once part of the content has arrived.
+        assertThat(transferCounter.await()).isTrue();
+        assertThat(getDownloadState()).isNotEqualTo(Download.STATE_COMPLETED);
+        releaseProcess();
+        int requestCountBeforeRestart = servedRequests.size();
+
+        openCache();
+        long cachedBytes = cache.getCachedBytes(getUri(MEDIA_PATH).toString(), 0, CONTENT_LENGTH);
+        startDownloadManager(/* transferListener= */ null);
+        awaitCompletion();
+
+        assertThat(cachedBytes).isGreaterThan(0L);
+        assertThat(getRangeStarts(requestCountBeforeRestart, MEDIA_PATH))
+                .containsExactly(cachedBytes);
+        assertThat(cache.isCached(getUri(MEDIA_PATH).toString(), 0, CONTENT_LENGTH)).isTrue();
+    }
+
+    @Test
+    public void interruptedSegmentedDownload_resumesFromCachedSegments() throws Exception {
+        TransferCounter transferCounter = new TransferCounter(SEGMENT_LENGTH * 5 / 2);
+        openCache();
+        startDownloadManager(transferCounter);
+        downloadManager.addDownload(
+                new DownloadRequest.Builder(DOWNLOAD_ID, getUri(PLAYLIST_PATH))
+                        .setMimeType(MimeTypes.APPLICATION_M3U8)
+                        .build());
+        // Take the process away part way through the third segment.
+        assertThat(transferCounter.await()).isTrue();
+        releaseProcess();
+        int requestCountBeforeRestart = servedRequests.size();
+
+        openCache();
+        long[] cachedBytes = new long[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            cachedBytes[i] =
+                    cache.getCachedBytes(getUri(getSegmentPath(i)).toString(), 0, SEGMENT_LENGTH);
+        }
+        startDownloadManager(/* transferListener= */ null);
+        awaitCompletion();
+
+        assertThat(cachedBytes[0]).isEqualTo(SEGMENT_LENGTH);
+        assertThat(cachedBytes[SEGMENT_COUNT - 1]).isLessThan((long) SEGMENT_LENGTH);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            List<Long> rangeStarts = getRangeStarts(requestCountBeforeRestart, getSegmentPath(i));
+            if (cachedBytes[i] == SEGMENT_LENGTH) {
+                // A segment cached in full before the restart is not fetched again.
+                assertThat(rangeStarts).isEmpty();
+            } else {
+                assertThat(rangeStarts).containsExactly(cachedBytes[i]);
+            }
+            assertThat(cache.isCached(getUri(getSegmentPath(i)).toString(), 0, SEGMENT_LENGTH))
+                    .isTrue();
+        }
+    }
+
+    @Test
+    public void completedDownload_isNotFetchedAgainAfterRestart() throws Exception {
+        openCache();
+        startDownloadManager(/* transferListener= */ null);
+        downloadManager.addDownload(
+                new DownloadRequest.Builder(DOWNLOAD_ID, getUri(MEDIA_PATH)).build());
+        awaitCompletion();
+        releaseProcess();
+
+        openCache();
+        startDownloadManager(/* transferListener= */ null);
+        awaitIdle();
+
+        assertThat(getDownloadState()).isEqualTo(Download.STATE_COMPLETED);
+        assertThat(getRangeStarts(/* fromIndex= */ 0, MEDIA_PATH)).hasSize(1);
+    }
+
+    private void openCache() {
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                        databaseProvider);
+    }
+
+    /**
+     * Starts the download manager of a new process, which resumes the downloads left unfinished in
+     * the database. Must be called after {@link #openCache()}.
+     */
+    private void startDownloadManager(@Nullable TransferListener transferListener) {
+        DataSource.Factory httpDataSourceFactory =
+                new DefaultHttpDataSourceFactory("test", transferListener);
+        downloadManager =
+                DemoUtil.buildDownloadManager(
+                        ApplicationProvider.getApplicationContext(),
+                        databaseProvider,
+                        cache,
+                        new ThrottledDataSource.Factory(httpDataSourceFactory));
+        // The test has no say over the network the device reports.
+        downloadManager.setRequirements(new Requirements(/* requirements= */ 0));
+        downloadListener = new DownloadListener();
+        downloadManager.addListener(downloadListener);
+    }
+
+    private void releaseProcess() {
+        if (downloadManager != null) {
+            downloadManager.release();
+            downloadManager = null;
+            downloadListener = null;
+        }
+        if (cache != null) {
+            cache.release();
+            cache = null;
+        }
+    }
+
+    private Uri getUri(String path) {
+        return Uri.parse(server.url(path).toString());
+    }
+
+    @Nullable
+    private Integer getDownloadState() throws IOException {
+        @Nullable Download download = downloadManager.getDownloadIndex().getDownload(DOWNLOAD_ID);
+        return download == null ? null : download.state;
+    }
+
+    /** Returns where the requests for {@code path} served from {@code fromIndex} on started. */
+    private List<Long> getRangeStarts(int fromIndex, String path) {
+        List<Long> rangeStarts = new ArrayList<>();
+        for (ServedRequest request : servedRequests.subList(fromIndex, servedRequests.size())) {
+            if (request.path.equals(path)) {
+                rangeStarts.add(request.rangeStart);
+            }
+        }
+        return rangeStarts;
+    }
+
+    private void awaitCompletion() throws Exception {
+        runMainLooperUntil(downloadListener.finished);
+        assertThat(downloadListener.finalState).isEqualTo(Download.STATE_COMPLETED);
+    }
+
+    private void awaitIdle() throws Exception {
+        runMainLooperUntil(downloadListener.idle);
+    }
+
+    /** Runs the main looper, on which the download manager reports, until {@code latch} opens. */
+    private static void runMainLooperUntil(CountDownLatch latch) throws Exception {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!latch.await(10, TimeUnit.MILLISECONDS)) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new TimeoutException();
+            }
+            ShadowLooper.idleMainLooper();
+        }
+    }
+
+    private static String getSegmentPath(int index) {
+        return "/segment" + index + ".ts";
+    }
+
+    private static String buildPlaylist() {
+        StringBuilder playlist =
+                new StringBuilder(
+                        "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n"
+                                + "#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            playlist.append("#EXTINF:4.000,\n").append(getSegmentPath(i).substring(1)).append('\n');
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    private static long getRangeStart(@Nullable String rangeHeader) {
+        if (rangeHeader == null) {
+            return 0;
+        }
+        Matcher matcher = RANGE_PATTERN.matcher(rangeHeader);
+        assertThat(matcher.lookingAt()).isTrue();
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /** Records the state a download finishes in, and when the manager becomes idle. */
+    private static final class DownloadListener implements DownloadManager.Listener {
+
+        public final CountDownLatch finished = new CountDownLatch(1);
+        public final CountDownLatch idle = new CountDownLatch(1);
+        public volatile int finalState = Download.STATE_QUEUED;
+
+        @Override
+        public void onDownloadChanged(
+                DownloadManager downloadManager,
+                Download download,
+                @Nullable Exception finalException) {
+            if (download.state == Download.STATE_COMPLETED
+                    || download.state == Download.STATE_FAILED) {
+                finalState = download.state;
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void onIdle(DownloadManager downloadManager) {
+            idle.countDown();
+        }
+    }
+
+    /** Opens a latch once a number of bytes have been transferred from the origin. */
+    private static final class TransferCounter implements TransferListener {
+
+        private final long thresholdBytes;
+        private final AtomicLong bytesTransferred;
+        private final CountDownLatch thresholdReached;
+
+        public TransferCounter(long thresholdBytes) {
+            this.thresholdBytes = thresholdBytes;
+            bytesTransferred = new AtomicLong();
+            thresholdReached = new CountDownLatch(1);
+        }
+
+        /** Blocks until the threshold is reached, and returns whether it was in time. */
+        public boolean await() throws InterruptedException {
+            return thresholdReached.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onTransferInitializing(
+                DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            // Do nothing.
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            // Do nothing.
+        }
+
+        @Override
+        public void onBytesTransferred(
+                DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+            if (this.bytesTransferred.addAndGet(bytesTransferred) >= thresholdBytes) {
+                thresholdReached.countDown();
+            }
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+            // Do nothing.
+        }
+    }
+
+    /** A request served by the origin, and the offset its range started at. */
+    private static final class ServedRequest {
+
+        public final String path;
+        public final long rangeStart;
+
+        public ServedRequest(String path, long rangeStart) {
+            this.path = path;
+            this.rangeStart = rangeStart;
+        }
+    }
+
+    /**
+     * Serves a progressive stream and an HLS media playlist with its segments, from the start of
+     * the requested range and at a capped rate.
+     */
+    private final class OriginDispatcher extends Dispatcher {
+
+        private final String playlist = buildPlaylist();
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            int start = (int) getRangeStart(request.getHeader("Range"));
+            servedRequests.add(new ServedRequest(path, start));
+            if (PLAYLIST_PATH.equals(path)) {
+                return new MockResponse().setBody(playlist);
+            }
+            int length;
+            if (MEDIA_PATH.equals(path)) {
+                length = CONTENT_LENGTH;
+            } else if (path.startsWith("/segment")) {
+                length = SEGMENT_LENGTH;
+            } else {
+                return new MockResponse().setResponseCode(404);
+            }
+            MockResponse response = new MockResponse();
+            if (start > 0) {
+                response.setResponseCode(206)
+                        .setHeader(
+                                "Content-Range",
+                                "bytes " + start + "-" + (length - 1) + "/" + length);
+            }
+            return response
+                    .setBody(new Buffer().write(data, start, length - start))
+                    .throttleBody(
+                            BYTES_PER_THROTTLE_PERIOD, THROTTLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
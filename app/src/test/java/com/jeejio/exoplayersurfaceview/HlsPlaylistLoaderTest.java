@@ -0,0 +1,84 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests the choice of the HLS variant to load ahead of the player. */
+@RunWith(AndroidJUnit4.class)
+public final class HlsPlaylistLoaderTest {
+
+    private static final Uri MASTER_URI = Uri.parse("https://example.com/master.m3u8");
+    private static final String MASTER_PLAYLIST =
+            "#EXTM3U\n"
+                    + "#EXT-X-STREAM-INF:BANDWIDTH=2000000,RESOLUTION=1280x720\n"
+                    + "720p.m3u8\n"
+                    + "#EXT-X-STREAM-INF:BANDWIDTH=500000,RESOLUTION=640x360\n"
+                    + "360p.m3u8\n"
+                    + "#EXT-X-STREAM-INF:BANDWIDTH=4000000,RESOLUTION=1920x1080\n"
+                    + "1080p.m3u8\n";
+
+    private HlsMasterPlaylist masterPlaylist;
+
+    @Before
+    public void setUp() throws IOException {
+        masterPlaylist =
+                (HlsMasterPlaylist)
+                        new HlsPlaylistParser()
+                                .parse(
+                                        MASTER_URI,
+                                        new ByteArrayInputStream(
+                                                Util.getUtf8Bytes(MASTER_PLAYLIST)));
+    }
+
+    @Test
+    public void selectVariant_picksHighestBitrateWithinBandwidthFraction() {
+        HlsMasterPlaylist.Variant variant =
+                HlsPlaylistLoader.selectVariant(
+                        masterPlaylist,
+                        /* bitrateEstimate= */ 3_000_000,
+                        DefaultTrackSelector.Parameters.DEFAULT_WITHOUT_CONTEXT);
+
+        assertThat(variant.url.getLastPathSegment()).isEqualTo("720p.m3u8");
+    }
+
+    @Test
+    public void selectVariant_respectsMaxVideoSize() {
+        DefaultTrackSelector.Parameters parameters =
+                DefaultTrackSelector.Parameters.DEFAULT_WITHOUT_CONTEXT
+                        .buildUpon()
+                        .setMaxVideoSize(/* maxVideoWidth= */ 640, /* maxVideoHeight= */ 360)
+                        .build();
+
+        HlsMasterPlaylist.Variant variant =
+                HlsPlaylistLoader.selectVariant(
+                        masterPlaylist, /* bitrateEstimate= */ 10_000_000, parameters);
+
+        assertThat(variant.url.getLastPathSegment()).isEqualTo("360p.m3u8");
+    }
+
+    @Test
+    public void selectVariant_withLowEstimate_picksLowestBitrate() {
+        HlsMasterPlaylist.Variant variant =
+                HlsPlaylistLoader.selectVariant(
+                        masterPlaylist,
+                        /* bitrateEstimate= */ 100_000,
+                        DefaultTrackSelector.Parameters.DEFAULT_WITHOUT_CONTEXT);
+
+        assertThat(variant.url.getLastPathSegment()).isEqualTo("360p.m3u8");
+    }
+}
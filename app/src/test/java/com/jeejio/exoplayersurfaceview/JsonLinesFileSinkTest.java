@@ -0,0 +1,100 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests {@link JsonLinesFileSink}. */
+@RunWith(AndroidJUnit4.class)
+public final class JsonLinesFileSinkTest {
+
+    private File tempDirectory;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        tempDirectory = Util.createTempDirectory(context, "JsonLinesFileSinkTest");
+        file = new File(tempDirectory, "qoe.jsonl");
+    }
+
+    @After
+    public void tearDown() {
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void onBatch_writesOneObjectPerRow() throws IOException {
+        JsonLinesFileSink sink = new JsonLinesFileSink(file);
+
+        sink.onBatch(concat(row(1), row(2)), /* rowCount= */ 2);
+
+        assertThat(readLines())
+                .containsExactly(
+                        "{\"startTimeMs\":1,\"timeToFirstFrameMs\":11,\"rebufferCount\":21,"
+                                + "\"rebufferDurationMs\":31,\"droppedFrames\":41,"
+                                + "\"bitrateSwitches\":51,\"bytesLoaded\":61,\"errorCount\":71}",
+                        "{\"startTimeMs\":2,\"timeToFirstFrameMs\":12,\"rebufferCount\":22,"
+                                + "\"rebufferDurationMs\":32,\"droppedFrames\":42,"
+                                + "\"bitrateSwitches\":52,\"bytesLoaded\":62,\"errorCount\":72}")
+                .inOrder();
+    }
+
+    @Test
+    public void onBatch_ignoresRowsPastRowCount() throws IOException {
+        JsonLinesFileSink sink = new JsonLinesFileSink(file);
+
+        sink.onBatch(concat(row(1), row(2)), /* rowCount= */ 1);
+
+        assertThat(readLines()).hasSize(1);
+        assertThat(readLines().get(0)).startsWith("{\"startTimeMs\":1,");
+    }
+
+    @Test
+    public void onBatch_appendsToExistingFile() throws IOException {
+        new JsonLinesFileSink(file).onBatch(row(1), /* rowCount= */ 1);
+
+        new JsonLinesFileSink(file).onBatch(row(2), /* rowCount= */ 1);
+
+        List<String> lines = readLines();
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("{\"startTimeMs\":1,");
+        assertThat(lines.get(1)).startsWith("{\"startTimeMs\":2,");
+    }
+
+    private List<String> readLines() throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /** Returns a row whose field {@code f} holds {@code 10 * f + value}. */
+    private static long[] row(long value) {
+        long[] row = new long[QoeCollector.FIELD_COUNT];
+        for (int field = 0; field < QoeCollector.FIELD_COUNT; field++) {
+            row[field] = 10L * field + value;
+        }
+        return row;
+    }
+
+    private static long[] concat(long[] first, long[] second) {
+        long[] rows = new long[first.length + second.length];
+        System.arraycopy(first, 0, rows, 0, first.length);
+        System.arraycopy(second, 0, rows, first.length, second.length);
+        return rows;
+    }
+}
@@ -0,0 +1,318 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+import com.google.android.exoplayer2.source.hls.HlsMediaSource;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.StubExoPlayer;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link LiveLatencyMonitor} against a fake clock and a player whose synthetic live window
+ * puts it at a chosen offset from the live edge, and against a player playing a synthetic live HLS
+ * stream from a local origin.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class LiveLatencyMonitorTest {
+
+    private static final long TARGET_OFFSET_MS = 5_000;
+    private static final long SEGMENT_DURATION_MS = 1_000;
+    private static final int WINDOW_SEGMENT_COUNT = 10;
+    private static final long TIMEOUT_MS = 10_000;
+
+    private FakeClock clock;
+    private LivePlayer player;
+    private LiveLatencyMonitor liveLatencyMonitor;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(/* initialTimeMs= */ 0);
+        player = new LivePlayer();
+        liveLatencyMonitor =
+                new LiveLatencyMonitor(
+                        TARGET_OFFSET_MS,
+                        LiveLatencyMonitor.DEFAULT_MIN_PLAYBACK_SPEED,
+                        LiveLatencyMonitor.DEFAULT_MAX_PLAYBACK_SPEED,
+                        clock);
+    }
+
+    @Test
+    public void behindTarget_countsAsCatchUp() {
+        player.liveOffsetMs = TARGET_OFFSET_MS + 3_000;
+        liveLatencyMonitor.setPlayer(player);
+
+        advanceTime(2_000);
+
+        assertThat(liveLatencyMonitor.getCatchUpTimeMs()).isEqualTo(2_000);
+        assertThat(liveLatencyMonitor.getFallBackTimeMs()).isEqualTo(0);
+    }
+
+    @Test
+    public void offsetMovingThroughTarget_splitsCatchUpAndFallBack() {
+        player.liveOffsetMs = TARGET_OFFSET_MS + 3_000;
+        liveLatencyMonitor.setPlayer(player);
+        advanceTime(2_000);
+
+        player.liveOffsetMs = TARGET_OFFSET_MS;
+        advanceTime(1_000);
+        player.liveOffsetMs = TARGET_OFFSET_MS - 1_000;
+        advanceTime(1_500);
+
+        assertThat(liveLatencyMonitor.getCatchUpTimeMs()).isEqualTo(2_000);
+        assertThat(liveLatencyMonitor.getFallBackTimeMs()).isEqualTo(1_500);
+    }
+
+    @Test
+    public void offsetWithinTolerance_countsAsNeither() {
+        player.liveOffsetMs = TARGET_OFFSET_MS + 10;
+        liveLatencyMonitor.setPlayer(player);
+
+        advanceTime(3_000);
+
+        assertThat(liveLatencyMonitor.getCatchUpTimeMs()).isEqualTo(0);
+        assertThat(liveLatencyMonitor.getFallBackTimeMs()).isEqualTo(0);
+    }
+
+    @Test
+    public void paused_countsAsNeither() {
+        player.liveOffsetMs = TARGET_OFFSET_MS + 3_000;
+        player.playWhenReady = false;
+        liveLatencyMonitor.setPlayer(player);
+
+        advanceTime(2_000);
+
+        assertThat(liveLatencyMonitor.getCatchUpTimeMs()).isEqualTo(0);
+    }
+
+    @Test
+    public void detached_stopsSampling() {
+        player.liveOffsetMs = TARGET_OFFSET_MS + 3_000;
+        liveLatencyMonitor.setPlayer(player);
+        advanceTime(1_000);
+
+        liveLatencyMonitor.setPlayer(null);
+        advanceTime(2_000);
+
+        assertThat(liveLatencyMonitor.getCatchUpTimeMs()).isEqualTo(1_000);
+    }
+
+    @Test
+    public void livePlayback_measuresOffsetFromLiveEdge() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new LiveOriginDispatcher());
+        server.start();
+        // Measured against the player's clock, as in the app.
+        LiveLatencyMonitor playbackLatencyMonitor = new LiveLatencyMonitor();
+        RenderersFactory renderersFactory =
+                (eventHandler, videoListener, audioListener, textOutput, metadataOutput) ->
+                        new Renderer[] {new FakeRenderer(C.TRACK_TYPE_AUDIO)};
+        SimpleExoPlayer exoPlayer =
+                new SimpleExoPlayer.Builder(
+                                ApplicationProvider.getApplicationContext(), renderersFactory)
+                        .setMediaSourceFactory(
+                                new HlsMediaSource.Factory(
+                                        new DefaultHttpDataSourceFactory("test")))
+                        .build();
+        CountDownLatch playing = new CountDownLatch(1);
+        exoPlayer.addListener(
+                new Player.EventListener() {
+                    @Override
+                    public void onIsPlayingChanged(boolean isPlaying) {
+                        if (isPlaying) {
+                            playing.countDown();
+                        }
+                    }
+                });
+        try {
+            exoPlayer.addAnalyticsListener(playbackLatencyMonitor);
+            playbackLatencyMonitor.setPlayer(exoPlayer);
+            MediaItem.Builder mediaItemBuilder =
+                    new MediaItem.Builder().setUri(server.url("/live.m3u8").toString());
+            exoPlayer.setMediaItem(playbackLatencyMonitor.applyTo(mediaItemBuilder).build());
+            exoPlayer.prepare();
+            exoPlayer.play();
+
+            runMainLooperUntil(playing);
+            long liveOffsetMs = playbackLatencyMonitor.getCurrentLiveOffsetMs();
+
+            // Playback starts at the target offset from the end of the window, which ends within a
+            // segment of the time the playlist was served.
+            long targetOffsetMs = playbackLatencyMonitor.getTargetOffsetMs();
+            assertThat(liveOffsetMs).isAtLeast(targetOffsetMs);
+            assertThat(liveOffsetMs).isLessThan(targetOffsetMs + 2 * SEGMENT_DURATION_MS);
+        } finally {
+            playbackLatencyMonitor.setPlayer(null);
+            exoPlayer.release();
+            ShadowLooper.idleMainLooper();
+            server.shutdown();
+        }
+    }
+
+    /** Advances the fake clock, and runs the samples that fall due on the main looper. */
+    private void advanceTime(long timeMs) {
+        clock.advanceTime(timeMs);
+        ShadowLooper.idleMainLooper();
+    }
+
+    /**
+     * Runs the main looper, advancing the system clock as real time passes, until {@code latch}
+     * has counted down.
+     */
+    private static void runMainLooperUntil(CountDownLatch latch) throws Exception {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!latch.await(10, TimeUnit.MILLISECONDS)) {
+            if (System.currentTimeMillis() > deadlineMs) {
+                throw new TimeoutException();
+            }
+            ShadowLooper.idleMainLooper(10, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a live media playlist of {@link #WINDOW_SEGMENT_COUNT} audio segments, whose program
+     * date times put the end of the last one within a segment before {@code nowMs}.
+     */
+    private static String buildLivePlaylist(long nowMs) {
+        long lastSequence = nowMs / SEGMENT_DURATION_MS - 1;
+        long firstSequence = lastSequence - WINDOW_SEGMENT_COUNT + 1;
+        SimpleDateFormat dateFormat =
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder playlist =
+                new StringBuilder()
+                        .append("#EXTM3U\n")
+                        .append("#EXT-X-VERSION:3\n")
+                        .append("#EXT-X-TARGETDURATION:1\n")
+                        .append("#EXT-X-MEDIA-SEQUENCE:")
+                        .append(firstSequence)
+                        .append('\n')
+                        .append("#EXT-X-PROGRAM-DATE-TIME:")
+                        .append(dateFormat.format(new Date(firstSequence * SEGMENT_DURATION_MS)))
+                        .append('\n');
+        for (long i = firstSequence; i <= lastSequence; i++) {
+            playlist.append("#EXTINF:1.0,\n").append("segment").append(i).append(".aac\n");
+        }
+        return playlist.toString();
+    }
+
+    /**
+     * Serves a live playlist whose window follows the wall clock, and ADTS audio for every segment.
+     */
+    private static final class LiveOriginDispatcher extends Dispatcher {
+
+        private final byte[] segment = PlaybackSimulation.buildAudio(SEGMENT_DURATION_MS);
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            if ("/live.m3u8".equals(path)) {
+                return new MockResponse().setBody(buildLivePlaylist(System.currentTimeMillis()));
+            } else if (path.endsWith(".aac")) {
+                return new MockResponse().setBody(new Buffer().write(segment));
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    /**
+     * A ready player with a synthetic live window, whose current position is {@link #liveOffsetMs}
+     * behind the live edge.
+     */
+    private static final class LivePlayer extends StubExoPlayer {
+
+        private static final long WINDOW_START_TIME_MS = 1_000_000;
+        private static final long POSITION_MS = 60_000;
+
+        public long liveOffsetMs;
+        public boolean playWhenReady;
+
+        public LivePlayer() {
+            playWhenReady = true;
+        }
+
+        @Override
+        public Looper getApplicationLooper() {
+            return Looper.getMainLooper();
+        }
+
+        @Override
+        public int getPlaybackState() {
+            return Player.STATE_READY;
+        }
+
+        @Override
+        public boolean getPlayWhenReady() {
+            return playWhenReady;
+        }
+
+        @Override
+        public int getPlaybackSuppressionReason() {
+            return Player.PLAYBACK_SUPPRESSION_REASON_NONE;
+        }
+
+        @Override
+        public Timeline getCurrentTimeline() {
+            // The window's clock is the system clock, so the epoch offset is chosen to put the live
+            // edge liveOffsetMs ahead of the current position whenever the window is read.
+            long elapsedRealtimeEpochOffsetMs =
+                    WINDOW_START_TIME_MS + POSITION_MS + liveOffsetMs - SystemClock.elapsedRealtime();
+            return new SinglePeriodTimeline(
+                    /* presentationStartTimeMs= */ WINDOW_START_TIME_MS,
+                    /* windowStartTimeMs= */ WINDOW_START_TIME_MS,
+                    elapsedRealtimeEpochOffsetMs,
+                    /* periodDurationUs= */ C.TIME_UNSET,
+                    /* windowDurationUs= */ C.msToUs(2 * POSITION_MS),
+                    /* windowPositionInPeriodUs= */ 0,
+                    /* windowDefaultStartPositionUs= */ C.msToUs(POSITION_MS),
+                    /* isSeekable= */ true,
+                    /* isDynamic= */ true,
+                    /* isLive= */ true,
+                    /* manifest= */ null,
+                    MediaItem.fromUri("https://example.com/live.m3u8"));
+        }
+
+        @Override
+        public int getCurrentWindowIndex() {
+            return 0;
+        }
+
+        @Override
+        public long getContentPosition() {
+            return POSITION_MS;
+        }
+    }
+}
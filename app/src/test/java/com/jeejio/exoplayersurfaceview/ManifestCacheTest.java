@@ -0,0 +1,122 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests the parsed-playlist keying and the disk limit of {@link ManifestCache}, parsing through a
+ * {@link CachingHlsPlaylistParserFactory} parser as the player does.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ManifestCacheTest {
+
+    private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/live.m3u8");
+    private static final String MEDIA_PLAYLIST =
+            "#EXTM3U\n"
+                    + "#EXT-X-TARGETDURATION:4\n"
+                    + "#EXT-X-MEDIA-SEQUENCE:0\n"
+                    + "#EXTINF:4.0,\n"
+                    + "seg0.ts\n";
+    private static final int BODY_LENGTH = 1000;
+
+    private File tempDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "ManifestCacheTest");
+    }
+
+    @After
+    public void tearDown() {
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void sameBody_isParsedOnce() throws IOException {
+        ManifestCache manifestCache = createManifestCache(ManifestCache.DEFAULT_MAX_DISK_BYTES);
+
+        HlsPlaylist first = parse(manifestCache, MEDIA_PLAYLIST);
+        HlsPlaylist second = parse(manifestCache, MEDIA_PLAYLIST);
+
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void changedBody_isParsedAgain() throws IOException {
+        ManifestCache manifestCache = createManifestCache(ManifestCache.DEFAULT_MAX_DISK_BYTES);
+        // A live refresh within the same second, which a Last-Modified validator would not tell
+        // apart from the previous body.
+        manifestCache.put(createEntry(PLAYLIST_URI, Util.getUtf8Bytes(MEDIA_PLAYLIST)));
+        parse(manifestCache, MEDIA_PLAYLIST);
+
+        HlsPlaylist refreshed = parse(manifestCache, MEDIA_PLAYLIST + "#EXTINF:4.0,\nseg1.ts\n");
+
+        assertThat(((HlsMediaPlaylist) refreshed).segments).hasSize(2);
+    }
+
+    @Test
+    public void diskStore_keepsToItsLimit() {
+        ManifestCache manifestCache = createManifestCache(/* maxDiskBytes= */ 5 * BODY_LENGTH / 2);
+        Uri[] uris = new Uri[3];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = Uri.parse("https://example.com/" + i + ".m3u8");
+            manifestCache.put(createEntry(uris[i], new byte[BODY_LENGTH]));
+        }
+
+        ManifestCache reopenedCache = createManifestCache(ManifestCache.DEFAULT_MAX_DISK_BYTES);
+
+        assertThat(getDiskBytes()).isAtMost(5 * BODY_LENGTH / 2);
+        assertThat(reopenedCache.get(uris[2])).isNotNull();
+        assertThat(reopenedCache.get(uris[0]) == null || reopenedCache.get(uris[1]) == null)
+                .isTrue();
+    }
+
+    private ManifestCache createManifestCache(long maxDiskBytes) {
+        return new ManifestCache(
+                tempDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES, maxDiskBytes);
+    }
+
+    private long getDiskBytes() {
+        long diskBytes = 0;
+        for (File file : tempDirectory.listFiles()) {
+            diskBytes += file.length();
+        }
+        return diskBytes;
+    }
+
+    private static ManifestCache.Entry createEntry(Uri uri, byte[] body) {
+        return new ManifestCache.Entry(
+                uri,
+                uri,
+                /* eTag= */ null,
+                /* lastModified= */ "Sun, 18 Oct 2026 10:00:00 GMT",
+                body,
+                System.currentTimeMillis());
+    }
+
+    private static HlsPlaylist parse(ManifestCache manifestCache, String body) throws IOException {
+        ParsingLoadable.Parser<HlsPlaylist> parser =
+                new CachingHlsPlaylistParserFactory(manifestCache).createPlaylistParser();
+        return parser.parse(PLAYLIST_URI, new ByteArrayInputStream(Util.getUtf8Bytes(body)));
+    }
+}
@@ -0,0 +1,150 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link ManifestDataSource} against a local HTTP origin that redirects the playlist, loading
+ * it as the player does, through a {@link ParsingLoadable} with a {@link
+ * CachingHlsPlaylistParserFactory} parser.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ManifestDataSourceTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String MEDIA_PLAYLIST =
+            "#EXTM3U\n"
+                    + "#EXT-X-TARGETDURATION:4\n"
+                    + "#EXT-X-MEDIA-SEQUENCE:0\n"
+                    + "#EXTINF:4.0,\n"
+                    + "seg0.ts\n";
+
+    private MockWebServer server;
+    private List<String> ifNoneMatchHeaders;
+    private File tempDirectory;
+    private ManifestCache manifestCache;
+
+    @Before
+    public void setUp() throws IOException {
+        ifNoneMatchHeaders = new CopyOnWriteArrayList<>();
+        server = new MockWebServer();
+        server.setDispatcher(new RedirectingDispatcher());
+        server.start();
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "ManifestDataSourceTest");
+        manifestCache = new ManifestCache(tempDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Util.recursiveDelete(tempDirectory);
+        server.shutdown();
+    }
+
+    @Test
+    public void revalidatedPlaylist_resolvesAgainstRedirectedUri() throws Exception {
+        HlsMediaPlaylist first = load();
+        HlsMediaPlaylist second = load();
+
+        assertThat(ifNoneMatchHeaders).containsExactly(null, ETAG).inOrder();
+        assertThat(first.baseUri).isEqualTo(getRedirectedUri().toString());
+        assertThat(second.baseUri).isEqualTo(getRedirectedUri().toString());
+        assertThat(UriUtil.resolve(second.baseUri, second.segments.get(0).url))
+                .isEqualTo(server.url("/cdn/seg0.ts").toString());
+    }
+
+    @Test
+    public void revalidatedPlaylist_isNotParsedAgain() throws Exception {
+        HlsMediaPlaylist first = load();
+        HlsMediaPlaylist second = load();
+
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void storedEntry_keepsRedirectedUriAcrossInstances() throws Exception {
+        load();
+
+        ManifestCache reopenedCache =
+                new ManifestCache(tempDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+        ManifestCache.Entry entry = reopenedCache.get(getPlaylistUri());
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.resolvedUri).isEqualTo(getRedirectedUri());
+        assertThat(entry.eTag).isEqualTo(ETAG);
+    }
+
+    private HlsMediaPlaylist load() throws IOException {
+        DefaultHttpDataSourceFactory httpDataSourceFactory = new DefaultHttpDataSourceFactory("test");
+        ManifestDataSource dataSource =
+                new ManifestDataSource.Factory(
+                                httpDataSourceFactory, httpDataSourceFactory, manifestCache)
+                        .createDataSource();
+        HlsPlaylist playlist =
+                ParsingLoadable.load(
+                        dataSource,
+                        new CachingHlsPlaylistParserFactory(manifestCache).createPlaylistParser(),
+                        new DataSpec(getPlaylistUri()),
+                        C.DATA_TYPE_MANIFEST);
+        return (HlsMediaPlaylist) playlist;
+    }
+
+    private Uri getPlaylistUri() {
+        return Uri.parse(server.url("/live.m3u8").toString());
+    }
+
+    private Uri getRedirectedUri() {
+        return Uri.parse(server.url("/cdn/live.m3u8").toString());
+    }
+
+    /** Redirects the playlist to another path, which serves it with an ETag. */
+    private final class RedirectingDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if ("/live.m3u8".equals(request.getPath())) {
+                return new MockResponse()
+                        .setResponseCode(302)
+                        .setHeader("Location", "/cdn/live.m3u8");
+            }
+            if (!"/cdn/live.m3u8".equals(request.getPath())) {
+                return new MockResponse().setResponseCode(404);
+            }
+            String ifNoneMatch = request.getHeader("If-None-Match");
+            ifNoneMatchHeaders.add(ifNoneMatch);
+            if (ETAG.equals(ifNoneMatch)) {
+                return new MockResponse().setResponseCode(304).setHeader("ETag", ETAG);
+            }
+            return new MockResponse().setHeader("ETag", ETAG).setBody(MEDIA_PLAYLIST);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link MemoryAwareLoadControl} under memory pressure, filling its allocator as a loading
+ * player would.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MemoryAwareLoadControlTest {
+
+    private static final int MIB = 1024 * 1024;
+    private static final int TARGET_BUFFER_BYTES = 16 * MIB;
+    /** A buffered duration short of what the player needs to start or resume playback. */
+    private static final long SHORT_BUFFER_US = C.msToUs(1_000);
+    /** A buffered duration enough to start playback, but short of the minimum buffer. */
+    private static final long PLAYABLE_BUFFER_US = C.msToUs(10_000);
+    /** A buffered duration past the maximum buffer. */
+    private static final long FULL_BUFFER_US = C.msToUs(60_000);
+
+    private MemoryAwareLoadControl loadControl;
+
+    @Before
+    public void setUp() {
+        loadControl = new MemoryAwareLoadControl(TARGET_BUFFER_BYTES);
+        loadControl.onPrepared();
+        loadControl.onTracksSelected(
+                new Renderer[0], TrackGroupArray.EMPTY, new TrackSelectionArray());
+    }
+
+    @Test
+    public void noPressure_prioritizesMinimumBufferDuration() {
+        allocate(TARGET_BUFFER_BYTES + MIB);
+
+        assertThat(shouldContinueLoading(PLAYABLE_BUFFER_US)).isTrue();
+    }
+
+    @Test
+    public void noPressure_stopsLoadingAtMaximumBufferDuration() {
+        allocate(MIB);
+
+        assertThat(shouldContinueLoading(FULL_BUFFER_US)).isFalse();
+    }
+
+    @Test
+    public void trimMemory_lowersCapBySeverity() {
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(12 * MIB);
+
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(4 * MIB);
+
+        // A milder level later does not raise the cap again.
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(4 * MIB);
+    }
+
+    @Test
+    public void uiHidden_leavesCapUnchanged() {
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(TARGET_BUFFER_BYTES);
+    }
+
+    @Test
+    public void criticalPressure_stopsLoadingAtCapOncePlaybackCanStart() {
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        allocate(loadControl.getBufferCapBytes());
+
+        assertThat(shouldContinueLoading(PLAYABLE_BUFFER_US)).isFalse();
+        assertThat(loadControl.getAllocatedBytes()).isEqualTo(loadControl.getBufferCapBytes());
+    }
+
+    @Test
+    public void criticalPressure_keepsLoadingUpToPlaybackStartBuffer() {
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        allocate(loadControl.getBufferCapBytes() + MIB);
+
+        // The cap must not leave a rebuffering player short of the media it needs to resume.
+        assertThat(shouldContinueLoading(SHORT_BUFFER_US)).isTrue();
+        assertThat(
+                        loadControl.shouldStartPlayback(
+                                SHORT_BUFFER_US,
+                                /* playbackSpeed= */ 1f,
+                                /* rebuffering= */ true,
+                                /* targetLiveOffsetUs= */ C.TIME_UNSET))
+                .isFalse();
+        assertThat(
+                        loadControl.shouldStartPlayback(
+                                PLAYABLE_BUFFER_US,
+                                /* playbackSpeed= */ 1f,
+                                /* rebuffering= */ true,
+                                /* targetLiveOffsetUs= */ C.TIME_UNSET))
+                .isTrue();
+    }
+
+    @Test
+    public void sharedBudget_splitsTargetWithoutRoundingUp() {
+        int tileCount = 16;
+
+        loadControl.setMaxBufferBytes(TARGET_BUFFER_BYTES / tileCount);
+
+        assertThat(loadControl.getBufferCapBytes() * tileCount).isEqualTo(TARGET_BUFFER_BYTES);
+    }
+
+    @Test
+    public void sharedBudget_clampsToSingleAllocation() {
+        loadControl.setMaxBufferBytes(0);
+
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    }
+
+    @Test
+    public void sharedBudget_stillReachesPlaybackStartBuffer() {
+        loadControl.setMaxBufferBytes(MIB);
+        allocate(loadControl.getBufferCapBytes());
+
+        assertThat(shouldContinueLoading(SHORT_BUFFER_US)).isTrue();
+        assertThat(shouldContinueLoading(PLAYABLE_BUFFER_US)).isFalse();
+    }
+
+    @Test
+    public void sharedBudget_shrinksOnTrimBelowTargetFloor() {
+        loadControl.setMaxBufferBytes(MIB);
+
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(MIB / 4);
+    }
+
+    @Test
+    public void prepared_liftsCap() {
+        loadControl.setMaxBufferBytes(8 * MIB);
+        loadControl.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        loadControl.onPrepared();
+
+        assertThat(loadControl.getBufferCapBytes()).isEqualTo(8 * MIB);
+    }
+
+    @Test
+    public void peakAllocatedBytes_isSampledWhileLoading() {
+        allocate(2 * MIB);
+        shouldContinueLoading(SHORT_BUFFER_US);
+
+        assertThat(loadControl.getPeakAllocatedBytes()).isEqualTo(2 * MIB);
+    }
+
+    private boolean shouldContinueLoading(long bufferedDurationUs) {
+        return loadControl.shouldContinueLoading(
+                /* playbackPositionUs= */ 0, bufferedDurationUs, /* playbackSpeed= */ 1f);
+    }
+
+    /** Allocates at least {@code bytes} from the load control's allocator, as a loader would. */
+    private void allocate(int bytes) {
+        Allocator allocator = loadControl.getAllocator();
+        while (allocator.getTotalBytesAllocated() < bytes) {
+            allocator.allocate();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.net.Uri;
+import android.widget.LinearLayout;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsCollector;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link MosaicController} with players whose renderers are fakes, so that which tiles decode
+ * video can be observed without codecs.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MosaicControllerTest {
+
+    private static final int VIDEO_RENDERER_INDEX = 0;
+    private static final int AUDIO_RENDERER_INDEX = 1;
+    private static final long TIMEOUT_MS = 5_000;
+
+    private Activity activity;
+    private PlayerPool playerPool;
+    /** The renderers of each player built, in the order tiles acquired them. */
+    private List<Renderer[]> builtRenderers;
+    private MosaicController mosaicController;
+    private List<ExoPlayerView> views;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+        builtRenderers = new ArrayList<>();
+        RenderersFactory renderersFactory =
+                (eventHandler, videoListener, audioListener, textOutput, metadataOutput) -> {
+                    Renderer[] renderers = {
+                            new FakeRenderer(C.TRACK_TYPE_VIDEO),
+                            new FakeRenderer(C.TRACK_TYPE_AUDIO)
+                    };
+                    builtRenderers.add(renderers);
+                    return renderers;
+                };
+        playerPool =
+                new PlayerPool(
+                        context,
+                        new FakeMediaSourceFactory(),
+                        renderersFactory,
+                        new DefaultBandwidthMeter.Builder(context).build());
+        mosaicController =
+                new MosaicController(
+                        playerPool,
+                        new DefaultBandwidthMeter.Builder(context).build(),
+                        /* maxDecoderSlots= */ 1);
+    }
+
+    @After
+    public void tearDown() {
+        mosaicController.release();
+        playerPool.releaseIdlePlayers();
+    }
+
+    @Test
+    public void start_givesDecoderSlotToLargestTile() {
+        startMosaic(/* largeTileIndex= */ 1);
+
+        assertThat(isVideoRendererDisabled(views.get(0))).isTrue();
+        assertThat(isVideoRendererDisabled(views.get(1))).isFalse();
+    }
+
+    @Test
+    public void start_disablesAudioOfEveryTile() {
+        startMosaic(/* largeTileIndex= */ 0);
+
+        for (ExoPlayerView view : views) {
+            assertThat(getTrackSelectorParameters(view).getRendererDisabled(AUDIO_RENDERER_INDEX))
+                    .isTrue();
+        }
+    }
+
+    @Test
+    public void playback_onlyTileWithSlotEnablesVideoRenderer() throws Exception {
+        startMosaic(/* largeTileIndex= */ 0);
+        Renderer slottedVideoRenderer = builtRenderers.get(0)[VIDEO_RENDERER_INDEX];
+        Renderer unslottedVideoRenderer = builtRenderers.get(1)[VIDEO_RENDERER_INDEX];
+
+        runMainLooperUntil(
+                () ->
+                        slottedVideoRenderer.getState() == Renderer.STATE_STARTED
+                                && unslottedVideoRenderer.getState() == Renderer.STATE_DISABLED);
+
+        assertThat(((FakeRenderer) slottedVideoRenderer).sampleBufferReadCount).isGreaterThan(0);
+        for (Renderer[] renderers : builtRenderers) {
+            assertThat(renderers[AUDIO_RENDERER_INDEX].getState())
+                    .isEqualTo(Renderer.STATE_DISABLED);
+        }
+    }
+
+    @Test
+    public void loads_countTowardsAggregateThroughput() throws Exception {
+        startMosaic(/* largeTileIndex= */ 0);
+        awaitTilesReady();
+
+        // 125 kB on each tile over the mosaic's first second, which the paused looper's clock
+        // measures exactly: at least 2 Mbps, besides whatever the fake sources report.
+        reportLoad(views.get(0), /* bytesLoaded= */ 125_000);
+        reportLoad(views.get(1), /* bytesLoaded= */ 125_000);
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+
+        assertThat(mosaicController.getAggregateThroughput()).isAtLeast(2_000_000);
+    }
+
+    @Test
+    public void buffering_afterReady_isCountedPerTile() throws Exception {
+        startMosaic(/* largeTileIndex= */ 0);
+        awaitTilesReady();
+
+        AnalyticsCollector analyticsCollector = getAnalyticsCollector(views.get(1));
+        analyticsCollector.onPlaybackStateChanged(Player.STATE_BUFFERING);
+        ShadowLooper.idleMainLooper(500, TimeUnit.MILLISECONDS);
+        analyticsCollector.onPlaybackStateChanged(Player.STATE_READY);
+
+        assertThat(mosaicController.getRebufferCount(0)).isEqualTo(0);
+        assertThat(mosaicController.getRebufferTimeMs(0)).isEqualTo(0);
+        assertThat(mosaicController.getRebufferCount(1)).isEqualTo(1);
+        assertThat(mosaicController.getRebufferTimeMs(1)).isAtLeast(500);
+    }
+
+    @Test
+    public void release_restoresPlayersForPool() {
+        startMosaic(/* largeTileIndex= */ 0);
+        List<SimpleExoPlayer> players = new ArrayList<>();
+        for (ExoPlayerView view : views) {
+            players.add((SimpleExoPlayer) view.getPlayer());
+        }
+
+        mosaicController.release();
+
+        for (SimpleExoPlayer player : players) {
+            DefaultTrackSelector.Parameters parameters =
+                    ((DefaultTrackSelector) player.getTrackSelector()).getParameters();
+            assertThat(parameters.getRendererDisabled(VIDEO_RENDERER_INDEX)).isFalse();
+            assertThat(parameters.getRendererDisabled(AUDIO_RENDERER_INDEX)).isFalse();
+            assertThat(parameters.maxVideoBitrate).isEqualTo(Integer.MAX_VALUE);
+        }
+        assertThat(playerPool.getIdlePlayerCount()).isAtLeast(1);
+    }
+
+    /** Starts a mosaic of two tiles laid out in the activity, one much larger than the other. */
+    private void startMosaic(int largeTileIndex) {
+        LinearLayout layout = new LinearLayout(activity);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        views = new ArrayList<>();
+        List<MediaItem> mediaItems = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ExoPlayerView view = new ExoPlayerView(activity);
+            int heightPx = i == largeTileIndex ? 200 : 50;
+            layout.addView(view, new LinearLayout.LayoutParams(/* width= */ 300, heightPx));
+            views.add(view);
+            mediaItems.add(MediaItem.fromUri("https://example.com/tile" + i + ".m3u8"));
+        }
+        activity.setContentView(layout);
+        ShadowLooper.idleMainLooper();
+        mosaicController.start(mediaItems, views);
+        ShadowLooper.idleMainLooper();
+    }
+
+    private void awaitTilesReady() throws InterruptedException {
+        runMainLooperUntil(
+                () -> {
+                    for (ExoPlayerView view : views) {
+                        if (view.getPlayer().getPlaybackState() != Player.STATE_READY) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+    }
+
+    /** Reports a completed load to the tile's analytics listeners, as the player's sources do. */
+    private static void reportLoad(ExoPlayerView view, long bytesLoaded) {
+        DataSpec dataSpec = new DataSpec(Uri.parse("https://example.com/segment.ts"));
+        getAnalyticsCollector(view)
+                .onLoadCompleted(
+                        /* windowIndex= */ 0,
+                        /* mediaPeriodId= */ null,
+                        new LoadEventInfo(
+                                /* loadTaskId= */ 0,
+                                dataSpec,
+                                dataSpec.uri,
+                                /* responseHeaders= */ Collections.emptyMap(),
+                                /* elapsedRealtimeMs= */ 0,
+                                /* loadDurationMs= */ 0,
+                                bytesLoaded),
+                        new MediaLoadData(C.DATA_TYPE_MEDIA));
+    }
+
+    private static AnalyticsCollector getAnalyticsCollector(ExoPlayerView view) {
+        return ((SimpleExoPlayer) view.getPlayer()).getAnalyticsCollector();
+    }
+
+    private static boolean isVideoRendererDisabled(ExoPlayerView view) {
+        return getTrackSelectorParameters(view).getRendererDisabled(VIDEO_RENDERER_INDEX);
+    }
+
+    private static DefaultTrackSelector.Parameters getTrackSelectorParameters(ExoPlayerView view) {
+        SimpleExoPlayer player = (SimpleExoPlayer) view.getPlayer();
+        return ((DefaultTrackSelector) player.getTrackSelector()).getParameters();
+    }
+
+    private interface Condition {
+
+        boolean isMet();
+    }
+
+    /** Runs the main looper until {@code condition} holds, as the playback threads run on. */
+    private static void runMainLooperUntil(Condition condition) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.isMet()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(10);
+        }
+    }
+
+    /** Creates fake sources of a single window with a video and an audio track. */
+    private static final class FakeMediaSourceFactory implements MediaSourceFactory {
+
+        @Override
+        public MediaSourceFactory setDrmSessionManager(
+                @Nullable DrmSessionManager drmSessionManager) {
+            return this;
+        }
+
+        @Override
+        public MediaSourceFactory setDrmHttpDataSourceFactory(
+                @Nullable HttpDataSource.Factory drmHttpDataSourceFactory) {
+            return this;
+        }
+
+        @Override
+        public MediaSourceFactory setDrmUserAgent(@Nullable String userAgent) {
+            return this;
+        }
+
+        @Override
+        public MediaSourceFactory setLoadErrorHandlingPolicy(
+                @Nullable LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+            return this;
+        }
+
+        @Override
+        public int[] getSupportedTypes() {
+            return new int[] {C.TYPE_OTHER};
+        }
+
+        @Override
+        public MediaSource createMediaSource(MediaItem mediaItem) {
+            return new FakeMediaSource(
+                    new FakeTimeline(/* windowCount= */ 1),
+                    ExoPlayerTestRunner.VIDEO_FORMAT,
+                    ExoPlayerTestRunner.AUDIO_FORMAT);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.jeejio.exoplayersurfaceview;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests {@link MosaicScheduler}. */
+@RunWith(AndroidJUnit4.class)
+public final class MosaicSchedulerTest {
+
+    @Test
+    public void schedule_givesSlotsToLargestVisibleTiles() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 2);
+        MosaicScheduler.Tile small = buildTile(320, 180, /* visibleFraction= */ 1f);
+        MosaicScheduler.Tile large = buildTile(1280, 720, /* visibleFraction= */ 1f);
+        MosaicScheduler.Tile medium = buildTile(640, 360, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {small, large, medium}, 10_000_000);
+
+        assertThat(large.hasDecoderSlot).isTrue();
+        assertThat(medium.hasDecoderSlot).isTrue();
+        assertThat(small.hasDecoderSlot).isFalse();
+        assertThat(small.maxVideoBitrate).isEqualTo(0);
+    }
+
+    @Test
+    public void schedule_ranksByVisibleArea() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 1);
+        MosaicScheduler.Tile mostlyHidden = buildTile(1280, 720, /* visibleFraction= */ 0.1f);
+        MosaicScheduler.Tile shown = buildTile(640, 360, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {mostlyHidden, shown}, 10_000_000);
+
+        assertThat(shown.hasDecoderSlot).isTrue();
+        assertThat(mostlyHidden.hasDecoderSlot).isFalse();
+    }
+
+    @Test
+    public void schedule_givesNoSlotToHiddenTile() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 4);
+        MosaicScheduler.Tile hidden = buildTile(1280, 720, /* visibleFraction= */ 0f);
+        MosaicScheduler.Tile unlaidOut = buildTile(0, 0, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {hidden, unlaidOut}, 10_000_000);
+
+        assertThat(hidden.hasDecoderSlot).isFalse();
+        assertThat(unlaidOut.hasDecoderSlot).isFalse();
+    }
+
+    @Test
+    public void schedule_capsRenditionAtTileSize() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 1);
+        MosaicScheduler.Tile tile = buildTile(640, 360, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {tile}, 10_000_000);
+
+        assertThat(tile.maxVideoWidth).isEqualTo(640);
+        assertThat(tile.maxVideoHeight).isEqualTo(360);
+    }
+
+    @Test
+    public void schedule_splitsBitrateByVisibleAreaInSteps() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 2);
+        MosaicScheduler.Tile large = buildTile(1200, 600, /* visibleFraction= */ 1f);
+        MosaicScheduler.Tile small = buildTile(600, 600, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {large, small}, 3_050_000);
+
+        // Two thirds and one third of the estimate, rounded down to 100 kbps steps.
+        assertThat(large.maxVideoBitrate).isEqualTo(2_000_000);
+        assertThat(small.maxVideoBitrate).isEqualTo(1_000_000);
+    }
+
+    @Test
+    public void schedule_keepsMinimumBitrate() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 1);
+        MosaicScheduler.Tile tile = buildTile(640, 360, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {tile}, 50_000);
+
+        assertThat(tile.maxVideoBitrate).isEqualTo(MosaicScheduler.MIN_TILE_BITRATE);
+    }
+
+    @Test
+    public void schedule_withUnknownEstimate_leavesBitrateUncapped() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 1);
+        MosaicScheduler.Tile tile = buildTile(640, 360, /* visibleFraction= */ 1f);
+
+        scheduler.schedule(new MosaicScheduler.Tile[] {tile}, /* bitrateEstimate= */ -1);
+
+        assertThat(tile.maxVideoBitrate).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void schedule_reassignsSlotWhenLayoutChanges() {
+        MosaicScheduler scheduler = new MosaicScheduler(/* maxDecoderSlots= */ 1);
+        MosaicScheduler.Tile first = buildTile(1280, 720, /* visibleFraction= */ 1f);
+        MosaicScheduler.Tile second = buildTile(640, 360, /* visibleFraction= */ 1f);
+        MosaicScheduler.Tile[] tiles = {first, second};
+        scheduler.schedule(tiles, 10_000_000);
+
+        first.visibleFraction = 0f;
+        scheduler.schedule(tiles, 10_000_000);
+
+        assertThat(first.hasDecoderSlot).isFalse();
+        assertThat(second.hasDecoderSlot).isTrue();
+    }
+
+    private static MosaicScheduler.Tile buildTile(
+            int widthPx, int heightPx, float visibleFraction) {
+        MosaicScheduler.Tile tile = new MosaicScheduler.Tile();
+        tile.widthPx = widthPx;
+        tile.heightPx = heightPx;
+        tile.visibleFraction = visibleFraction;
+        return tile;
+    }
+}
@@ -0,0 +1,154 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link MultiConnectionDataSource} with open-ended requests against a local HTTP origin that
+ * serves the requested byte ranges, checking the ranges each connection asks for.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class MultiConnectionDataSourceTest {
+
+    private static final int MIN_SPLIT_LENGTH = 1_000;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private MockWebServer server;
+    private ExecutorService executor;
+    private List<String> rangeHeaders;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        rangeHeaders = new CopyOnWriteArrayList<>();
+        server = new MockWebServer();
+        server.setDispatcher(new RangeDispatcher());
+        server.start();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void shortResource_takesSingleBoundedRequest() throws IOException {
+        setData(600);
+
+        byte[] readData = readFully(createFactory());
+
+        assertThat(readData).isEqualTo(data);
+        assertThat(rangeHeaders).containsExactly("bytes=0-999");
+    }
+
+    @Test
+    public void longResource_splitsRemainderAcrossConnections() throws IOException {
+        setData(3_000);
+
+        byte[] readData = readFully(createFactory());
+
+        assertThat(readData).isEqualTo(data);
+        assertThat(rangeHeaders)
+                .containsExactly("bytes=0-999", "bytes=1000-1999", "bytes=2000-2999");
+        assertThat(rangeHeaders.get(0)).isEqualTo("bytes=0-999");
+    }
+
+    @Test
+    public void remainderLongerThanRanges_isStreamedOnFirstConnection() throws IOException {
+        setData(3_000);
+
+        byte[] readData = readFully(createFactory().setMaxRangeLength(500));
+
+        assertThat(readData).isEqualTo(data);
+        assertThat(rangeHeaders).containsExactly("bytes=0-999", "bytes=1000-2999").inOrder();
+    }
+
+    private void setData(int length) {
+        data = new byte[length];
+        new Random(0).nextBytes(data);
+    }
+
+    private MultiConnectionDataSource.Factory createFactory() {
+        return new MultiConnectionDataSource.Factory(
+                        new DefaultHttpDataSourceFactory("MultiConnectionDataSourceTest"), executor)
+                .setMaxParallelRanges(3)
+                .setMinSplitLength(MIN_SPLIT_LENGTH);
+    }
+
+    private byte[] readFully(MultiConnectionDataSource.Factory factory) throws IOException {
+        MultiConnectionDataSource dataSource = factory.createDataSource();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            long length =
+                    dataSource.open(
+                            new DataSpec(Uri.parse(server.url("/segment.ts").toString())));
+            assertThat(length).isEqualTo(data.length);
+            byte[] buffer = new byte[256];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length))
+                    != C.RESULT_END_OF_INPUT) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            dataSource.close();
+        }
+        return output.toByteArray();
+    }
+
+    /** Serves the requested range of the data, and all of it to a request without one. */
+    private final class RangeDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            @Nullable String rangeHeader = request.getHeader("Range");
+            rangeHeaders.add(String.valueOf(rangeHeader));
+            if (rangeHeader == null) {
+                return new MockResponse().setBody(new Buffer().write(data));
+            }
+            Matcher matcher = RANGE_PATTERN.matcher(rangeHeader);
+            if (!matcher.matches()) {
+                return new MockResponse().setResponseCode(416);
+            }
+            int start = Integer.parseInt(matcher.group(1));
+            int end =
+                    matcher.group(2).isEmpty()
+                            ? data.length - 1
+                            : Math.min(Integer.parseInt(matcher.group(2)), data.length - 1);
+            return new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + data.length)
+                    .setBody(new Buffer().write(data, start, end - start + 1));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests the startup, rebuffering and origin traffic budgets of playback through the data source
+ * stack {@link DemoUtil} builds, with {@link PlaybackSimulation} sessions against an origin whose
+ * latency, bandwidth and failures play out in simulated time. The budgets hold on a good network,
+ * survive transient failures, and are exceeded on a starved one, which shows they catch
+ * regressions.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class PlaybackBudgetTest {
+
+    private static final long CONTENT_DURATION_MS = 5_000;
+    private static final long GOOD_LATENCY_MS = 100;
+    /** About eight times the bitrate of the content. */
+    private static final long GOOD_BYTES_PER_SECOND = 64 * 1024;
+    /** About a third of the bitrate of the content. */
+    private static final long STARVED_BYTES_PER_SECOND = 3 * 1024;
+
+    private static final long STARTUP_BUDGET_MS = 1_000;
+    private static final double REBUFFER_RATIO_BUDGET = 0.01;
+    /** The share of the content that may be fetched again after a failure. */
+    private static final double REFETCH_BUDGET = 0.1;
+
+    private File tempDirectory;
+    private SimulationClock clock;
+    private SimulatedOrigin origin;
+    private PlaybackSimulation simulation;
+    private MediaItem mediaItem;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        tempDirectory = Util.createTempDirectory(context, "PlaybackBudgetTest");
+        clock = new SimulationClock();
+        origin = new SimulatedOrigin(clock, PlaybackSimulation.buildAudio(CONTENT_DURATION_MS));
+        origin.setLatencyMs(GOOD_LATENCY_MS);
+        origin.setBytesPerSecond(GOOD_BYTES_PER_SECOND);
+        simulation = new PlaybackSimulation(context, clock, origin, tempDirectory);
+        mediaItem = MediaItem.fromUri(origin.getUri("audio.aac"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        simulation.release();
+        origin.shutdown();
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void goodNetwork_meetsBudgets() {
+        PlaybackSimulation.Result result = simulation.play(mediaItem);
+
+        assertThat(result.startupTimeMs).isAtMost(STARTUP_BUDGET_MS);
+        assertThat(result.getRebufferRatio()).isAtMost(REBUFFER_RATIO_BUDGET);
+        assertThat(result.originBytes).isEqualTo(origin.getLength());
+    }
+
+    @Test
+    public void serverError_isRetriedWithinBudgets() {
+        origin.failNextRequests(1);
+
+        PlaybackSimulation.Result result = simulation.play(mediaItem);
+
+        assertThat(result.originRequestCount).isAtLeast(2);
+        assertThat(result.startupTimeMs).isAtMost(STARTUP_BUDGET_MS);
+        assertThat(result.getRebufferRatio()).isAtMost(REBUFFER_RATIO_BUDGET);
+        assertThat(result.originBytes).isEqualTo(origin.getLength());
+    }
+
+    @Test
+    public void cutConnection_resumesWithinBudgets() {
+        origin.cutNextResponseAt(origin.getLength() / 2);
+
+        PlaybackSimulation.Result result = simulation.play(mediaItem);
+
+        assertThat(result.originRequestCount).isAtLeast(2);
+        assertThat(result.getRebufferRatio()).isAtMost(REBUFFER_RATIO_BUDGET);
+        assertThat((double) result.originBytes)
+                .isAtMost(origin.getLength() * (1 + REFETCH_BUDGET));
+    }
+
+    @Test
+    public void starvedNetwork_exceedsBudgets() {
+        origin.setBytesPerSecond(STARVED_BYTES_PER_SECOND);
+
+        PlaybackSimulation.Result result = simulation.play(mediaItem);
+
+        assertThat(result.startupTimeMs).isGreaterThan(STARTUP_BUDGET_MS);
+        assertThat(result.rebufferCount).isGreaterThan(0);
+        assertThat(result.getRebufferRatio()).isGreaterThan(REBUFFER_RATIO_BUDGET);
+    }
+
+    @Test
+    public void replay_isServedFromCache() {
+        simulation.play(mediaItem);
+
+        PlaybackSimulation.Result result = simulation.play(mediaItem);
+
+        assertThat(result.originBytes).isEqualTo(0);
+        assertThat(result.startupTimeMs).isLessThan(GOOD_LATENCY_MS);
+        assertThat(result.rebufferCount).isEqualTo(0);
+    }
+
+    @Test
+    public void sameSession_givesSameMetrics() {
+        PlaybackSimulation.Result first = simulation.play(mediaItem);
+        simulation.release();
+        Util.recursiveDelete(tempDirectory);
+        simulation =
+                new PlaybackSimulation(
+                        ApplicationProvider.getApplicationContext(),
+                        clock,
+                        origin,
+                        tempDirectory);
+
+        PlaybackSimulation.Result second = simulation.play(mediaItem);
+
+        assertThat(second.toString()).isEqualTo(first.toString());
+    }
+}
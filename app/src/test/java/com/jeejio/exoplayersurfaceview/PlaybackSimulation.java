@@ -0,0 +1,381 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsCollector;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Runs headless playback sessions against a {@link SimulatedOrigin}, through the data source stack
+ * that {@link DemoUtil} builds: the manifest cache, the memory tier, the write-through disk cache,
+ * coalescing and multi-connection loading. Players are built as {@link PlayerPool} builds them,
+ * but on a {@link SimulationClock} and with {@link FakeRenderer fake renderers}, so a session needs
+ * no codecs and plays out in simulated time.
+ *
+ * <p>Time advances in {@link #STEP_MS} steps. Before each step the simulation waits until the
+ * player, its loaders and the origin are all waiting for the clock, so that what happens within a
+ * step does not depend on thread scheduling, and a session gives the same metrics on every run.
+ */
+/* package */ final class PlaybackSimulation {
+
+    /** The metrics of a simulated session. */
+    public static final class Result {
+
+        /** The time from preparing the player to it first being ready, in milliseconds. */
+        public final long startupTimeMs;
+        /** The number of rebuffers after the player was first ready. */
+        public final long rebufferCount;
+        /** The total duration of rebuffers, in milliseconds. */
+        public final long rebufferDurationMs;
+        /** The time from the player first being ready to the end of playback, in milliseconds. */
+        public final long playbackDurationMs;
+        /** The number of requests the origin received. */
+        public final int originRequestCount;
+        /** The number of body bytes the origin sent. */
+        public final long originBytes;
+
+        private Result(
+                long startupTimeMs,
+                long rebufferCount,
+                long rebufferDurationMs,
+                long playbackDurationMs,
+                int originRequestCount,
+                long originBytes) {
+            this.startupTimeMs = startupTimeMs;
+            this.rebufferCount = rebufferCount;
+            this.rebufferDurationMs = rebufferDurationMs;
+            this.playbackDurationMs = playbackDurationMs;
+            this.originRequestCount = originRequestCount;
+            this.originBytes = originBytes;
+        }
+
+        /** Returns the fraction of the time from first being ready to the end spent rebuffering. */
+        public double getRebufferRatio() {
+            return playbackDurationMs == 0 ? 0 : (double) rebufferDurationMs / playbackDurationMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Result{startupMs=" + startupTimeMs
+                    + ", rebuffers=" + rebufferCount
+                    + ", rebufferMs=" + rebufferDurationMs
+                    + ", playbackMs=" + playbackDurationMs
+                    + ", originRequests=" + originRequestCount
+                    + ", originBytes=" + originBytes
+                    + "}";
+        }
+    }
+
+    /** The simulated time each step advances, matching the player's rendering interval. */
+    public static final long STEP_MS = 10;
+    /** The simulated time after which a session that has not ended fails. */
+    public static final long MAX_SESSION_MS = 120_000;
+
+    private static final String USER_AGENT = "PlaybackSimulation";
+    private static final String PLAYER_THREAD_PREFIX = "ExoPlayer:";
+    /** A real-time bound on waiting for quiescence, should a thread block on something else. */
+    private static final long MAX_QUIESCENCE_WAIT_MS = 1_000;
+    private static final int ADTS_HEADER_LENGTH = 7;
+    private static final int ADTS_FRAME_LENGTH = 200;
+    private static final int ADTS_SAMPLES_PER_FRAME = 1024;
+    private static final int ADTS_SAMPLE_RATE = 44_100;
+
+    private final Context context;
+    private final SimulationClock clock;
+    private final SimulatedOrigin origin;
+    private final SimpleCache cache;
+    private final ExecutorService rangeLoaderExecutor;
+    private final ManifestCachingMediaSourceFactory mediaSourceFactory;
+    private final Set<Thread> threadsInHttpCalls;
+
+    // Counted by the HTTP data sources, and compared with the origin's counts.
+    private int httpOpenCount;
+    private int httpOpenedCount;
+    private int httpFailedReadCount;
+    private long httpBytesRead;
+
+    /**
+     * @param context A context.
+     * @param clock The clock the simulation runs on.
+     * @param origin The origin the sessions load from.
+     * @param directory A directory for the disk cache and the manifest cache.
+     */
+    public PlaybackSimulation(
+            Context context, SimulationClock clock, SimulatedOrigin origin, File directory) {
+        this.context = context;
+        this.clock = clock;
+        this.origin = origin;
+        threadsInHttpCalls = ConcurrentHashMap.newKeySet();
+        cache =
+                new SimpleCache(
+                        new File(directory, "cache"),
+                        DemoUtil.buildCacheEvictor(DemoUtil.DEFAULT_MAX_CACHE_BYTES),
+                        TestUtil.getInMemoryDatabaseProvider());
+        ManifestCache manifestCache =
+                new ManifestCache(
+                        new File(directory, "manifests"), ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+        rangeLoaderExecutor = Executors.newCachedThreadPool();
+        DataSource.Factory upstreamFactory =
+                DemoUtil.buildUpstreamDataSourceFactory(
+                        context,
+                        new TrackedHttpDataSourceFactory(),
+                        rangeLoaderExecutor,
+                        /* transferListener= */ null);
+        DataSource.Factory dataSourceFactory =
+                DemoUtil.buildDataSourceFactory(
+                        upstreamFactory,
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        new HotSegmentCache(),
+                        manifestCache,
+                        /* eventListener= */ null);
+        mediaSourceFactory =
+                new ManifestCachingMediaSourceFactory(dataSourceFactory, manifestCache);
+    }
+
+    /**
+     * Returns an ADTS stream of AAC frames at 44.1 kHz, about 69 kbps, which the player extracts
+     * as it would real audio. The frames carry no decodable audio, which fake renderers never
+     * need.
+     *
+     * @param durationMs The duration of the stream, in milliseconds.
+     */
+    public static byte[] buildAudio(long durationMs) {
+        int frameCount =
+                (int)
+                        Util.ceilDivide(
+                                durationMs * ADTS_SAMPLE_RATE, 1000L * ADTS_SAMPLES_PER_FRAME);
+        byte[] data = new byte[frameCount * ADTS_FRAME_LENGTH];
+        for (int i = 0; i < frameCount; i++) {
+            int offset = i * ADTS_FRAME_LENGTH;
+            // MPEG-4, no CRC; AAC LC, 44.1 kHz, stereo; the frame length; a variable bitrate.
+            data[offset] = (byte) 0xFF;
+            data[offset + 1] = (byte) 0xF1;
+            data[offset + 2] = (byte) 0x50;
+            data[offset + 3] = (byte) (0x80 | (ADTS_FRAME_LENGTH >> 11));
+            data[offset + 4] = (byte) (ADTS_FRAME_LENGTH >> 3);
+            data[offset + 5] = (byte) (((ADTS_FRAME_LENGTH & 0x07) << 5) | 0x1F);
+            data[offset + 6] = (byte) 0xFC;
+        }
+        return data;
+    }
+
+    /** Plays {@code mediaItem} from start to end, and returns the session's metrics. */
+    public Result play(MediaItem mediaItem) {
+        int originRequestCountBefore = origin.getRequestCount();
+        long originBytesBefore = origin.getBytesServed();
+        SimpleExoPlayer player = buildPlayer();
+        QoeCollector qoeCollector = new QoeCollector((rows, rowCount) -> {});
+        SessionListener sessionListener = new SessionListener();
+        player.addAnalyticsListener(qoeCollector);
+        player.addAnalyticsListener(sessionListener);
+        try {
+            qoeCollector.startSession();
+            long startTimeMs = clock.elapsedRealtime();
+            player.setMediaItem(mediaItem);
+            player.prepare();
+            player.play();
+            while (player.getPlaybackState() != Player.STATE_ENDED) {
+                assertThat(player.getPlayerError()).isNull();
+                assertThat(clock.elapsedRealtime() - startTimeMs).isLessThan(MAX_SESSION_MS);
+                awaitQuiescence();
+                clock.step(STEP_MS);
+            }
+            return new Result(
+                    sessionListener.firstReadyTimeMs - startTimeMs,
+                    qoeCollector.getCurrentValue(QoeCollector.FIELD_REBUFFER_COUNT),
+                    qoeCollector.getCurrentValue(QoeCollector.FIELD_REBUFFER_DURATION_MS),
+                    sessionListener.endedTimeMs - sessionListener.firstReadyTimeMs,
+                    origin.getRequestCount() - originRequestCountBefore,
+                    origin.getBytesServed() - originBytesBefore);
+        } finally {
+            qoeCollector.endSession();
+            player.release();
+            ShadowLooper.idleMainLooper();
+        }
+    }
+
+    public void release() {
+        cache.release();
+        rangeLoaderExecutor.shutdownNow();
+    }
+
+    private SimpleExoPlayer buildPlayer() {
+        return new SimpleExoPlayer.Builder(
+                        context,
+                        (eventHandler, videoListener, audioListener, textOutput, metadataOutput) ->
+                                new Renderer[] {new FakeRenderer(C.TRACK_TYPE_AUDIO)})
+                .setMediaSourceFactory(mediaSourceFactory)
+                .setTrackSelector(new DefaultTrackSelector(context))
+                .setLoadControl(new MemoryAwareLoadControl(context))
+                .setBandwidthMeter(new DefaultBandwidthMeter.Builder(context).build())
+                .setAnalyticsCollector(new AnalyticsCollector(clock))
+                .setClock(clock)
+                .setLooper(Looper.getMainLooper())
+                .build();
+    }
+
+    /**
+     * Waits until nothing can happen before the clock advances: the main looper is idle, every
+     * player thread waits, or is blocked on the network, and the network has delivered everything
+     * the origin released.
+     */
+    private void awaitQuiescence() {
+        long deadlineMs = System.currentTimeMillis() + MAX_QUIESCENCE_WAIT_MS;
+        while (System.currentTimeMillis() < deadlineMs) {
+            ShadowLooper.idleMainLooper();
+            if (isNetworkQuiescent() && arePlayerThreadsWaiting() && isMainLooperIdle()) {
+                return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean isNetworkQuiescent() {
+        return origin.isWaitingForClock()
+                && origin.getRequestCount() == httpOpenCount
+                && origin.getResponseCount() == httpOpenedCount
+                && origin.getCutResponseCount() == httpFailedReadCount
+                && origin.getBytesServed() == httpBytesRead;
+    }
+
+    private boolean arePlayerThreadsWaiting() {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int threadCount = Thread.enumerate(threads);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = threads[i];
+            if (!thread.getName().startsWith(PLAYER_THREAD_PREFIX)) {
+                continue;
+            }
+            Thread.State state = thread.getState();
+            boolean waiting =
+                    state == Thread.State.WAITING
+                            || state == Thread.State.TIMED_WAITING
+                            || state == Thread.State.TERMINATED;
+            // A thread blocked reading the network shows as runnable.
+            if (!waiting && !threadsInHttpCalls.contains(thread)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMainLooperIdle() {
+        return shadowOf(Looper.getMainLooper()).isIdle();
+    }
+
+    private final class SessionListener implements AnalyticsListener {
+
+        private long firstReadyTimeMs;
+        private long endedTimeMs;
+
+        public SessionListener() {
+            firstReadyTimeMs = C.TIME_UNSET;
+            endedTimeMs = C.TIME_UNSET;
+        }
+
+        @Override
+        public void onPlaybackStateChanged(@NonNull EventTime eventTime, @Player.State int state) {
+            if (state == Player.STATE_READY && firstReadyTimeMs == C.TIME_UNSET) {
+                firstReadyTimeMs = eventTime.realtimeMs;
+            } else if (state == Player.STATE_ENDED) {
+                endedTimeMs = eventTime.realtimeMs;
+            }
+        }
+    }
+
+    /** Creates HTTP data sources that count what they receive from the origin. */
+    private final class TrackedHttpDataSourceFactory extends HttpDataSource.BaseFactory {
+
+        @Override
+        protected HttpDataSource createDataSourceInternal(
+                HttpDataSource.RequestProperties defaultRequestProperties) {
+            TrackedHttpDataSource dataSource = new TrackedHttpDataSource();
+            for (Map.Entry<String, String> property :
+                    defaultRequestProperties.getSnapshot().entrySet()) {
+                dataSource.setRequestProperty(property.getKey(), property.getValue());
+            }
+            return dataSource;
+        }
+    }
+
+    private final class TrackedHttpDataSource extends DefaultHttpDataSource {
+
+        public TrackedHttpDataSource() {
+            super(USER_AGENT);
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws HttpDataSourceException {
+            synchronized (PlaybackSimulation.this) {
+                httpOpenCount++;
+            }
+            threadsInHttpCalls.add(Thread.currentThread());
+            try {
+                return super.open(dataSpec);
+            } finally {
+                threadsInHttpCalls.remove(Thread.currentThread());
+                synchronized (PlaybackSimulation.this) {
+                    httpOpenedCount++;
+                }
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws HttpDataSourceException {
+            threadsInHttpCalls.add(Thread.currentThread());
+            try {
+                int bytesRead = super.read(buffer, offset, readLength);
+                if (bytesRead > 0) {
+                    synchronized (PlaybackSimulation.this) {
+                        httpBytesRead += bytesRead;
+                    }
+                }
+                return bytesRead;
+            } catch (HttpDataSourceException e) {
+                synchronized (PlaybackSimulation.this) {
+                    httpFailedReadCount++;
+                }
+                throw e;
+            } finally {
+                threadsInHttpCalls.remove(Thread.currentThread());
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.AnalyticsListener.EventTime;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link QoeCollector} by calling its {@link
+ * com.google.android.exoplayer2.analytics.AnalyticsListener} callbacks in the order a player
+ * would, and checking the rows it exports.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class QoeCollectorTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final ExoPlaybackException ERROR =
+            ExoPlaybackException.createForSource(new IOException());
+
+    private RecordingSink sink;
+    private long startRealtimeMs;
+
+    @Before
+    public void setUp() {
+        sink = new RecordingSink();
+        startRealtimeMs = SystemClock.elapsedRealtime();
+    }
+
+    @Test
+    public void bufferingBeforeFirstReady_isNotARebuffer() {
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+
+        collector.onPlaybackStateChanged(eventTime(0), Player.STATE_BUFFERING);
+        collector.onPlaybackStateChanged(eventTime(500), Player.STATE_READY);
+
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_COUNT)).isEqualTo(0);
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_DURATION_MS))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void bufferingAfterReady_isARebuffer() {
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+
+        collector.onPlaybackStateChanged(eventTime(0), Player.STATE_READY);
+        collector.onPlaybackStateChanged(eventTime(1_000), Player.STATE_BUFFERING);
+        collector.onPlaybackStateChanged(eventTime(1_250), Player.STATE_READY);
+
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_COUNT)).isEqualTo(1);
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_DURATION_MS))
+                .isEqualTo(250);
+    }
+
+    @Test
+    public void bufferingForSeek_isNotARebuffer() {
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+        collector.onPlaybackStateChanged(eventTime(0), Player.STATE_READY);
+
+        // A seek out of the buffer: the seek is processed before the player is ready again.
+        collector.onSeekStarted(eventTime(1_000));
+        collector.onPlaybackStateChanged(eventTime(1_000), Player.STATE_BUFFERING);
+        collector.onSeekProcessed(eventTime(1_000));
+        collector.onPlaybackStateChanged(eventTime(1_400), Player.STATE_READY);
+
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_COUNT)).isEqualTo(0);
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_DURATION_MS))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void bufferingAfterSeek_isARebuffer() {
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+        collector.onPlaybackStateChanged(eventTime(0), Player.STATE_READY);
+        collector.onSeekStarted(eventTime(1_000));
+        collector.onPlaybackStateChanged(eventTime(1_000), Player.STATE_BUFFERING);
+        collector.onSeekProcessed(eventTime(1_000));
+        collector.onPlaybackStateChanged(eventTime(1_400), Player.STATE_READY);
+
+        collector.onPlaybackStateChanged(eventTime(3_000), Player.STATE_BUFFERING);
+        collector.onPlaybackStateChanged(eventTime(3_500), Player.STATE_READY);
+
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_COUNT)).isEqualTo(1);
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_REBUFFER_DURATION_MS))
+                .isEqualTo(500);
+    }
+
+    @Test
+    public void firstFrame_isTimedFromSessionStart() {
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+
+        collector.onRenderedFirstFrame(eventTime(700), /* surface= */ null);
+        collector.onRenderedFirstFrame(eventTime(900), /* surface= */ null);
+
+        assertThat(collector.getCurrentValue(QoeCollector.FIELD_TIME_TO_FIRST_FRAME_MS))
+                .isEqualTo(700);
+    }
+
+    @Test
+    public void endSession_exportsBatchOfRows() throws InterruptedException {
+        sink.expectRows(2);
+        QoeCollector collector =
+                new QoeCollector(sink, /* capacity= */ 4, /* batchSize= */ 2);
+
+        for (int errors = 1; errors <= 2; errors++) {
+            collector.startSession();
+            for (int i = 0; i < errors; i++) {
+                collector.onPlayerError(eventTime(0), ERROR);
+            }
+            collector.endSession();
+        }
+
+        assertThat(sink.await()).isTrue();
+        assertThat(sink.getBatchCount()).isEqualTo(1);
+        assertThat(sink.getValues(QoeCollector.FIELD_ERROR_COUNT)).containsExactly(1L, 2L)
+                .inOrder();
+    }
+
+    @Test
+    public void fullRing_overwritesOldestUnexportedRows() throws InterruptedException {
+        sink.expectRows(2);
+        QoeCollector collector =
+                new QoeCollector(sink, /* capacity= */ 2, /* batchSize= */ 8);
+
+        for (int errors = 1; errors <= 3; errors++) {
+            collector.startSession();
+            for (int i = 0; i < errors; i++) {
+                collector.onPlayerError(eventTime(0), ERROR);
+            }
+            collector.endSession();
+        }
+
+        assertThat(sink.await()).isTrue();
+        assertThat(sink.getValues(QoeCollector.FIELD_ERROR_COUNT)).containsExactly(2L, 3L)
+                .inOrder();
+    }
+
+    @Test
+    public void flush_exportsIncompleteBatch() throws InterruptedException {
+        sink.expectRows(1);
+        QoeCollector collector = new QoeCollector(sink);
+        collector.startSession();
+        collector.endSession();
+
+        collector.flush();
+
+        assertThat(sink.await()).isTrue();
+        assertThat(sink.getValues(QoeCollector.FIELD_TIME_TO_FIRST_FRAME_MS))
+                .containsExactly(C.TIME_UNSET);
+    }
+
+    private EventTime eventTime(long offsetMs) {
+        return new EventTime(
+                startRealtimeMs + offsetMs,
+                Timeline.EMPTY,
+                /* windowIndex= */ 0,
+                /* mediaPeriodId= */ null,
+                /* eventPlaybackPositionMs= */ 0,
+                Timeline.EMPTY,
+                /* currentWindowIndex= */ 0,
+                /* currentMediaPeriodId= */ null,
+                /* currentPlaybackPositionMs= */ 0,
+                /* totalBufferedDurationMs= */ 0);
+    }
+
+    /** Records the rows it receives, and counts them down on a latch. */
+    private static final class RecordingSink implements QoeCollector.Sink {
+
+        private final List<long[]> rows = new ArrayList<>();
+        private int batchCount;
+        private CountDownLatch latch = new CountDownLatch(0);
+
+        void expectRows(int rowCount) {
+            latch = new CountDownLatch(rowCount);
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized int getBatchCount() {
+            return batchCount;
+        }
+
+        synchronized List<Long> getValues(int field) {
+            List<Long> values = new ArrayList<>();
+            for (long[] row : rows) {
+                values.add(row[field]);
+            }
+            return values;
+        }
+
+        @Override
+        public synchronized void onBatch(long[] rows, int rowCount) {
+            batchCount++;
+            for (int row = 0; row < rowCount; row++) {
+                long[] values = new long[QoeCollector.FIELD_COUNT];
+                System.arraycopy(
+                        rows, row * QoeCollector.FIELD_COUNT, values, 0, QoeCollector.FIELD_COUNT);
+                this.rows.add(values);
+                latch.countDown();
+            }
+        }
+    }
+}
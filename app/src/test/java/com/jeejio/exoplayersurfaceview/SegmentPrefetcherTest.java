@@ -0,0 +1,251 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests {@link SegmentPrefetcher} against a local HTTP origin serving a two-variant live stream. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentPrefetcherTest {
+
+    private static final int SEGMENT_LENGTH = 10 * 1024;
+    private static final int SEGMENTS_AHEAD = 2;
+    private static final long TIMEOUT_MS = 5_000;
+
+    private static final String MASTER_PLAYLIST =
+            "#EXTM3U\n"
+                    + "#EXT-X-STREAM-INF:BANDWIDTH=800000,RESOLUTION=640x360\n"
+                    + "low/index.m3u8\n"
+                    + "#EXT-X-STREAM-INF:BANDWIDTH=2400000,RESOLUTION=1280x720\n"
+                    + "high/index.m3u8\n";
+
+    private MockWebServer server;
+    private List<String> requestedPaths;
+    private File tempDirectory;
+    private SimpleCache cache;
+    private SegmentPrefetcher segmentPrefetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        requestedPaths = new CopyOnWriteArrayList<>();
+        server = new MockWebServer();
+        server.setDispatcher(new OriginDispatcher());
+        server.start();
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "SegmentPrefetcherTest");
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                        TestUtil.getInMemoryDatabaseProvider());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (segmentPrefetcher != null) {
+            segmentPrefetcher.release();
+        }
+        cache.release();
+        Util.recursiveDelete(tempDirectory);
+        server.shutdown();
+    }
+
+    @Test
+    public void prefetchesTheVariantThePlayerSelected() throws Exception {
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 1));
+        segmentPrefetcher.start();
+
+        waitForPrefetchedBytes(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+
+        assertThat(isCached("/high/segment3.ts")).isTrue();
+        assertThat(isCached("/high/segment4.ts")).isTrue();
+        assertThat(requestedPaths).doesNotContain("/low/index.m3u8");
+        assertThat(requestedPaths).containsNoneOf("/low/segment3.ts", "/low/segment4.ts");
+    }
+
+    @Test
+    public void followsVariantSwitches() throws Exception {
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 0));
+        segmentPrefetcher.start();
+        waitForPrefetchedBytes(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 1));
+        waitForPrefetchedBytes(2 * SEGMENTS_AHEAD * SEGMENT_LENGTH);
+
+        assertThat(isCached("/high/segment4.ts")).isTrue();
+        // The player moved off the low variant, so its prefetched segments are never requested.
+        assertThat(segmentPrefetcher.getWastedBytes()).isEqualTo(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+    }
+
+    @Test
+    public void withoutSelectedVariant_loadsNoSegments() throws Exception {
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.start();
+
+        // Give the first refresh time to run.
+        Thread.sleep(500);
+
+        assertThat(requestedPaths).containsExactly("/master.m3u8");
+        assertThat(segmentPrefetcher.getPrefetchedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void reportsUsedAndWastedBytes() throws Exception {
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 1));
+        segmentPrefetcher.start();
+        waitForPrefetchedBytes(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+
+        segmentPrefetcher.onSegmentLoaded(Uri.parse(server.url("/high/segment3.ts").toString()));
+        segmentPrefetcher.release();
+
+        assertThat(segmentPrefetcher.getUsedBytes()).isEqualTo(SEGMENT_LENGTH);
+        assertThat(segmentPrefetcher.getWastedBytes()).isEqualTo(SEGMENT_LENGTH);
+        segmentPrefetcher = null;
+    }
+
+    @Test
+    public void alreadyCachedSegment_isNotCounted() throws Exception {
+        String cachedPath = "/high/segment3.ts";
+        new CacheWriter(
+                        buildCacheDataSourceFactory().createDataSourceForDownloading(),
+                        new DataSpec(Uri.parse(server.url(cachedPath).toString())),
+                        /* allowShortContent= */ false,
+                        /* temporaryBuffer= */ null,
+                        /* progressListener= */ null)
+                .cache();
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 1));
+        segmentPrefetcher.start();
+
+        waitForPrefetchedBytes(SEGMENT_LENGTH);
+        // Give a later refresh time to run.
+        Thread.sleep(1_500);
+
+        assertThat(segmentPrefetcher.getPrefetchedBytes()).isEqualTo(SEGMENT_LENGTH);
+        assertThat(requestedPaths).doesNotContain(cachedPath);
+    }
+
+    @Test
+    public void segmentPrefetchedAgainAfterPlayerLoad_isNotCountedTwice() throws Exception {
+        segmentPrefetcher = buildSegmentPrefetcher();
+        segmentPrefetcher.onVariantSelected(getVariantFormat(/* index= */ 1));
+        segmentPrefetcher.start();
+        waitForPrefetchedBytes(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+
+        // The next refresh schedules the segment again, but finds it cached.
+        segmentPrefetcher.onSegmentLoaded(Uri.parse(server.url("/high/segment3.ts").toString()));
+        Thread.sleep(1_500);
+
+        assertThat(segmentPrefetcher.getPrefetchedBytes())
+                .isEqualTo(SEGMENTS_AHEAD * SEGMENT_LENGTH);
+    }
+
+    private SegmentPrefetcher buildSegmentPrefetcher() {
+        return new SegmentPrefetcher(
+                getMasterPlaylistUri(),
+                new DefaultHttpDataSourceFactory("test"),
+                buildCacheDataSourceFactory(),
+                SEGMENTS_AHEAD,
+                SegmentPrefetcher.DEFAULT_MAX_CONCURRENT_LOADS);
+    }
+
+    private CacheDataSource.Factory buildCacheDataSourceFactory() {
+        return DemoUtil.buildCacheDataSourceFactory(
+                new DefaultHttpDataSourceFactory("test"),
+                cache,
+                DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                null);
+    }
+
+    private Uri getMasterPlaylistUri() {
+        return Uri.parse(server.url("/master.m3u8").toString());
+    }
+
+    /** Returns the format of a variant, as the player reports it for the loads of that variant. */
+    private Format getVariantFormat(int index) throws IOException {
+        HlsMasterPlaylist masterPlaylist =
+                (HlsMasterPlaylist)
+                        new HlsPlaylistParser()
+                                .parse(
+                                        getMasterPlaylistUri(),
+                                        new ByteArrayInputStream(
+                                                MASTER_PLAYLIST.getBytes(StandardCharsets.UTF_8)));
+        return masterPlaylist.variants.get(index).format;
+    }
+
+    private boolean isCached(String path) {
+        return cache.isCached(server.url(path).toString(), /* position= */ 0, SEGMENT_LENGTH);
+    }
+
+    private void waitForPrefetchedBytes(long bytes) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (segmentPrefetcher.getPrefetchedBytes() < bytes) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+            Thread.sleep(10);
+        }
+    }
+
+    /** Serves the master playlist, a live media playlist per variant, and its segments. */
+    private final class OriginDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            requestedPaths.add(path);
+            if (path.equals("/master.m3u8")) {
+                return new MockResponse().setBody(MASTER_PLAYLIST);
+            } else if (path.endsWith("/index.m3u8")) {
+                return new MockResponse().setBody(buildMediaPlaylist(/* segmentCount= */ 5));
+            } else if (path.endsWith(".ts")) {
+                return new MockResponse().setBody(new Buffer().write(new byte[SEGMENT_LENGTH]));
+            }
+            return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private static String buildMediaPlaylist(int segmentCount) {
+        StringBuilder playlist =
+                new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:1\n#EXT-X-MEDIA-SEQUENCE:0\n");
+        for (int i = 0; i < segmentCount; i++) {
+            playlist.append("#EXTINF:1.0,\nsegment").append(i).append(".ts\n");
+        }
+        return playlist.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests {@link ShardedCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class ShardedCacheTest {
+
+    private static final int SHARD_COUNT = 4;
+    private static final int DATA_LENGTH = 10 * 1024;
+    private static final String SEGMENT_URI_PREFIX = "https://example.com/segment";
+
+    private File tempDirectory;
+    private DatabaseProvider databaseProvider;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "ShardedCacheTest");
+        // Shared by every instance, so that a reopened cache finds the shards' indices.
+        databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    }
+
+    @After
+    public void tearDown() {
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void getUid_isStableAcrossInstances() {
+        ShardedCache cache = buildCache();
+        long uid = cache.getUid();
+        cache.release();
+
+        ShardedCache reopenedCache = buildCache();
+        try {
+            assertThat(uid).isAtLeast(0L);
+            assertThat(reopenedCache.getUid()).isEqualTo(uid);
+        } finally {
+            reopenedCache.release();
+        }
+    }
+
+    @Test
+    public void getUid_changesWhenAnyShardIsLost() {
+        ShardedCache cache = buildCache();
+        long uid = cache.getUid();
+        cache.release();
+        // A shard other than the first loses its content, and with it its uid.
+        Util.recursiveDelete(new File(new File(tempDirectory, "cache"), "2"));
+
+        ShardedCache reopenedCache = buildCache();
+        try {
+            assertThat(reopenedCache.getUid()).isNotEqualTo(uid);
+        } finally {
+            reopenedCache.release();
+        }
+    }
+
+    @Test
+    public void keys_goToShardTheirHashSelects() throws IOException {
+        ShardedCache cache = buildCache();
+        try {
+            // The mapping must not change, or content written by an earlier version is lost.
+            assertThat(writeAndGetShardIndex(cache, SEGMENT_URI_PREFIX + "0.ts")).isEqualTo(2);
+            assertThat(writeAndGetShardIndex(cache, SEGMENT_URI_PREFIX + "1.ts")).isEqualTo(3);
+            assertThat(writeAndGetShardIndex(cache, SEGMENT_URI_PREFIX + "4.ts")).isEqualTo(0);
+            assertThat(writeAndGetShardIndex(cache, SEGMENT_URI_PREFIX + "5.ts")).isEqualTo(1);
+        } finally {
+            cache.release();
+        }
+    }
+
+    @Test
+    public void keysWithCommonPrefix_spreadOverAllShards() throws IOException {
+        ShardedCache cache = buildCache();
+        Set<Integer> shardIndices = new HashSet<>();
+        try {
+            for (int i = 0; i < 16; i++) {
+                shardIndices.add(writeAndGetShardIndex(cache, SEGMENT_URI_PREFIX + i + ".ts"));
+            }
+        } finally {
+            cache.release();
+        }
+
+        assertThat(shardIndices).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    public void writtenData_readsBackFromCache() throws IOException {
+        byte[] data = buildData();
+        ShardedCache cache = buildCache();
+        try {
+            write(cache, "segment0.ts", data);
+
+            assertThat(cache.getKeys()).containsExactly("segment0.ts");
+            assertThat(cache.isCached("segment0.ts", 0, DATA_LENGTH)).isTrue();
+            assertThat(cache.getCacheSpace()).isEqualTo(DATA_LENGTH);
+            assertThat(readFromCache(cache, "segment0.ts")).isEqualTo(data);
+        } finally {
+            cache.release();
+        }
+    }
+
+    @Test
+    public void writtenData_readsBackAfterReopen() throws IOException {
+        byte[] data = buildData();
+        ShardedCache cache = buildCache();
+        for (int i = 0; i < SHARD_COUNT * 2; i++) {
+            write(cache, "segment" + i + ".ts", data);
+        }
+        cache.release();
+
+        ShardedCache reopenedCache = buildCache();
+        try {
+            assertThat(reopenedCache.getKeys()).hasSize(SHARD_COUNT * 2);
+            for (int i = 0; i < SHARD_COUNT * 2; i++) {
+                assertThat(readFromCache(reopenedCache, "segment" + i + ".ts")).isEqualTo(data);
+            }
+        } finally {
+            reopenedCache.release();
+        }
+    }
+
+    private ShardedCache buildCache() {
+        return new ShardedCache(
+                new File(tempDirectory, "cache"), SHARD_COUNT, C.LENGTH_UNSET, databaseProvider);
+    }
+
+    private static byte[] buildData() {
+        byte[] data = new byte[DATA_LENGTH];
+        new Random(0).nextBytes(data);
+        return data;
+    }
+
+    /** Writes data under {@code key}, and returns the index of the shard holding its span. */
+    private int writeAndGetShardIndex(ShardedCache cache, String key) throws IOException {
+        write(cache, key, buildData());
+        File file = cache.getCachedSpans(key).first().file;
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            File shardDirectory = new File(new File(tempDirectory, "cache"), Integer.toString(i));
+            if (file.getAbsolutePath()
+                    .startsWith(shardDirectory.getAbsolutePath() + File.separator)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Span outside every shard: " + file);
+    }
+
+    private static void write(ShardedCache cache, String key, byte[] data) throws IOException {
+        CacheDataSource dataSource =
+                new CacheDataSource.Factory()
+                        .setCache(cache)
+                        .setUpstreamDataSourceFactory(() -> new ByteArrayDataSource(data))
+                        .createDataSource();
+        new CacheWriter(
+                        dataSource,
+                        buildDataSpec(key),
+                        /* allowShortContent= */ false,
+                        /* temporaryBuffer= */ null,
+                        /* progressListener= */ null)
+                .cache();
+    }
+
+    /** Reads the content of {@code key} with no upstream, so that only the cache can serve it. */
+    private static byte[] readFromCache(ShardedCache cache, String key) throws IOException {
+        CacheDataSource dataSource =
+                new CacheDataSource.Factory()
+                        .setCache(cache)
+                        .setUpstreamDataSourceFactory(null)
+                        .setCacheWriteDataSinkFactory(null)
+                        .createDataSource();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            dataSource.open(buildDataSpec(key));
+            byte[] buffer = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length))
+                    != C.RESULT_END_OF_INPUT) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            dataSource.close();
+        }
+        return output.toByteArray();
+    }
+
+    private static DataSpec buildDataSpec(String key) {
+        return new DataSpec.Builder().setUri(Uri.parse("https://example.com")).setKey(key).build();
+    }
+}
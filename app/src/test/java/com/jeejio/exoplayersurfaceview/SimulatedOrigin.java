@@ -0,0 +1,270 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP origin serving one resource, whose latency, bandwidth cap and failures play out in
+ * the simulated time of a {@link SimulationClock}, so that a loader sees the same network on every
+ * run.
+ *
+ * <p>Each response waits for the latency, then releases its body at the bandwidth cap as the clock
+ * advances. Requests can be made to fail with a server error, or to be cut short after some bytes.
+ * Byte ranges are supported, and each connection serves a single request.
+ */
+/* package */ final class SimulatedOrigin {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final SimulationClock clock;
+    private final byte[] data;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    private volatile long latencyMs;
+    private volatile long bytesPerSecond;
+
+    // Guarded by this.
+    private int pendingFailureCount;
+    private long pendingCutPosition;
+    private int requestCount;
+    private int responseCount;
+    private int cutResponseCount;
+    private long bytesServed;
+    private int openConnectionCount;
+    private int waitingConnectionCount;
+
+    /**
+     * @param clock The clock the network runs on.
+     * @param data The body of the resource.
+     */
+    public SimulatedOrigin(SimulationClock clock, byte[] data) throws IOException {
+        this.clock = clock;
+        this.data = data;
+        serverSocket =
+                new ServerSocket(
+                        /* port= */ 0, /* backlog= */ 50, InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool();
+        pendingCutPosition = C.LENGTH_UNSET;
+        bytesPerSecond = Long.MAX_VALUE;
+        executor.execute(this::acceptConnections);
+    }
+
+    /** Sets the delay before the headers of each response, in milliseconds. */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /** Sets the bandwidth of each connection, in bytes per second. */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /** Makes the next {@code count} requests fail with a server error. */
+    public synchronized void failNextRequests(int count) {
+        pendingFailureCount = count;
+    }
+
+    /** Makes the next response end abruptly once its body reaches {@code position}. */
+    public synchronized void cutNextResponseAt(long position) {
+        pendingCutPosition = position;
+    }
+
+    public void shutdown() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    /** Returns the URI of the resource, whose path ends with {@code fileName}. */
+    public Uri getUri(String fileName) {
+        return Uri.parse("http://127.0.0.1:" + serverSocket.getLocalPort() + "/" + fileName);
+    }
+
+    public int getLength() {
+        return data.length;
+    }
+
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /** Returns the number of responses whose status line and headers have been sent. */
+    public synchronized int getResponseCount() {
+        return responseCount;
+    }
+
+    /** Returns the number of responses that ended before their body was complete. */
+    public synchronized int getCutResponseCount() {
+        return cutResponseCount;
+    }
+
+    /** Returns the number of body bytes the origin has sent. */
+    public synchronized long getBytesServed() {
+        return bytesServed;
+    }
+
+    /**
+     * Returns whether every open connection waits for the clock to advance, so that nothing more
+     * reaches the network until it does.
+     */
+    public synchronized boolean isWaitingForClock() {
+        return waitingConnectionCount == openConnectionCount;
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // The origin was shut down.
+                return;
+            }
+            synchronized (this) {
+                openConnectionCount++;
+            }
+            executor.execute(() -> serve(socket));
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket closedSocket = socket) {
+            BufferedReader reader =
+                    new BufferedReader(
+                            new InputStreamReader(
+                                    closedSocket.getInputStream(), StandardCharsets.ISO_8859_1));
+            int start = 0;
+            int end = data.length - 1;
+            boolean ranged = false;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                Matcher matcher =
+                        line.regionMatches(/* ignoreCase= */ true, 0, "Range:", 0, 6)
+                                ? RANGE_PATTERN.matcher(line.substring(6).trim())
+                                : null;
+                if (matcher != null && matcher.matches()) {
+                    ranged = true;
+                    start = Integer.parseInt(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                    }
+                }
+            }
+            long arrivalTimeMs = clock.elapsedRealtime();
+            boolean fail;
+            long cutPosition;
+            synchronized (this) {
+                requestCount++;
+                fail = pendingFailureCount > 0;
+                if (fail) {
+                    pendingFailureCount--;
+                }
+                cutPosition = fail ? C.LENGTH_UNSET : pendingCutPosition;
+                if (!fail) {
+                    pendingCutPosition = C.LENGTH_UNSET;
+                }
+            }
+            awaitTime(arrivalTimeMs + latencyMs);
+            OutputStream output = closedSocket.getOutputStream();
+            if (fail) {
+                writeHeaders(output, "503 Service Unavailable", "Content-Length: 0\r\n");
+                return;
+            }
+            int length = end - start + 1;
+            writeHeaders(
+                    output,
+                    ranged ? "206 Partial Content" : "200 OK",
+                    "Content-Length: " + length + "\r\n"
+                            + (ranged
+                                    ? "Content-Range: bytes " + start + "-" + end + "/"
+                                            + data.length + "\r\n"
+                                    : ""));
+            writeBody(output, start, length, cutPosition);
+        } catch (IOException e) {
+            // The client went away.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                openConnectionCount--;
+            }
+        }
+    }
+
+    private void writeHeaders(OutputStream output, String status, String headers)
+            throws IOException {
+        String response =
+                "HTTP/1.1 " + status + "\r\n"
+                        + "Accept-Ranges: bytes\r\n"
+                        + "Connection: close\r\n"
+                        + headers
+                        + "\r\n";
+        synchronized (this) {
+            responseCount++;
+        }
+        output.write(response.getBytes(StandardCharsets.ISO_8859_1));
+        output.flush();
+    }
+
+    /** Releases the body at the bandwidth cap, as the clock advances. */
+    private void writeBody(OutputStream output, int start, int length, long cutPosition)
+            throws IOException, InterruptedException {
+        long headersTimeMs = clock.elapsedRealtime();
+        int sent = 0;
+        while (sent < length) {
+            if (cutPosition != C.LENGTH_UNSET && start + sent >= cutPosition) {
+                synchronized (this) {
+                    cutResponseCount++;
+                }
+                return;
+            }
+            long elapsedMs = clock.elapsedRealtime() - headersTimeMs;
+            long released =
+                    bytesPerSecond == Long.MAX_VALUE
+                            ? length
+                            : Math.min(length, bytesPerSecond * elapsedMs / 1000);
+            if (cutPosition != C.LENGTH_UNSET) {
+                released = Math.min(released, cutPosition - start);
+            }
+            int chunkLength = (int) (released - sent);
+            if (chunkLength <= 0) {
+                awaitTime(clock.elapsedRealtime() + 1);
+                continue;
+            }
+            // Counted first, so the client never appears to have read more than was served.
+            synchronized (this) {
+                bytesServed += chunkLength;
+            }
+            output.write(data, start + sent, chunkLength);
+            output.flush();
+            sent += chunkLength;
+        }
+    }
+
+    private void awaitTime(long timeMs) throws InterruptedException {
+        synchronized (this) {
+            waitingConnectionCount++;
+        }
+        try {
+            clock.awaitTime(timeMs);
+        } finally {
+            synchronized (this) {
+                waitingConnectionCount--;
+            }
+        }
+    }
+}
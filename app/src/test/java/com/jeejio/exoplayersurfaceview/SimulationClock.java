@@ -0,0 +1,44 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.testutil.FakeClock;
+
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The clock of a playback simulation. The player's playback loop runs on it as a {@link FakeClock},
+ * and each {@link #step(long) step} also moves Robolectric's system clock by as much, so that
+ * handlers, the bandwidth meter and analytics timestamps all see the same simulated time. Other
+ * threads, such as those of a {@link SimulatedOrigin}, can wait for the clock to reach a time.
+ */
+/* package */ final class SimulationClock extends FakeClock {
+
+    public SimulationClock() {
+        super(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Advances the time by {@code timeDiffMs}, running the main looper tasks due by then. Must be
+     * called on the main thread.
+     */
+    public void step(long timeDiffMs) {
+        ShadowLooper.idleMainLooper(timeDiffMs, TimeUnit.MILLISECONDS);
+        advanceTime(timeDiffMs);
+    }
+
+    @Override
+    public synchronized void advanceTime(long timeDiffMs) {
+        super.advanceTime(timeDiffMs);
+        notifyAll();
+    }
+
+    /** Blocks until the clock reaches {@code timeMs}. */
+    public synchronized void awaitTime(long timeMs) throws InterruptedException {
+        while (elapsedRealtime() < timeMs) {
+            wait();
+        }
+    }
+}
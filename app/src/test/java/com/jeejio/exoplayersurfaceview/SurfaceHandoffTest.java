@@ -0,0 +1,184 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * Tests {@link SurfaceHandoff} with a player whose video renderer is a fake. The test reports
+ * decoder counters and rendered first frames as a video renderer would, through the event listener
+ * the player gives its renderers.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class SurfaceHandoffTest {
+
+    private SimpleExoPlayer player;
+    @Nullable private VideoRendererEventListener videoRendererEventListener;
+    private ExoPlayerView firstView;
+    private ExoPlayerView secondView;
+    private List<CompletedSwitch> completedSwitches;
+    private SurfaceHandoff surfaceHandoff;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.buildActivity(Activity.class).setup().get();
+        RenderersFactory renderersFactory =
+                (eventHandler, videoListener, audioListener, textOutput, metadataOutput) -> {
+                    videoRendererEventListener = videoListener;
+                    return new Renderer[] {new FakeRenderer(C.TRACK_TYPE_VIDEO)};
+                };
+        player = new SimpleExoPlayer.Builder(activity, renderersFactory).build();
+        FrameLayout container = new FrameLayout(activity);
+        firstView = createPlayerView(activity, container);
+        secondView = createPlayerView(activity, container);
+        activity.setContentView(container);
+        completedSwitches = new ArrayList<>();
+        surfaceHandoff =
+                new SurfaceHandoff(
+                        player,
+                        (target, surfaceGapMs, firstFrameLatencyMs, droppedFrames) ->
+                                completedSwitches.add(
+                                        new CompletedSwitch(
+                                                target,
+                                                surfaceGapMs,
+                                                firstFrameLatencyMs,
+                                                droppedFrames)));
+    }
+
+    @After
+    public void tearDown() {
+        surfaceHandoff.release();
+        player.release();
+    }
+
+    @Test
+    public void switchTo_movesPlayerToTarget() {
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+        surfaceHandoff.switchTo(firstView, secondView);
+
+        assertThat(firstView.getPlayer()).isNull();
+        assertThat(secondView.getPlayer()).isSameInstanceAs(player);
+    }
+
+    @Test
+    public void firstFrame_completesSwitchWithItsLatency() {
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+        ShadowLooper.idleMainLooper(120, TimeUnit.MILLISECONDS);
+
+        renderFirstFrame();
+
+        assertThat(completedSwitches).hasSize(1);
+        CompletedSwitch completedSwitch = completedSwitches.get(0);
+        assertThat(completedSwitch.target).isSameInstanceAs(firstView);
+        assertThat(completedSwitch.firstFrameLatencyMs).isEqualTo(120);
+        // A texture view only reports its surface along with the first frame.
+        assertThat(completedSwitch.surfaceGapMs).isEqualTo(120);
+    }
+
+    @Test
+    public void firstFrame_reportsFramesDroppedDuringSwitch() {
+        DecoderCounters counters = new DecoderCounters();
+        videoRendererEventListener.onVideoEnabled(counters);
+        counters.droppedBufferCount = 5;
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+
+        counters.droppedBufferCount = 8;
+        renderFirstFrame();
+
+        assertThat(completedSwitches.get(0).droppedFrames).isEqualTo(3);
+    }
+
+    @Test
+    public void videoEnabledDuringSwitch_countsItsDropsFromZero() {
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+        DecoderCounters counters = new DecoderCounters();
+        videoRendererEventListener.onVideoEnabled(counters);
+
+        counters.droppedBufferCount = 2;
+        renderFirstFrame();
+
+        assertThat(completedSwitches.get(0).droppedFrames).isEqualTo(2);
+    }
+
+    @Test
+    public void eachSwitch_isReportedOnce() {
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+        renderFirstFrame();
+        renderFirstFrame();
+        surfaceHandoff.switchTo(firstView, secondView);
+        ShadowLooper.idleMainLooper(40, TimeUnit.MILLISECONDS);
+        renderFirstFrame();
+
+        assertThat(completedSwitches).hasSize(2);
+        assertThat(completedSwitches.get(1).target).isSameInstanceAs(secondView);
+        assertThat(completedSwitches.get(1).firstFrameLatencyMs).isEqualTo(40);
+    }
+
+    @Test
+    public void release_stopsReporting() {
+        surfaceHandoff.switchTo(/* oldPlayerView= */ null, firstView);
+
+        surfaceHandoff.release();
+        renderFirstFrame();
+
+        assertThat(completedSwitches).isEmpty();
+    }
+
+    private static ExoPlayerView createPlayerView(Activity activity, FrameLayout container) {
+        ExoPlayerView view = new ExoPlayerView(activity);
+        // Robolectric's surface views have no surface to query.
+        view.setSurfaceType(ExoPlayerView.SURFACE_TYPE_TEXTURE_VIEW);
+        container.addView(view);
+        return view;
+    }
+
+    /**
+     * Reports a first frame as the video renderer does. The texture views' surface textures are
+     * never available here, so the player renders to no surface.
+     */
+    private void renderFirstFrame() {
+        videoRendererEventListener.onRenderedFirstFrame(/* surface= */ null);
+    }
+
+    private static final class CompletedSwitch {
+
+        public final ExoPlayerView target;
+        public final long surfaceGapMs;
+        public final long firstFrameLatencyMs;
+        public final int droppedFrames;
+
+        public CompletedSwitch(
+                ExoPlayerView target,
+                long surfaceGapMs,
+                long firstFrameLatencyMs,
+                int droppedFrames) {
+            this.target = target;
+            this.surfaceGapMs = surfaceGapMs;
+            this.firstFrameLatencyMs = firstFrameLatencyMs;
+            this.droppedFrames = droppedFrames;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Tests {@link ThrottledDataSource}, refilling its bucket against a {@link FakeClock} that only
+ * the test advances.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ThrottledDataSourceTest {
+
+    private static final int DATA_LENGTH = 64 * 1024;
+    private static final int BYTES_PER_SECOND = 10_000;
+
+    private FakeClock clock;
+    private ThrottledDataSource.Factory factory;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(/* initialTimeMs= */ 0);
+        factory =
+                new ThrottledDataSource.Factory(
+                        () -> new ByteArrayDataSource(new byte[DATA_LENGTH]), clock);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void setMaxBytesPerSecond_rejectsZero() {
+        assertThrows(IllegalArgumentException.class, () -> factory.setMaxBytesPerSecond(0));
+    }
+
+    @Test
+    public void unlimited_readsWholeRequest() throws Exception {
+        ThrottledDataSource dataSource = factory.createDataSource();
+        dataSource.open(new DataSpec(Uri.EMPTY));
+
+        assertThat(dataSource.read(new byte[DATA_LENGTH], 0, DATA_LENGTH)).isEqualTo(DATA_LENGTH);
+    }
+
+    @Test
+    public void limit_grantsBytesAccruedInEachWindow() throws Exception {
+        factory.setMaxBytesPerSecond(BYTES_PER_SECOND);
+        ThrottledDataSource dataSource = factory.createDataSource();
+        dataSource.open(new DataSpec(Uri.EMPTY));
+        byte[] buffer = new byte[DATA_LENGTH];
+
+        long bytesRead = 0;
+        for (int i = 0; i < 10; i++) {
+            clock.advanceTime(100);
+            int windowBytesRead = dataSource.read(buffer, 0, DATA_LENGTH);
+            assertThat(windowBytesRead).isEqualTo(BYTES_PER_SECOND / 10);
+            bytesRead += windowBytesRead;
+        }
+
+        assertThat(bytesRead).isEqualTo(BYTES_PER_SECOND);
+    }
+
+    @Test
+    public void limit_holdsAtMostOneSecondOfBytes() throws Exception {
+        factory.setMaxBytesPerSecond(BYTES_PER_SECOND);
+        ThrottledDataSource dataSource = factory.createDataSource();
+        dataSource.open(new DataSpec(Uri.EMPTY));
+        clock.advanceTime(3_000);
+
+        assertThat(dataSource.read(new byte[DATA_LENGTH], 0, DATA_LENGTH))
+                .isEqualTo(BYTES_PER_SECOND);
+    }
+
+    @Test
+    public void limit_isSharedBySourcesOfOneFactory() throws Exception {
+        factory.setMaxBytesPerSecond(BYTES_PER_SECOND);
+        ThrottledDataSource first = factory.createDataSource();
+        ThrottledDataSource second = factory.createDataSource();
+        first.open(new DataSpec(Uri.EMPTY));
+        second.open(new DataSpec(Uri.EMPTY));
+        clock.advanceTime(1_000);
+
+        assertThat(first.read(new byte[DATA_LENGTH], 0, BYTES_PER_SECOND / 4))
+                .isEqualTo(BYTES_PER_SECOND / 4);
+        assertThat(second.read(new byte[DATA_LENGTH], 0, DATA_LENGTH))
+                .isEqualTo(BYTES_PER_SECOND * 3 / 4);
+    }
+
+    @Test
+    public void emptyBucket_readWaitsForClock() throws Exception {
+        factory.setMaxBytesPerSecond(BYTES_PER_SECOND);
+        ThrottledDataSource dataSource = factory.createDataSource();
+        dataSource.open(new DataSpec(Uri.EMPTY));
+        Future<Integer> read =
+                executor.submit(() -> dataSource.read(new byte[DATA_LENGTH], 0, DATA_LENGTH));
+
+        clock.advanceTime(250);
+
+        assertThat(read.get(1, TimeUnit.SECONDS)).isEqualTo(BYTES_PER_SECOND / 4);
+    }
+
+    @Test
+    public void removingLimit_wakesWaitingRead() throws Exception {
+        // The clock never moves, so only removing the limit lets the read through.
+        factory.setMaxBytesPerSecond(1);
+        ThrottledDataSource dataSource = factory.createDataSource();
+        dataSource.open(new DataSpec(Uri.EMPTY));
+        Future<Integer> read =
+                executor.submit(() -> dataSource.read(new byte[DATA_LENGTH], 0, DATA_LENGTH));
+
+        factory.setMaxBytesPerSecond(C.LENGTH_UNSET);
+
+        assertThat(read.get(1, TimeUnit.SECONDS)).isEqualTo(DATA_LENGTH);
+    }
+}
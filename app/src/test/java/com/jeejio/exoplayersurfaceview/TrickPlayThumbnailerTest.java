@@ -0,0 +1,39 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Tests how {@link TrickPlayThumbnailer} names the index file of a content URI. */
+@RunWith(AndroidJUnit4.class)
+public final class TrickPlayThumbnailerTest {
+
+    @Test
+    public void getFileName_isHexSha1OfUri() {
+        assertThat(TrickPlayThumbnailer.getFileName(Uri.parse("https://example.com/video.mp4")))
+                .isEqualTo("8cb95ec01f514f5cb44350339614b5289dc38bf9");
+    }
+
+    @Test
+    public void getFileName_isStableForEqualUris() {
+        assertThat(TrickPlayThumbnailer.getFileName(Uri.parse("https://example.com/video.mp4")))
+                .isEqualTo(
+                        TrickPlayThumbnailer.getFileName(
+                                Uri.parse("https://example.com/video.mp4")));
+    }
+
+    @Test
+    public void getFileName_differsForUrisWithEqualHashCodes() {
+        String first = "https://example.com/Aa.mp4";
+        String second = "https://example.com/BB.mp4";
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+
+        assertThat(TrickPlayThumbnailer.getFileName(Uri.parse(first)))
+                .isNotEqualTo(TrickPlayThumbnailer.getFileName(Uri.parse(second)));
+    }
+}
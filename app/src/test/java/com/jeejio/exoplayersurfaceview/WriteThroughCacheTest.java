@@ -0,0 +1,205 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Tests the cache configured by {@link DemoUtil#buildMediaDataSourceFactory}, against a local
+ * file-backed upstream.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class WriteThroughCacheTest {
+
+    private static final int SEGMENT_LENGTH = 100 * 1024;
+
+    private File tempDirectory;
+    private SimpleCache cache;
+    private CacheStats cacheStats;
+    private Random random;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirectory =
+                Util.createTempDirectory(
+                        ApplicationProvider.getApplicationContext(), "WriteThroughCacheTest");
+        cacheStats = new CacheStats();
+        random = new Random(0);
+    }
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.release();
+        }
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void writeThrough_replayIsServedFromCache() throws IOException {
+        DataSource.Factory factory =
+                buildFactory(DemoUtil.CACHE_MODE_WRITE_THROUGH, C.LENGTH_UNSET);
+        File segmentFile = writeSegment("segment0.ts");
+        byte[] expected = readFile(segmentFile);
+
+        assertThat(readToEnd(factory, segmentFile)).isEqualTo(expected);
+        // With the upstream gone, only the cache can serve the replay.
+        assertThat(segmentFile.delete()).isTrue();
+        assertThat(readToEnd(factory, segmentFile)).isEqualTo(expected);
+
+        assertThat(cacheStats.getHitCount()).isEqualTo(1);
+        assertThat(cacheStats.getCachedBytesRead()).isEqualTo(SEGMENT_LENGTH);
+    }
+
+    @Test
+    public void readOnly_doesNotWriteToCache() throws IOException {
+        DataSource.Factory factory =
+                buildFactory(DemoUtil.CACHE_MODE_READ_ONLY, C.LENGTH_UNSET);
+        File segmentFile = writeSegment("segment0.ts");
+
+        readToEnd(factory, segmentFile);
+
+        assertThat(cache.getCacheSpace()).isEqualTo(0);
+        assertThat(segmentFile.delete()).isTrue();
+        assertThrows(IOException.class, () -> readToEnd(factory, segmentFile));
+    }
+
+    @Test
+    public void writeThrough_evictsLeastRecentlyUsedSegment() throws IOException {
+        DataSource.Factory factory =
+                buildFactory(DemoUtil.CACHE_MODE_WRITE_THROUGH, SEGMENT_LENGTH * 5 / 2);
+        File segment0 = writeSegment("segment0.ts");
+        File segment1 = writeSegment("segment1.ts");
+        File segment2 = writeSegment("segment2.ts");
+
+        readToEnd(factory, segment0);
+        advanceClock();
+        readToEnd(factory, segment1);
+        advanceClock();
+        // Touching the first segment leaves the second as the least recently used.
+        readToEnd(factory, segment0);
+        advanceClock();
+        readToEnd(factory, segment2);
+
+        assertThat(isFullyCached(segment0)).isTrue();
+        assertThat(isFullyCached(segment1)).isFalse();
+        assertThat(isFullyCached(segment2)).isTrue();
+        assertThat(cache.getCacheSpace()).isAtMost(SEGMENT_LENGTH * 5 / 2);
+    }
+
+    @Test
+    public void writeThrough_doesNotCachePlaylists() throws IOException {
+        DataSource.Factory factory =
+                buildFactory(DemoUtil.CACHE_MODE_WRITE_THROUGH, C.LENGTH_UNSET);
+        File playlistFile = new File(tempDirectory, "live.m3u8");
+        String playlist = buildLivePlaylist(/* mediaSequence= */ 0, /* segmentCount= */ 3);
+        writeFile(playlistFile, playlist.getBytes(StandardCharsets.UTF_8));
+        readToEnd(factory, playlistFile);
+
+        // The live window moves on, and the playlist grows.
+        String updatedPlaylist =
+                buildLivePlaylist(/* mediaSequence= */ 1, /* segmentCount= */ 4);
+        writeFile(playlistFile, updatedPlaylist.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(new String(readToEnd(factory, playlistFile), StandardCharsets.UTF_8))
+                .isEqualTo(updatedPlaylist);
+        String key = Uri.fromFile(playlistFile).toString();
+        assertThat(cache.getCachedSpans(key)).isEmpty();
+        // A content length recorded for the playlist would cut the grown playlist short.
+        assertThat(ContentMetadata.getContentLength(cache.getContentMetadata(key)))
+                .isEqualTo(C.LENGTH_UNSET);
+        assertThat(cache.getCacheSpace()).isEqualTo(0);
+    }
+
+    private DataSource.Factory buildFactory(@DemoUtil.CacheMode int mode, long maxBytes) {
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(maxBytes),
+                        TestUtil.getInMemoryDatabaseProvider());
+        return DemoUtil.buildMediaDataSourceFactory(
+                new FileDataSource.Factory(), cache, mode, cacheStats);
+    }
+
+    private boolean isFullyCached(File file) {
+        return cache.isCached(Uri.fromFile(file).toString(), /* position= */ 0, SEGMENT_LENGTH);
+    }
+
+    private File writeSegment(String name) throws IOException {
+        byte[] data = new byte[SEGMENT_LENGTH];
+        random.nextBytes(data);
+        File file = new File(tempDirectory, name);
+        writeFile(file, data);
+        return file;
+    }
+
+    /** Moves the clock on, since the evictor orders spans by their last access time. */
+    private static void advanceClock() {
+        ShadowLooper.idleMainLooper(1, TimeUnit.SECONDS);
+    }
+
+    private static String buildLivePlaylist(int mediaSequence, int segmentCount) {
+        StringBuilder playlist =
+                new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-MEDIA-SEQUENCE:")
+                        .append(mediaSequence)
+                        .append('\n');
+        for (int i = 0; i < segmentCount; i++) {
+            playlist.append("#EXTINF:4.0,\nsegment").append(mediaSequence + i).append(".ts\n");
+        }
+        return playlist.toString();
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(data);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        return readToEnd(new FileDataSource.Factory(), file);
+    }
+
+    private static byte[] readToEnd(DataSource.Factory factory, File file) throws IOException {
+        DataSource dataSource = factory.createDataSource();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        try {
+            dataSource.open(new DataSpec(Uri.fromFile(file)));
+            int bytesRead;
+            while ((bytesRead = dataSource.read(buffer, 0, buffer.length))
+                    != C.RESULT_END_OF_INPUT) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            dataSource.close();
+        }
+        return output.toByteArray();
+    }
+}
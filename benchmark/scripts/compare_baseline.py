@@ -0,0 +1,52 @@
+#!/usr/bin/env python3
+"""Compares androidx.benchmark JSON results against a baseline.
+
+Usage: compare_baseline.py BASELINE.json CURRENT.json [--threshold 0.10]
+
+Exits with status 1 if any benchmark's median time regressed by more than the threshold.
+"""
+
+import argparse
+import json
+import sys
+
+
+def load_medians(path):
+    with open(path) as f:
+        report = json.load(f)
+    medians = {}
+    for benchmark in report.get("benchmarks", []):
+        name = "%s.%s" % (benchmark["className"].rsplit(".", 1)[-1], benchmark["name"])
+        metrics = benchmark.get("metrics", {})
+        if "timeNs" in metrics:
+            medians[name] = metrics["timeNs"]["median"]
+        elif "nanos" in benchmark:
+            medians[name] = benchmark["nanos"]
+    return medians
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=0.10)
+    args = parser.parse_args()
+
+    baseline = load_medians(args.baseline)
+    current = load_medians(args.current)
+    regressed = False
+    for name in sorted(current):
+        if name not in baseline:
+            print("%-60s %12d ns  (new)" % (name, current[name]))
+            continue
+        change = (current[name] - baseline[name]) / float(baseline[name])
+        flag = ""
+        if change > args.threshold:
+            flag = "  REGRESSION"
+            regressed = True
+        print("%-60s %12d ns  %+7.1f%%%s" % (name, current[name], change * 100, flag))
+    return 1 if regressed else 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,135 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.jeejio.exoplayersurfaceview.CacheIndexMaintenance;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmarks {@link CacheIndexMaintenance} on cache indexes of 10k, 100k and 1M cached spans:
+ * measuring the index, which is what a startup scan of it costs, and compacting it with {@code
+ * VACUUM}, which is how long the database stays locked against the index writes of cache loads.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheIndexMaintenanceBenchmark {
+
+    private static final String TABLE_NAME =
+            DatabaseProvider.TABLE_PREFIX + "CacheFileMetadataBenchmark";
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private ExoDatabaseProvider databaseProvider;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(ExoDatabaseProvider.DATABASE_NAME);
+        databaseProvider = new ExoDatabaseProvider(context);
+    }
+
+    @After
+    public void tearDown() {
+        databaseProvider.close();
+        context.deleteDatabase(ExoDatabaseProvider.DATABASE_NAME);
+    }
+
+    @Test
+    public void measure_10kSpans() {
+        benchmarkMeasure(10_000);
+    }
+
+    @Test
+    public void measure_100kSpans() {
+        benchmarkMeasure(100_000);
+    }
+
+    @Test
+    public void measure_1mSpans() {
+        benchmarkMeasure(1_000_000);
+    }
+
+    @Test
+    public void compact_10kSpans() {
+        benchmarkCompact(10_000);
+    }
+
+    @Test
+    public void compact_100kSpans() {
+        benchmarkCompact(100_000);
+    }
+
+    @Test
+    public void compact_1mSpans() {
+        benchmarkCompact(1_000_000);
+    }
+
+    private void benchmarkMeasure(int spanCount) {
+        populateIndex(spanCount);
+        // No fraction of free pages exceeds one, so this only measures.
+        CacheIndexMaintenance maintenance =
+                new CacheIndexMaintenance(databaseProvider, /* maxFreeFraction= */ 1f);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            maintenance.run();
+        }
+        assertEquals(spanCount, maintenance.getIndexRowCount());
+    }
+
+    private void benchmarkCompact(int spanCount) {
+        // Evicting every other span leaves the free pages that compaction reclaims. Only the first
+        // iteration has pages to reclaim, but VACUUM rewrites the whole database every time.
+        populateIndex(2 * spanCount);
+        databaseProvider
+                .getWritableDatabase()
+                .execSQL("DELETE FROM " + TABLE_NAME + " WHERE length % 2 = 1");
+        CacheIndexMaintenance maintenance =
+                new CacheIndexMaintenance(
+                        databaseProvider, CacheIndexMaintenance.DEFAULT_MAX_FREE_FRACTION);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            maintenance.compact();
+        }
+        assertEquals(spanCount, maintenance.getIndexRowCount());
+    }
+
+    /** Fills a cache file metadata table with {@code spanCount} rows, as SimpleCache would. */
+    private void populateIndex(int spanCount) {
+        SQLiteDatabase database = databaseProvider.getWritableDatabase();
+        database.execSQL(
+                "CREATE TABLE " + TABLE_NAME
+                        + " (name TEXT PRIMARY KEY NOT NULL,"
+                        + " length INTEGER NOT NULL,"
+                        + " last_touch_timestamp INTEGER NOT NULL)");
+        database.beginTransaction();
+        try (SQLiteStatement statement =
+                     database.compileStatement(
+                             "INSERT INTO " + TABLE_NAME + " VALUES (?, ?, ?)")) {
+            for (int i = 0; i < spanCount; i++) {
+                statement.bindString(1, (i % 1024) + "." + (i * 2_000_000L) + ".1.v3.exo");
+                statement.bindLong(2, i);
+                statement.bindLong(3, 1_600_000_000_000L + i);
+                statement.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+}
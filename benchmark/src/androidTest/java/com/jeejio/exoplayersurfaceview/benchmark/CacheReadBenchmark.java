@@ -0,0 +1,95 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.jeejio.exoplayersurfaceview.DemoUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+
+/**
+ * Benchmarks reading a fully cached segment through the {@link CacheDataSource} that {@link
+ * DemoUtil#buildCacheDataSourceFactory} builds over a {@link SimpleCache}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheReadBenchmark {
+
+    private static final int SEGMENT_LENGTH = 1024 * 1024;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private File tempDirectory;
+    private SimpleCache cache;
+    private CacheDataSource.Factory cacheDataSourceFactory;
+    private DataSpec dataSpec;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        tempDirectory = Util.createTempDirectory(context, "CacheReadBenchmark");
+        File segmentFile = new File(tempDirectory, "segment.ts");
+        byte[] data = new byte[SEGMENT_LENGTH];
+        new Random(0).nextBytes(data);
+        try (FileOutputStream output = new FileOutputStream(segmentFile)) {
+            output.write(data);
+        }
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(4 * SEGMENT_LENGTH),
+                        new ExoDatabaseProvider(context));
+        cacheDataSourceFactory =
+                DemoUtil.buildCacheDataSourceFactory(
+                        new FileDataSource.Factory(),
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        /* eventListener= */ null);
+        dataSpec = new DataSpec(Uri.fromFile(segmentFile));
+        new CacheWriter(
+                        cacheDataSourceFactory.createDataSource(),
+                        dataSpec,
+                        /* allowShortContent= */ false,
+                        /* temporaryBuffer= */ null,
+                        /* progressListener= */ null)
+                .cache();
+    }
+
+    @After
+    public void tearDown() {
+        cache.release();
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void readCachedSegment() throws Exception {
+        byte[] buffer = new byte[32 * 1024];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            CacheDataSource dataSource = cacheDataSourceFactory.createDataSource();
+            dataSource.open(dataSpec);
+            while (dataSource.read(buffer, 0, buffer.length) != C.RESULT_END_OF_INPUT) {}
+            dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.jeejio.exoplayersurfaceview.CoalescingDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks N readers loading the same segment at once from an origin with 100 ms of latency and
+ * 2 MB/s per connection, each through its own upstream and through {@link CoalescingDataSource}.
+ * Besides the time, the bytes the origin served per iteration are logged, which is what coalescing
+ * saves.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CoalescingBenchmark {
+
+    private static final String TAG = "CoalescingBenchmark";
+    private static final int SEGMENT_LENGTH = 1024 * 1024;
+    private static final long LATENCY_MS = 100;
+    private static final long BYTES_PER_SECOND_PER_CONNECTION = 2 * 1024 * 1024;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private LatencyOrigin origin;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        origin = new LatencyOrigin(SEGMENT_LENGTH, LATENCY_MS, BYTES_PER_SECOND_PER_CONNECTION);
+        origin.start();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        origin.shutdown();
+    }
+
+    @Test
+    public void independent_4Readers() throws Exception {
+        long originBytes =
+                benchmarkReaders(
+                        new DefaultHttpDataSourceFactory("benchmark"), /* readerCount= */ 4);
+        assertEquals(4L * SEGMENT_LENGTH, originBytes);
+    }
+
+    @Test
+    public void coalesced_2Readers() throws Exception {
+        benchmarkCoalescedReaders(/* readerCount= */ 2);
+    }
+
+    @Test
+    public void coalesced_4Readers() throws Exception {
+        benchmarkCoalescedReaders(/* readerCount= */ 4);
+    }
+
+    @Test
+    public void coalesced_8Readers() throws Exception {
+        benchmarkCoalescedReaders(/* readerCount= */ 8);
+    }
+
+    private void benchmarkCoalescedReaders(int readerCount) throws Exception {
+        CoalescingDataSource.Factory factory =
+                new CoalescingDataSource.Factory(new DefaultHttpDataSourceFactory("benchmark"));
+        long originBytes = benchmarkReaders(factory, readerCount);
+        // Readers that start within the origin's latency all share the first reader's load.
+        assertTrue(originBytes < (long) readerCount * SEGMENT_LENGTH);
+        Log.i(TAG, readerCount + " readers: " + factory);
+    }
+
+    /** Returns the mean number of bytes the origin served per iteration. */
+    private long benchmarkReaders(DataSource.Factory factory, int readerCount) throws Exception {
+        // Open-ended, as the player requests segments.
+        DataSpec dataSpec = new DataSpec(origin.getUri());
+        List<Future<Long>> futures = new ArrayList<>(readerCount);
+        long iterationCount = 0;
+        origin.resetCounters();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int i = 0; i < readerCount; i++) {
+                futures.add(executor.submit(() -> readAll(factory.createDataSource(), dataSpec)));
+            }
+            for (Future<Long> future : futures) {
+                assertEquals(SEGMENT_LENGTH, (long) future.get());
+            }
+            futures.clear();
+            iterationCount++;
+        }
+        long originBytes = origin.getBytesServed() / iterationCount;
+        Log.i(TAG, readerCount + " readers: " + originBytes + " origin bytes per iteration");
+        return originBytes;
+    }
+
+    private static long readAll(DataSource dataSource, DataSpec dataSpec) throws Exception {
+        byte[] buffer = new byte[32 * 1024];
+        long bytesRead = 0;
+        try {
+            dataSource.open(dataSpec);
+            int result;
+            while ((result = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                bytesRead += result;
+            }
+        } finally {
+            dataSource.close();
+        }
+        return bytesRead;
+    }
+}
@@ -0,0 +1,184 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+import com.jeejio.exoplayersurfaceview.CachingHlsPlaylistParserFactory;
+import com.jeejio.exoplayersurfaceview.DemoUtil;
+import com.jeejio.exoplayersurfaceview.ManifestCache;
+import com.jeejio.exoplayersurfaceview.ManifestDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Benchmarks a cold and a warm startup: loading and parsing a live media playlist and reading its
+ * first segment, as the player does before its first frame, from a local origin with a fixed
+ * latency. A cold startup finds the manifest and media caches empty. A warm one revalidates the
+ * stored playlist, reuses its parsed form and reads the segment from the media cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ColdWarmStartupBenchmark {
+
+    private static final long LATENCY_MS = 20;
+    private static final String ETAG = "\"v1\"";
+    private static final int SEGMENT_COUNT = 500;
+    private static final int SEGMENT_LENGTH = 256 * 1024;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private MockWebServer server;
+    private File tempDirectory;
+    private SimpleCache cache;
+    private DataSource.Factory httpDataSourceFactory;
+    private DataSource.Factory mediaDataSourceFactory;
+    private byte[] buffer;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        StringBuilder playlist =
+                new StringBuilder(
+                        "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n"
+                                + "#EXT-X-MEDIA-SEQUENCE:1000\n");
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            playlist.append("#EXTINF:4.000,\nsegment").append(1000 + i).append(".ts\n");
+        }
+        byte[] segment = new byte[SEGMENT_LENGTH];
+        new Random(0).nextBytes(segment);
+        server = new MockWebServer();
+        server.setDispatcher(new OriginDispatcher(playlist.toString(), segment));
+        server.start();
+        tempDirectory = Util.createTempDirectory(context, "ColdWarmStartupBenchmark");
+        cache =
+                new SimpleCache(
+                        new File(tempDirectory, "media"),
+                        DemoUtil.buildCacheEvictor(4 * SEGMENT_LENGTH),
+                        new ExoDatabaseProvider(context));
+        httpDataSourceFactory = new DefaultHttpDataSourceFactory("ColdWarmStartupBenchmark");
+        mediaDataSourceFactory =
+                DemoUtil.buildCacheDataSourceFactory(
+                        httpDataSourceFactory,
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        /* eventListener= */ null);
+        buffer = new byte[32 * 1024];
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.release();
+        Util.recursiveDelete(tempDirectory);
+        server.shutdown();
+    }
+
+    @Test
+    public void coldStartup() throws IOException {
+        File manifestDirectory = new File(tempDirectory, "manifests");
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            Util.recursiveDelete(manifestDirectory);
+            cache.removeResource(getUri("segment1000.ts").toString());
+            ManifestCache manifestCache =
+                    new ManifestCache(manifestDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+            state.resumeTiming();
+            startUp(manifestCache);
+        }
+    }
+
+    @Test
+    public void warmStartup() throws IOException {
+        ManifestCache manifestCache =
+                new ManifestCache(
+                        new File(tempDirectory, "manifests"),
+                        ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+        startUp(manifestCache);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            startUp(manifestCache);
+        }
+    }
+
+    /** Loads and parses the playlist, then reads its first segment in full. */
+    private void startUp(ManifestCache manifestCache) throws IOException {
+        ManifestDataSource dataSource =
+                new ManifestDataSource.Factory(
+                                mediaDataSourceFactory, httpDataSourceFactory, manifestCache)
+                        .createDataSource();
+        HlsMediaPlaylist playlist =
+                (HlsMediaPlaylist)
+                        ParsingLoadable.load(
+                                dataSource,
+                                new CachingHlsPlaylistParserFactory(manifestCache)
+                                        .createPlaylistParser(),
+                                new DataSpec(getUri("live.m3u8")),
+                                C.DATA_TYPE_MANIFEST);
+        Uri segmentUri =
+                Uri.parse(UriUtil.resolve(playlist.baseUri, playlist.segments.get(0).url));
+        dataSource.open(new DataSpec(segmentUri));
+        try {
+            while (dataSource.read(buffer, 0, buffer.length) != C.RESULT_END_OF_INPUT) {}
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    private Uri getUri(String path) {
+        return Uri.parse(server.url("/" + path).toString());
+    }
+
+    /** Serves the playlist with an ETag, honouring If-None-Match, and every segment alike. */
+    private static final class OriginDispatcher extends Dispatcher {
+
+        private final String playlist;
+        private final byte[] segment;
+
+        public OriginDispatcher(String playlist, byte[] segment) {
+            this.playlist = playlist;
+            this.segment = segment;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            MockResponse response =
+                    new MockResponse().setHeadersDelay(LATENCY_MS, TimeUnit.MILLISECONDS);
+            if ("/live.m3u8".equals(request.getPath())) {
+                response.setHeader("ETag", ETAG);
+                return ETAG.equals(request.getHeader("If-None-Match"))
+                        ? response.setResponseCode(304)
+                        : response.setBody(playlist);
+            }
+            return response.setBody(new Buffer().write(segment));
+        }
+    }
+}
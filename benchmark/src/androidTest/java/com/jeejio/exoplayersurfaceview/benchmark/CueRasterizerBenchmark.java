@@ -0,0 +1,108 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.text.Cue;
+import com.jeejio.exoplayersurfaceview.CueRasterizer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmarks the per-frame cost of laying out two-line styled subtitles with {@link
+ * CueRasterizer} in a 1080p view, at different rates of cue change. Each iteration is one frame at
+ * 60 fps; the cues are laid out only on frames where they change, as {@code SubtitleOverlayView}
+ * does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CueRasterizerBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    /** The number of distinct cues cycled through, more than fit in the bitmap cache. */
+    private static final int DISTINCT_CUE_COUNT = 64;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void cueChangeEveryFrame() {
+        benchmarkCueChanges(/* framesPerChange= */ 1);
+    }
+
+    @Test
+    public void cueChangeEveryTenFrames() {
+        benchmarkCueChanges(/* framesPerChange= */ 10);
+    }
+
+    @Test
+    public void cueChangeEverySecond() {
+        benchmarkCueChanges(/* framesPerChange= */ 60);
+    }
+
+    @Test
+    public void unchangedCuesRelaidOut() {
+        // As on a resize of the same size, or a cue list re-sent with the same instances.
+        CueRasterizer cueRasterizer = new CueRasterizer();
+        List<Cue> cues = buildCues(/* index= */ 0);
+        cueRasterizer.layOut(cues, WIDTH, HEIGHT);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            cueRasterizer.layOut(cues, WIDTH, HEIGHT);
+        }
+    }
+
+    private void benchmarkCueChanges(int framesPerChange) {
+        CueRasterizer cueRasterizer = new CueRasterizer();
+        List<List<Cue>> cueLists = new ArrayList<>(DISTINCT_CUE_COUNT);
+        for (int i = 0; i < DISTINCT_CUE_COUNT; i++) {
+            cueLists.add(buildCues(i));
+        }
+        int frame = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            if (frame % framesPerChange == 0) {
+                cueRasterizer.layOut(
+                        cueLists.get((frame / framesPerChange) % DISTINCT_CUE_COUNT), WIDTH, HEIGHT);
+            }
+            frame++;
+        }
+    }
+
+    /** Builds a styled bottom cue and a positioned top cue, as a WebVTT decoder would. */
+    private static List<Cue> buildCues(int index) {
+        SpannableString text =
+                new SpannableString("Subtitle line " + index + "\nwith a second, styled line");
+        text.setSpan(
+                new StyleSpan(Typeface.ITALIC), 0, 8, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        text.setSpan(
+                new ForegroundColorSpan(Color.YELLOW),
+                text.length() - 11,
+                text.length(),
+                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        Cue bottomCue = new Cue.Builder().setText(text).build();
+        Cue topCue =
+                new Cue.Builder()
+                        .setText("Speaker " + index)
+                        .setLine(0.1f, Cue.LINE_TYPE_FRACTION)
+                        .setLineAnchor(Cue.ANCHOR_TYPE_START)
+                        .setPosition(0.1f)
+                        .setPositionAnchor(Cue.ANCHOR_TYPE_START)
+                        .setSize(0.4f)
+                        .build();
+        return Arrays.asList(topCue, bottomCue);
+    }
+}
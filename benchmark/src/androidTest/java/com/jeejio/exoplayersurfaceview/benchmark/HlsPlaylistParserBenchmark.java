@@ -0,0 +1,76 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/** Benchmarks parsing master and live media playlists of the shape the app plays. */
+@RunWith(AndroidJUnit4.class)
+public class HlsPlaylistParserBenchmark {
+
+    private static final Uri MASTER_URI = Uri.parse("http://example.com/live/master.m3u8");
+    private static final Uri MEDIA_URI = Uri.parse("http://example.com/live/720p.m3u8");
+    private static final int SEGMENT_COUNT = 500;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private byte[] masterPlaylist;
+    private byte[] mediaPlaylist;
+
+    @Before
+    public void setUp() {
+        StringBuilder master = new StringBuilder("#EXTM3U\n");
+        int[] heights = {240, 360, 480, 720, 1080};
+        for (int height : heights) {
+            master.append("#EXT-X-STREAM-INF:BANDWIDTH=")
+                    .append(height * 4000)
+                    .append(",RESOLUTION=")
+                    .append(height * 16 / 9)
+                    .append('x')
+                    .append(height)
+                    .append(",CODECS=\"avc1.64001f,mp4a.40.2\"\n")
+                    .append(height)
+                    .append("p.m3u8\n");
+        }
+        masterPlaylist = master.toString().getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder media =
+                new StringBuilder(
+                        "#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:4\n"
+                                + "#EXT-X-MEDIA-SEQUENCE:1000\n");
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            media.append("#EXTINF:4.000,\nsegment").append(1000 + i).append(".ts\n");
+        }
+        mediaPlaylist = media.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void parseMasterPlaylist() throws Exception {
+        HlsPlaylistParser parser = new HlsPlaylistParser();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            parser.parse(MASTER_URI, new ByteArrayInputStream(masterPlaylist));
+        }
+    }
+
+    @Test
+    public void parseMediaPlaylist() throws Exception {
+        HlsPlaylistParser parser = new HlsPlaylistParser();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            parser.parse(MEDIA_URI, new ByteArrayInputStream(mediaPlaylist));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.net.Uri;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * A local HTTP origin serving one resource of random bytes, with a fixed latency before each
+ * response and a bandwidth cap per connection. Byte ranges are supported, and the requests and
+ * bytes served are counted.
+ */
+/* package */ final class LatencyOrigin {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final long THROTTLE_PERIOD_MS = 10;
+
+    private final byte[] data;
+    private final long latencyMs;
+    private final long bytesPerSecondPerConnection;
+    private final MockWebServer server;
+    private final AtomicInteger requestCount;
+    private final AtomicLong bytesServed;
+
+    /**
+     * @param length The length of the resource, in bytes.
+     * @param latencyMs The delay before the headers of each response, in milliseconds.
+     * @param bytesPerSecondPerConnection The bandwidth of each connection, in bytes per second.
+     */
+    public LatencyOrigin(int length, long latencyMs, long bytesPerSecondPerConnection) {
+        data = new byte[length];
+        new Random(0).nextBytes(data);
+        this.latencyMs = latencyMs;
+        this.bytesPerSecondPerConnection = bytesPerSecondPerConnection;
+        server = new MockWebServer();
+        server.setDispatcher(new RangeDispatcher());
+        requestCount = new AtomicInteger();
+        bytesServed = new AtomicLong();
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /** Returns the URI of the resource. */
+    public Uri getUri() {
+        return Uri.parse(server.url("/media.mp4").toString());
+    }
+
+    public int getLength() {
+        return data.length;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** Returns the number of body bytes in the responses the origin has sent. */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    public void resetCounters() {
+        requestCount.set(0);
+        bytesServed.set(0);
+    }
+
+    private final class RangeDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            requestCount.incrementAndGet();
+            int start = 0;
+            int end = data.length - 1;
+            MockResponse response = new MockResponse();
+            String range = request.getHeader("Range");
+            Matcher matcher = range == null ? null : RANGE_PATTERN.matcher(range);
+            if (matcher != null && matcher.matches()) {
+                start = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                }
+                response.setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            }
+            int length = end - start + 1;
+            bytesServed.addAndGet(length);
+            return response
+                    .setHeader("Accept-Ranges", "bytes")
+                    .setBody(new Buffer().write(data, start, length))
+                    .setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS)
+                    .throttleBody(
+                            bytesPerSecondPerConnection * THROTTLE_PERIOD_MS / 1000,
+                            THROTTLE_PERIOD_MS,
+                            TimeUnit.MILLISECONDS);
+        }
+    }
+}
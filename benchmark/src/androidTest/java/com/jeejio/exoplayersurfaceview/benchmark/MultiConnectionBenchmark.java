@@ -0,0 +1,85 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultHttpDataSourceFactory;
+import com.jeejio.exoplayersurfaceview.MultiConnectionDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmarks loading a segment through {@link MultiConnectionDataSource} from an origin with
+ * 100 ms of latency and 2 MB/s per connection, with and without splitting it across connections.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MultiConnectionBenchmark {
+
+    private static final int SEGMENT_LENGTH = 3 * 1024 * 1024;
+    private static final long LATENCY_MS = 100;
+    private static final long BYTES_PER_SECOND_PER_CONNECTION = 2 * 1024 * 1024;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private LatencyOrigin origin;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        origin = new LatencyOrigin(SEGMENT_LENGTH, LATENCY_MS, BYTES_PER_SECOND_PER_CONNECTION);
+        origin.start();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        origin.shutdown();
+    }
+
+    @Test
+    public void singleConnection() throws Exception {
+        benchmarkLoad(/* maxParallelRanges= */ 1);
+    }
+
+    @Test
+    public void defaultParallelRanges() throws Exception {
+        benchmarkLoad(MultiConnectionDataSource.Factory.DEFAULT_MAX_PARALLEL_RANGES);
+    }
+
+    private void benchmarkLoad(int maxParallelRanges) throws Exception {
+        MultiConnectionDataSource.Factory factory =
+                new MultiConnectionDataSource.Factory(
+                                new DefaultHttpDataSourceFactory("benchmark"), executor)
+                        .setMaxParallelRanges(maxParallelRanges);
+        // Open-ended, as the player requests segments.
+        DataSpec dataSpec = new DataSpec(origin.getUri());
+        byte[] buffer = new byte[32 * 1024];
+        long bytesRead = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            DataSource dataSource = factory.createDataSource();
+            dataSource.open(dataSpec);
+            bytesRead = 0;
+            int result;
+            while ((result = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                bytesRead += result;
+            }
+            dataSource.close();
+        }
+        assertEquals(SEGMENT_LENGTH, bytesRead);
+    }
+}
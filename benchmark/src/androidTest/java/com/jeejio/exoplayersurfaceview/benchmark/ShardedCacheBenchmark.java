@@ -0,0 +1,154 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.jeejio.exoplayersurfaceview.DemoUtil;
+import com.jeejio.exoplayersurfaceview.ShardedCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmarks concurrent reads of cached segments by several threads, as when the player, the
+ * segment prefetcher and the preloader load at once, through a single {@link SimpleCache} and
+ * through a {@link ShardedCache}. Each iteration has every thread read its own set of small
+ * segments, so the cost is dominated by the cache's lock rather than by I/O.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShardedCacheBenchmark {
+
+    private static final int THREAD_COUNT = 4;
+    private static final int SEGMENTS_PER_THREAD = 16;
+    private static final int SEGMENT_LENGTH = 16 * 1024;
+    private static final int SHARD_COUNT = 4;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private File tempDirectory;
+    private ExecutorService executor;
+    private Cache cache;
+    private CacheDataSource.Factory cacheDataSourceFactory;
+    private List<DataSpec> dataSpecs;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        tempDirectory = Util.createTempDirectory(context, "ShardedCacheBenchmark");
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        Random random = new Random(0);
+        dataSpecs = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT * SEGMENTS_PER_THREAD; i++) {
+            File segmentFile = new File(tempDirectory, "segment" + i + ".ts");
+            byte[] data = new byte[SEGMENT_LENGTH];
+            random.nextBytes(data);
+            try (FileOutputStream output = new FileOutputStream(segmentFile)) {
+                output.write(data);
+            }
+            dataSpecs.add(new DataSpec(Uri.fromFile(segmentFile)));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (cache != null) {
+            cache.release();
+        }
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void concurrentReads_simpleCache() throws Exception {
+        setUpCache(
+                new SimpleCache(
+                        new File(tempDirectory, "cache"),
+                        DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                        new ExoDatabaseProvider(context)));
+        benchmarkConcurrentReads();
+    }
+
+    @Test
+    public void concurrentReads_shardedCache() throws Exception {
+        setUpCache(
+                new ShardedCache(
+                        new File(tempDirectory, "cache"),
+                        SHARD_COUNT,
+                        C.LENGTH_UNSET,
+                        new ExoDatabaseProvider(context)));
+        benchmarkConcurrentReads();
+    }
+
+    private void setUpCache(Cache cache) throws Exception {
+        this.cache = cache;
+        cacheDataSourceFactory =
+                DemoUtil.buildCacheDataSourceFactory(
+                        new FileDataSource.Factory(),
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        /* eventListener= */ null);
+        for (DataSpec dataSpec : dataSpecs) {
+            new CacheWriter(
+                            cacheDataSourceFactory.createDataSource(),
+                            dataSpec,
+                            /* allowShortContent= */ false,
+                            /* temporaryBuffer= */ null,
+                            /* progressListener= */ null)
+                    .cache();
+        }
+    }
+
+    private void benchmarkConcurrentReads() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(THREAD_COUNT);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                List<DataSpec> threadDataSpecs =
+                        dataSpecs.subList(i * SEGMENTS_PER_THREAD, (i + 1) * SEGMENTS_PER_THREAD);
+                futures.add(executor.submit(() -> readAll(threadDataSpecs)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            futures.clear();
+        }
+    }
+
+    private Void readAll(List<DataSpec> dataSpecs) throws Exception {
+        byte[] buffer = new byte[4 * 1024];
+        for (DataSpec dataSpec : dataSpecs) {
+            CacheDataSource dataSource = cacheDataSourceFactory.createDataSource();
+            dataSource.open(dataSpec);
+            while (dataSource.read(buffer, 0, buffer.length) != C.RESULT_END_OF_INPUT) {}
+            dataSource.close();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,196 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.jeejio.exoplayersurfaceview.DemoUtil;
+import com.jeejio.exoplayersurfaceview.ManifestCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmarks how long the main thread is blocked by the startup initialisers that {@link
+ * DemoUtil#initializeAsync} runs: opening the database and building the download cache, which
+ * waits for the scan of its index and directory, and reading a stored playlist from the manifest
+ * cache. Each iteration runs on the main thread, against a populated cache, so its time is the
+ * time the main thread is blocked.
+ *
+ * <p>Run serially on the main thread, the main thread waits for the sum of the initialisers.
+ * Started in parallel on background threads, as {@code initializeAsync} does, it waits only for the
+ * slowest of them, and for none at all if they finish before it needs them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBlockingBenchmark {
+
+    private static final int CACHED_SEGMENT_COUNT = 200;
+    private static final int SEGMENT_LENGTH = 16 * 1024;
+    private static final int INIT_THREAD_COUNT = 2;
+    private static final Uri PLAYLIST_URI = Uri.parse("https://example.com/live.m3u8");
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private File tempDirectory;
+    private File cacheDirectory;
+    private File manifestDirectory;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        tempDirectory = Util.createTempDirectory(context, "StartupBlockingBenchmark");
+        cacheDirectory = new File(tempDirectory, "cache");
+        manifestDirectory = new File(tempDirectory, "manifests");
+        executor = Executors.newFixedThreadPool(INIT_THREAD_COUNT);
+
+        File segmentFile = new File(tempDirectory, "segment.ts");
+        byte[] data = new byte[SEGMENT_LENGTH];
+        new Random(0).nextBytes(data);
+        try (FileOutputStream output = new FileOutputStream(segmentFile)) {
+            output.write(data);
+        }
+        ExoDatabaseProvider databaseProvider = new ExoDatabaseProvider(context);
+        SimpleCache cache =
+                new SimpleCache(
+                        cacheDirectory,
+                        DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                        databaseProvider);
+        CacheDataSource.Factory cacheDataSourceFactory =
+                DemoUtil.buildCacheDataSourceFactory(
+                        new FileDataSource.Factory(),
+                        cache,
+                        DemoUtil.CACHE_MODE_WRITE_THROUGH,
+                        /* eventListener= */ null);
+        for (int i = 0; i < CACHED_SEGMENT_COUNT; i++) {
+            new CacheWriter(
+                            cacheDataSourceFactory.createDataSource(),
+                            new DataSpec.Builder()
+                                    .setUri(Uri.fromFile(segmentFile))
+                                    .setKey("segment" + i)
+                                    .build(),
+                            /* allowShortContent= */ false,
+                            /* temporaryBuffer= */ null,
+                            /* progressListener= */ null)
+                    .cache();
+        }
+        cache.release();
+        databaseProvider.close();
+        new ManifestCache(manifestDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES)
+                .put(
+                        new ManifestCache.Entry(
+                                PLAYLIST_URI,
+                                PLAYLIST_URI,
+                                /* eTag= */ "\"v1\"",
+                                /* lastModified= */ null,
+                                Util.getUtf8Bytes("#EXTM3U\n#EXT-X-TARGETDURATION:4\n"),
+                                System.currentTimeMillis()));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void serialInitialization() {
+        Startup[] startup = new Startup[1];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            instrumentation.runOnMainSync(
+                    () -> {
+                        startup[0] = new Startup();
+                        startup[0].buildDownloadCache();
+                        startup[0].readManifestCache();
+                    });
+            state.pauseTiming();
+            startup[0].release();
+            state.resumeTiming();
+        }
+    }
+
+    @Test
+    public void parallelInitialization() {
+        Startup[] startup = new Startup[1];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            instrumentation.runOnMainSync(
+                    () -> {
+                        startup[0] = new Startup();
+                        Future<?> downloadCache = executor.submit(startup[0]::buildDownloadCache);
+                        Future<?> manifestCache = executor.submit(startup[0]::readManifestCache);
+                        // What the first initializePlayer waits for, had it been called right away.
+                        await(downloadCache);
+                        await(manifestCache);
+                    });
+            state.pauseTiming();
+            startup[0].release();
+            state.resumeTiming();
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The instances one startup builds, as {@link DemoUtil}'s initialisers build them. */
+    private final class Startup {
+
+        private ExoDatabaseProvider databaseProvider;
+        private SimpleCache downloadCache;
+
+        public void buildDownloadCache() {
+            databaseProvider = new ExoDatabaseProvider(context);
+            databaseProvider.getWritableDatabase();
+            downloadCache =
+                    new SimpleCache(
+                            cacheDirectory,
+                            DemoUtil.buildCacheEvictor(C.LENGTH_UNSET),
+                            databaseProvider);
+            // Blocks until the cache has read its index and scanned its directory.
+            downloadCache.getKeys();
+        }
+
+        public void readManifestCache() {
+            new ManifestCache(manifestDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES)
+                    .get(PLAYLIST_URI);
+        }
+
+        public void release() {
+            downloadCache.release();
+            databaseProvider.close();
+        }
+    }
+}
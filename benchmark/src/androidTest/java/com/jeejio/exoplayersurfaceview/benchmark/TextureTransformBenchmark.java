@@ -0,0 +1,47 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jeejio.exoplayersurfaceview.TextureRotationTransform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks the {@link TextureRotationTransform} that {@code ExoPlayerView} updates on every layout
+ * pass of a rotated {@code TextureView}, both when the layout is unchanged and when it changes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TextureTransformBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int ROTATION = 90;
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void unchangedLayout() {
+        TextureRotationTransform transform = new TextureRotationTransform();
+        transform.update(WIDTH, HEIGHT, ROTATION);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            transform.update(WIDTH, HEIGHT, ROTATION);
+        }
+    }
+
+    @Test
+    public void changedLayout() {
+        TextureRotationTransform transform = new TextureRotationTransform();
+        int width = WIDTH;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            // Alternates between two widths, so that every update recomputes the transform.
+            width = width == WIDTH ? WIDTH - 1 : WIDTH;
+            transform.update(width, HEIGHT, ROTATION);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.exoplayer2.util.Util;
+import com.jeejio.exoplayersurfaceview.ThumbnailIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks the seek preview lookups of a {@link ThumbnailIndex} of default layout, as a scrub
+ * makes one per move event, against decoding a JPEG thumbnail of the same size, as an index of
+ * compressed thumbnails or a sprite sheet would need to. Also benchmarks storing a thumbnail and
+ * opening an index, which scans the slots for the thumbnail count.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThumbnailIndexBenchmark {
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private File tempDirectory;
+    private File indexFile;
+    private ThumbnailIndex thumbnailIndex;
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        tempDirectory = Util.createTempDirectory(context, "ThumbnailIndexBenchmark");
+        indexFile = new File(tempDirectory, "index");
+        thumbnailIndex = openIndex();
+        bitmap = thumbnailIndex.createBitmap();
+    }
+
+    @After
+    public void tearDown() {
+        thumbnailIndex.close();
+        Util.recursiveDelete(tempDirectory);
+    }
+
+    @Test
+    public void getFilledSlot() {
+        fillSlots(/* step= */ 1);
+        int slot = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            thumbnailIndex.get(getPositionMs(slot), bitmap);
+            slot = (slot + 1) % ThumbnailIndex.DEFAULT_CAPACITY;
+        }
+        assertTrue(thumbnailIndex.get(getPositionMs(slot), bitmap));
+    }
+
+    @Test
+    public void getEmptySlotFromNeighbour() {
+        fillSlots(/* step= */ 2);
+        int slot = 1;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            thumbnailIndex.get(getPositionMs(slot), bitmap);
+            slot = (slot + 2) % ThumbnailIndex.DEFAULT_CAPACITY;
+        }
+        assertTrue(thumbnailIndex.get(getPositionMs(slot), bitmap));
+    }
+
+    @Test
+    public void decodeJpegThumbnail() {
+        Bitmap thumbnail =
+                Bitmap.createBitmap(
+                        ThumbnailIndex.DEFAULT_WIDTH,
+                        ThumbnailIndex.DEFAULT_HEIGHT,
+                        Bitmap.Config.ARGB_8888);
+        thumbnail.eraseColor(Color.DKGRAY);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, /* quality= */ 80, output);
+        byte[] jpeg = output.toByteArray();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        // Decoded into the same bitmap each time, as the index copies into one.
+        options.inBitmap = bitmap;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        }
+    }
+
+    @Test
+    public void putThumbnail() {
+        bitmap.eraseColor(Color.DKGRAY);
+        int slot = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            thumbnailIndex.put(getPositionMs(slot), bitmap);
+            slot = (slot + 1) % ThumbnailIndex.DEFAULT_CAPACITY;
+        }
+    }
+
+    @Test
+    public void openFilledIndex() throws IOException {
+        fillSlots(/* step= */ 1);
+        thumbnailIndex.flush();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            openIndex();
+        }
+    }
+
+    private ThumbnailIndex openIndex() throws IOException {
+        return new ThumbnailIndex(
+                indexFile,
+                ThumbnailIndex.DEFAULT_WIDTH,
+                ThumbnailIndex.DEFAULT_HEIGHT,
+                ThumbnailIndex.DEFAULT_INTERVAL_MS,
+                ThumbnailIndex.DEFAULT_CAPACITY);
+    }
+
+    /** Fills every {@code step}th slot, from the first, with a thumbnail of its own shade. */
+    private void fillSlots(int step) {
+        for (int slot = 0; slot < ThumbnailIndex.DEFAULT_CAPACITY; slot += step) {
+            int shade = slot % 256;
+            bitmap.eraseColor(Color.rgb(shade, shade, shade));
+            thumbnailIndex.put(getPositionMs(slot), bitmap);
+        }
+    }
+
+    private static long getPositionMs(int slot) {
+        return slot * ThumbnailIndex.DEFAULT_INTERVAL_MS;
+    }
+}
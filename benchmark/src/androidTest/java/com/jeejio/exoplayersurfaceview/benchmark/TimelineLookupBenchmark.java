@@ -0,0 +1,47 @@
+package com.jeejio.exoplayersurfaceview.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.SinglePeriodTimeline;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Benchmarks the period lookups that {@code ExoPlayerView.ComponentListener.onTracksChanged} makes
+ * on every track change: fetching the current period's uid, then resolving it back to a window.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimelineLookupBenchmark {
+
+    @Rule public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void periodUidLookup() {
+        Timeline timeline =
+                new SinglePeriodTimeline(
+                        /* durationUs= */ C.TIME_UNSET,
+                        /* isSeekable= */ true,
+                        /* isDynamic= */ true,
+                        /* isLive= */ true,
+                        /* manifest= */ null,
+                        MediaItem.fromUri("http://example.com/live/master.m3u8"));
+        Timeline.Period period = new Timeline.Period();
+        int windowIndex = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Object uid = timeline.getPeriod(/* periodIndex= */ 0, period, /* setIds= */ true).uid;
+            int periodIndex = timeline.getIndexOfPeriod(uid);
+            windowIndex = timeline.getPeriod(periodIndex, period).windowIndex;
+        }
+        assertNotEquals(C.INDEX_UNSET, windowIndex);
+    }
+}
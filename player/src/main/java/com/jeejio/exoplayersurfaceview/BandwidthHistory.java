@@ -0,0 +1,207 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.SQLException;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists per-network throughput estimates in the {@link DatabaseProvider} database, so that a new
+ * session's first rendition is chosen from the bandwidth seen on that network type last time rather
+ * than from a cold default.
+ *
+ * <p>Estimates are an exponentially weighted moving average of the raw throughput of each transfer
+ * the meter samples, weighted by the transfer's duration, rather than of the meter's own estimate,
+ * which is already smoothed. They are written back on {@link #flush()}, on a background thread. The
+ * network type is tracked from a connectivity callback, so that samples delivered on the main
+ * thread do not query it through a binder call each.
+ */
+public final class BandwidthHistory implements BandwidthMeter.EventListener {
+
+    private static final String TAG = "BandwidthHistory";
+
+    private static final String TABLE_NAME = DatabaseProvider.TABLE_PREFIX + "BandwidthHistory";
+    private static final String COLUMN_NETWORK_TYPE = "network_type";
+    private static final String COLUMN_BITRATE_ESTIMATE = "bitrate_estimate";
+    private static final String COLUMN_SAMPLE_COUNT = "sample_count";
+    private static final String SQL_CREATE_TABLE_IF_NOT_EXISTS =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                    + COLUMN_NETWORK_TYPE + " INTEGER PRIMARY KEY NOT NULL,"
+                    + COLUMN_BITRATE_ESTIMATE + " INTEGER NOT NULL,"
+                    + COLUMN_SAMPLE_COUNT + " INTEGER NOT NULL)";
+
+    /** The transfer time after which a sample makes up half of the moving average. */
+    private static final double HALF_LIFE_MS = 2_000;
+
+    private final Context context;
+    private final DatabaseProvider databaseProvider;
+    private final ExecutorService writeExecutor;
+    /** Estimates by network type, as {@code long[] {bitrateEstimate, sampleCount}}. */
+    private final SparseArray<long[]> estimates;
+
+    private boolean dirty;
+    @C.NetworkType private volatile int networkType;
+
+    /**
+     * Loads the history from {@code databaseProvider}. This reads from the database, so should not
+     * be called on the main thread where avoidable.
+     */
+    public BandwidthHistory(Context context, DatabaseProvider databaseProvider) {
+        this.context = context.getApplicationContext();
+        this.databaseProvider = databaseProvider;
+        writeExecutor = Executors.newSingleThreadExecutor();
+        estimates = new SparseArray<>();
+        networkType = Util.getNetworkType(this.context);
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) this.context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(new NetworkTypeCallback());
+        }
+        load();
+    }
+
+    /**
+     * Returns a {@link DefaultBandwidthMeter} seeded with the stored estimates for every known
+     * network type, and registered to feed its samples back into this history.
+     */
+    public DefaultBandwidthMeter buildBandwidthMeter() {
+        DefaultBandwidthMeter.Builder builder = new DefaultBandwidthMeter.Builder(context);
+        synchronized (this) {
+            for (int i = 0; i < estimates.size(); i++) {
+                builder.setInitialBitrateEstimate(estimates.keyAt(i), estimates.valueAt(i)[0]);
+            }
+        }
+        DefaultBandwidthMeter bandwidthMeter = builder.build();
+        bandwidthMeter.addEventListener(new Handler(Looper.getMainLooper()), this);
+        return bandwidthMeter;
+    }
+
+    /**
+     * Returns the stored bitrate estimate for {@code networkType}, or {@link C#LENGTH_UNSET} if there
+     * is none.
+     */
+    public synchronized long getBitrateEstimate(@C.NetworkType int networkType) {
+        long[] estimate = estimates.get(networkType);
+        return estimate == null ? C.LENGTH_UNSET : estimate[0];
+    }
+
+    /** Writes the current estimates to the database on a background thread. */
+    public void flush() {
+        final SparseArray<long[]> snapshot;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            snapshot = new SparseArray<>(estimates.size());
+            for (int i = 0; i < estimates.size(); i++) {
+                snapshot.put(estimates.keyAt(i), estimates.valueAt(i).clone());
+            }
+        }
+        writeExecutor.execute(() -> write(snapshot));
+    }
+
+    // BandwidthMeter.EventListener implementation
+
+    @Override
+    public void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+        @C.NetworkType int networkType = this.networkType;
+        if (elapsedMs <= 0
+                || networkType == C.NETWORK_TYPE_UNKNOWN
+                || networkType == C.NETWORK_TYPE_OFFLINE) {
+            return;
+        }
+        long sampleBitrate = bytesTransferred * 8000 / elapsedMs;
+        synchronized (this) {
+            long[] estimate = estimates.get(networkType);
+            if (estimate == null) {
+                estimates.put(networkType, new long[] {sampleBitrate, 1});
+            } else {
+                double weight = 1 - Math.pow(2, -elapsedMs / HALF_LIFE_MS);
+                estimate[0] = (long) (estimate[0] + weight * (sampleBitrate - estimate[0]));
+                estimate[1]++;
+            }
+            dirty = true;
+        }
+    }
+
+    private void load() {
+        try {
+            SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+            writableDatabase.execSQL(SQL_CREATE_TABLE_IF_NOT_EXISTS);
+            try (Cursor cursor =
+                         databaseProvider.getReadableDatabase().query(
+                                 TABLE_NAME,
+                                 new String[] {
+                                     COLUMN_NETWORK_TYPE, COLUMN_BITRATE_ESTIMATE, COLUMN_SAMPLE_COUNT
+                                 },
+                                 /* selection= */ null,
+                                 /* selectionArgs= */ null,
+                                 /* groupBy= */ null,
+                                 /* having= */ null,
+                                 /* orderBy= */ null)) {
+                synchronized (this) {
+                    while (cursor.moveToNext()) {
+                        estimates.put(
+                                cursor.getInt(0), new long[] {cursor.getLong(1), cursor.getLong(2)});
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to load bandwidth history", e);
+        }
+    }
+
+    private void write(SparseArray<long[]> snapshot) {
+        try {
+            SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
+            writableDatabase.beginTransactionNonExclusive();
+            try {
+                ContentValues values = new ContentValues();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    values.put(COLUMN_NETWORK_TYPE, snapshot.keyAt(i));
+                    values.put(COLUMN_BITRATE_ESTIMATE, snapshot.valueAt(i)[0]);
+                    values.put(COLUMN_SAMPLE_COUNT, snapshot.valueAt(i)[1]);
+                    writableDatabase.replaceOrThrow(TABLE_NAME, /* nullColumnHack= */ null, values);
+                }
+                writableDatabase.setTransactionSuccessful();
+            } finally {
+                writableDatabase.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to write bandwidth history", e);
+        }
+    }
+
+    /** Updates the network type on the connectivity thread whenever the default network changes. */
+    private final class NetworkTypeCallback extends ConnectivityManager.NetworkCallback {
+
+        @Override
+        public void onCapabilitiesChanged(
+                Network network, NetworkCapabilities networkCapabilities) {
+            networkType = Util.getNetworkType(context);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            networkType = Util.getNetworkType(context);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Starts playback from the cache when the segments it starts from are already there, so that the
+ * time to the first frame is bounded by the disk rather than the network.
+ *
+ * <p>{@link #start(Uri)} inspects the stored playlists in the background. If they are fresh enough
+ * that their startup segments are still in the live window, and those segments are all cached, the
+ * playlists are {@link ManifestCache#offerStartupEntry offered} to the {@link ManifestDataSource},
+ * which serves them to the player's first load without a request. In parallel, the stored master
+ * playlist is revalidated with a conditional request, which opens the connection and leaves the
+ * {@link ManifestCache} current. The player's next playlist refresh then moves it on to the live
+ * playlist, whose media sequence continues that of the stored one, so there is no discontinuity.
+ *
+ * <p>The media playlist checked is that of the first variant, which the player loads first.
+ */
+public final class CacheAwareStartup {
+
+    private static final String TAG = "CacheAwareStartup";
+
+    /** The number of segments from the live edge from which live playback starts. */
+    private static final int LIVE_START_SEGMENT_COUNT = 3;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final DataSource.Factory upstreamFactory;
+    private final CacheDataSource.Factory cacheDataSourceFactory;
+    private final ManifestCache manifestCache;
+    private final ExecutorService executor;
+
+    private volatile int cachedStartupSegmentCount;
+    private volatile int startupSegmentCount;
+    private volatile boolean startedFromCache;
+    private volatile long warmUpTimeMs;
+
+    /**
+     * @param upstreamFactory The factory for network connections, bypassing the cache.
+     * @param cacheDataSourceFactory The factory through which playback reads media.
+     * @param manifestCache The {@link ManifestCache} holding stored playlists, which playback must
+     *     load through a {@link ManifestDataSource}.
+     */
+    public CacheAwareStartup(
+            DataSource.Factory upstreamFactory,
+            CacheDataSource.Factory cacheDataSourceFactory,
+            ManifestCache manifestCache) {
+        this.upstreamFactory = upstreamFactory;
+        this.cacheDataSourceFactory = cacheDataSourceFactory;
+        this.manifestCache = manifestCache;
+        executor = Executors.newFixedThreadPool(2);
+        warmUpTimeMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Starts inspecting the cache and revalidating the stored playlist of {@code uri}, in the
+     * background. Must be called before the player is prepared, so that its first load of the
+     * playlist waits for the inspection.
+     */
+    public void start(Uri uri) {
+        cachedStartupSegmentCount = 0;
+        startupSegmentCount = 0;
+        startedFromCache = false;
+        warmUpTimeMs = C.TIME_UNSET;
+        FutureTask<Void> inspection = new FutureTask<>(() -> inspectCache(uri), null);
+        manifestCache.setPendingStartup(uri, inspection);
+        executor.execute(inspection);
+        executor.execute(() -> revalidate(uri, inspection));
+    }
+
+    /** Stops any background work. */
+    public void release() {
+        executor.shutdownNow();
+    }
+
+    /** Returns whether all of the segments the player starts from were found in the cache. */
+    public boolean isStartupCached() {
+        return startupSegmentCount > 0 && cachedStartupSegmentCount == startupSegmentCount;
+    }
+
+    /** Returns whether the stored playlists were offered for the player to start from. */
+    public boolean isStartedFromCache() {
+        return startedFromCache;
+    }
+
+    /** Returns how many of the segments the player starts from were found in the cache. */
+    public int getCachedStartupSegmentCount() {
+        return cachedStartupSegmentCount;
+    }
+
+    /**
+     * Returns the time taken by the revalidation request, in milliseconds, or {@link C#TIME_UNSET}
+     * if it has not completed.
+     */
+    public long getWarmUpTimeMs() {
+        return warmUpTimeMs;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CacheAwareStartup{cachedSegments=" + cachedStartupSegmentCount
+                + "/" + startupSegmentCount
+                + ", fromCache=" + startedFromCache
+                + ", warmUpMs=" + warmUpTimeMs
+                + "}";
+    }
+
+    /**
+     * Requests the playlist at {@code uri} conditionally on the stored validators, storing the body
+     * if it changed. This also opens the connection that the player's loads will reuse. The body is
+     * stored only once {@code inspection} is done with the stored one.
+     */
+    private void revalidate(Uri uri, Future<?> inspection) {
+        long startMs = SystemClock.elapsedRealtime();
+        @Nullable ManifestCache.Entry entry = manifestCache.get(uri);
+        Map<String, String> headers = new HashMap<>();
+        if (entry != null && entry.eTag != null) {
+            headers.put("If-None-Match", entry.eTag);
+        }
+        if (entry != null && entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+        DataSource dataSource = upstreamFactory.createDataSource();
+        DataSourceInputStream inputStream =
+                new DataSourceInputStream(
+                        dataSource,
+                        new DataSpec.Builder().setUri(uri).setHttpRequestHeaders(headers).build());
+        try {
+            byte[] body = Util.toByteArray(inputStream);
+            awaitQuietly(inspection);
+            @Nullable Uri resolvedUri = dataSource.getUri();
+            Map<String, List<String>> responseHeaders = dataSource.getResponseHeaders();
+            manifestCache.put(
+                    new ManifestCache.Entry(
+                            uri,
+                            resolvedUri != null ? resolvedUri : uri,
+                            getHeader(responseHeaders, "ETag"),
+                            getHeader(responseHeaders, "Last-Modified"),
+                            body,
+                            System.currentTimeMillis()));
+            warmUpTimeMs = SystemClock.elapsedRealtime() - startMs;
+        } catch (HttpDataSource.InvalidResponseCodeException e) {
+            if (e.responseCode == HTTP_NOT_MODIFIED) {
+                warmUpTimeMs = SystemClock.elapsedRealtime() - startMs;
+            } else {
+                Log.w(TAG, "Revalidation failed: " + uri, e);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Revalidation failed: " + uri, e);
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // The inspection is over either way.
+        }
+    }
+
+    private void inspectCache(Uri uri) {
+        try {
+            @Nullable ManifestCache.Entry entry = manifestCache.get(uri);
+            if (entry == null) {
+                return;
+            }
+            HlsPlaylist playlist = parse(entry);
+            @Nullable ManifestCache.Entry mediaEntry = entry;
+            if (playlist instanceof HlsMasterPlaylist) {
+                mediaEntry = manifestCache.get(HlsPlaylistLoader.getMediaPlaylistUri(uri, playlist));
+                if (mediaEntry == null) {
+                    return;
+                }
+            }
+            HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) parse(mediaEntry);
+            List<HlsMediaPlaylist.Segment> segments = mediaPlaylist.segments;
+            int firstIndex =
+                    mediaPlaylist.hasEndTag
+                            ? 0
+                            : Math.max(0, segments.size() - LIVE_START_SEGMENT_COUNT);
+            int lastIndex = Math.min(segments.size(), firstIndex + LIVE_START_SEGMENT_COUNT);
+            startupSegmentCount = lastIndex - firstIndex;
+            int cachedCount = 0;
+            long startupDurationUs = 0;
+            for (int i = firstIndex; i < lastIndex; i++) {
+                HlsMediaPlaylist.Segment segment = segments.get(i);
+                startupDurationUs += segment.durationUs;
+                if (isFullyCached(UriUtil.resolveToUri(mediaPlaylist.baseUri, segment.url))) {
+                    cachedCount++;
+                }
+            }
+            cachedStartupSegmentCount = cachedCount;
+            if (isStartupCached()
+                    && !Thread.currentThread().isInterrupted()
+                    && isFresh(mediaPlaylist, mediaEntry, startupDurationUs)) {
+                if (mediaEntry != entry) {
+                    manifestCache.offerStartupEntry(mediaEntry);
+                }
+                manifestCache.offerStartupEntry(entry);
+                startedFromCache = true;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to inspect stored playlist: " + uri, e);
+        }
+    }
+
+    /**
+     * Returns whether the startup segments of a stored live playlist are still in the live window,
+     * so that the refreshed playlist carries on from them.
+     */
+    private static boolean isFresh(
+            HlsMediaPlaylist mediaPlaylist, ManifestCache.Entry entry, long startupDurationUs) {
+        if (mediaPlaylist.hasEndTag) {
+            return true;
+        }
+        long ageMs = System.currentTimeMillis() - entry.storedAtMs;
+        return ageMs >= 0 && ageMs < C.usToMs(mediaPlaylist.durationUs - startupDurationUs);
+    }
+
+    private static HlsPlaylist parse(ManifestCache.Entry entry) throws IOException {
+        return new HlsPlaylistParser()
+                .parse(entry.resolvedUri, new ByteArrayInputStream(entry.body));
+    }
+
+    private boolean isFullyCached(Uri segmentUri) {
+        Cache cache = Assertions.checkNotNull(cacheDataSourceFactory.getCache());
+        String key =
+                cacheDataSourceFactory.getCacheKeyFactory().buildCacheKey(new DataSpec(segmentUri));
+        long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+        return contentLength != C.LENGTH_UNSET
+                && cache.isCached(key, /* position= */ 0, contentLength);
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,185 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Maintains the {@link DatabaseProvider} database that holds the cache index, and reports its size
+ * and open time.
+ *
+ * <p>Evicted spans leave free pages behind, so the database file only ever grows. {@link
+ * #runAsync()} counts the index rows and, once the free pages exceed a fraction of the file,
+ * compacts it with {@code VACUUM}, on a background thread. {@code VACUUM} holds the database's
+ * write lock until it completes, stalling the index writes of any cache load, so it should only be
+ * run while nothing is playing or downloading, such as when the playback session ends.
+ */
+public final class CacheIndexMaintenance {
+
+    /** The default fraction of free pages above which the database is compacted. */
+    public static final float DEFAULT_MAX_FREE_FRACTION = 0.25f;
+
+    private static final String TAG = "CacheIndexMaintenance";
+
+    private static final String SQL_SELECT_INDEX_TABLES =
+            "SELECT name FROM sqlite_master WHERE type = 'table' AND (name LIKE '"
+                    + DatabaseProvider.TABLE_PREFIX + "CacheIndex%' OR name LIKE '"
+                    + DatabaseProvider.TABLE_PREFIX + "CacheFileMetadata%')";
+
+    private final DatabaseProvider databaseProvider;
+    private final float maxFreeFraction;
+    private final ExecutorService executor;
+
+    private volatile long openTimeMs;
+    private volatile long databaseBytes;
+    private volatile long freeBytes;
+    private volatile long indexRowCount;
+    private volatile long lastCompactionTimeMs;
+    private volatile long reclaimedBytes;
+
+    /**
+     * @param databaseProvider The provider of the database holding the cache index.
+     * @param maxFreeFraction The fraction of free pages above which the database is compacted.
+     */
+    public CacheIndexMaintenance(DatabaseProvider databaseProvider, float maxFreeFraction) {
+        this.databaseProvider = databaseProvider;
+        this.maxFreeFraction = maxFreeFraction;
+        executor = Executors.newSingleThreadExecutor();
+        openTimeMs = C.TIME_UNSET;
+        lastCompactionTimeMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Opens the database, recording how long this takes the first time. Blocks, so should be
+     * called on a background thread.
+     */
+    public void openDatabase() {
+        long startTimeMs = SystemClock.elapsedRealtime();
+        try {
+            databaseProvider.getWritableDatabase();
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to open database", e);
+            return;
+        }
+        if (openTimeMs == C.TIME_UNSET) {
+            openTimeMs = SystemClock.elapsedRealtime() - startTimeMs;
+        }
+    }
+
+    /** Measures the index, and compacts the database if needed, on a background thread. */
+    public void runAsync() {
+        executor.execute(this::run);
+    }
+
+    /**
+     * Measures the index, and compacts the database if needed. Blocks, so should be called on a
+     * background thread.
+     */
+    public void run() {
+        try {
+            SQLiteDatabase database = databaseProvider.getWritableDatabase();
+            measure(database);
+            if (databaseBytes > 0 && (float) freeBytes / databaseBytes > maxFreeFraction) {
+                compact(database);
+            }
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to maintain cache index", e);
+        }
+    }
+
+    /**
+     * Measures the index and compacts the database whatever its free pages. Blocks, so should be
+     * called on a background thread.
+     */
+    public void compact() {
+        try {
+            SQLiteDatabase database = databaseProvider.getWritableDatabase();
+            measure(database);
+            compact(database);
+        } catch (SQLException e) {
+            Log.w(TAG, "Failed to compact cache index", e);
+        }
+    }
+
+    /** Returns the time the first {@link #openDatabase()} took, or {@link C#TIME_UNSET}. */
+    public long getOpenTimeMs() {
+        return openTimeMs;
+    }
+
+    /** Returns the size of the database file when last measured, in bytes. */
+    public long getDatabaseBytes() {
+        return databaseBytes;
+    }
+
+    /** Returns the number of rows in the cache index tables when last measured. */
+    public long getIndexRowCount() {
+        return indexRowCount;
+    }
+
+    /** Returns the time the last compaction took, or {@link C#TIME_UNSET} if there was none. */
+    public long getLastCompactionTimeMs() {
+        return lastCompactionTimeMs;
+    }
+
+    /** Returns the total number of bytes reclaimed by compaction. */
+    public long getReclaimedBytes() {
+        return reclaimedBytes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CacheIndexMaintenance{openMs=" + openTimeMs
+                + ", databaseBytes=" + databaseBytes
+                + ", freeBytes=" + freeBytes
+                + ", indexRows=" + indexRowCount
+                + ", lastCompactionMs=" + lastCompactionTimeMs
+                + ", reclaimedBytes=" + reclaimedBytes
+                + "}";
+    }
+
+    private void compact(SQLiteDatabase database) {
+        long bytesBefore = databaseBytes;
+        long startTimeMs = SystemClock.elapsedRealtime();
+        database.execSQL("VACUUM");
+        lastCompactionTimeMs = SystemClock.elapsedRealtime() - startTimeMs;
+        measure(database);
+        reclaimedBytes += Math.max(0, bytesBefore - databaseBytes);
+    }
+
+    private void measure(SQLiteDatabase database) {
+        long pageSize = queryLong(database, "PRAGMA page_size");
+        databaseBytes = pageSize * queryLong(database, "PRAGMA page_count");
+        freeBytes = pageSize * queryLong(database, "PRAGMA freelist_count");
+        List<String> tableNames = new ArrayList<>();
+        try (Cursor cursor =
+                     database.rawQuery(SQL_SELECT_INDEX_TABLES, /* selectionArgs= */ null)) {
+            while (cursor.moveToNext()) {
+                tableNames.add(cursor.getString(0));
+            }
+        }
+        long rowCount = 0;
+        for (String tableName : tableNames) {
+            rowCount += queryLong(database, "SELECT COUNT(*) FROM \"" + tableName + "\"");
+        }
+        indexRowCount = rowCount;
+    }
+
+    private static long queryLong(SQLiteDatabase database, String sql) {
+        try (Cursor cursor = database.rawQuery(sql, /* selectionArgs= */ null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.jeejio.exoplayersurfaceview;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and byte counters for a {@link CacheDataSource}.
+ *
+ * <p>A hit is counted each time a {@link CacheDataSource} is closed after serving bytes from the
+ * cache, and a miss each time a network transfer is started on the upstream. Counters are updated
+ * from the loader threads and may be read from any thread.
+ */
+public final class CacheStats implements CacheDataSource.EventListener, TransferListener {
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong ignoredCount;
+    private final AtomicLong cachedBytesRead;
+    private final AtomicLong upstreamBytesRead;
+    private volatile long cacheSizeBytes;
+
+    public CacheStats() {
+        hitCount = new AtomicLong();
+        missCount = new AtomicLong();
+        ignoredCount = new AtomicLong();
+        cachedBytesRead = new AtomicLong();
+        upstreamBytesRead = new AtomicLong();
+    }
+
+    /** Returns the number of reads that were served, at least partially, from the cache. */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** Returns the number of network transfers started on the upstream. */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** Returns the number of reads for which the cache was bypassed. */
+    public long getIgnoredCount() {
+        return ignoredCount.get();
+    }
+
+    /** Returns the total number of bytes read from the cache. */
+    public long getCachedBytesRead() {
+        return cachedBytesRead.get();
+    }
+
+    /** Returns the total number of bytes read from the upstream over the network. */
+    public long getUpstreamBytesRead() {
+        return upstreamBytesRead.get();
+    }
+
+    /** Returns the cache size reported with the most recent hit, in bytes. */
+    public long getCacheSizeBytes() {
+        return cacheSizeBytes;
+    }
+
+    /** Returns the fraction of bytes that were served from the cache, or 0 if nothing was read. */
+    public float getByteHitRatio() {
+        long cached = cachedBytesRead.get();
+        long total = cached + upstreamBytesRead.get();
+        return total == 0 ? 0f : (float) cached / total;
+    }
+
+    /** Resets all counters to zero. */
+    public void reset() {
+        hitCount.set(0);
+        missCount.set(0);
+        ignoredCount.set(0);
+        cachedBytesRead.set(0);
+        upstreamBytesRead.set(0);
+        cacheSizeBytes = 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", ignored=" + getIgnoredCount()
+                + ", cachedBytes=" + getCachedBytesRead()
+                + ", upstreamBytes=" + getUpstreamBytesRead()
+                + ", cacheSize=" + getCacheSizeBytes()
+                + "}";
+    }
+
+    // CacheDataSource.EventListener implementation
+
+    @Override
+    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+        this.cacheSizeBytes = cacheSizeBytes;
+        this.cachedBytesRead.addAndGet(cachedBytesRead);
+        hitCount.incrementAndGet();
+    }
+
+    @Override
+    public void onCacheIgnored(@CacheDataSource.CacheIgnoredReason int reason) {
+        ignoredCount.incrementAndGet();
+    }
+
+    // TransferListener implementation
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    }
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        if (isNetwork) {
+            missCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onBytesTransferred(
+            DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        if (isNetwork) {
+            upstreamBytesRead.addAndGet(bytesTransferred);
+        }
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+    }
+}
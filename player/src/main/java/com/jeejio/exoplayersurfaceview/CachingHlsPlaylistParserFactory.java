@@ -0,0 +1,66 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.source.hls.playlist.DefaultHlsPlaylistParserFactory;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParserFactory;
+import com.google.android.exoplayer2.upstream.ParsingLoadable;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link HlsPlaylistParserFactory} whose parsers return the playlist parsed earlier from the
+ * same body, as recorded by the {@link ManifestCache}, instead of parsing it again. The body is
+ * read in full and digested before it is parsed; hashing a playlist costs far less than parsing
+ * it.
+ */
+public final class CachingHlsPlaylistParserFactory implements HlsPlaylistParserFactory {
+
+    private final HlsPlaylistParserFactory parserFactory;
+    private final ManifestCache manifestCache;
+
+    public CachingHlsPlaylistParserFactory(ManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+        parserFactory = new DefaultHlsPlaylistParserFactory();
+    }
+
+    @Override
+    public ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser() {
+        return new CachingParser(parserFactory.createPlaylistParser());
+    }
+
+    @Override
+    public ParsingLoadable.Parser<HlsPlaylist> createPlaylistParser(
+            HlsMasterPlaylist masterPlaylist) {
+        return new CachingParser(parserFactory.createPlaylistParser(masterPlaylist));
+    }
+
+    private final class CachingParser implements ParsingLoadable.Parser<HlsPlaylist> {
+
+        private final ParsingLoadable.Parser<HlsPlaylist> parser;
+
+        public CachingParser(ParsingLoadable.Parser<HlsPlaylist> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public HlsPlaylist parse(Uri uri, InputStream inputStream) throws IOException {
+            byte[] body = Util.toByteArray(inputStream);
+            byte[] digest = ManifestCache.getDigest(body);
+            @Nullable Object parsed = manifestCache.getParsed(uri, digest);
+            if (parsed instanceof HlsPlaylist) {
+                return (HlsPlaylist) parsed;
+            }
+            HlsPlaylist playlist = parser.parse(uri, new ByteArrayInputStream(body));
+            manifestCache.putParsed(uri, digest, playlist);
+            return playlist;
+        }
+    }
+}
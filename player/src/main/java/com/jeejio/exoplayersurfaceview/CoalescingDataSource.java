@@ -0,0 +1,386 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DataSource} that shares one upstream load between concurrent requests for the same
+ * bytes, such as two players showing the same channel, or a player and a prefetcher.
+ *
+ * <p>The first request for a resource opens the upstream and buffers what it reads, up to a cap.
+ * Identical requests made while that prefix is still buffered attach to the load, however far it
+ * has got, replay the buffer from its start and then receive the bytes as they arrive. If the
+ * first request fails or is closed early, or its buffer reaches its cap, the attached requests
+ * continue from their own position with their own upstream, and later requests no longer attach.
+ * Only plain {@code GET} requests without extra request headers are coalesced.
+ */
+public final class CoalescingDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link CoalescingDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        /** The default limit of a load's buffer, in bytes. */
+        public static final int DEFAULT_MAX_BUFFER_BYTES = 8 * 1024 * 1024;
+
+        private final DataSource.Factory upstreamFactory;
+        private final int maxBufferBytes;
+        private final Map<String, InFlightLoad> inFlightLoads;
+        private final AtomicLong originBytes;
+        private final AtomicLong coalescedBytes;
+
+        /** @param upstreamFactory The factory for the upstream data sources. */
+        public Factory(DataSource.Factory upstreamFactory) {
+            this(upstreamFactory, DEFAULT_MAX_BUFFER_BYTES);
+        }
+
+        /**
+         * @param upstreamFactory The factory for the upstream data sources.
+         * @param maxBufferBytes The limit of a load's buffer, in bytes. Requests attached to the
+         *     load continue past it with their own upstream.
+         */
+        public Factory(DataSource.Factory upstreamFactory, int maxBufferBytes) {
+            Assertions.checkArgument(maxBufferBytes > 0);
+            this.upstreamFactory = upstreamFactory;
+            this.maxBufferBytes = maxBufferBytes;
+            inFlightLoads = new ConcurrentHashMap<>();
+            originBytes = new AtomicLong();
+            coalescedBytes = new AtomicLong();
+        }
+
+        @Override
+        public CoalescingDataSource createDataSource() {
+            return new CoalescingDataSource(upstreamFactory.createDataSource(), this);
+        }
+
+        /** Returns the number of bytes read from the upstream. */
+        public long getOriginBytes() {
+            return originBytes.get();
+        }
+
+        /** Returns the number of bytes served from another request's load. */
+        public long getCoalescedBytes() {
+            return coalescedBytes.get();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "CoalescingDataSource.Factory{inFlight=" + inFlightLoads.size()
+                    + ", originBytes=" + originBytes.get()
+                    + ", coalescedBytes=" + coalescedBytes.get()
+                    + "}";
+        }
+    }
+
+    /** The shared state of a load, guarded by its own monitor. */
+    private static final class InFlightLoad {
+
+        private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+        private final int maxBufferBytes;
+
+        @Nullable private byte[] data;
+        private int size;
+        private boolean opened;
+        private boolean finished;
+        private boolean abandoned;
+        private boolean capped;
+        private boolean joinable;
+        private int followerCount;
+        private long length;
+        @Nullable private Uri uri;
+        private Map<String, List<String>> responseHeaders;
+
+        public InFlightLoad(int maxBufferBytes) {
+            this.maxBufferBytes = maxBufferBytes;
+            joinable = true;
+            length = C.LENGTH_UNSET;
+            responseHeaders = Collections.emptyMap();
+        }
+
+        /**
+         * Attaches a request to the load, which then reads the buffer from its start. Only
+         * possible until the load is abandoned or its buffer reaches its cap.
+         */
+        public synchronized boolean tryJoin() {
+            if (!joinable) {
+                return false;
+            }
+            followerCount++;
+            return true;
+        }
+
+        public synchronized void leave() {
+            followerCount--;
+            if (followerCount == 0 && !joinable) {
+                // Nobody can read the buffer any more.
+                data = null;
+            }
+        }
+
+        public synchronized void onOpened(
+                long length, @Nullable Uri uri, Map<String, List<String>> responseHeaders) {
+            this.length = length;
+            this.uri = uri;
+            this.responseHeaders = responseHeaders;
+            opened = true;
+            notifyAll();
+        }
+
+        public synchronized void append(byte[] buffer, int offset, int bytesRead) {
+            if (capped) {
+                return;
+            }
+            if (bytesRead > maxBufferBytes - size) {
+                // Attached requests continue past the cap with their own upstream.
+                joinable = false;
+                capped = true;
+                if (followerCount == 0) {
+                    data = null;
+                }
+                notifyAll();
+                return;
+            }
+            int requiredLength = size + bytesRead;
+            if (data == null || requiredLength > data.length) {
+                long newLength;
+                if (data != null) {
+                    newLength = 2L * data.length;
+                } else {
+                    newLength = length == C.LENGTH_UNSET ? INITIAL_BUFFER_BYTES : length;
+                }
+                newLength = Math.min(Math.max(newLength, requiredLength), maxBufferBytes);
+                data =
+                        data == null
+                                ? new byte[(int) newLength]
+                                : Arrays.copyOf(data, (int) newLength);
+            }
+            System.arraycopy(buffer, offset, data, size, bytesRead);
+            size += bytesRead;
+            notifyAll();
+        }
+
+        public synchronized void onFinished() {
+            finished = true;
+            notifyAll();
+        }
+
+        public synchronized void abandon() {
+            joinable = false;
+            abandoned = true;
+            if (followerCount == 0) {
+                data = null;
+            }
+            notifyAll();
+        }
+
+        /** Waits until the load is opened, returning whether it was, rather than abandoned. */
+        public synchronized boolean awaitOpened() throws InterruptedIOException {
+            while (!opened && !abandoned) {
+                await();
+            }
+            return opened;
+        }
+
+        /**
+         * Copies bytes at {@code position}, waiting for them to arrive. Returns the number of bytes
+         * copied, {@link C#RESULT_END_OF_INPUT} at the end of the load, or {@link C#LENGTH_UNSET}
+         * if the load was abandoned or capped before reaching {@code position}.
+         */
+        public synchronized int read(long position, byte[] buffer, int offset, int readLength)
+                throws InterruptedIOException {
+            while (size <= position && !finished && !abandoned && !capped) {
+                await();
+            }
+            if (size > position) {
+                int bytesToCopy = (int) Math.min(readLength, size - position);
+                System.arraycopy(
+                        Util.castNonNull(data), (int) position, buffer, offset, bytesToCopy);
+                return bytesToCopy;
+            }
+            return finished && !capped ? C.RESULT_END_OF_INPUT : C.LENGTH_UNSET;
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private final DataSource upstream;
+    private final Factory factory;
+
+    @Nullable private DataSpec currentDataSpec;
+    @Nullable private String currentLoadKey;
+    @Nullable private InFlightLoad leadingLoad;
+    @Nullable private InFlightLoad followedLoad;
+    private long followedPosition;
+    private boolean upstreamOpened;
+
+    private CoalescingDataSource(DataSource upstream, Factory factory) {
+        this.upstream = upstream;
+        this.factory = factory;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentDataSpec = dataSpec;
+        if (dataSpec.httpMethod != DataSpec.HTTP_METHOD_GET
+                || !dataSpec.httpRequestHeaders.isEmpty()) {
+            return openUpstream(dataSpec);
+        }
+        String loadKey = getLoadKey(dataSpec);
+        InFlightLoad load = new InFlightLoad(factory.maxBufferBytes);
+        @Nullable InFlightLoad existingLoad = factory.inFlightLoads.putIfAbsent(loadKey, load);
+        if (existingLoad == null) {
+            currentLoadKey = loadKey;
+            leadingLoad = load;
+            long length;
+            try {
+                length = openUpstream(dataSpec);
+            } catch (IOException e) {
+                abandonLeadingLoad();
+                throw e;
+            }
+            load.onOpened(length, upstream.getUri(), upstream.getResponseHeaders());
+            return length;
+        }
+        if (existingLoad.tryJoin()) {
+            followedLoad = existingLoad;
+            followedPosition = 0;
+            if (existingLoad.awaitOpened()) {
+                return existingLoad.length;
+            }
+            leaveFollowedLoad();
+        }
+        return openUpstream(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+        if (followedLoad != null) {
+            int bytesRead = followedLoad.read(followedPosition, buffer, offset, readLength);
+            if (bytesRead != C.LENGTH_UNSET) {
+                if (bytesRead != C.RESULT_END_OF_INPUT) {
+                    followedPosition += bytesRead;
+                    factory.coalescedBytes.addAndGet(bytesRead);
+                }
+                return bytesRead;
+            }
+            // The load was abandoned, so continue from here with our own upstream.
+            leaveFollowedLoad();
+            openUpstream(Util.castNonNull(currentDataSpec).subrange(followedPosition));
+        }
+        int bytesRead;
+        try {
+            bytesRead = upstream.read(buffer, offset, readLength);
+        } catch (IOException e) {
+            abandonLeadingLoad();
+            throw e;
+        }
+        if (bytesRead != C.RESULT_END_OF_INPUT) {
+            factory.originBytes.addAndGet(bytesRead);
+        }
+        if (leadingLoad != null) {
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                leadingLoad.onFinished();
+            } else {
+                leadingLoad.append(buffer, offset, bytesRead);
+            }
+        }
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        if (followedLoad != null) {
+            return followedLoad.uri;
+        }
+        return upstreamOpened ? upstream.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        if (followedLoad != null) {
+            return followedLoad.responseHeaders;
+        }
+        return upstreamOpened ? upstream.getResponseHeaders() : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (leadingLoad != null) {
+                // Requests still attached continue with their own upstream.
+                abandonLeadingLoad();
+            }
+            if (followedLoad != null) {
+                leaveFollowedLoad();
+            }
+            if (upstreamOpened) {
+                upstream.close();
+            }
+        } finally {
+            upstreamOpened = false;
+            currentDataSpec = null;
+        }
+    }
+
+    private long openUpstream(DataSpec dataSpec) throws IOException {
+        upstreamOpened = true;
+        return upstream.open(dataSpec);
+    }
+
+    private void abandonLeadingLoad() {
+        if (leadingLoad != null) {
+            leadingLoad.abandon();
+            factory.inFlightLoads.remove(Util.castNonNull(currentLoadKey), leadingLoad);
+            leadingLoad = null;
+            currentLoadKey = null;
+        }
+    }
+
+    private void leaveFollowedLoad() {
+        if (followedLoad != null) {
+            followedLoad.leave();
+            followedLoad = null;
+        }
+    }
+
+    private static String getLoadKey(DataSpec dataSpec) {
+        return (dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString())
+                + '|' + dataSpec.position
+                + '|' + dataSpec.length;
+    }
+}
@@ -0,0 +1,256 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lays out subtitle cues and rasterizes text cues into bitmaps, for {@link SubtitleOverlayView} to
+ * draw without any layout work.
+ *
+ * <p>Cues are placed by their {@code line}, {@code position} and {@code size}, as in WebVTT and
+ * TTML; cues without a line are stacked up from the bottom. Text bitmaps are cached by the cue's
+ * text, with its styling spans, its alignment, line, position and size, and the view size, so
+ * that an equal cue decoded again as a new instance, as a refreshed live playlist or a seek back
+ * produces, is not laid out again. Not thread safe.
+ */
+public final class CueRasterizer {
+
+    /** A cue ready to draw: a bitmap and where to draw it. */
+    public static final class RenderedCue {
+
+        public final Bitmap bitmap;
+        public final Rect destination;
+
+        private RenderedCue(Bitmap bitmap, Rect destination) {
+            this.bitmap = bitmap;
+            this.destination = destination;
+        }
+    }
+
+    /** The fraction of the view height used as the text size. */
+    private static final float TEXT_SIZE_FRACTION = 0.0533f;
+    /** The fraction of the view width that text cues may span, unless the cue sets its own size. */
+    private static final float DEFAULT_WIDTH_FRACTION = 0.9f;
+    /** The fraction of the view height kept clear below the bottom cue. */
+    private static final float BOTTOM_PADDING_FRACTION = 0.08f;
+    private static final int BITMAP_CACHE_BYTES = 4 * 1024 * 1024;
+
+    private final LruCache<LayoutKey, Bitmap> bitmapCache;
+    private final TextPaint textPaint;
+
+    public CueRasterizer() {
+        bitmapCache =
+                new LruCache<LayoutKey, Bitmap>(BITMAP_CACHE_BYTES) {
+                    @Override
+                    protected int sizeOf(LayoutKey key, Bitmap value) {
+                        return value.getByteCount();
+                    }
+                };
+        textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(Color.WHITE);
+    }
+
+    /** Lays out {@code cues} in a view of the given size. */
+    public List<RenderedCue> layOut(List<Cue> cues, int width, int height) {
+        List<RenderedCue> renderedCues = new ArrayList<>(cues.size());
+        int stackBottom = height - (int) (height * BOTTOM_PADDING_FRACTION);
+        // Cues without a line stack upwards, the first cue ending up on top.
+        for (int i = cues.size() - 1; i >= 0; i--) {
+            Cue cue = cues.get(i);
+            @Nullable RenderedCue renderedCue =
+                    cue.bitmap != null
+                            ? placeBitmapCue(cue, cue.bitmap, width, height, stackBottom)
+                            : placeTextCue(cue, width, height, stackBottom);
+            if (renderedCue == null) {
+                continue;
+            }
+            if (cue.line == Cue.DIMEN_UNSET) {
+                stackBottom = renderedCue.destination.top;
+            }
+            renderedCues.add(0, renderedCue);
+        }
+        return renderedCues;
+    }
+
+    @Nullable
+    private RenderedCue placeTextCue(Cue cue, int width, int height, int stackBottom) {
+        @Nullable Bitmap bitmap = rasterize(cue, width, height);
+        if (bitmap == null) {
+            return null;
+        }
+        int boxWidth = bitmap.getWidth();
+        int boxHeight = bitmap.getHeight();
+        int left = getAnchoredStart(cue.position, cue.positionAnchor, width, boxWidth, 0.5f);
+        int top;
+        if (cue.line == Cue.DIMEN_UNSET) {
+            top = stackBottom - boxHeight;
+        } else if (cue.lineType == Cue.LINE_TYPE_NUMBER) {
+            // Line numbers count text lines from the top, or from the bottom if negative.
+            int lineHeight = Math.round(height * TEXT_SIZE_FRACTION * 1.2f);
+            top =
+                    cue.line >= 0
+                            ? Math.round(cue.line * lineHeight)
+                            : height + Math.round((cue.line + 1) * lineHeight) - boxHeight;
+        } else {
+            top = getAnchoredStart(cue.line, cue.lineAnchor, height, boxHeight, 1f);
+        }
+        return new RenderedCue(bitmap, clamp(left, top, boxWidth, boxHeight, width, height));
+    }
+
+    private static RenderedCue placeBitmapCue(
+            Cue cue, Bitmap bitmap, int width, int height, int stackBottom) {
+        int boxWidth =
+                cue.size == Cue.DIMEN_UNSET ? bitmap.getWidth() : Math.round(width * cue.size);
+        int boxHeight =
+                cue.bitmapHeight != Cue.DIMEN_UNSET
+                        ? Math.round(height * cue.bitmapHeight)
+                        : Math.round(boxWidth * ((float) bitmap.getHeight() / bitmap.getWidth()));
+        int left = getAnchoredStart(cue.position, cue.positionAnchor, width, boxWidth, 0.5f);
+        int top =
+                cue.line == Cue.DIMEN_UNSET
+                        ? stackBottom - boxHeight
+                        : getAnchoredStart(cue.line, cue.lineAnchor, height, boxHeight, 1f);
+        return new RenderedCue(bitmap, clamp(left, top, boxWidth, boxHeight, width, height));
+    }
+
+    /**
+     * Returns where a box of {@code boxSize} starts along a dimension of {@code size}, for a cue
+     * anchored at the fraction {@code fraction}, or at {@code defaultFraction} if unset.
+     */
+    private static int getAnchoredStart(
+            float fraction, @Cue.AnchorType int anchor, int size, int boxSize, float defaultFraction) {
+        if (fraction == Cue.DIMEN_UNSET) {
+            return Math.round(size * defaultFraction - boxSize * defaultFraction);
+        }
+        int anchorPosition = Math.round(size * fraction);
+        if (anchor == Cue.ANCHOR_TYPE_END) {
+            return anchorPosition - boxSize;
+        } else if (anchor == Cue.ANCHOR_TYPE_MIDDLE) {
+            return anchorPosition - boxSize / 2;
+        }
+        return anchorPosition;
+    }
+
+    /** Returns the box moved inside the view, as far as it fits. */
+    private static Rect clamp(int left, int top, int boxWidth, int boxHeight, int width, int height) {
+        left = Math.max(0, Math.min(left, width - boxWidth));
+        top = Math.max(0, Math.min(top, height - boxHeight));
+        return new Rect(left, top, left + boxWidth, top + boxHeight);
+    }
+
+    @Nullable
+    private Bitmap rasterize(Cue cue, int width, int height) {
+        if (cue.text == null || cue.text.length() == 0) {
+            return null;
+        }
+        float widthFraction = cue.size == Cue.DIMEN_UNSET ? DEFAULT_WIDTH_FRACTION : cue.size;
+        int maxWidth = (int) (width * widthFraction);
+        int textSize = (int) (height * TEXT_SIZE_FRACTION);
+        if (maxWidth <= 0 || textSize <= 0) {
+            return null;
+        }
+        LayoutKey key = new LayoutKey(cue, width, height);
+        @Nullable Bitmap bitmap = bitmapCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        textPaint.setTextSize(textSize);
+        textPaint.setShadowLayer(textSize / 8f, 0, 0, Color.BLACK);
+        StaticLayout layout =
+                StaticLayout.Builder.obtain(cue.text, 0, cue.text.length(), textPaint, maxWidth)
+                        .setAlignment(
+                                cue.textAlignment == null
+                                        ? Layout.Alignment.ALIGN_CENTER
+                                        : cue.textAlignment)
+                        .build();
+        int layoutWidth = 0;
+        for (int line = 0; line < layout.getLineCount(); line++) {
+            layoutWidth = Math.max(layoutWidth, (int) Math.ceil(layout.getLineWidth(line)));
+        }
+        if (layoutWidth == 0 || layout.getHeight() == 0) {
+            return null;
+        }
+        bitmap = Bitmap.createBitmap(maxWidth, layout.getHeight(), Bitmap.Config.ARGB_8888);
+        layout.draw(new Canvas(bitmap));
+        bitmapCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Identifies a text cue by the fields that lay it out, in a view of a size. Spanned text
+     * compares its spans as well as its characters.
+     */
+    private static final class LayoutKey {
+
+        private final CharSequence text;
+        @Nullable private final Layout.Alignment textAlignment;
+        private final float line;
+        @Cue.LineType private final int lineType;
+        @Cue.AnchorType private final int lineAnchor;
+        private final float position;
+        @Cue.AnchorType private final int positionAnchor;
+        private final float size;
+        private final int width;
+        private final int height;
+
+        public LayoutKey(Cue cue, int width, int height) {
+            text = Util.castNonNull(cue.text);
+            textAlignment = cue.textAlignment;
+            line = cue.line;
+            lineType = cue.lineType;
+            lineAnchor = cue.lineAnchor;
+            position = cue.position;
+            positionAnchor = cue.positionAnchor;
+            size = cue.size;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey other = (LayoutKey) obj;
+            return text.equals(other.text)
+                    && textAlignment == other.textAlignment
+                    && line == other.line
+                    && lineType == other.lineType
+                    && lineAnchor == other.lineAnchor
+                    && position == other.position
+                    && positionAnchor == other.positionAnchor
+                    && size == other.size
+                    && width == other.width
+                    && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = text.hashCode();
+            result = 31 * result + (textAlignment == null ? 0 : textAlignment.hashCode());
+            result = 31 * result + Float.floatToIntBits(line);
+            result = 31 * result + lineType;
+            result = 31 * result + lineAnchor;
+            result = 31 * result + Float.floatToIntBits(position);
+            result = 31 * result + positionAnchor;
+            result = 31 * result + Float.floatToIntBits(size);
+            result = 31 * result + width;
+            return 31 * result + height;
+        }
+    }
+}
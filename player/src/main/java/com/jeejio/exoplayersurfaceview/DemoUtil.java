@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.ext.cronet.CronetDataSourceFactory;
+import com.google.android.exoplayer2.ext.cronet.CronetEngineWrapper;
+import com.google.android.exoplayer2.offline.DownloadManager;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Assertions;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Utility methods for the demo app. */
+public final class DemoUtil {
+
+  public static final String DOWNLOAD_NOTIFICATION_CHANNEL_ID = "download_channel";
+
+  /**
+   * How streamed media interacts with the download cache. One of {@link #CACHE_MODE_READ_ONLY} or
+   * {@link #CACHE_MODE_WRITE_THROUGH}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({CACHE_MODE_READ_ONLY, CACHE_MODE_WRITE_THROUGH})
+  public @interface CacheMode {}
+  /** Streamed media is read from the cache when present, but never written to it. */
+  public static final int CACHE_MODE_READ_ONLY = 0;
+  /** Streamed media is written to the cache as it is loaded, so replays are served locally. */
+  public static final int CACHE_MODE_WRITE_THROUGH = 1;
+
+  /** The default size cap of the download cache, in bytes. */
+  public static final long DEFAULT_MAX_CACHE_BYTES = 512L * 1024 * 1024;
+  /** The default number of download cache shards. One shard is a plain {@link SimpleCache}. */
+  public static final int DEFAULT_CACHE_SHARD_COUNT = 1;
+  /** The default number of threads on which downloads run. */
+  public static final int DEFAULT_DOWNLOAD_THREAD_COUNT = 4;
+  /** The default maximum number of downloads run in parallel. */
+  public static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 2;
+
+  private static final String TAG = "DemoUtil";
+  private static final String DOWNLOAD_CONTENT_DIRECTORY = "downloads";
+  private static final String DOWNLOAD_SHARDS_DIRECTORY_PREFIX = "downloads_shards_";
+  private static final String QOE_LOG_FILE = "qoe.jsonl";
+  private static final String STARTUP_TRACE_FILE = "startup_trace.json";
+  private static final String MANIFEST_DIRECTORY = "manifests";
+  private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+  private static final int NETWORK_THREAD_COUNT = 4;
+  private static final int INIT_THREAD_COUNT = 3;
+
+  private static DataSource.Factory dataSourceFactory;
+  private static DataSource.Factory upstreamDataSourceFactory;
+  private static CacheDataSource.Factory prefetchDataSourceFactory;
+  private static HttpDataSource.Factory httpDataSourceFactory;
+  private static DatabaseProvider databaseProvider;
+  private static File downloadDirectory;
+  private static Cache downloadCache;
+  private static ExecutorService networkExecutor;
+  private static ExecutorService rangeLoaderExecutor;
+  private static PlayerPool playerPool;
+  private static BandwidthHistory bandwidthHistory;
+  private static DefaultBandwidthMeter bandwidthMeter;
+  private static QoeCollector qoeCollector;
+  private static DownloadManager downloadManager;
+  private static ThrottledDataSource.Factory downloadDataSourceFactory;
+  private static ManifestCache manifestCache;
+  private static HotSegmentCache hotSegmentCache;
+  private static CacheIndexMaintenance cacheIndexMaintenance;
+  private static final CacheStats cacheStats = new CacheStats();
+
+  // Each singleton has its own lock, so that a caller only waits for the initialisers it depends
+  // on. Initialisers take the locks of their dependencies, so the locks are acquired in dependency
+  // order and cannot deadlock.
+  private static final Object httpDataSourceFactoryLock = new Object();
+  private static final Object dataSourceFactoryLock = new Object();
+  private static final Object manifestCacheLock = new Object();
+  private static final Object prefetchDataSourceFactoryLock = new Object();
+  private static final Object downloadManagerLock = new Object();
+  private static final Object downloadDataSourceFactoryLock = new Object();
+  private static final Object bandwidthHistoryLock = new Object();
+  private static final Object bandwidthMeterLock = new Object();
+  private static final Object qoeCollectorLock = new Object();
+  private static final Object playerPoolLock = new Object();
+  private static final Object upstreamDataSourceFactoryLock = new Object();
+  private static final Object networkExecutorLock = new Object();
+  private static final Object rangeLoaderExecutorLock = new Object();
+  private static final Object downloadCacheLock = new Object();
+  private static final Object databaseProviderLock = new Object();
+  private static final Object downloadDirectoryLock = new Object();
+  private static final Object hotSegmentCacheLock = new Object();
+  private static final Object cacheIndexMaintenanceLock = new Object();
+
+  private static volatile @CacheMode int cacheMode = CACHE_MODE_WRITE_THROUGH;
+  private static volatile long maxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+  private static volatile int cacheShardCount = DEFAULT_CACHE_SHARD_COUNT;
+  private static volatile int downloadThreadCount = DEFAULT_DOWNLOAD_THREAD_COUNT;
+  private static volatile int maxParallelDownloads = DEFAULT_MAX_PARALLEL_DOWNLOADS;
+
+  /** Returns whether extension renderers should be used. */
+  public static boolean useExtensionRenderers() {
+    return false;
+  }
+
+  public static RenderersFactory buildRenderersFactory(
+          Context context, boolean preferExtensionRenderer) {
+    @DefaultRenderersFactory.ExtensionRendererMode
+    int extensionRendererMode =
+        useExtensionRenderers()
+            ? (preferExtensionRenderer
+                ? DefaultRenderersFactory.EXTENSION_RENDERER_MODE_PREFER
+                : DefaultRenderersFactory.EXTENSION_RENDERER_MODE_ON)
+            : DefaultRenderersFactory.EXTENSION_RENDERER_MODE_OFF;
+    return new DefaultRenderersFactory(context.getApplicationContext())
+        .setExtensionRendererMode(extensionRendererMode);
+  }
+
+  /**
+   * Sets how streamed media interacts with the download cache, and the size cap above which least
+   * recently used content is evicted. Must be called before {@link #initializeAsync(Context)} and
+   * the first call to {@link #getDataSourceFactory(Context)}. A {@code maxCacheBytes} of {@link
+   * C#LENGTH_UNSET} disables eviction.
+   */
+  public static void setCacheConfiguration(@CacheMode int mode, long maxCacheBytes) {
+    synchronized (dataSourceFactoryLock) {
+      synchronized (downloadCacheLock) {
+        if (dataSourceFactory != null || downloadCache != null) {
+          throw new IllegalStateException("Cache already initialized");
+        }
+        DemoUtil.cacheMode = mode;
+        DemoUtil.maxCacheBytes = maxCacheBytes;
+      }
+    }
+  }
+
+  /**
+   * Sets the number of {@link ShardedCache shards} the download cache is split into, so that
+   * concurrent loads of different content do not contend on one cache lock. Each shard count has
+   * its own directory, so content cached with another count is not found. Must be called before
+   * {@link #initializeAsync(Context)} and the first call to {@link #getDataSourceFactory(Context)},
+   * such as from the application's {@code configureDemoUtil()}.
+   */
+  public static void setCacheShardCount(int shardCount) {
+    Assertions.checkArgument(shardCount > 0);
+    synchronized (downloadCacheLock) {
+      if (downloadCache != null) {
+        throw new IllegalStateException("Cache already initialized");
+      }
+      DemoUtil.cacheShardCount = shardCount;
+    }
+  }
+
+  /**
+   * Sets the number of threads downloads run on, and how many of them run in parallel. Must be
+   * called before the first call to {@link #getDownloadManager(Context)}.
+   */
+  public static void setDownloadConfiguration(int threadCount, int maxParallelDownloads) {
+    Assertions.checkArgument(threadCount > 0 && maxParallelDownloads > 0);
+    synchronized (downloadManagerLock) {
+      if (downloadManager != null) {
+        throw new IllegalStateException("Download manager already initialized");
+      }
+      DemoUtil.downloadThreadCount = threadCount;
+      DemoUtil.maxParallelDownloads = maxParallelDownloads;
+    }
+  }
+
+  /**
+   * Starts the slow initialisers, namely the Cronet engine, the database, the download cache and
+   * the manifest cache, in parallel on background threads. A later getter that needs one of them
+   * only blocks until that initialiser completes. Should be called once, at application start.
+   */
+  public static void initializeAsync(Context context) {
+    Context applicationContext = context.getApplicationContext();
+    ExecutorService executor = Executors.newFixedThreadPool(INIT_THREAD_COUNT);
+    executor.execute(() -> getHttpDataSourceFactory(applicationContext));
+    executor.execute(
+        () -> {
+          getCacheIndexMaintenance(applicationContext).openDatabase();
+          getDownloadCache(applicationContext);
+        });
+    executor.execute(
+        () -> {
+          getManifestCache(applicationContext);
+          getBandwidthMeter(applicationContext);
+        });
+    // Lets the threads exit once the tasks complete.
+    executor.shutdown();
+  }
+
+  /** Returns the counters of the cache used by {@link #getDataSourceFactory(Context)}. */
+  public static CacheStats getCacheStats() {
+    return cacheStats;
+  }
+
+  /**
+   * Sets the {@link HttpDataSource.Factory} that every network request goes through, in place of
+   * Cronet, such as one that routes requests through a debugging proxy. Must be called before
+   * {@link #initializeAsync(Context)} and the first call to any getter that loads from the network,
+   * such as from the application's {@code configureDemoUtil()}. Tests build their own stack with
+   * {@link #buildUpstreamDataSourceFactory} instead, as the singletons outlive a test.
+   */
+  public static void setHttpDataSourceFactory(HttpDataSource.Factory httpDataSourceFactory) {
+    synchronized (httpDataSourceFactoryLock) {
+      if (DemoUtil.httpDataSourceFactory != null) {
+        throw new IllegalStateException("HTTP data source factory already initialized");
+      }
+      DemoUtil.httpDataSourceFactory = httpDataSourceFactory;
+    }
+  }
+
+  public static HttpDataSource.Factory getHttpDataSourceFactory(Context context) {
+    synchronized (httpDataSourceFactoryLock) {
+      if (httpDataSourceFactory == null) {
+        context = context.getApplicationContext();
+        long startTimeNs = StartupTrace.begin();
+        CronetEngineWrapper cronetEngineWrapper = new CronetEngineWrapper(context);
+        StartupTrace.end(StartupTrace.SPAN_CRONET_ENGINE, startTimeNs);
+        httpDataSourceFactory =
+            new CronetDataSourceFactory(cronetEngineWrapper, getNetworkExecutor());
+      }
+      return httpDataSourceFactory;
+    }
+  }
+
+  /** Returns a {@link DataSource.Factory}. */
+  public static DataSource.Factory getDataSourceFactory(Context context) {
+    synchronized (dataSourceFactoryLock) {
+      if (dataSourceFactory == null) {
+        context = context.getApplicationContext();
+        dataSourceFactory =
+            buildDataSourceFactory(
+                getUpstreamDataSourceFactory(context),
+                getDownloadCache(context),
+                cacheMode,
+                getHotSegmentCache(),
+                getManifestCache(context),
+                cacheStats);
+      }
+      return dataSourceFactory;
+    }
+  }
+
+  /**
+   * Returns the {@link ManifestCache} used by {@link #getDataSourceFactory(Context)}, persisted in
+   * the download directory.
+   */
+  public static ManifestCache getManifestCache(Context context) {
+    synchronized (manifestCacheLock) {
+      if (manifestCache == null) {
+        File manifestDirectory = new File(getDownloadDirectory(context), MANIFEST_DIRECTORY);
+        long startTimeNs = StartupTrace.begin();
+        manifestCache =
+            new ManifestCache(manifestDirectory, ManifestCache.DEFAULT_MAX_MEMORY_BYTES);
+        StartupTrace.end(StartupTrace.SPAN_MANIFEST_CACHE, startTimeNs);
+      }
+      return manifestCache;
+    }
+  }
+
+  /**
+   * Returns the in-memory tier in front of the download cache, used by {@link
+   * #getDataSourceFactory(Context)}.
+   */
+  public static HotSegmentCache getHotSegmentCache() {
+    synchronized (hotSegmentCacheLock) {
+      if (hotSegmentCache == null) {
+        hotSegmentCache = new HotSegmentCache();
+      }
+      return hotSegmentCache;
+    }
+  }
+
+  /** Returns the {@link CacheIndexMaintenance} of the database holding the cache index. */
+  public static CacheIndexMaintenance getCacheIndexMaintenance(Context context) {
+    synchronized (cacheIndexMaintenanceLock) {
+      if (cacheIndexMaintenance == null) {
+        cacheIndexMaintenance =
+            new CacheIndexMaintenance(
+                getDatabaseProvider(context), CacheIndexMaintenance.DEFAULT_MAX_FREE_FRACTION);
+      }
+      return cacheIndexMaintenance;
+    }
+  }
+
+  /**
+   * Returns a {@link CacheDataSource.Factory} that always writes to the download cache, whatever
+   * the configured {@link CacheMode}. Used to write segments ahead of the player; manifests must be
+   * loaded through {@link #getUpstreamDataSourceFactory(Context)}.
+   */
+  public static CacheDataSource.Factory getPrefetchDataSourceFactory(
+      Context context) {
+    synchronized (prefetchDataSourceFactoryLock) {
+      if (prefetchDataSourceFactory == null) {
+        context = context.getApplicationContext();
+        prefetchDataSourceFactory =
+            buildCacheDataSourceFactory(
+                getUpstreamDataSourceFactory(context),
+                getDownloadCache(context),
+                CACHE_MODE_WRITE_THROUGH,
+                /* eventListener= */ null);
+      }
+      return prefetchDataSourceFactory;
+    }
+  }
+
+  /**
+   * Returns the {@link DownloadManager}, which downloads into the same cache that playback reads
+   * from. Download state is kept in the {@link #getDatabaseProvider(Context) database}, so
+   * interrupted downloads resume from the segments already cached.
+   */
+  public static DownloadManager getDownloadManager(Context context) {
+    synchronized (downloadManagerLock) {
+      if (downloadManager == null) {
+        context = context.getApplicationContext();
+        downloadManager =
+            buildDownloadManager(
+                context,
+                getDatabaseProvider(context),
+                getDownloadCache(context),
+                getDownloadDataSourceFactory(context));
+      }
+      return downloadManager;
+    }
+  }
+
+  /**
+   * Returns whether no download is in progress. A download manager not yet built counts as idle,
+   * and is not built by this call. Must be called on the main thread.
+   */
+  public static boolean isDownloadManagerIdle() {
+    synchronized (downloadManagerLock) {
+      return downloadManager == null || downloadManager.isIdle();
+    }
+  }
+
+  /**
+   * Builds a {@link DownloadManager} with the {@link #setDownloadConfiguration configured} thread
+   * count and parallelism.
+   */
+  /* package */ static DownloadManager buildDownloadManager(
+      Context context,
+      DatabaseProvider databaseProvider,
+      Cache cache,
+      DataSource.Factory upstreamFactory) {
+    DownloadManager downloadManager =
+        new DownloadManager(
+            context,
+            databaseProvider,
+            cache,
+            upstreamFactory,
+            Executors.newFixedThreadPool(downloadThreadCount));
+    downloadManager.setMaxParallelDownloads(maxParallelDownloads);
+    return downloadManager;
+  }
+
+  /**
+   * Limits the combined bandwidth used by downloads, in bytes per second. {@link C#LENGTH_UNSET}
+   * removes the limit.
+   */
+  public static void setDownloadBandwidthLimit(Context context, long maxBytesPerSecond) {
+    getDownloadDataSourceFactory(context).setMaxBytesPerSecond(maxBytesPerSecond);
+  }
+
+  private static ThrottledDataSource.Factory getDownloadDataSourceFactory(Context context) {
+    synchronized (downloadDataSourceFactoryLock) {
+      if (downloadDataSourceFactory == null) {
+        downloadDataSourceFactory =
+            new ThrottledDataSource.Factory(getHttpDataSourceFactory(context));
+      }
+      return downloadDataSourceFactory;
+    }
+  }
+
+  /** Returns the persisted per-network {@link BandwidthHistory}. */
+  public static BandwidthHistory getBandwidthHistory(Context context) {
+    synchronized (bandwidthHistoryLock) {
+      if (bandwidthHistory == null) {
+        context = context.getApplicationContext();
+        bandwidthHistory = new BandwidthHistory(context, getDatabaseProvider(context));
+      }
+      return bandwidthHistory;
+    }
+  }
+
+  /**
+   * Returns a {@link DefaultBandwidthMeter} whose initial estimate comes from the {@link
+   * BandwidthHistory} of the current network type.
+   */
+  public static DefaultBandwidthMeter getBandwidthMeter(Context context) {
+    synchronized (bandwidthMeterLock) {
+      if (bandwidthMeter == null) {
+        bandwidthMeter = getBandwidthHistory(context).buildBandwidthMeter();
+      }
+      return bandwidthMeter;
+    }
+  }
+
+  /**
+   * Returns the {@link QoeCollector} shared by the app, which exports to a JSON-lines file in the
+   * download directory.
+   */
+  public static QoeCollector getQoeCollector(Context context) {
+    synchronized (qoeCollectorLock) {
+      if (qoeCollector == null) {
+        context = context.getApplicationContext();
+        qoeCollector =
+            new QoeCollector(
+                new JsonLinesFileSink(new File(getDownloadDirectory(context), QOE_LOG_FILE)));
+      }
+      return qoeCollector;
+    }
+  }
+
+  /** Returns the file that {@link StartupTrace} output is written to, in the download directory. */
+  public static File getStartupTraceFile(Context context) {
+    return new File(getDownloadDirectory(context), STARTUP_TRACE_FILE);
+  }
+
+  /** Returns the directory that {@link ThumbnailIndex} files are kept in. */
+  public static File getThumbnailDirectory(Context context) {
+    return new File(getDownloadDirectory(context), THUMBNAIL_DIRECTORY);
+  }
+
+  /** Returns the {@link PlayerPool} shared by the app. Must be called on the main thread. */
+  public static PlayerPool getPlayerPool(Context context) {
+    synchronized (playerPoolLock) {
+      if (playerPool == null) {
+        playerPool = new PlayerPool(context.getApplicationContext());
+      }
+      return playerPool;
+    }
+  }
+
+  /**
+   * Returns a {@link DataSource.Factory} that bypasses the download cache. Concurrent requests for
+   * the same bytes share one load.
+   */
+  public static DataSource.Factory getUpstreamDataSourceFactory(Context context) {
+    synchronized (upstreamDataSourceFactoryLock) {
+      if (upstreamDataSourceFactory == null) {
+        context = context.getApplicationContext();
+        upstreamDataSourceFactory =
+            buildUpstreamDataSourceFactory(
+                context, getHttpDataSourceFactory(context), getRangeLoaderExecutor(), cacheStats);
+      }
+      return upstreamDataSourceFactory;
+    }
+  }
+
+  /**
+   * Builds the {@link DataSource.Factory} that {@link #getDataSourceFactory(Context)} returns, from
+   * the given parts rather than the singletons, so that tests can run playback through the same
+   * stack against their own origin and cache.
+   */
+  /* package */ static DataSource.Factory buildDataSourceFactory(
+      DataSource.Factory upstreamFactory,
+      Cache cache,
+      @CacheMode int mode,
+      HotSegmentCache hotSegmentCache,
+      ManifestCache manifestCache,
+      @Nullable CacheDataSource.EventListener eventListener) {
+    return new ManifestDataSource.Factory(
+        new HotSegmentDataSource.Factory(
+            buildMediaDataSourceFactory(upstreamFactory, cache, mode, eventListener),
+            hotSegmentCache),
+        upstreamFactory,
+        manifestCache);
+  }
+
+  /**
+   * Builds the {@link DataSource.Factory} that {@link #getUpstreamDataSourceFactory(Context)}
+   * returns, over {@code httpDataSourceFactory} rather than Cronet.
+   */
+  /* package */ static DataSource.Factory buildUpstreamDataSourceFactory(
+      Context context,
+      HttpDataSource.Factory httpDataSourceFactory,
+      ExecutorService rangeLoaderExecutor,
+      @Nullable TransferListener transferListener) {
+    return new CoalescingDataSource.Factory(
+        new MultiConnectionDataSource.Factory(
+            new DefaultDataSourceFactory(context, transferListener, httpDataSourceFactory),
+            rangeLoaderExecutor));
+  }
+
+  /**
+   * Returns the executor for Cronet callbacks. A pool rather than a single thread, so that
+   * concurrent manifest, audio, video and text loads are not serialized.
+   */
+  private static ExecutorService getNetworkExecutor() {
+    synchronized (networkExecutorLock) {
+      if (networkExecutor == null) {
+        networkExecutor = Executors.newFixedThreadPool(NETWORK_THREAD_COUNT);
+      }
+      return networkExecutor;
+    }
+  }
+
+  /**
+   * Returns the executor for split range loads. Kept apart from {@link #getNetworkExecutor()},
+   * since range loads block on Cronet callbacks; its size is bounded by the per-host limit.
+   */
+  private static ExecutorService getRangeLoaderExecutor() {
+    synchronized (rangeLoaderExecutorLock) {
+      if (rangeLoaderExecutor == null) {
+        rangeLoaderExecutor = Executors.newCachedThreadPool();
+      }
+      return rangeLoaderExecutor;
+    }
+  }
+
+  private static Cache getDownloadCache(Context context) {
+    synchronized (downloadCacheLock) {
+      if (downloadCache == null) {
+        DatabaseProvider databaseProvider = getDatabaseProvider(context);
+        long startTimeNs = StartupTrace.begin();
+        if (cacheShardCount > 1) {
+          File downloadShardsDirectory =
+              new File(
+                  getDownloadDirectory(context),
+                  DOWNLOAD_SHARDS_DIRECTORY_PREFIX + cacheShardCount);
+          downloadCache =
+              new ShardedCache(
+                  downloadShardsDirectory, cacheShardCount, maxCacheBytes, databaseProvider);
+        } else {
+          File downloadContentDirectory =
+              new File(getDownloadDirectory(context), DOWNLOAD_CONTENT_DIRECTORY);
+          downloadCache =
+              new SimpleCache(
+                  downloadContentDirectory, buildCacheEvictor(maxCacheBytes), databaseProvider);
+        }
+        StartupTrace.end(StartupTrace.SPAN_SIMPLE_CACHE, startTimeNs);
+      }
+      return downloadCache;
+    }
+  }
+
+  private static DatabaseProvider getDatabaseProvider(Context context) {
+    synchronized (databaseProviderLock) {
+      if (databaseProvider == null) {
+        long startTimeNs = StartupTrace.begin();
+        databaseProvider = new ExoDatabaseProvider(context);
+        StartupTrace.end(StartupTrace.SPAN_DATABASE_PROVIDER, startTimeNs);
+      }
+      return databaseProvider;
+    }
+  }
+
+  private static File getDownloadDirectory(Context context) {
+    synchronized (downloadDirectoryLock) {
+      if (downloadDirectory == null) {
+        downloadDirectory = context.getExternalFilesDir(/* type= */ null);
+        if (downloadDirectory == null) {
+          downloadDirectory = context.getFilesDir();
+        }
+      }
+      return downloadDirectory;
+    }
+  }
+
+  /** Returns an LRU evictor for the given size cap, or a no-op evictor if the cap is unset. */
+  public static CacheEvictor buildCacheEvictor(long maxCacheBytes) {
+    return maxCacheBytes == C.LENGTH_UNSET
+        ? new NoOpCacheEvictor()
+        : new LeastRecentlyUsedCacheEvictor(maxCacheBytes);
+  }
+
+  /**
+   * Builds the factory {@link #getDataSourceFactory(Context)} reads media through: a {@link
+   * #buildCacheDataSourceFactory cache data source} for media, with manifests and playlists sent
+   * around it to {@code upstreamFactory}, so that live playlists are neither served stale nor cut
+   * short at a length the cache recorded. This has no Android dependencies, so it can be exercised
+   * on the JVM or in benchmarks against any upstream, such as a {@code FileDataSource}.
+   *
+   * @param upstreamFactory The factory for the upstream data sources.
+   * @param cache The cache to read media from and, in {@link #CACHE_MODE_WRITE_THROUGH}, write
+   *     media to.
+   * @param mode The {@link CacheMode}.
+   * @param eventListener An optional listener notified of cache hits and ignored reads.
+   */
+  public static DataSource.Factory buildMediaDataSourceFactory(
+      DataSource.Factory upstreamFactory,
+      Cache cache,
+      @CacheMode int mode,
+      @Nullable CacheDataSource.EventListener eventListener) {
+    return new MediaCacheDataSource.Factory(
+        buildCacheDataSourceFactory(upstreamFactory, cache, mode, eventListener),
+        upstreamFactory);
+  }
+
+  /**
+   * Builds a {@link CacheDataSource.Factory} over {@code cache}. Everything it reads goes through
+   * the cache, so it must only be given media: players read through {@link
+   * #buildMediaDataSourceFactory}, and prefetchers write segments with a {@code CacheWriter}.
+   *
+   * @param upstreamFactory The factory for the upstream data sources.
+   * @param cache The cache to read from and, in {@link #CACHE_MODE_WRITE_THROUGH}, write to.
+   * @param mode The {@link CacheMode}.
+   * @param eventListener An optional listener notified of cache hits and ignored reads.
+   */
+  public static CacheDataSource.Factory buildCacheDataSourceFactory(
+          DataSource.Factory upstreamFactory,
+          Cache cache,
+          @CacheMode int mode,
+          @Nullable CacheDataSource.EventListener eventListener) {
+    return new CacheDataSource.Factory()
+        .setCache(cache)
+        .setUpstreamDataSourceFactory(upstreamFactory)
+        .setCacheWriteDataSinkFactory(
+            mode == CACHE_MODE_WRITE_THROUGH ? new CacheDataSink.Factory().setCache(cache) : null)
+        .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+        .setEventListener(eventListener);
+  }
+
+  private DemoUtil() {}
+}
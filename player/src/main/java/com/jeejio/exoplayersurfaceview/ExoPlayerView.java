@@ -0,0 +1,866 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.Gravity;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.TextOutput;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.ErrorMessageProvider;
+import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.video.VideoDecoderGLSurfaceView;
+import com.google.android.exoplayer2.video.VideoListener;
+import com.jeejio.exoplayersurfaceview.player.R;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+public class ExoPlayerView extends FrameLayout {
+
+    /**
+     * Determines when the buffering view is shown. One of {@link #SHOW_BUFFERING_NEVER}, {@link
+     * #SHOW_BUFFERING_WHEN_PLAYING} or {@link #SHOW_BUFFERING_ALWAYS}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({SHOW_BUFFERING_NEVER, SHOW_BUFFERING_WHEN_PLAYING, SHOW_BUFFERING_ALWAYS})
+    public @interface ShowBuffering {}
+    /** The buffering view is never shown. */
+    public static final int SHOW_BUFFERING_NEVER = 0;
+    /**
+     * The buffering view is shown when the player is in the {@link Player#STATE_BUFFERING buffering}
+     * state and {@link Player#getPlayWhenReady() playWhenReady} is {@code true}.
+     */
+    public static final int SHOW_BUFFERING_WHEN_PLAYING = 1;
+    /**
+     * The buffering view is always shown when the player is in the {@link Player#STATE_BUFFERING
+     * buffering} state.
+     */
+    public static final int SHOW_BUFFERING_ALWAYS = 2;
+    // LINT.ThenChange(../../../../../../res/values/attrs.xml)
+
+    /**
+     * The type of view onto which video is rendered. One of {@link #SURFACE_TYPE_NONE}, {@link
+     * #SURFACE_TYPE_SURFACE_VIEW}, {@link #SURFACE_TYPE_TEXTURE_VIEW}, {@link
+     * #SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW} or {@link
+     * #SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({
+        SURFACE_TYPE_NONE,
+        SURFACE_TYPE_SURFACE_VIEW,
+        SURFACE_TYPE_TEXTURE_VIEW,
+        SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW,
+        SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW
+    })
+    public @interface SurfaceType {}
+    // LINT.IfChange
+    /** No video surface. */
+    public static final int SURFACE_TYPE_NONE = 0;
+    /** A {@link SurfaceView}. */
+    public static final int SURFACE_TYPE_SURFACE_VIEW = 1;
+    /** A {@link TextureView}, which supports rotation and transforms but is less power efficient. */
+    public static final int SURFACE_TYPE_TEXTURE_VIEW = 2;
+    /** Not supported by this view; falls back to {@link #SURFACE_TYPE_SURFACE_VIEW}. */
+    public static final int SURFACE_TYPE_SPHERICAL_GL_SURFACE_VIEW = 3;
+    /** A {@link VideoDecoderGLSurfaceView}, for use with extension video decoders. */
+    public static final int SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW = 4;
+    // LINT.ThenChange(../../../../../../res/values/attrs.xml)
+
+    /** Listener of video surface events. Called on the main thread. */
+    public interface VideoSurfaceListener {
+
+        /**
+         * Called when the view's video surface becomes ready to receive frames. For {@link
+         * SurfaceView} this is when its surface is created. {@link TextureView} does not expose this,
+         * so it is reported together with the first rendered frame.
+         */
+        default void onVideoSurfaceReady(ExoPlayerView view) {}
+
+        /** Called when the player renders its first frame to this view's surface. */
+        default void onRenderedFirstFrame(ExoPlayerView view) {}
+    }
+
+    /** Provides the thumbnails shown while the user scrubs to a seek position. */
+    public interface SeekPreviewProvider {
+
+        /** Returns a bitmap to pass to {@link #getPreview}, or null if there are no previews. */
+        @Nullable
+        Bitmap createPreviewBitmap();
+
+        /**
+         * Copies the preview for a position in the current window into {@code bitmap}.
+         *
+         * @param windowPositionMs The position to preview, in milliseconds from the window start.
+         * @param bitmap The bitmap to copy into, as returned by {@link #createPreviewBitmap()}.
+         * @return Whether a preview near enough to the position was available.
+         */
+        boolean getPreview(long windowPositionMs, Bitmap bitmap);
+    }
+
+    /** The width of the seek preview, in dp. */
+    private static final int SEEK_PREVIEW_WIDTH_DP = 192;
+    /** The height of the seek preview, in dp. */
+    private static final int SEEK_PREVIEW_HEIGHT_DP = 108;
+    /** The margin between the seek preview and the bottom of the view, in dp. */
+    private static final int SEEK_PREVIEW_MARGIN_DP = 48;
+
+    private final ComponentListener componentListener;
+    private final TextureRotationTransform textureRotationTransform;
+    @Nullable private final SubtitleOverlayView subtitleView;
+    @Nullable private final ImageView seekPreviewView;
+    private final int touchSlop;
+    @Nullable private View surfaceView;
+    private @SurfaceType int surfaceType;
+
+    @Nullable private Player player;
+    private boolean keepContentOnPlayerReset;
+    @Nullable private VideoSurfaceListener videoSurfaceListener;
+    @Nullable private ErrorMessageProvider<? super ExoPlaybackException> errorMessageProvider;
+
+    private int textureViewRotation;
+
+    @Nullable private SeekPreviewProvider seekPreviewProvider;
+    @Nullable private Bitmap seekPreviewBitmap;
+    private boolean scrubPending;
+    private boolean scrubbing;
+    private float scrubStartX;
+    private float scrubStartY;
+    private long scrubStartPositionMs;
+    private long scrubPositionMs;
+
+    public ExoPlayerView(Context context) {
+        this(context, /* attrs= */ null);
+    }
+
+    public ExoPlayerView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, /* defStyleAttr= */ 0);
+    }
+
+    @SuppressWarnings({"nullness:argument.type.incompatible", "nullness:method.invocation.invalid"})
+    public ExoPlayerView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        componentListener = new ComponentListener();
+        textureRotationTransform = new TextureRotationTransform();
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        if (isInEditMode()) {
+            surfaceView = null;
+            subtitleView = null;
+            seekPreviewView = null;
+            surfaceType = SURFACE_TYPE_NONE;
+            return;
+        }
+
+        int surfaceType = SURFACE_TYPE_SURFACE_VIEW;
+        if (attrs != null) {
+            TypedArray a =
+                    context.getTheme().obtainStyledAttributes(attrs, R.styleable.ExoPlayerView, 0, 0);
+            try {
+                surfaceType = a.getInt(R.styleable.ExoPlayerView_surface_type, surfaceType);
+            } finally {
+                a.recycle();
+            }
+        }
+
+        setDescendantFocusability(FOCUS_AFTER_DESCENDANTS);
+
+        // Create a surface view and insert it into the content frame, if there is one.
+        this.surfaceType = surfaceType;
+        surfaceView = createSurfaceView(context, surfaceType);
+        if (surfaceView != null) {
+            addSurfaceView(surfaceView);
+        }
+
+        // Subtitles are drawn above the video surface.
+        subtitleView = new SubtitleOverlayView(context);
+        subtitleView.setLayoutParams(
+                new ViewGroup.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        addView(subtitleView);
+
+        // The seek preview is drawn above everything, and only while scrubbing.
+        float density = getResources().getDisplayMetrics().density;
+        FrameLayout.LayoutParams seekPreviewLayoutParams =
+                new FrameLayout.LayoutParams(
+                        (int) (SEEK_PREVIEW_WIDTH_DP * density),
+                        (int) (SEEK_PREVIEW_HEIGHT_DP * density),
+                        Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL);
+        seekPreviewLayoutParams.bottomMargin = (int) (SEEK_PREVIEW_MARGIN_DP * density);
+        seekPreviewView = new ImageView(context);
+        seekPreviewView.setLayoutParams(seekPreviewLayoutParams);
+        seekPreviewView.setScaleType(ImageView.ScaleType.FIT_XY);
+        seekPreviewView.setVisibility(GONE);
+        addView(seekPreviewView);
+    }
+
+    @Nullable
+    private static View createSurfaceView(Context context, @SurfaceType int surfaceType) {
+        if (surfaceType == SURFACE_TYPE_NONE) {
+            return null;
+        }
+        View surfaceView;
+        switch (surfaceType) {
+            case SURFACE_TYPE_TEXTURE_VIEW:
+                surfaceView = new TextureView(context);
+                break;
+            case SURFACE_TYPE_VIDEO_DECODER_GL_SURFACE_VIEW:
+                surfaceView = new VideoDecoderGLSurfaceView(context);
+                break;
+            default:
+                surfaceView = new SurfaceView(context);
+                break;
+        }
+        surfaceView.setLayoutParams(
+                new ViewGroup.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        return surfaceView;
+    }
+
+    /**
+     * Switches the view targeted by a given {@link Player}.
+     *
+     * @param player The player whose target view is being switched.
+     * @param oldPlayerView The old view to detach from the player.
+     * @param newPlayerView The new view to attach to the player.
+     */
+    public static void switchTargetView(
+            Player player,
+            @Nullable ExoPlayerView oldPlayerView,
+            @Nullable ExoPlayerView newPlayerView) {
+        if (oldPlayerView == newPlayerView) {
+            return;
+        }
+        // We attach the new view before detaching the old one because this ordering allows the player
+        // to swap directly from one surface to another, without transitioning through a state where no
+        // surface is attached. This is significantly more efficient and achieves a more seamless
+        // transition when using platform provided video decoders.
+        if (newPlayerView != null) {
+            newPlayerView.setPlayer(player);
+        }
+        if (oldPlayerView != null) {
+            oldPlayerView.setPlayer(null);
+        }
+    }
+
+    /** Returns the player currently set on this view, or null if no player is set. */
+    @Nullable
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Set the {@link Player} to use.
+     *
+     * <p>To transition a {@link Player} from targeting one view to another, it's recommended to use
+     * {@link #switchTargetView(Player, ExoPlayerView, ExoPlayerView)} rather than this method.
+     * If you do wish to use this method directly, be sure to attach the player to the new view
+     * <em>before</em> calling {@code setPlayer(null)} to detach it from the old one. This ordering is
+     * significantly more efficient and may allow for more seamless transitions.
+     *
+     * @param player The {@link Player} to use, or {@code null} to detach the current player. Only
+     *     players which are accessed on the main thread are supported ({@code
+     *     player.getApplicationLooper() == Looper.getMainLooper()}).
+     */
+    public void setPlayer(@Nullable Player player) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        Assertions.checkArgument(
+                player == null || player.getApplicationLooper() == Looper.getMainLooper());
+        if (this.player == player) {
+            return;
+        }
+        stopScrubbing();
+        @Nullable Player oldPlayer = this.player;
+        if (oldPlayer != null) {
+            oldPlayer.removeListener(componentListener);
+            @Nullable Player.VideoComponent oldVideoComponent = oldPlayer.getVideoComponent();
+            if (oldVideoComponent != null) {
+                oldVideoComponent.removeVideoListener(componentListener);
+                detachVideoSurface(oldVideoComponent, surfaceView);
+            }
+            @Nullable Player.TextComponent oldTextComponent = oldPlayer.getTextComponent();
+            if (oldTextComponent != null) {
+                oldTextComponent.removeTextOutput(componentListener);
+            }
+            if (subtitleView != null) {
+                subtitleView.setCues(Collections.emptyList());
+            }
+        }
+        this.player = player;
+
+        updateForCurrentTrackSelections(/* isNewPlayer= */ true);
+        if (player != null) {
+            @Nullable Player.VideoComponent newVideoComponent = player.getVideoComponent();
+            if (newVideoComponent != null) {
+                attachVideoSurface(newVideoComponent, surfaceView);
+                newVideoComponent.addVideoListener(componentListener);
+            }
+            @Nullable Player.TextComponent newTextComponent = player.getTextComponent();
+            if (newTextComponent != null) {
+                newTextComponent.addTextOutput(componentListener);
+            }
+            player.addListener(componentListener);
+        } else {
+        }
+    }
+
+    /** Returns the current {@link SurfaceType}. */
+    public @SurfaceType int getSurfaceType() {
+        return surfaceType;
+    }
+
+    /**
+     * Sets the type of view onto which video is rendered, replacing the current one. The player, if
+     * any, is kept and moved to the new surface directly, without transitioning through a state
+     * where no surface is attached.
+     *
+     * @param surfaceType The {@link SurfaceType}.
+     */
+    public void setSurfaceType(@SurfaceType int surfaceType) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        if (this.surfaceType == surfaceType || isInEditMode()) {
+            return;
+        }
+        @Nullable View oldSurfaceView = surfaceView;
+        @Nullable View newSurfaceView = createSurfaceView(getContext(), surfaceType);
+        if (newSurfaceView != null) {
+            newSurfaceView.setVisibility(getVisibility());
+            addSurfaceView(newSurfaceView);
+        }
+        @Nullable Player.VideoComponent videoComponent =
+                player == null ? null : player.getVideoComponent();
+        if (videoComponent != null) {
+            // Attaching the new surface replaces the old one on the player, so attach before detaching.
+            attachVideoSurface(videoComponent, newSurfaceView);
+            detachVideoSurface(videoComponent, oldSurfaceView);
+        }
+        if (oldSurfaceView != null) {
+            oldSurfaceView.removeOnLayoutChangeListener(componentListener);
+            if (oldSurfaceView instanceof SurfaceView) {
+                ((SurfaceView) oldSurfaceView).getHolder().removeCallback(componentListener);
+            }
+            removeView(oldSurfaceView);
+        }
+        this.surfaceType = surfaceType;
+        surfaceView = newSurfaceView;
+        textureRotationTransform.reset();
+        if (surfaceView instanceof TextureView && textureViewRotation != 0) {
+            surfaceView.addOnLayoutChangeListener(componentListener);
+            applyTextureViewRotation((TextureView) surfaceView, textureViewRotation);
+        }
+    }
+
+    private void addSurfaceView(View surfaceView) {
+        if (surfaceView instanceof SurfaceView) {
+            ((SurfaceView) surfaceView).getHolder().addCallback(componentListener);
+        }
+        addView(surfaceView, 0);
+    }
+
+    /**
+     * Sets the {@link SeekPreviewProvider} whose thumbnails are shown while the user scrubs, or
+     * {@code null} to scrub without previews.
+     */
+    public void setSeekPreviewProvider(@Nullable SeekPreviewProvider seekPreviewProvider) {
+        this.seekPreviewProvider = seekPreviewProvider;
+        stopScrubbing();
+    }
+
+    /**
+     * Returns the rotation applied to the content of a {@link TextureView} video surface, in
+     * degrees, which {@link TextureView#getBitmap()} leaves out. Zero for other surface types.
+     */
+    public int getTextureViewRotation() {
+        return surfaceView instanceof TextureView ? textureViewRotation : 0;
+    }
+
+    /** Sets the {@link VideoSurfaceListener}, or {@code null} to clear it. */
+    public void setVideoSurfaceListener(@Nullable VideoSurfaceListener videoSurfaceListener) {
+        this.videoSurfaceListener = videoSurfaceListener;
+    }
+
+    /**
+     * Returns whether the video surface can receive frames right away. Always {@code false} with
+     * {@link #SURFACE_TYPE_NONE}.
+     */
+    public boolean isVideoSurfaceReady() {
+        if (surfaceView instanceof TextureView) {
+            return ((TextureView) surfaceView).isAvailable();
+        } else if (surfaceView instanceof VideoDecoderGLSurfaceView) {
+            return surfaceView.isAttachedToWindow();
+        } else if (surfaceView instanceof SurfaceView) {
+            return ((SurfaceView) surfaceView).getHolder().getSurface().isValid();
+        }
+        return false;
+    }
+
+    private static void attachVideoSurface(
+            Player.VideoComponent videoComponent, @Nullable View surfaceView) {
+        if (surfaceView instanceof TextureView) {
+            videoComponent.setVideoTextureView((TextureView) surfaceView);
+        } else if (surfaceView instanceof VideoDecoderGLSurfaceView) {
+            videoComponent.setVideoDecoderOutputBufferRenderer(
+                    ((VideoDecoderGLSurfaceView) surfaceView).getVideoDecoderOutputBufferRenderer());
+        } else if (surfaceView instanceof SurfaceView) {
+            videoComponent.setVideoSurfaceView((SurfaceView) surfaceView);
+        }
+    }
+
+    private static void detachVideoSurface(
+            Player.VideoComponent videoComponent, @Nullable View surfaceView) {
+        if (surfaceView instanceof TextureView) {
+            videoComponent.clearVideoTextureView((TextureView) surfaceView);
+        } else if (surfaceView instanceof VideoDecoderGLSurfaceView) {
+            videoComponent.clearVideoDecoderOutputBufferRenderer(
+                    ((VideoDecoderGLSurfaceView) surfaceView).getVideoDecoderOutputBufferRenderer());
+        } else if (surfaceView instanceof SurfaceView) {
+            videoComponent.clearVideoSurfaceView((SurfaceView) surfaceView);
+        }
+    }
+
+    @Override
+    public void setVisibility(int visibility) {
+        super.setVisibility(visibility);
+        if (surfaceView instanceof SurfaceView) {
+            // Work around https://github.com/google/ExoPlayer/issues/3160.
+            surfaceView.setVisibility(visibility);
+        }
+    }
+
+    /**
+     * Sets whether the currently displayed video frame or media artwork is kept visible when the
+     * player is reset. A player reset is defined to mean the player being re-prepared with different
+     * media, the player transitioning to unprepared media, {@link Player#stop(boolean)} being called
+     * with {@code reset=true}, or the player being replaced or cleared by calling {@link
+     * #setPlayer(Player)}.
+     *
+     * <p>If enabled, the currently displayed video frame or media artwork will be kept visible until
+     * the player set on the view has been successfully prepared with new media and loaded enough of
+     * it to have determined the available tracks. Hence enabling this option allows transitioning
+     * from playing one piece of media to another, or from using one player instance to another,
+     * without clearing the view's content.
+     *
+     * <p>If disabled, the currently displayed video frame or media artwork will be hidden as soon as
+     * the player is reset. Note that the video frame is hidden by making {@code exo_shutter} visible.
+     * Hence the video frame will not be hidden if using a custom layout that omits this view.
+     *
+     * @param keepContentOnPlayerReset Whether the currently displayed video frame or media artwork is
+     *     kept visible when the player is reset.
+     */
+    public void setKeepContentOnPlayerReset(boolean keepContentOnPlayerReset) {
+        if (this.keepContentOnPlayerReset != keepContentOnPlayerReset) {
+            this.keepContentOnPlayerReset = keepContentOnPlayerReset;
+            updateForCurrentTrackSelections(/* isNewPlayer= */ false);
+        }
+    }
+
+
+    /**
+     * Sets the optional {@link ErrorMessageProvider}.
+     *
+     * @param errorMessageProvider The error message provider.
+     */
+    public void setErrorMessageProvider(
+            @Nullable ErrorMessageProvider<? super ExoPlaybackException> errorMessageProvider) {
+        if (this.errorMessageProvider != errorMessageProvider) {
+            this.errorMessageProvider = errorMessageProvider;
+        }
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return super.dispatchKeyEvent(event);
+    }
+
+
+
+    /**
+     * Gets the view onto which video is rendered. This is a:
+     *
+     * <ul>
+     *   <li>{@link SurfaceView} by default, or if the {@code surface_type} attribute is set to {@code
+     *       surface_view}.
+     *   <li>{@link TextureView} if {@code surface_type} is {@code texture_view}.
+     *       spherical_gl_surface_view}.
+     *   <li>{@link VideoDecoderGLSurfaceView} if {@code surface_type} is {@code
+     *       video_decoder_gl_surface_view}.
+     *   <li>{@code null} if {@code surface_type} is {@code none}.
+     * </ul>
+     *
+     * @return The {@link SurfaceView}, {@link TextureView}, {@link
+     *     VideoDecoderGLSurfaceView} or {@code null}.
+     */
+    @Nullable
+    public View getVideoSurfaceView() {
+        return surfaceView;
+    }
+
+    /**
+     * Scrubs the current window on a horizontal drag, the width of the view spanning its duration,
+     * showing the {@link SeekPreviewProvider preview} of the position, and seeks there on release.
+     *
+     * <p>Only a scrub is consumed. The down event of every gesture on a seekable window is claimed,
+     * so that a drag can be recognized, but the parent may still intercept it until the drag turns
+     * out to be horizontal. A gesture that turns out vertical is left to the parent, and a tap is
+     * handled as {@link View#onTouchEvent} handles it, so it is only a click if the view is
+     * clickable.
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        @Nullable Player player = this.player;
+        if (player == null || !player.isCurrentWindowSeekable() || getWidth() == 0) {
+            stopScrubbing();
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                scrubStartX = event.getX();
+                scrubStartY = event.getY();
+                scrubPending = true;
+                super.onTouchEvent(event);
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (scrubPending) {
+                    float deltaX = Math.abs(event.getX() - scrubStartX);
+                    float deltaY = Math.abs(event.getY() - scrubStartY);
+                    if (deltaY > touchSlop && deltaY >= deltaX) {
+                        scrubPending = false;
+                    } else if (deltaX > touchSlop) {
+                        scrubPending = false;
+                        startScrubbing(player);
+                        if (scrubbing) {
+                            cancelPress(event);
+                        }
+                    }
+                }
+                if (scrubbing) {
+                    long durationMs = player.getDuration();
+                    float offset = (event.getX() - scrubStartX) / getWidth();
+                    scrubPositionMs =
+                            Util.constrainValue(
+                                    scrubStartPositionMs + (long) (offset * durationMs),
+                                    /* min= */ 0,
+                                    durationMs);
+                    updateSeekPreview();
+                    return true;
+                }
+                return super.onTouchEvent(event);
+            case MotionEvent.ACTION_UP:
+                scrubPending = false;
+                if (scrubbing) {
+                    player.seekTo(scrubPositionMs);
+                    stopScrubbing();
+                    return true;
+                }
+                return super.onTouchEvent(event);
+            case MotionEvent.ACTION_CANCEL:
+                scrubPending = false;
+                boolean wasScrubbing = scrubbing;
+                stopScrubbing();
+                return super.onTouchEvent(event) || wasScrubbing;
+            default:
+                return scrubbing || super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        return false;
+    }
+
+    @Override
+    public boolean onTrackballEvent(MotionEvent ev) {
+        return false;
+    }
+
+    /**
+     * Should be called when the player is visible to the user and if {@code surface_type} is {@code
+     * spherical_gl_surface_view}. It is the counterpart to {@link #onPause()}.
+     *
+     * <p>This method should typically be called in {@code Activity.onStart()}, or {@code
+     * Activity.onResume()} for API versions &lt;= 23.
+     */
+    public void onResume() {
+
+    }
+
+    /**
+     * Should be called when the player is no longer visible to the user and if {@code surface_type}
+     * is {@code spherical_gl_surface_view}. It is the counterpart to {@link #onResume()}.
+     *
+     * <p>This method should typically be called in {@code Activity.onStop()}, or {@code
+     * Activity.onPause()} for API versions &lt;= 23.
+     */
+    public void onPause() {
+    }
+
+    private void updateForCurrentTrackSelections(boolean isNewPlayer) {
+        @Nullable Player player = this.player;
+        if (player == null || player.getCurrentTrackGroups().isEmpty()) {
+            if (!keepContentOnPlayerReset) {
+            }
+            return;
+        }
+
+        if (isNewPlayer && !keepContentOnPlayerReset) {
+            // Hide any video from the previous player.
+        }
+
+        TrackSelectionArray selections = player.getCurrentTrackSelections();
+        for (int i = 0; i < selections.length; i++) {
+            if (player.getRendererType(i) == C.TRACK_TYPE_VIDEO && selections.get(i) != null) {
+                // Video enabled so artwork must be hidden. If the shutter is closed, it will be opened in
+                // onRenderedFirstFrame().
+                return;
+            }
+        }
+    }
+
+
+    private void startScrubbing(Player player) {
+        if (player.getDuration() == C.TIME_UNSET) {
+            return;
+        }
+        scrubbing = true;
+        scrubStartPositionMs = player.getCurrentPosition();
+        scrubPositionMs = scrubStartPositionMs;
+        // Created per scrub, as the provider may have moved on to other content since the last.
+        seekPreviewBitmap =
+                seekPreviewProvider != null ? seekPreviewProvider.createPreviewBitmap() : null;
+        @Nullable ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    /** Cancels the press and long press that {@link View#onTouchEvent} tracks for a scrub. */
+    private void cancelPress(MotionEvent event) {
+        MotionEvent cancelEvent = MotionEvent.obtain(event);
+        cancelEvent.setAction(MotionEvent.ACTION_CANCEL);
+        super.onTouchEvent(cancelEvent);
+        cancelEvent.recycle();
+    }
+
+    private void stopScrubbing() {
+        scrubbing = false;
+        seekPreviewBitmap = null;
+        if (seekPreviewView != null) {
+            seekPreviewView.setImageBitmap(null);
+            seekPreviewView.setVisibility(GONE);
+        }
+    }
+
+    private void updateSeekPreview() {
+        if (seekPreviewView == null) {
+            return;
+        }
+        if (seekPreviewProvider != null
+                && seekPreviewBitmap != null
+                && seekPreviewProvider.getPreview(scrubPositionMs, seekPreviewBitmap)) {
+            // Set again, as the bitmap's pixels changed in place.
+            seekPreviewView.setImageBitmap(seekPreviewBitmap);
+            seekPreviewView.setVisibility(VISIBLE);
+        } else {
+            seekPreviewView.setVisibility(GONE);
+        }
+    }
+
+    /**
+     * Applies a texture rotation to a {@link TextureView}. The transform is only recomputed and set
+     * when the size or the rotation changed since the last call, since this runs on every layout
+     * pass.
+     */
+    private void applyTextureViewRotation(TextureView textureView, int textureViewRotation) {
+        if (textureRotationTransform.update(
+                textureView.getWidth(), textureView.getHeight(), textureViewRotation)) {
+            textureView.setTransform(textureRotationTransform.getMatrix());
+        }
+    }
+
+    @SuppressLint("InlinedApi")
+    private boolean isDpadKey(int keyCode) {
+        return keyCode == KeyEvent.KEYCODE_DPAD_UP
+                || keyCode == KeyEvent.KEYCODE_DPAD_UP_RIGHT
+                || keyCode == KeyEvent.KEYCODE_DPAD_RIGHT
+                || keyCode == KeyEvent.KEYCODE_DPAD_DOWN_RIGHT
+                || keyCode == KeyEvent.KEYCODE_DPAD_DOWN
+                || keyCode == KeyEvent.KEYCODE_DPAD_DOWN_LEFT
+                || keyCode == KeyEvent.KEYCODE_DPAD_LEFT
+                || keyCode == KeyEvent.KEYCODE_DPAD_UP_LEFT
+                || keyCode == KeyEvent.KEYCODE_DPAD_CENTER;
+    }
+
+    private final class ComponentListener
+            implements Player.EventListener,
+            TextOutput,
+            VideoListener,
+            SurfaceHolder.Callback,
+            View.OnLayoutChangeListener{
+
+        private final Timeline.Period period;
+        private @Nullable Object lastPeriodUidWithTracks;
+
+        public ComponentListener() {
+            period = new Timeline.Period();
+        }
+
+        // TextOutput implementation
+
+        @Override
+        public void onCues(List<Cue> cues) {
+            if (subtitleView != null) {
+                subtitleView.setCues(cues);
+            }
+        }
+
+        // VideoListener implementation
+
+        @Override
+        public void onVideoSizeChanged(
+                int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
+            float videoAspectRatio =
+                    (height == 0 || width == 0) ? 1 : (width * pixelWidthHeightRatio) / height;
+
+            int previousTextureViewRotation = textureViewRotation;
+            // Tracked for any surface type, so that it is applied on switching to a TextureView.
+            textureViewRotation = unappliedRotationDegrees;
+            if (surfaceView instanceof TextureView) {
+                // Try to apply rotation transformation when our surface is a TextureView.
+                if (unappliedRotationDegrees == 90 || unappliedRotationDegrees == 270) {
+                    // We will apply a rotation 90/270 degree to the output texture of the TextureView.
+                    // In this case, the output video's width and height will be swapped.
+                    videoAspectRatio = 1 / videoAspectRatio;
+                }
+                if (previousTextureViewRotation != 0) {
+                    surfaceView.removeOnLayoutChangeListener(this);
+                }
+                if (textureViewRotation != 0) {
+                    // The texture view's dimensions might be changed after layout step.
+                    // So add an OnLayoutChangeListener to apply rotation after layout step.
+                    surfaceView.addOnLayoutChangeListener(this);
+                }
+                applyTextureViewRotation((TextureView) surfaceView, textureViewRotation);
+            }
+
+        }
+
+        @Override
+        public void onRenderedFirstFrame() {
+            if (videoSurfaceListener != null) {
+                if (surfaceView instanceof TextureView) {
+                    videoSurfaceListener.onVideoSurfaceReady(ExoPlayerView.this);
+                }
+                videoSurfaceListener.onRenderedFirstFrame(ExoPlayerView.this);
+            }
+        }
+
+        // SurfaceHolder.Callback implementation
+
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            if (videoSurfaceListener != null) {
+                videoSurfaceListener.onVideoSurfaceReady(ExoPlayerView.this);
+            }
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        }
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+        }
+
+        @Override
+        public void onTracksChanged(TrackGroupArray tracks, TrackSelectionArray selections) {
+            // Suppress the update if transitioning to an unprepared period within the same window. This
+            // is necessary to avoid closing the shutter when such a transition occurs. See:
+            // https://github.com/google/ExoPlayer/issues/5507.
+            Player player = checkNotNull(ExoPlayerView.this.player);
+            Timeline timeline = player.getCurrentTimeline();
+            if (timeline.isEmpty()) {
+                lastPeriodUidWithTracks = null;
+            } else if (!player.getCurrentTrackGroups().isEmpty()) {
+                lastPeriodUidWithTracks =
+                        timeline.getPeriod(player.getCurrentPeriodIndex(), period, /* setIds= */ true).uid;
+            } else if (lastPeriodUidWithTracks != null) {
+                int lastPeriodIndexWithTracks = timeline.getIndexOfPeriod(lastPeriodUidWithTracks);
+                if (lastPeriodIndexWithTracks != C.INDEX_UNSET) {
+                    int lastWindowIndexWithTracks =
+                            timeline.getPeriod(lastPeriodIndexWithTracks, period).windowIndex;
+                    if (player.getCurrentWindowIndex() == lastWindowIndexWithTracks) {
+                        // We're in the same window. Suppress the update.
+                        return;
+                    }
+                }
+                lastPeriodUidWithTracks = null;
+            }
+
+            updateForCurrentTrackSelections(/* isNewPlayer= */ false);
+        }
+
+        // Player.EventListener implementation
+
+        @Override
+        public void onPlaybackStateChanged(@Player.State int playbackState) {
+        }
+
+        @Override
+        public void onPlayWhenReadyChanged(
+                boolean playWhenReady, @Player.PlayWhenReadyChangeReason int reason) {
+        }
+
+        @Override
+        public void onPositionDiscontinuity(@Player.DiscontinuityReason int reason) {
+
+        }
+
+        // OnLayoutChangeListener implementation
+
+        @Override
+        public void onLayoutChange(
+                View view,
+                int left,
+                int top,
+                int right,
+                int bottom,
+                int oldLeft,
+                int oldTop,
+                int oldRight,
+                int oldBottom) {
+            applyTextureViewRotation((TextureView) view, textureViewRotation);
+        }
+
+    }
+}
@@ -0,0 +1,150 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Loads and parses HLS playlists outside of the player, for loading media ahead of it. */
+/* package */ final class HlsPlaylistLoader {
+
+    private final DataSource.Factory dataSourceFactory;
+    private final HlsPlaylistParser playlistParser;
+
+    /** @param dataSourceFactory The factory through which playlists are loaded. */
+    public HlsPlaylistLoader(DataSource.Factory dataSourceFactory) {
+        this.dataSourceFactory = dataSourceFactory;
+        playlistParser = new HlsPlaylistParser();
+    }
+
+    /** Loads and parses the master or media playlist at {@code uri}. */
+    public HlsPlaylist load(Uri uri) throws IOException {
+        DataSourceInputStream inputStream =
+                new DataSourceInputStream(dataSourceFactory.createDataSource(), new DataSpec(uri));
+        try {
+            return playlistParser.parse(uri, inputStream);
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Returns the URI of the media playlist to load for {@code playlist}: its own URI for a media
+     * playlist, or that of the first variant for a master playlist.
+     */
+    public static Uri getMediaPlaylistUri(Uri playlistUri, HlsPlaylist playlist)
+            throws IOException {
+        if (playlist instanceof HlsMediaPlaylist) {
+            return playlistUri;
+        }
+        List<HlsMasterPlaylist.Variant> variants = ((HlsMasterPlaylist) playlist).variants;
+        if (variants.isEmpty()) {
+            throw new IOException("Master playlist has no variants");
+        }
+        return variants.get(0).url;
+    }
+
+    /**
+     * Returns the variant of {@code masterPlaylist} that an {@link AdaptiveTrackSelection} would
+     * start on: the one with the highest bitrate that fits the default fraction of {@code
+     * bitrateEstimate}, among those within the video size and bitrate limits of {@code parameters}.
+     * If none fits, the one with the lowest bitrate is returned.
+     *
+     * @param masterPlaylist The master playlist, which must have a variant.
+     * @param bitrateEstimate The bandwidth estimate, in bits per second.
+     * @param parameters The parameters of the player's track selector.
+     */
+    public static HlsMasterPlaylist.Variant selectVariant(
+            HlsMasterPlaylist masterPlaylist,
+            long bitrateEstimate,
+            DefaultTrackSelector.Parameters parameters) {
+        long effectiveBitrate =
+                (long) (bitrateEstimate * AdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION);
+        @Nullable HlsMasterPlaylist.Variant selected = null;
+        @Nullable HlsMasterPlaylist.Variant lowest = null;
+        for (HlsMasterPlaylist.Variant variant : masterPlaylist.variants) {
+            Format format = variant.format;
+            if (!isWithinLimits(format, parameters)) {
+                continue;
+            }
+            if (lowest == null || format.bitrate < lowest.format.bitrate) {
+                lowest = variant;
+            }
+            if (format.bitrate <= effectiveBitrate
+                    && (selected == null || format.bitrate > selected.format.bitrate)) {
+                selected = variant;
+            }
+        }
+        if (selected != null) {
+            return selected;
+        }
+        // The track selector falls back to all variants if none is within the limits.
+        return lowest != null ? lowest : getLowestBitrateVariant(masterPlaylist);
+    }
+
+    /**
+     * Returns the variant of {@code masterPlaylist} with the given format, or {@code null} if there
+     * is none. The format is typically the {@code trackFormat} of the player's latest media load,
+     * which for the main HLS track is the format of the variant being loaded.
+     */
+    @Nullable
+    public static HlsMasterPlaylist.Variant getVariant(
+            HlsMasterPlaylist masterPlaylist, Format format) {
+        List<HlsMasterPlaylist.Variant> variants = masterPlaylist.variants;
+        for (int i = 0; i < variants.size(); i++) {
+            if (variants.get(i).format.equals(format)) {
+                return variants.get(i);
+            }
+        }
+        // The player may hand out a copy that differs in fields derived during preparation.
+        for (int i = 0; i < variants.size(); i++) {
+            Format variantFormat = variants.get(i).format;
+            if (Util.areEqual(variantFormat.id, format.id)
+                    && variantFormat.bitrate == format.bitrate) {
+                return variants.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isWithinLimits(
+            Format format, DefaultTrackSelector.Parameters parameters) {
+        return (format.bitrate == Format.NO_VALUE || format.bitrate <= parameters.maxVideoBitrate)
+                && (format.width == Format.NO_VALUE || format.width <= parameters.maxVideoWidth)
+                && (format.height == Format.NO_VALUE || format.height <= parameters.maxVideoHeight);
+    }
+
+    private static HlsMasterPlaylist.Variant getLowestBitrateVariant(
+            HlsMasterPlaylist masterPlaylist) {
+        HlsMasterPlaylist.Variant lowest = masterPlaylist.variants.get(0);
+        for (HlsMasterPlaylist.Variant variant : masterPlaylist.variants) {
+            if (variant.format.bitrate < lowest.format.bitrate) {
+                lowest = variant;
+            }
+        }
+        return lowest;
+    }
+
+    /** Loads the media playlist for {@code playlistUri}, resolving a master playlist if needed. */
+    public HlsMediaPlaylist loadMediaPlaylist(Uri playlistUri) throws IOException {
+        HlsPlaylist playlist = load(playlistUri);
+        if (playlist instanceof HlsMediaPlaylist) {
+            return (HlsMediaPlaylist) playlist;
+        }
+        return (HlsMediaPlaylist) load(getMediaPlaylistUri(playlistUri, playlist));
+    }
+}
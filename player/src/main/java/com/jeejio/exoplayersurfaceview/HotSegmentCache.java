@@ -0,0 +1,123 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An in-memory tier in front of the download cache, holding the bodies of recently loaded segments
+ * up to a byte limit, least recently used first out.
+ *
+ * <p>Segments loaded more than once, such as those played by several players or read again after a
+ * seek, are then served without touching the disk cache or its index. Thread safe.
+ */
+public final class HotSegmentCache {
+
+    /** The default limit of the store, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+    /** The default size of the largest segment stored, in bytes. */
+    public static final int DEFAULT_MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private final long maxBytes;
+    private final int maxSegmentBytes;
+    private final LinkedHashMap<String, byte[]> segments;
+
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+
+    public HotSegmentCache() {
+        this(DEFAULT_MAX_BYTES, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * @param maxBytes The limit of the store, in bytes.
+     * @param maxSegmentBytes The size of the largest segment stored, in bytes.
+     */
+    public HotSegmentCache(long maxBytes, int maxSegmentBytes) {
+        this.maxBytes = maxBytes;
+        this.maxSegmentBytes = maxSegmentBytes;
+        segments = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, true);
+    }
+
+    /** Returns the size of the largest segment stored, in bytes. */
+    public int getMaxSegmentBytes() {
+        return maxSegmentBytes;
+    }
+
+    /** Returns the body stored for {@code key}, or {@code null} if there is none. */
+    @Nullable
+    public synchronized byte[] get(String key) {
+        @Nullable byte[] body = segments.get(key);
+        if (body == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return body;
+    }
+
+    /** Stores the complete body of the segment with {@code key}. */
+    public synchronized void put(String key, byte[] body) {
+        if (body.length > maxSegmentBytes || body.length > maxBytes) {
+            return;
+        }
+        @Nullable byte[] previous = segments.put(key, body);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+        bytes += body.length;
+        Iterator<byte[]> iterator = segments.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            byte[] eldest = iterator.next();
+            if (eldest == body) {
+                break;
+            }
+            bytes -= eldest.length;
+            iterator.remove();
+        }
+    }
+
+    /** Removes the body stored for {@code key}, if any. */
+    public synchronized void remove(String key) {
+        @Nullable byte[] previous = segments.remove(key);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+    }
+
+    /** Removes all stored bodies. */
+    public synchronized void clear() {
+        segments.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Should be called from {@link ComponentCallbacks2#onTrimMemory(int)}. Clears the store once the
+     * system reports that memory is running low or the app is in the background.
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            clear();
+        }
+    }
+
+    /** Returns the number of bytes stored. */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "HotSegmentCache{segments=" + segments.size()
+                + ", bytes=" + bytes
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + "}";
+    }
+}
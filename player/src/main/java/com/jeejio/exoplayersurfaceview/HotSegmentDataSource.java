@@ -0,0 +1,155 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that serves whole-segment reads from a {@link HotSegmentCache}, and stores
+ * the segments it reads through to the disk tier in it.
+ *
+ * <p>Only requests for a complete resource, starting at position 0 with an unset length, use the
+ * memory tier; ranged requests always go to the disk tier.
+ */
+public final class HotSegmentDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link HotSegmentDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory diskDataSourceFactory;
+        private final HotSegmentCache hotSegmentCache;
+
+        /**
+         * @param diskDataSourceFactory The factory for data sources reading through the disk cache.
+         * @param hotSegmentCache The memory tier.
+         */
+        public Factory(DataSource.Factory diskDataSourceFactory, HotSegmentCache hotSegmentCache) {
+            this.diskDataSourceFactory = diskDataSourceFactory;
+            this.hotSegmentCache = hotSegmentCache;
+        }
+
+        @Override
+        public HotSegmentDataSource createDataSource() {
+            return new HotSegmentDataSource(
+                    diskDataSourceFactory.createDataSource(), hotSegmentCache);
+        }
+    }
+
+    private final DataSource diskDataSource;
+    private final HotSegmentCache hotSegmentCache;
+
+    @Nullable private DataSpec currentDataSpec;
+    @Nullable private String currentKey;
+    @Nullable private ByteArrayOutputStream bodyBuffer;
+    @Nullable private byte[] storedBody;
+    private int storedBodyPosition;
+    private boolean diskDataSourceOpened;
+    private boolean endOfInput;
+
+    private HotSegmentDataSource(DataSource diskDataSource, HotSegmentCache hotSegmentCache) {
+        this.diskDataSource = diskDataSource;
+        this.hotSegmentCache = hotSegmentCache;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        diskDataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentDataSpec = dataSpec;
+        endOfInput = false;
+        if (dataSpec.position != 0 || dataSpec.length != C.LENGTH_UNSET) {
+            diskDataSourceOpened = true;
+            return diskDataSource.open(dataSpec);
+        }
+        currentKey = dataSpec.key != null ? dataSpec.key : dataSpec.uri.toString();
+        storedBody = hotSegmentCache.get(currentKey);
+        if (storedBody != null) {
+            storedBodyPosition = 0;
+            return storedBody.length;
+        }
+        diskDataSourceOpened = true;
+        long length = diskDataSource.open(dataSpec);
+        if (length == C.LENGTH_UNSET || length <= hotSegmentCache.getMaxSegmentBytes()) {
+            bodyBuffer =
+                    new ByteArrayOutputStream(length == C.LENGTH_UNSET ? 64 * 1024 : (int) length);
+        }
+        return length;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+        if (storedBody != null) {
+            if (storedBodyPosition == storedBody.length) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            int bytesToCopy = Math.min(readLength, storedBody.length - storedBodyPosition);
+            System.arraycopy(storedBody, storedBodyPosition, buffer, offset, bytesToCopy);
+            storedBodyPosition += bytesToCopy;
+            return bytesToCopy;
+        }
+        int bytesRead = diskDataSource.read(buffer, offset, readLength);
+        if (bodyBuffer != null) {
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                endOfInput = true;
+            } else if (bodyBuffer.size() + bytesRead > hotSegmentCache.getMaxSegmentBytes()) {
+                // Too large for the memory tier.
+                bodyBuffer = null;
+            } else {
+                bodyBuffer.write(buffer, offset, bytesRead);
+            }
+        }
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        if (storedBody != null) {
+            return Util.castNonNull(currentDataSpec).uri;
+        }
+        return diskDataSourceOpened ? diskDataSource.getUri() : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return diskDataSourceOpened
+                ? diskDataSource.getResponseHeaders()
+                : Collections.emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (bodyBuffer != null && endOfInput) {
+                hotSegmentCache.put(Util.castNonNull(currentKey), bodyBuffer.toByteArray());
+            }
+            if (diskDataSourceOpened) {
+                diskDataSource.close();
+            }
+        } finally {
+            diskDataSourceOpened = false;
+            currentDataSpec = null;
+            currentKey = null;
+            bodyBuffer = null;
+            storedBody = null;
+        }
+    }
+}
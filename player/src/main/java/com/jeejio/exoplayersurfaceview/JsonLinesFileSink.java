@@ -0,0 +1,46 @@
+package com.jeejio.exoplayersurfaceview;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/** A {@link QoeCollector.Sink} that appends one JSON object per session to a file. */
+public final class JsonLinesFileSink implements QoeCollector.Sink {
+
+    private final File file;
+
+    /** @param file The file to append to. Created if it does not exist. */
+    public JsonLinesFileSink(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void onBatch(long[] rows, int rowCount) throws IOException {
+        StringBuilder line = new StringBuilder();
+        try (Writer writer =
+                     new BufferedWriter(
+                             new OutputStreamWriter(
+                                     new FileOutputStream(file, /* append= */ true),
+                                     StandardCharsets.UTF_8))) {
+            for (int row = 0; row < rowCount; row++) {
+                line.setLength(0);
+                line.append('{');
+                for (int field = 0; field < QoeCollector.FIELD_COUNT; field++) {
+                    if (field > 0) {
+                        line.append(',');
+                    }
+                    line.append('"')
+                            .append(QoeCollector.FIELD_NAMES[field])
+                            .append("\":")
+                            .append(rows[row * QoeCollector.FIELD_COUNT + field]);
+                }
+                line.append("}\n");
+                writer.write(line.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.jeejio.exoplayersurfaceview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.HandlerWrapper;
+
+/**
+ * Configures low-latency live playback and measures how the player tracks the live edge.
+ *
+ * <p>{@link #applyTo(MediaItem.Builder)} sets a target live offset and the playback speed range
+ * within which the player's live speed control may catch up or fall back. The speed the control
+ * picks is applied inside the player and never reported through {@code
+ * onPlaybackParametersChanged}, so while attached to a player, its live offset is instead sampled
+ * against the target every {@link #SAMPLE_INTERVAL_MS}: time spent playing further behind the
+ * target than the control tolerates is counted as catching up, and time spent ahead of it as falling
+ * back. Time is measured against the injected {@link Clock}.
+ */
+public final class LiveLatencyMonitor implements AnalyticsListener {
+
+    /** The default target live offset, in milliseconds. */
+    public static final long DEFAULT_TARGET_OFFSET_MS = 5_000;
+    /** The default minimum playback speed used to fall back from the live edge. */
+    public static final float DEFAULT_MIN_PLAYBACK_SPEED = 0.97f;
+    /** The default maximum playback speed used to catch up with the live edge. */
+    public static final float DEFAULT_MAX_PLAYBACK_SPEED = 1.03f;
+    /** The interval at which the live offset is sampled, in milliseconds. */
+    public static final long SAMPLE_INTERVAL_MS = 500;
+
+    /**
+     * The offset error within which the player's default speed control keeps playing at unit speed,
+     * as {@code DefaultLivePlaybackSpeedControl.DEFAULT_MAX_LIVE_OFFSET_ERROR_MS_FOR_UNIT_SPEED}.
+     */
+    private static final long MAX_OFFSET_ERROR_MS_FOR_UNIT_SPEED = 20;
+
+    private final long targetOffsetMs;
+    private final float minPlaybackSpeed;
+    private final float maxPlaybackSpeed;
+    private final Clock clock;
+    private final Runnable sampleRunnable;
+
+    @Nullable private Player player;
+    @Nullable private HandlerWrapper handler;
+    private boolean playing;
+    private long sampledAtMs;
+    private long catchUpTimeMs;
+    private long fallBackTimeMs;
+
+    public LiveLatencyMonitor() {
+        this(
+                DEFAULT_TARGET_OFFSET_MS,
+                DEFAULT_MIN_PLAYBACK_SPEED,
+                DEFAULT_MAX_PLAYBACK_SPEED,
+                Clock.DEFAULT);
+    }
+
+    /**
+     * @param targetOffsetMs The target live offset, in milliseconds.
+     * @param minPlaybackSpeed The minimum playback speed used to fall back from the live edge.
+     * @param maxPlaybackSpeed The maximum playback speed used to catch up with the live edge.
+     * @param clock The {@link Clock} against which the live offset is sampled and catch-up time is
+     *     measured.
+     */
+    public LiveLatencyMonitor(
+            long targetOffsetMs, float minPlaybackSpeed, float maxPlaybackSpeed, Clock clock) {
+        this.targetOffsetMs = targetOffsetMs;
+        this.minPlaybackSpeed = minPlaybackSpeed;
+        this.maxPlaybackSpeed = maxPlaybackSpeed;
+        this.clock = clock;
+        sampleRunnable = this::sampleAndSchedule;
+        sampledAtMs = clock.elapsedRealtime();
+    }
+
+    /** Sets the live configuration of {@code builder} and returns it. */
+    public MediaItem.Builder applyTo(MediaItem.Builder builder) {
+        return builder
+                .setLiveTargetOffsetMs(targetOffsetMs)
+                .setLiveMinPlaybackSpeed(minPlaybackSpeed)
+                .setLiveMaxPlaybackSpeed(maxPlaybackSpeed);
+    }
+
+    /**
+     * Attaches to {@code player}, or detaches if {@code null}. Must be called on the application
+     * thread of the player.
+     */
+    public void setPlayer(@Nullable Player player) {
+        sample();
+        if (handler != null) {
+            handler.removeCallbacksAndMessages(/* token= */ null);
+            handler = null;
+        }
+        this.player = player;
+        playing = player != null && player.isPlaying();
+        if (player != null) {
+            handler = clock.createHandler(player.getApplicationLooper(), /* callback= */ null);
+            handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Returns the current offset from the live edge, in milliseconds, or {@link C#TIME_UNSET} if no
+     * live content is playing.
+     */
+    public long getCurrentLiveOffsetMs() {
+        return player == null ? C.TIME_UNSET : player.getCurrentLiveOffset();
+    }
+
+    /** Returns the target live offset, in milliseconds. */
+    public long getTargetOffsetMs() {
+        return targetOffsetMs;
+    }
+
+    /**
+     * Returns the total time spent playing behind the target offset, while the player catches up,
+     * in milliseconds.
+     */
+    public long getCatchUpTimeMs() {
+        sample();
+        return catchUpTimeMs;
+    }
+
+    /**
+     * Returns the total time spent playing ahead of the target offset, while the player falls back,
+     * in milliseconds.
+     */
+    public long getFallBackTimeMs() {
+        sample();
+        return fallBackTimeMs;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LiveLatencyMonitor{offsetMs=" + getCurrentLiveOffsetMs()
+                + ", targetMs=" + targetOffsetMs
+                + ", catchUpMs=" + getCatchUpTimeMs()
+                + ", fallBackMs=" + getFallBackTimeMs()
+                + "}";
+    }
+
+    // AnalyticsListener implementation
+
+    @Override
+    public void onIsPlayingChanged(@NonNull EventTime eventTime, boolean isPlaying) {
+        sample();
+        playing = isPlaying;
+    }
+
+    private void sampleAndSchedule() {
+        sample();
+        if (handler != null) {
+            handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Attributes the time since the last sample, if the player was playing throughout, by the live
+     * offset now.
+     */
+    private void sample() {
+        long nowMs = clock.elapsedRealtime();
+        long elapsedMs = nowMs - sampledAtMs;
+        sampledAtMs = nowMs;
+        if (player == null || !playing) {
+            return;
+        }
+        long liveOffsetMs = player.getCurrentLiveOffset();
+        if (liveOffsetMs == C.TIME_UNSET) {
+            return;
+        }
+        long offsetErrorMs = liveOffsetMs - targetOffsetMs;
+        if (offsetErrorMs > MAX_OFFSET_ERROR_MS_FOR_UNIT_SPEED) {
+            catchUpTimeMs += elapsedMs;
+        } else if (offsetErrorMs < -MAX_OFFSET_ERROR_MS_FOR_UNIT_SPEED) {
+            fallBackTimeMs += elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stores manifest bodies with their validators ({@code ETag} and {@code Last-Modified}), so that
+ * they can be revalidated with a conditional request instead of downloaded again, and keeps the
+ * parsed form of each body so that it need not be parsed again.
+ *
+ * <p>Bodies are kept in memory up to a byte limit, least recently used first out, and persisted to
+ * a directory up to another limit, least recently stored or read first out, so that they survive
+ * process death. Thread safe. Disk reads and writes run on the calling thread but outside the
+ * lock, so that a slow disk does not hold up other loads.
+ *
+ * <p>Parsed forms are keyed by the URI the body was served from, after redirects, since that is
+ * the URI a playlist parser is handed, and by the {@link #getDigest digest} of the body. A
+ * validator would not do: {@code Last-Modified} has a resolution of one second and a weak {@code
+ * ETag} may stay the same across changes, so a live playlist refreshed within either would be
+ * served parsed from its previous body.
+ *
+ * <p>For a startup from the cache, stored bodies can be {@link #offerStartupEntry offered} to be
+ * served once, without a request, on the next load of their URI.
+ */
+public final class ManifestCache {
+
+    private static final String TAG = "ManifestCache";
+
+    /** The default limit of the in-memory store, in bytes. */
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 2 * 1024 * 1024;
+    /** The default limit of the disk store, in bytes. */
+    public static final long DEFAULT_MAX_DISK_BYTES = 16 * 1024 * 1024;
+
+    /** How long a load waits for a {@link #setPendingStartup pending startup}, in milliseconds. */
+    public static final long STARTUP_DECISION_TIMEOUT_MS = 500;
+    /** How long an {@link #offerStartupEntry offered startup entry} is served, in milliseconds. */
+    public static final long STARTUP_ENTRY_TIMEOUT_MS = 10_000;
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /** A stored manifest. */
+    public static final class Entry {
+
+        /** The requested URI, by which the entry is stored. */
+        public final Uri uri;
+        /** The URI the body was served from, after redirects. */
+        public final Uri resolvedUri;
+        @Nullable public final String eTag;
+        @Nullable public final String lastModified;
+        public final byte[] body;
+        /** The wall clock time at which the body was received, in milliseconds since the epoch. */
+        public final long storedAtMs;
+
+        public Entry(
+                Uri uri,
+                Uri resolvedUri,
+                @Nullable String eTag,
+                @Nullable String lastModified,
+                byte[] body,
+                long storedAtMs) {
+            this.uri = uri;
+            this.resolvedUri = resolvedUri;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.storedAtMs = storedAtMs;
+        }
+    }
+
+    private final File directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<Uri, Entry> entries;
+    /** Parsed manifests, as {@code Object[] {digest, parsed}}, by resolved URI. */
+    private final Map<Uri, Object[]> parsedManifests;
+    /** Startup decisions that loads wait for, by requested URI. */
+    private final Map<Uri, Future<?>> pendingStartups;
+    /** Entries to serve once without a request, by requested URI. */
+    private final Map<Uri, Entry> startupEntries;
+
+    private long memoryBytes;
+    private long startupEntriesExpireAtMs;
+
+    /**
+     * @param directory The directory in which manifests are persisted.
+     * @param maxMemoryBytes The limit of the in-memory store, in bytes.
+     */
+    public ManifestCache(File directory, long maxMemoryBytes) {
+        this(directory, maxMemoryBytes, DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * @param directory The directory in which manifests are persisted.
+     * @param maxMemoryBytes The limit of the in-memory store, in bytes.
+     * @param maxDiskBytes The limit of the disk store, in bytes.
+     */
+    public ManifestCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        entries = new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, true);
+        parsedManifests = new HashMap<>();
+        pendingStartups = new HashMap<>();
+        startupEntries = new HashMap<>();
+    }
+
+    /** Returns the stored manifest for {@code uri}, reading it from disk if needed. */
+    @Nullable
+    public Entry get(Uri uri) {
+        synchronized (this) {
+            @Nullable Entry entry = entries.get(uri);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        @Nullable Entry entry = readFromDisk(uri);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (this) {
+            // A concurrent put is newer than what was on disk.
+            @Nullable Entry newerEntry = entries.get(uri);
+            if (newerEntry != null) {
+                return newerEntry;
+            }
+            putInMemory(entry);
+            return entry;
+        }
+    }
+
+    /** Stores a manifest body received with a full response. */
+    public void put(Entry entry) {
+        synchronized (this) {
+            putInMemory(entry);
+        }
+        // Concurrent writes for the same URI leave one consistent body and validator on disk, at
+        // worst an older one, which is then revalidated.
+        writeToDisk(entry);
+        trimDisk(getFile(entry.uri));
+    }
+
+    /**
+     * Makes the next load of {@code uri} wait for {@code decision}, up to {@link
+     * #STARTUP_DECISION_TIMEOUT_MS}, before it {@link #takeStartupEntry takes} its startup entry, so
+     * that a startup decided in the background is not raced by the player's first load. Clears any
+     * earlier pending startup and offered entries.
+     */
+    public synchronized void setPendingStartup(Uri uri, Future<?> decision) {
+        pendingStartups.clear();
+        startupEntries.clear();
+        pendingStartups.put(uri, decision);
+    }
+
+    /**
+     * Offers {@code entry} to be served once, without a request, on the next load of its URI within
+     * {@link #STARTUP_ENTRY_TIMEOUT_MS}.
+     */
+    public synchronized void offerStartupEntry(Entry entry) {
+        startupEntries.put(entry.uri, entry);
+        startupEntriesExpireAtMs = SystemClock.elapsedRealtime() + STARTUP_ENTRY_TIMEOUT_MS;
+    }
+
+    /**
+     * Returns the entry offered for {@code uri}, waiting for a pending startup decision first, or
+     * {@code null} if the load should go to the network. The entry is served only once.
+     */
+    @Nullable
+    public Entry takeStartupEntry(Uri uri) throws InterruptedIOException {
+        @Nullable Future<?> decision;
+        synchronized (this) {
+            decision = pendingStartups.remove(uri);
+        }
+        if (decision != null) {
+            try {
+                decision.get(STARTUP_DECISION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (TimeoutException e) {
+                // Starting from the network is faster than waiting for the disk any longer.
+                decision.cancel(/* mayInterruptIfRunning= */ true);
+            } catch (ExecutionException | CancellationException e) {
+                // Start from the network.
+            }
+        }
+        synchronized (this) {
+            @Nullable Entry entry = startupEntries.remove(uri);
+            return entry != null && SystemClock.elapsedRealtime() < startupEntriesExpireAtMs
+                    ? entry
+                    : null;
+        }
+    }
+
+    /**
+     * Returns the parsed form of the body with {@code digest} served from {@code resolvedUri}, or
+     * {@code null} if it has not been parsed yet.
+     */
+    @Nullable
+    public synchronized Object getParsed(Uri resolvedUri, byte[] digest) {
+        @Nullable Object[] parsed = parsedManifests.get(resolvedUri);
+        return parsed != null && Arrays.equals((byte[]) parsed[0], digest) ? parsed[1] : null;
+    }
+
+    /**
+     * Stores the parsed form of the body with {@code digest} served from {@code resolvedUri},
+     * replacing that of any earlier body.
+     */
+    public synchronized void putParsed(Uri resolvedUri, byte[] digest, Object parsed) {
+        parsedManifests.put(resolvedUri, new Object[] {digest, parsed});
+    }
+
+    /** Returns the digest of {@code body} that its parsed form is keyed by. */
+    public static byte[] getDigest(byte[] body) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            // Every platform implementation provides SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void putInMemory(Entry entry) {
+        @Nullable Entry previous = entries.put(entry.uri, entry);
+        if (previous != null) {
+            memoryBytes -= previous.body.length;
+        }
+        memoryBytes += entry.body.length;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest == entry) {
+                break;
+            }
+            memoryBytes -= eldest.body.length;
+            parsedManifests.remove(eldest.resolvedUri);
+            iterator.remove();
+        }
+    }
+
+    private File getFile(Uri uri) {
+        return new File(directory, Integer.toHexString(uri.toString().hashCode()));
+    }
+
+    @Nullable
+    private Entry readFromDisk(Uri uri) {
+        File file = getFile(uri);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != FORMAT_VERSION || !uri.toString().equals(input.readUTF())) {
+                // Written by an older version, or a hash collision with another URI.
+                return null;
+            }
+            Uri resolvedUri = Uri.parse(input.readUTF());
+            @Nullable String eTag = readNullableString(input);
+            @Nullable String lastModified = readNullableString(input);
+            long storedAtMs = input.readLong();
+            byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            // Keeps entries in use from being trimmed first.
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(uri, resolvedUri, eTag, lastModified, body, storedAtMs);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read manifest: " + uri, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(Entry entry) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File file = getFile(entry.uri);
+        @Nullable File tempFile = null;
+        try {
+            // Written aside and renamed into place, so that a concurrent read or write of the same
+            // URI never sees a partial file.
+            tempFile = File.createTempFile(file.getName(), TEMP_FILE_SUFFIX, directory);
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(tempFile))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(entry.uri.toString());
+                output.writeUTF(entry.resolvedUri.toString());
+                writeNullableString(output, entry.eTag);
+                writeNullableString(output, entry.lastModified);
+                output.writeLong(entry.storedAtMs);
+                output.writeInt(entry.body.length);
+                output.write(entry.body);
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write manifest: " + entry.uri, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently stored or read files, other than {@code keepFile}, until the
+     * directory fits its limit.
+     */
+    private void trimDisk(File keepFile) {
+        @Nullable File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long diskBytes = 0;
+        for (File file : files) {
+            diskBytes += file.length();
+        }
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        long[] lastModifiedMs = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            // Read once, as a concurrent read of the entry may touch it while sorting.
+            lastModifiedMs[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(
+                order,
+                (first, second) -> Long.compare(lastModifiedMs[first], lastModifiedMs[second]));
+        for (int i = 0; i < order.length && diskBytes > maxDiskBytes; i++) {
+            File file = files[order[i]];
+            if (file.equals(keepFile) || file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                // Just stored, or being written and renamed into place once complete.
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream output, @Nullable String value)
+            throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.jeejio.exoplayersurfaceview;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.source.ClippingMediaSource;
+import com.google.android.exoplayer2.source.DefaultMediaSourceFactory;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.source.MergingMediaSource;
+import com.google.android.exoplayer2.source.SingleSampleMediaSource;
+import com.google.android.exoplayer2.source.hls.HlsMediaSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.List;
+
+/**
+ * A {@link MediaSourceFactory} that creates HLS sources whose playlists are parsed through a
+ * {@link CachingHlsPlaylistParserFactory}, and delegates all other types to a {@link
+ * DefaultMediaSourceFactory}.
+ *
+ * <p>HLS sources are wrapped for side-loaded subtitles and clipping as {@link
+ * DefaultMediaSourceFactory} wraps its own, since it cannot be given the HLS factory to use. Items
+ * with an ad tag are delegated as a whole, as only the default factory handles ads.
+ */
+public final class ManifestCachingMediaSourceFactory implements MediaSourceFactory {
+
+    private final DataSource.Factory dataSourceFactory;
+    private final DefaultMediaSourceFactory defaultMediaSourceFactory;
+    private final HlsMediaSource.Factory hlsMediaSourceFactory;
+
+    @Nullable private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
+
+    /**
+     * @param dataSourceFactory The factory for loading manifests and media, typically a {@link
+     *     ManifestDataSource.Factory} backed by the same {@code manifestCache}.
+     * @param manifestCache The {@link ManifestCache} holding parsed playlists.
+     */
+    public ManifestCachingMediaSourceFactory(
+            DataSource.Factory dataSourceFactory, ManifestCache manifestCache) {
+        this.dataSourceFactory = dataSourceFactory;
+        defaultMediaSourceFactory = new DefaultMediaSourceFactory(dataSourceFactory);
+        hlsMediaSourceFactory =
+                new HlsMediaSource.Factory(dataSourceFactory)
+                        .setPlaylistParserFactory(new CachingHlsPlaylistParserFactory(manifestCache));
+    }
+
+    @Override
+    public MediaSourceFactory setDrmSessionManager(@Nullable DrmSessionManager drmSessionManager) {
+        defaultMediaSourceFactory.setDrmSessionManager(drmSessionManager);
+        hlsMediaSourceFactory.setDrmSessionManager(drmSessionManager);
+        return this;
+    }
+
+    @Override
+    public MediaSourceFactory setDrmHttpDataSourceFactory(
+            @Nullable HttpDataSource.Factory drmHttpDataSourceFactory) {
+        defaultMediaSourceFactory.setDrmHttpDataSourceFactory(drmHttpDataSourceFactory);
+        hlsMediaSourceFactory.setDrmHttpDataSourceFactory(drmHttpDataSourceFactory);
+        return this;
+    }
+
+    @Override
+    public MediaSourceFactory setDrmUserAgent(@Nullable String userAgent) {
+        defaultMediaSourceFactory.setDrmUserAgent(userAgent);
+        hlsMediaSourceFactory.setDrmUserAgent(userAgent);
+        return this;
+    }
+
+    @Override
+    public MediaSourceFactory setLoadErrorHandlingPolicy(
+            @Nullable LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+        this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
+        defaultMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        hlsMediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+        return this;
+    }
+
+    @Override
+    public int[] getSupportedTypes() {
+        return defaultMediaSourceFactory.getSupportedTypes();
+    }
+
+    @Override
+    public MediaSource createMediaSource(MediaItem mediaItem) {
+        @Nullable MediaItem.PlaybackProperties playbackProperties = mediaItem.playbackProperties;
+        if (playbackProperties == null
+                || playbackProperties.adTagUri != null
+                || !isHls(playbackProperties)) {
+            return defaultMediaSourceFactory.createMediaSource(mediaItem);
+        }
+        MediaSource mediaSource = hlsMediaSourceFactory.createMediaSource(mediaItem);
+        List<MediaItem.Subtitle> subtitles = playbackProperties.subtitles;
+        if (!subtitles.isEmpty()) {
+            MediaSource[] mediaSources = new MediaSource[subtitles.size() + 1];
+            mediaSources[0] = mediaSource;
+            SingleSampleMediaSource.Factory singleSampleSourceFactory =
+                    new SingleSampleMediaSource.Factory(dataSourceFactory)
+                            .setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+            for (int i = 0; i < subtitles.size(); i++) {
+                mediaSources[i + 1] =
+                        singleSampleSourceFactory.createMediaSource(
+                                subtitles.get(i), /* durationUs= */ C.TIME_UNSET);
+            }
+            mediaSource = new MergingMediaSource(mediaSources);
+        }
+        return maybeClipMediaSource(mediaItem, mediaSource);
+    }
+
+    private static boolean isHls(MediaItem.PlaybackProperties playbackProperties) {
+        return playbackProperties.mimeType == null
+                ? Util.inferContentType(playbackProperties.uri) == C.TYPE_HLS
+                : MimeTypes.APPLICATION_M3U8.equals(playbackProperties.mimeType);
+    }
+
+    private static MediaSource maybeClipMediaSource(MediaItem mediaItem, MediaSource mediaSource) {
+        MediaItem.ClippingProperties clippingProperties = mediaItem.clippingProperties;
+        if (clippingProperties.startPositionMs == 0
+                && clippingProperties.endPositionMs == C.TIME_END_OF_SOURCE
+                && !clippingProperties.relativeToDefaultPosition) {
+            return mediaSource;
+        }
+        return new ClippingMediaSource(
+                mediaSource,
+                C.msToUs(clippingProperties.startPositionMs),
+                C.msToUs(clippingProperties.endPositionMs),
+                /* enableInitialDiscardingMode= */ !clippingProperties.startsAtKeyFrame,
+                /* allowDynamicClippingUpdates= */ clippingProperties.relativeToLiveWindow,
+                clippingProperties.relativeToDefaultPosition);
+    }
+}
@@ -0,0 +1,227 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that loads manifests through a {@link ManifestCache}, and everything else
+ * through a media data source.
+ *
+ * <p>Manifests bypass the media cache, so that live playlists are never served stale. A manifest
+ * that is already stored is requested conditionally; on {@code 304 Not Modified} the stored body is
+ * served without downloading it again, under the URI it was first served from after redirects, so
+ * that relative URIs in it resolve as they did and its parsed form is found again.
+ *
+ * <p>A {@link ManifestCache#offerStartupEntry startup entry} is served once without any request,
+ * so that playback can start from a stored playlist whose first segments are cached. The next load
+ * of the playlist revalidates it, which moves playback on to the live playlist.
+ */
+public final class ManifestDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link ManifestDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory mediaDataSourceFactory;
+        private final DataSource.Factory manifestDataSourceFactory;
+        private final ManifestCache manifestCache;
+
+        /**
+         * @param mediaDataSourceFactory The factory for loading media, typically reading through the
+         *     media cache.
+         * @param manifestDataSourceFactory The factory for loading manifests, which must not read
+         *     through the media cache.
+         * @param manifestCache The {@link ManifestCache}.
+         */
+        public Factory(
+                DataSource.Factory mediaDataSourceFactory,
+                DataSource.Factory manifestDataSourceFactory,
+                ManifestCache manifestCache) {
+            this.mediaDataSourceFactory = mediaDataSourceFactory;
+            this.manifestDataSourceFactory = manifestDataSourceFactory;
+            this.manifestCache = manifestCache;
+        }
+
+        @Override
+        public ManifestDataSource createDataSource() {
+            return new ManifestDataSource(
+                    mediaDataSourceFactory.createDataSource(),
+                    manifestDataSourceFactory.createDataSource(),
+                    manifestCache);
+        }
+    }
+
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final DataSource mediaDataSource;
+    private final DataSource manifestDataSource;
+    private final ManifestCache manifestCache;
+
+    @Nullable private DataSource currentDataSource;
+    @Nullable private DataSpec currentDataSpec;
+    @Nullable private Uri resolvedUri;
+    @Nullable private ByteArrayOutputStream bodyBuffer;
+    @Nullable private byte[] storedBody;
+    private int storedBodyPosition;
+    private boolean endOfInput;
+
+    private ManifestDataSource(
+            DataSource mediaDataSource, DataSource manifestDataSource, ManifestCache manifestCache) {
+        this.mediaDataSource = mediaDataSource;
+        this.manifestDataSource = manifestDataSource;
+        this.manifestCache = manifestCache;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        mediaDataSource.addTransferListener(transferListener);
+        manifestDataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentDataSpec = dataSpec;
+        endOfInput = false;
+        if (!isManifest(dataSpec.uri)) {
+            currentDataSource = mediaDataSource;
+            return mediaDataSource.open(dataSpec);
+        }
+        currentDataSource = manifestDataSource;
+        if (dataSpec.position != 0 || dataSpec.length != C.LENGTH_UNSET) {
+            return manifestDataSource.open(dataSpec);
+        }
+        @Nullable ManifestCache.Entry startupEntry = manifestCache.takeStartupEntry(dataSpec.uri);
+        if (startupEntry != null) {
+            return openStored(startupEntry);
+        }
+        @Nullable ManifestCache.Entry entry = manifestCache.get(dataSpec.uri);
+        DataSpec requestSpec = dataSpec;
+        if (entry != null) {
+            Map<String, String> headers = new HashMap<>(dataSpec.httpRequestHeaders);
+            if (entry.eTag != null) {
+                headers.put("If-None-Match", entry.eTag);
+            }
+            if (entry.lastModified != null) {
+                headers.put("If-Modified-Since", entry.lastModified);
+            }
+            requestSpec = dataSpec.buildUpon().setHttpRequestHeaders(headers).build();
+        }
+        try {
+            long length = manifestDataSource.open(requestSpec);
+            @Nullable Uri openedUri = manifestDataSource.getUri();
+            resolvedUri = openedUri != null ? openedUri : dataSpec.uri;
+            bodyBuffer = new ByteArrayOutputStream(length == C.LENGTH_UNSET ? 4096 : (int) length);
+            return length;
+        } catch (HttpDataSource.InvalidResponseCodeException e) {
+            if (entry == null || e.responseCode != HTTP_NOT_MODIFIED) {
+                throw e;
+            }
+            manifestDataSource.close();
+            return openStored(entry);
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+        if (storedBody != null) {
+            if (storedBodyPosition == storedBody.length) {
+                return C.RESULT_END_OF_INPUT;
+            }
+            int bytesToCopy = Math.min(readLength, storedBody.length - storedBodyPosition);
+            System.arraycopy(storedBody, storedBodyPosition, buffer, offset, bytesToCopy);
+            storedBodyPosition += bytesToCopy;
+            return bytesToCopy;
+        }
+        int bytesRead = Util.castNonNull(currentDataSource).read(buffer, offset, readLength);
+        if (bodyBuffer != null) {
+            if (bytesRead == C.RESULT_END_OF_INPUT) {
+                endOfInput = true;
+            } else {
+                bodyBuffer.write(buffer, offset, bytesRead);
+            }
+        }
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        if (storedBody != null) {
+            return resolvedUri;
+        }
+        return currentDataSource == null ? null : currentDataSource.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return currentDataSource == null || storedBody != null
+                ? Collections.emptyMap()
+                : currentDataSource.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (bodyBuffer != null && endOfInput) {
+                Map<String, List<String>> headers = manifestDataSource.getResponseHeaders();
+                manifestCache.put(
+                        new ManifestCache.Entry(
+                                Util.castNonNull(currentDataSpec).uri,
+                                Util.castNonNull(resolvedUri),
+                                getHeader(headers, "ETag"),
+                                getHeader(headers, "Last-Modified"),
+                                bodyBuffer.toByteArray(),
+                                System.currentTimeMillis()));
+            }
+            if (currentDataSource != null && storedBody == null) {
+                currentDataSource.close();
+            }
+        } finally {
+            currentDataSource = null;
+            currentDataSpec = null;
+            resolvedUri = null;
+            bodyBuffer = null;
+            storedBody = null;
+        }
+    }
+
+    private long openStored(ManifestCache.Entry entry) {
+        resolvedUri = entry.resolvedUri;
+        storedBody = entry.body;
+        storedBodyPosition = 0;
+        return entry.body.length;
+    }
+
+    private static boolean isManifest(Uri uri) {
+        @Nullable String scheme = uri.getScheme();
+        return ("http".equals(scheme) || "https".equals(scheme))
+                && Util.inferContentType(uri) != C.TYPE_OTHER;
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that reads media through a {@link CacheDataSource}, and manifests and
+ * playlists straight from upstream.
+ *
+ * <p>A live playlist changes with every refresh. Going through the cache, even without writing
+ * its body, would record the length it had on the first load as the content length of its key,
+ * and every later load would be cut short at that length. Manifests are recognized by their URI,
+ * as {@link Util#inferContentType(Uri)} does, and never reach the cache.
+ */
+public final class MediaCacheDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link MediaCacheDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        private final CacheDataSource.Factory cacheDataSourceFactory;
+        private final DataSource.Factory upstreamDataSourceFactory;
+
+        /**
+         * @param cacheDataSourceFactory The factory for reading media through the cache.
+         * @param upstreamDataSourceFactory The factory for loading manifests, which must not read
+         *     through the cache.
+         */
+        public Factory(
+                CacheDataSource.Factory cacheDataSourceFactory,
+                DataSource.Factory upstreamDataSourceFactory) {
+            this.cacheDataSourceFactory = cacheDataSourceFactory;
+            this.upstreamDataSourceFactory = upstreamDataSourceFactory;
+        }
+
+        @Override
+        public MediaCacheDataSource createDataSource() {
+            return new MediaCacheDataSource(
+                    cacheDataSourceFactory.createDataSource(),
+                    upstreamDataSourceFactory.createDataSource());
+        }
+    }
+
+    private final DataSource cacheDataSource;
+    private final DataSource upstreamDataSource;
+
+    @Nullable private DataSource currentDataSource;
+
+    private MediaCacheDataSource(DataSource cacheDataSource, DataSource upstreamDataSource) {
+        this.cacheDataSource = cacheDataSource;
+        this.upstreamDataSource = upstreamDataSource;
+    }
+
+    /** Returns whether {@code uri} is a manifest or playlist, which bypasses the cache. */
+    public static boolean isManifest(Uri uri) {
+        return Util.inferContentType(uri) != C.TYPE_OTHER;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        cacheDataSource.addTransferListener(transferListener);
+        upstreamDataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        currentDataSource = isManifest(dataSpec.uri) ? upstreamDataSource : cacheDataSource;
+        return currentDataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        return Util.castNonNull(currentDataSource).read(buffer, offset, readLength);
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return currentDataSource == null ? null : currentDataSource.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return currentDataSource == null
+                ? Collections.emptyMap()
+                : currentDataSource.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (currentDataSource != null) {
+            try {
+                currentDataSource.close();
+            } finally {
+                currentDataSource = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+/**
+ * A {@link LoadControl} whose buffer size in bytes is derived from the device's memory, and which
+ * shrinks its buffer when the system reports memory pressure.
+ *
+ * <p>The target buffer is a fraction of the per-app heap limit, halved on low-RAM devices, and never
+ * more than {@link DefaultLoadControl}'s default. Players sharing the budget can be capped lower
+ * with {@link #setMaxBufferBytes(int)}. {@link #onTrimMemory(int)} lowers a cap on the allocated
+ * bytes and trims the allocator's free pool; the cap is lifted when the player is next prepared.
+ *
+ * <p>Without a cap below the target, loading is left to the wrapped {@link DefaultLoadControl},
+ * which prioritizes its buffer durations over its size threshold. A cap lowered by memory pressure
+ * or a shared budget stops loading once reached, but only once the buffer holds enough media to
+ * start or resume playback, so that a cap, however low, can delay playback but never stall it.
+ */
+public final class MemoryAwareLoadControl implements LoadControl {
+
+    /** The fraction of the per-app heap limit used as the target buffer size. */
+    private static final float HEAP_FRACTION = 0.25f;
+    /** The smallest target buffer size, in bytes. */
+    private static final int MIN_TARGET_BUFFER_BYTES = 4 * 1024 * 1024;
+    /**
+     * The smallest cap for a player sharing the budget, in bytes: a single allocation. The
+     * playback-start buffer is loaded whatever the cap, so shares need no larger floor.
+     */
+    private static final int MIN_MAX_BUFFER_BYTES = C.DEFAULT_BUFFER_SEGMENT_SIZE;
+    /** The largest target buffer size, in bytes. */
+    private static final int MAX_TARGET_BUFFER_BYTES =
+            DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE
+                    + DefaultLoadControl.DEFAULT_AUDIO_BUFFER_SIZE;
+    /**
+     * The buffered duration below which loading continues regardless of the byte cap, in
+     * microseconds. The larger of the durations the wrapped control needs to start and to resume
+     * playback.
+     */
+    private static final long PLAYBACK_START_BUFFER_US =
+            C.msToUs(
+                    Math.max(
+                            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS,
+                            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS));
+
+    private final DefaultAllocator allocator;
+    private final DefaultLoadControl delegate;
+    private final int targetBufferBytes;
+
+    private volatile int maxBufferBytes;
+    private volatile int bufferCapBytes;
+    private volatile long peakAllocatedBytes;
+
+    public MemoryAwareLoadControl(Context context) {
+        this(computeTargetBufferBytes(context));
+    }
+
+    /** @param targetBufferBytes The target buffer size without memory pressure, in bytes. */
+    public MemoryAwareLoadControl(int targetBufferBytes) {
+        this.targetBufferBytes = targetBufferBytes;
+        allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        delegate =
+                new DefaultLoadControl.Builder()
+                        .setAllocator(allocator)
+                        .setTargetBufferBytes(targetBufferBytes)
+                        .setPrioritizeTimeOverSizeThresholds(true)
+                        .build();
+        maxBufferBytes = targetBufferBytes;
+        bufferCapBytes = targetBufferBytes;
+    }
+
+    /** Returns the target buffer size for the device's memory, in bytes. */
+    public static int computeTargetBufferBytes(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapBytes = Runtime.getRuntime().maxMemory();
+        if (activityManager != null) {
+            heapBytes = Math.min(heapBytes, activityManager.getMemoryClass() * 1024L * 1024L);
+        }
+        long targetBytes = (long) (heapBytes * HEAP_FRACTION);
+        if (activityManager != null && activityManager.isLowRamDevice()) {
+            targetBytes /= 2;
+        }
+        return (int)
+                Math.max(MIN_TARGET_BUFFER_BYTES, Math.min(MAX_TARGET_BUFFER_BYTES, targetBytes));
+    }
+
+    /**
+     * Should be called from {@link ComponentCallbacks2#onTrimMemory(int)}. Lowers the buffer cap in
+     * proportion to the severity of the memory pressure, and releases unused allocations.
+     */
+    public void onTrimMemory(int level) {
+        int capBytes;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            capBytes = maxBufferBytes / 4;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            capBytes = maxBufferBytes / 2;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            capBytes = maxBufferBytes * 3 / 4;
+        } else {
+            return;
+        }
+        bufferCapBytes = Math.min(bufferCapBytes, Math.max(MIN_MAX_BUFFER_BYTES, capBytes));
+        allocator.setTargetBufferSize(bufferCapBytes);
+        allocator.trim();
+    }
+
+    /**
+     * Sets the cap on allocated bytes without memory pressure, for players that share the memory
+     * budget with others. Clears any cap set by {@link #onTrimMemory(int)}.
+     *
+     * @param maxBufferBytes The cap, in bytes. Clamped to between a single allocation and {@link
+     *     #getTargetBufferBytes()}, so that shares of the budget add up to no more than it.
+     */
+    public void setMaxBufferBytes(int maxBufferBytes) {
+        this.maxBufferBytes =
+                Math.max(MIN_MAX_BUFFER_BYTES, Math.min(targetBufferBytes, maxBufferBytes));
+        bufferCapBytes = this.maxBufferBytes;
+        allocator.setTargetBufferSize(bufferCapBytes);
+    }
+
+    /** Returns the target buffer size without memory pressure, in bytes. */
+    public int getTargetBufferBytes() {
+        return targetBufferBytes;
+    }
+
+    /** Returns the current cap on allocated bytes. */
+    public int getBufferCapBytes() {
+        return bufferCapBytes;
+    }
+
+    /** Returns the number of bytes currently allocated by the allocator. */
+    public int getAllocatedBytes() {
+        return allocator.getTotalBytesAllocated();
+    }
+
+    /** Returns the largest number of bytes the allocator has held at once. */
+    public long getPeakAllocatedBytes() {
+        return peakAllocatedBytes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MemoryAwareLoadControl{allocated=" + getAllocatedBytes()
+                + ", peak=" + peakAllocatedBytes
+                + ", cap=" + bufferCapBytes
+                + ", max=" + maxBufferBytes
+                + ", target=" + targetBufferBytes
+                + "}";
+    }
+
+    // LoadControl implementation
+
+    @Override
+    public void onPrepared() {
+        bufferCapBytes = maxBufferBytes;
+        delegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(
+            Renderer[] renderers, TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
+        delegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        delegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        delegate.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return delegate.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return delegate.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(
+            long playbackPositionUs, long bufferedDurationUs, float playbackSpeed) {
+        int allocatedBytes = allocator.getTotalBytesAllocated();
+        if (allocatedBytes > peakAllocatedBytes) {
+            peakAllocatedBytes = allocatedBytes;
+        }
+        int bufferCapBytes = this.bufferCapBytes;
+        if (bufferCapBytes < targetBufferBytes
+                && allocatedBytes >= bufferCapBytes
+                && bufferedDurationUs >= PLAYBACK_START_BUFFER_US) {
+            return false;
+        }
+        return delegate.shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(
+            long bufferedDurationUs,
+            float playbackSpeed,
+            boolean rebuffering,
+            long targetLiveOffsetUs) {
+        return delegate.shouldStartPlayback(
+                bufferedDurationUs, playbackSpeed, rebuffering, targetLiveOffsetUs);
+    }
+}
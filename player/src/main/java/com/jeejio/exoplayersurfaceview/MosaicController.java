@@ -0,0 +1,331 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.util.List;
+
+/**
+ * Plays several media items at once, one per {@link ExoPlayerView} tile, as a mosaic.
+ *
+ * <p>All players come from one {@link PlayerPool}, by default {@link DemoUtil#getPlayerPool the
+ * app's}, so they share one bandwidth meter, one cache and one set of network threads. A {@link
+ * MosaicScheduler} reassigns decoder slots and rendition caps whenever the tiles' layout changes,
+ * and periodically as the bandwidth estimate moves; tiles without a slot have their video renderer
+ * disabled. Audio is disabled for every tile. The tiles split one player's buffer budget evenly,
+ * each loading beyond its share only what it needs to start playback. Aggregate throughput and
+ * per-tile rebuffering are recorded. All methods must be called on the main thread.
+ */
+public final class MosaicController implements View.OnLayoutChangeListener {
+
+    /** The default interval between scheduling passes, in milliseconds. */
+    public static final long DEFAULT_SCHEDULE_INTERVAL_MS = 5_000;
+
+    private final PlayerPool playerPool;
+    private final BandwidthMeter bandwidthMeter;
+    private final MosaicScheduler scheduler;
+    private final Handler handler;
+    private final Runnable scheduleRunnable;
+    private final Rect visibleRect;
+
+    private TileSession[] sessions;
+    private MosaicScheduler.Tile[] tiles;
+    private long startedAtMs;
+    private long bytesLoaded;
+
+    /**
+     * @param context A context.
+     * @param maxDecoderSlots The number of tiles that may decode video at once. See {@link
+     *     #getDeviceDecoderSlots(String)}.
+     */
+    public MosaicController(Context context, int maxDecoderSlots) {
+        this(
+                DemoUtil.getPlayerPool(context),
+                DemoUtil.getBandwidthMeter(context),
+                maxDecoderSlots);
+    }
+
+    /**
+     * @param playerPool The pool the tiles' players are acquired from.
+     * @param bandwidthMeter The bandwidth meter shared by the tiles' players.
+     * @param maxDecoderSlots The number of tiles that may decode video at once. See {@link
+     *     #getDeviceDecoderSlots(String)}.
+     */
+    public MosaicController(
+            PlayerPool playerPool, BandwidthMeter bandwidthMeter, int maxDecoderSlots) {
+        this.playerPool = playerPool;
+        this.bandwidthMeter = bandwidthMeter;
+        scheduler = new MosaicScheduler(maxDecoderSlots);
+        handler = new Handler(Looper.getMainLooper());
+        scheduleRunnable = this::schedule;
+        visibleRect = new Rect();
+        sessions = new TileSession[0];
+        tiles = new MosaicScheduler.Tile[0];
+    }
+
+    /**
+     * Returns the number of concurrent instances supported by the device's hardware decoders for
+     * {@code mimeType}, or 1 if unknown.
+     */
+    public static int getDeviceDecoderSlots(String mimeType) {
+        int maxInstances = 0;
+        MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo codecInfo : codecList.getCodecInfos()) {
+            if (codecInfo.isEncoder() || !isHardwareAccelerated(codecInfo)) {
+                continue;
+            }
+            for (String type : codecInfo.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mimeType)) {
+                    MediaCodecInfo.CodecCapabilities capabilities =
+                            codecInfo.getCapabilitiesForType(type);
+                    maxInstances = Math.max(maxInstances, capabilities.getMaxSupportedInstances());
+                }
+            }
+        }
+        return Math.max(1, maxInstances);
+    }
+
+    private static boolean isHardwareAccelerated(MediaCodecInfo codecInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return codecInfo.isHardwareAccelerated();
+        }
+        String name = codecInfo.getName();
+        return !name.startsWith("OMX.google.") && !name.startsWith("c2.android.");
+    }
+
+    /** Returns the decoder slots for H.264 video on this device. */
+    public static int getDeviceDecoderSlots() {
+        return getDeviceDecoderSlots(MimeTypes.VIDEO_H264);
+    }
+
+    /**
+     * Starts playing {@code mediaItems[i]} in {@code views[i]}, replacing any previous mosaic.
+     *
+     * @param mediaItems The items to play.
+     * @param views The tiles, one per item.
+     */
+    public void start(List<MediaItem> mediaItems, List<ExoPlayerView> views) {
+        Assertions.checkArgument(mediaItems.size() == views.size());
+        release();
+        int tileCount = mediaItems.size();
+        sessions = new TileSession[tileCount];
+        tiles = new MosaicScheduler.Tile[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            tiles[i] = new MosaicScheduler.Tile();
+            sessions[i] = new TileSession(mediaItems.get(i), views.get(i), tileCount);
+            views.get(i).addOnLayoutChangeListener(this);
+        }
+        startedAtMs = SystemClock.elapsedRealtime();
+        bytesLoaded = 0;
+        schedule();
+    }
+
+    /** Stops the mosaic and returns its players to the pool. */
+    public void release() {
+        handler.removeCallbacks(scheduleRunnable);
+        for (TileSession session : sessions) {
+            session.view.removeOnLayoutChangeListener(this);
+            session.release();
+        }
+        sessions = new TileSession[0];
+        tiles = new MosaicScheduler.Tile[0];
+    }
+
+    /** Returns the aggregate throughput of all tiles since {@link #start}, in bits per second. */
+    public long getAggregateThroughput() {
+        long elapsedMs = SystemClock.elapsedRealtime() - startedAtMs;
+        return elapsedMs <= 0 ? 0 : bytesLoaded * 8000 / elapsedMs;
+    }
+
+    /** Returns the number of rebuffers of the tile at {@code index}. */
+    public int getRebufferCount(int index) {
+        return sessions[index].rebufferCount;
+    }
+
+    /** Returns the time the tile at {@code index} has spent rebuffering, in milliseconds. */
+    public long getRebufferTimeMs(int index) {
+        return sessions[index].getRebufferTimeMs();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder =
+                new StringBuilder("MosaicController{throughput=")
+                        .append(getAggregateThroughput())
+                        .append(", slots=")
+                        .append(scheduler.getMaxDecoderSlots());
+        for (int i = 0; i < sessions.length; i++) {
+            builder.append(", tile").append(i)
+                    .append("={slot=").append(tiles[i].hasDecoderSlot)
+                    .append(", rebuffers=").append(sessions[i].rebufferCount)
+                    .append(", rebufferMs=").append(sessions[i].getRebufferTimeMs())
+                    .append('}');
+        }
+        return builder.append('}').toString();
+    }
+
+    // View.OnLayoutChangeListener implementation
+
+    @Override
+    public void onLayoutChange(
+            View view,
+            int left,
+            int top,
+            int right,
+            int bottom,
+            int oldLeft,
+            int oldTop,
+            int oldRight,
+            int oldBottom) {
+        if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+            handler.removeCallbacks(scheduleRunnable);
+            handler.post(scheduleRunnable);
+        }
+    }
+
+    private void schedule() {
+        handler.removeCallbacks(scheduleRunnable);
+        for (int i = 0; i < sessions.length; i++) {
+            View view = sessions[i].view;
+            MosaicScheduler.Tile tile = tiles[i];
+            tile.widthPx = view.getWidth();
+            tile.heightPx = view.getHeight();
+            long areaPx = (long) tile.widthPx * tile.heightPx;
+            tile.visibleFraction =
+                    areaPx > 0 && view.isShown() && view.getGlobalVisibleRect(visibleRect)
+                            ? (float) visibleRect.width() * visibleRect.height() / areaPx
+                            : 0f;
+        }
+        long bitrateEstimate = bandwidthMeter.getBitrateEstimate();
+        scheduler.schedule(tiles, bitrateEstimate);
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i].apply(tiles[i]);
+        }
+        if (sessions.length > 0) {
+            handler.postDelayed(scheduleRunnable, DEFAULT_SCHEDULE_INTERVAL_MS);
+        }
+    }
+
+    private final class TileSession implements AnalyticsListener {
+
+        public final ExoPlayerView view;
+
+        private final PlayerPool.PooledPlayer pooledPlayer;
+        private boolean readyOnce;
+        private int rebufferCount;
+        private long rebufferStartedAtMs;
+        private long rebufferTimeMs;
+
+        public TileSession(MediaItem mediaItem, ExoPlayerView view, int tileCount) {
+            this.view = view;
+            pooledPlayer = playerPool.acquire(mediaItem);
+            // The tiles share one player's memory budget, each loading its playback-start buffer
+            // beyond its share if need be.
+            MemoryAwareLoadControl loadControl = pooledPlayer.loadControl;
+            loadControl.setMaxBufferBytes(loadControl.getTargetBufferBytes() / tileCount);
+            rebufferStartedAtMs = C.TIME_UNSET;
+            SimpleExoPlayer player = pooledPlayer.player;
+            player.addAnalyticsListener(this);
+            player.setVolume(0f);
+            view.setPlayer(player);
+            if (player.getPlaybackState() == Player.STATE_IDLE
+                    || !mediaItem.equals(player.getCurrentMediaItem())) {
+                player.setMediaItem(mediaItem);
+                player.prepare();
+            } else if (player.isCurrentWindowLive()) {
+                player.seekToDefaultPosition();
+            }
+            player.setPlayWhenReady(true);
+        }
+
+        public void apply(MosaicScheduler.Tile tile) {
+            DefaultTrackSelector trackSelector = pooledPlayer.trackSelector;
+            DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+            SimpleExoPlayer player = pooledPlayer.player;
+            for (int i = 0; i < player.getRendererCount(); i++) {
+                int trackType = player.getRendererType(i);
+                if (trackType == C.TRACK_TYPE_VIDEO) {
+                    builder.setRendererDisabled(i, !tile.hasDecoderSlot);
+                } else if (trackType == C.TRACK_TYPE_AUDIO) {
+                    builder.setRendererDisabled(i, true);
+                }
+            }
+            if (tile.hasDecoderSlot) {
+                builder.setMaxVideoSize(tile.maxVideoWidth, tile.maxVideoHeight)
+                        .setMaxVideoBitrate(tile.maxVideoBitrate);
+            }
+            // Parameters equal to the current ones do not trigger a new track selection.
+            trackSelector.setParameters(builder);
+        }
+
+        public long getRebufferTimeMs() {
+            return rebufferStartedAtMs == C.TIME_UNSET
+                    ? rebufferTimeMs
+                    : rebufferTimeMs + SystemClock.elapsedRealtime() - rebufferStartedAtMs;
+        }
+
+        public void release() {
+            view.setPlayer(null);
+            SimpleExoPlayer player = pooledPlayer.player;
+            player.removeAnalyticsListener(this);
+            player.setVolume(1f);
+            DefaultTrackSelector trackSelector = pooledPlayer.trackSelector;
+            DefaultTrackSelector.ParametersBuilder builder =
+                    trackSelector
+                            .buildUponParameters()
+                            .clearVideoSizeConstraints()
+                            .setMaxVideoBitrate(Integer.MAX_VALUE);
+            for (int i = 0; i < player.getRendererCount(); i++) {
+                builder.setRendererDisabled(i, false);
+            }
+            trackSelector.setParameters(builder);
+            pooledPlayer.loadControl.setMaxBufferBytes(
+                    pooledPlayer.loadControl.getTargetBufferBytes());
+            playerPool.release(pooledPlayer);
+        }
+
+        @Override
+        public void onPlaybackStateChanged(@NonNull EventTime eventTime, int state) {
+            if (state == Player.STATE_READY) {
+                readyOnce = true;
+                if (rebufferStartedAtMs != C.TIME_UNSET) {
+                    rebufferTimeMs += eventTime.realtimeMs - rebufferStartedAtMs;
+                    rebufferStartedAtMs = C.TIME_UNSET;
+                }
+            } else if (state == Player.STATE_BUFFERING && readyOnce) {
+                rebufferCount++;
+                rebufferStartedAtMs = eventTime.realtimeMs;
+            }
+        }
+
+        @Override
+        public void onLoadCompleted(
+                @NonNull EventTime eventTime,
+                @NonNull LoadEventInfo loadEventInfo,
+                @NonNull MediaLoadData mediaLoadData) {
+            bytesLoaded += loadEventInfo.bytesLoaded;
+        }
+    }
+}
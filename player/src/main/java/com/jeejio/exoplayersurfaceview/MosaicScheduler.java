@@ -0,0 +1,112 @@
+package com.jeejio.exoplayersurfaceview;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Shares a decoder budget and an aggregate bandwidth estimate between the tiles of a mosaic.
+ *
+ * <p>Tiles are ranked by their visible area. The largest visible tiles are given a decoder slot, up
+ * to {@link #getMaxDecoderSlots() the budget}; the others do not decode video. Each tile with a slot
+ * has its rendition capped at its own size, and its bitrate capped at a share of the bandwidth
+ * estimate proportional to its visible area. This class has no Android dependencies.
+ */
+public final class MosaicScheduler {
+
+    /** The layout of a tile, and the caps assigned to it by {@link #schedule}. */
+    public static final class Tile {
+
+        /** The width of the tile, in pixels. */
+        public int widthPx;
+        /** The height of the tile, in pixels. */
+        public int heightPx;
+        /** The fraction of the tile that is visible on screen, from 0 to 1. */
+        public float visibleFraction;
+
+        /** Whether the tile was assigned a decoder slot. */
+        public boolean hasDecoderSlot;
+        /** The maximum video width the tile should select, in pixels. */
+        public int maxVideoWidth;
+        /** The maximum video height the tile should select, in pixels. */
+        public int maxVideoHeight;
+        /** The maximum video bitrate the tile should select, in bits per second. */
+        public int maxVideoBitrate;
+
+        private long visibleAreaPx;
+    }
+
+    /** The smallest bitrate cap assigned to a tile with a decoder slot, in bits per second. */
+    public static final int MIN_TILE_BITRATE = 200_000;
+
+    /** Bitrate caps are rounded down to a multiple of this, so that small changes keep the cap. */
+    private static final int BITRATE_STEP = 100_000;
+
+    private static final Comparator<Tile> LARGEST_VISIBLE_AREA_FIRST =
+            (tile1, tile2) -> Long.compare(tile2.visibleAreaPx, tile1.visibleAreaPx);
+
+    private final int maxDecoderSlots;
+
+    private Tile[] rankedTiles;
+
+    /** @param maxDecoderSlots The number of tiles that may decode video at once. */
+    public MosaicScheduler(int maxDecoderSlots) {
+        Assertions.checkArgument(maxDecoderSlots > 0);
+        this.maxDecoderSlots = maxDecoderSlots;
+        rankedTiles = new Tile[0];
+    }
+
+    /** Returns the number of tiles that may decode video at once. */
+    public int getMaxDecoderSlots() {
+        return maxDecoderSlots;
+    }
+
+    /**
+     * Assigns decoder slots and caps to {@code tiles} from their layout.
+     *
+     * @param tiles The tiles of the mosaic. Their caps are overwritten.
+     * @param bitrateEstimate The aggregate bandwidth estimate, in bits per second, or a negative
+     *     value if unknown, in which case bitrates are not capped.
+     */
+    public void schedule(Tile[] tiles, long bitrateEstimate) {
+        if (rankedTiles.length != tiles.length) {
+            rankedTiles = new Tile[tiles.length];
+        }
+        long totalSlottedAreaPx = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            Tile tile = tiles[i];
+            tile.visibleAreaPx =
+                    (long) (Math.max(0, tile.widthPx) * (long) Math.max(0, tile.heightPx)
+                            * Math.max(0f, Math.min(1f, tile.visibleFraction)));
+            rankedTiles[i] = tile;
+        }
+        Arrays.sort(rankedTiles, LARGEST_VISIBLE_AREA_FIRST);
+        for (int i = 0; i < rankedTiles.length; i++) {
+            Tile tile = rankedTiles[i];
+            tile.hasDecoderSlot = i < maxDecoderSlots && tile.visibleAreaPx > 0;
+            if (tile.hasDecoderSlot) {
+                totalSlottedAreaPx += tile.visibleAreaPx;
+            }
+        }
+        for (Tile tile : rankedTiles) {
+            if (!tile.hasDecoderSlot) {
+                tile.maxVideoWidth = 0;
+                tile.maxVideoHeight = 0;
+                tile.maxVideoBitrate = 0;
+                continue;
+            }
+            tile.maxVideoWidth = tile.widthPx;
+            tile.maxVideoHeight = tile.heightPx;
+            if (bitrateEstimate < 0) {
+                tile.maxVideoBitrate = Integer.MAX_VALUE;
+            } else {
+                long share = bitrateEstimate * tile.visibleAreaPx / totalSlottedAreaPx;
+                share = share / BITRATE_STEP * BITRATE_STEP;
+                tile.maxVideoBitrate =
+                        (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_TILE_BITRATE, share));
+            }
+        }
+        Arrays.fill(rankedTiles, null);
+    }
+}
@@ -0,0 +1,488 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link DataSource} that limits the number of concurrent connections per host, and splits large
+ * range requests across several parallel connections.
+ *
+ * <p>A request is split only when its length is at least the configured minimum split length, and
+ * only across connections that are free under the per-host limit. The first range is streamed
+ * directly from the upstream; the others are buffered in memory, loaded on the executor and served
+ * in order once the first is exhausted. A request is therefore not split if the buffered ranges
+ * would exceed the configured maximum range length.
+ *
+ * <p>The length of a bounded request is known up front, and its first range is its share of it.
+ * An open-ended request that could be split is opened for the minimum split length only, so that
+ * no connection fetches bytes another one fetches too: a shorter resource is not split, and still
+ * takes a single request. The rest of a longer resource, whose length the {@code Content-Range} of
+ * the response resolves, is split across the other connections or, if it cannot be, streamed on
+ * the first connection once its range is exhausted.
+ */
+public final class MultiConnectionDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link MultiConnectionDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        /** The default maximum number of concurrent connections per host. */
+        public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 6;
+        /** The default maximum number of connections a single request is split across. */
+        public static final int DEFAULT_MAX_PARALLEL_RANGES = 3;
+        /** The default minimum length of a request before it is split, in bytes. */
+        public static final long DEFAULT_MIN_SPLIT_LENGTH = 2 * 1024 * 1024;
+        /** The default maximum length of a range buffered in memory, in bytes. */
+        public static final int DEFAULT_MAX_RANGE_LENGTH = 4 * 1024 * 1024;
+
+        private final DataSource.Factory upstreamFactory;
+        private final ExecutorService executor;
+        private final Map<String, Semaphore> hostPermits;
+
+        private int maxConnectionsPerHost;
+        private int maxParallelRanges;
+        private long minSplitLength;
+        private int maxRangeLength;
+
+        /**
+         * @param upstreamFactory The factory for the upstream data sources.
+         * @param executor The executor on which split ranges are loaded.
+         */
+        public Factory(DataSource.Factory upstreamFactory, ExecutorService executor) {
+            this.upstreamFactory = upstreamFactory;
+            this.executor = executor;
+            hostPermits = new ConcurrentHashMap<>();
+            maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+            maxParallelRanges = DEFAULT_MAX_PARALLEL_RANGES;
+            minSplitLength = DEFAULT_MIN_SPLIT_LENGTH;
+            maxRangeLength = DEFAULT_MAX_RANGE_LENGTH;
+        }
+
+        /**
+         * Sets the maximum number of concurrent connections per host. Must be called before the
+         * first data source is created.
+         *
+         * @return This factory.
+         */
+        public Factory setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            Assertions.checkArgument(maxConnectionsPerHost > 0);
+            Assertions.checkState(hostPermits.isEmpty());
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of connections a single request may be split across. One
+         * disables splitting.
+         *
+         * @return This factory.
+         */
+        public Factory setMaxParallelRanges(int maxParallelRanges) {
+            Assertions.checkArgument(maxParallelRanges > 0);
+            this.maxParallelRanges = maxParallelRanges;
+            return this;
+        }
+
+        /**
+         * Sets the minimum length of a request before it is split, in bytes.
+         *
+         * @return This factory.
+         */
+        public Factory setMinSplitLength(long minSplitLength) {
+            this.minSplitLength = minSplitLength;
+            return this;
+        }
+
+        /**
+         * Sets the maximum length of a range buffered in memory, in bytes. Requests that would need
+         * longer ranges are not split.
+         *
+         * @return This factory.
+         */
+        public Factory setMaxRangeLength(int maxRangeLength) {
+            Assertions.checkArgument(maxRangeLength > 0);
+            this.maxRangeLength = maxRangeLength;
+            return this;
+        }
+
+        @Override
+        public MultiConnectionDataSource createDataSource() {
+            return new MultiConnectionDataSource(this);
+        }
+
+        private Semaphore getPermits(String host) {
+            @Nullable Semaphore permits = hostPermits.get(host);
+            if (permits == null) {
+                Semaphore newPermits = new Semaphore(maxConnectionsPerHost, /* fair= */ true);
+                permits = hostPermits.putIfAbsent(host, newPermits);
+                if (permits == null) {
+                    permits = newPermits;
+                }
+            }
+            return permits;
+        }
+    }
+
+    private static final Pattern CONTENT_RANGE_PATTERN =
+            Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final Factory factory;
+    private final List<TransferListener> transferListeners;
+
+    private final List<Future<byte[]>> pendingRanges;
+
+    @Nullable private DataSource upstream;
+    @Nullable private Semaphore permits;
+    @Nullable private byte[] currentRange;
+    @Nullable private DataSpec tailSpec;
+    private long firstRangeBytesRemaining;
+    private int currentRangeOffset;
+    private int nextRangeIndex;
+    private AtomicBoolean canceled;
+
+    private MultiConnectionDataSource(Factory factory) {
+        this.factory = factory;
+        transferListeners = new ArrayList<>();
+        pendingRanges = new ArrayList<>();
+        canceled = new AtomicBoolean();
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        transferListeners.add(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        canceled = new AtomicBoolean();
+        @Nullable String host = dataSpec.uri.getHost();
+        if (host != null) {
+            permits = factory.getPermits(host);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                permits = null;
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        upstream = createUpstream();
+        firstRangeBytesRemaining = C.LENGTH_UNSET;
+        tailSpec = null;
+        if (dataSpec.length != C.LENGTH_UNSET) {
+            long firstRangeLength = splitRanges(dataSpec, dataSpec.length);
+            long openedLength = upstream.open(dataSpec.subrange(0, firstRangeLength));
+            return pendingRanges.isEmpty() ? openedLength : dataSpec.length;
+        }
+        if (permits == null || factory.maxParallelRanges == 1) {
+            // Nothing can be split off, so the first connection takes everything.
+            return upstream.open(dataSpec);
+        }
+        long firstRangeLength = Math.max(1, factory.minSplitLength);
+        upstream.open(dataSpec.subrange(0, firstRangeLength));
+        long resolvedLength = getResolvedLength(dataSpec, upstream.getResponseHeaders());
+        if (resolvedLength == C.LENGTH_UNSET) {
+            // The rest follows the first range on the same connection, if the resource goes on.
+            firstRangeBytesRemaining = firstRangeLength;
+            tailSpec = dataSpec.subrange(firstRangeLength);
+            return C.LENGTH_UNSET;
+        }
+        if (resolvedLength <= firstRangeLength) {
+            firstRangeBytesRemaining = resolvedLength;
+            return resolvedLength;
+        }
+        firstRangeBytesRemaining = firstRangeLength;
+        long remainingLength = resolvedLength - firstRangeLength;
+        if (!splitRemainder(dataSpec, firstRangeLength, remainingLength)) {
+            tailSpec = dataSpec.subrange(firstRangeLength, remainingLength);
+        }
+        return resolvedLength;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+        while (true) {
+            if (currentRange == null) {
+                int bytesRead = readUpstream(buffer, offset, readLength);
+                if (bytesRead != C.RESULT_END_OF_INPUT) {
+                    return bytesRead;
+                }
+            } else if (currentRangeOffset < currentRange.length) {
+                int bytesToCopy = Math.min(readLength, currentRange.length - currentRangeOffset);
+                System.arraycopy(currentRange, currentRangeOffset, buffer, offset, bytesToCopy);
+                currentRangeOffset += bytesToCopy;
+                return bytesToCopy;
+            }
+            if (nextRangeIndex < pendingRanges.size()) {
+                currentRange = awaitRange(nextRangeIndex++);
+                currentRangeOffset = 0;
+            } else if (tailSpec != null) {
+                openTail();
+            } else {
+                return C.RESULT_END_OF_INPUT;
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return upstream == null ? null : upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstream == null ? Collections.emptyMap() : upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Pending ranges release their own permits once they observe the cancelation.
+        canceled.set(true);
+        pendingRanges.clear();
+        nextRangeIndex = 0;
+        currentRange = null;
+        tailSpec = null;
+        try {
+            if (upstream != null) {
+                upstream.close();
+            }
+        } finally {
+            upstream = null;
+            if (permits != null) {
+                permits.release();
+                permits = null;
+            }
+        }
+    }
+
+    /**
+     * Splits off ranges after the first to load in parallel, if {@code length} warrants it and
+     * connections are free.
+     *
+     * @return The length of the first range.
+     */
+    private long splitRanges(DataSpec dataSpec, long length) {
+        int maxParallelRanges = factory.maxParallelRanges;
+        if (permits == null
+                || length < factory.minSplitLength
+                || length / maxParallelRanges > factory.maxRangeLength) {
+            return length;
+        }
+        int rangeCount = 1;
+        while (rangeCount < maxParallelRanges && permits.tryAcquire()) {
+            rangeCount++;
+        }
+        long rangeLength = length / rangeCount;
+        if (rangeCount == 1 || rangeLength > factory.maxRangeLength) {
+            permits.release(rangeCount - 1);
+            return length;
+        }
+        // The first range takes any remainder, since only the others are buffered.
+        long firstRangeLength = length - (rangeCount - 1) * rangeLength;
+        addPendingRanges(dataSpec, firstRangeLength, length - firstRangeLength, rangeCount - 1);
+        return firstRangeLength;
+    }
+
+    /**
+     * Splits the {@code length} bytes after an open-ended request's first range, which spans the
+     * minimum split length, into ranges to load in parallel, if they fit in the maximum range
+     * length and connections are free.
+     *
+     * @return Whether the bytes were split.
+     */
+    private boolean splitRemainder(DataSpec dataSpec, long offset, long length) {
+        int maxRangeCount = factory.maxParallelRanges - 1;
+        if (permits == null || getRangeLength(length, maxRangeCount) > factory.maxRangeLength) {
+            return false;
+        }
+        int rangeCount = 0;
+        while (rangeCount < maxRangeCount && permits.tryAcquire()) {
+            rangeCount++;
+        }
+        if (rangeCount == 0 || getRangeLength(length, rangeCount) > factory.maxRangeLength) {
+            permits.release(rangeCount);
+            return false;
+        }
+        addPendingRanges(dataSpec, offset, length, rangeCount);
+        return true;
+    }
+
+    /**
+     * Loads {@code rangeCount} ranges covering the {@code length} bytes from {@code offset} on the
+     * executor, the last taking any remainder. A permit must be held for each.
+     */
+    private void addPendingRanges(DataSpec dataSpec, long offset, long length, int rangeCount) {
+        long rangeLength = length / rangeCount;
+        for (int i = 0; i < rangeCount; i++) {
+            long rangeOffset = offset + i * rangeLength;
+            DataSpec rangeSpec =
+                    dataSpec.subrange(
+                            rangeOffset,
+                            i == rangeCount - 1 ? offset + length - rangeOffset : rangeLength);
+            Semaphore rangePermits = Assertions.checkNotNull(permits);
+            AtomicBoolean rangeCanceled = canceled;
+            pendingRanges.add(
+                    factory.executor.submit(
+                            () -> loadRange(rangeSpec, rangePermits, rangeCanceled)));
+        }
+    }
+
+    /** Returns the length of the longest of {@code rangeCount} ranges covering {@code length}. */
+    private static long getRangeLength(long length, int rangeCount) {
+        return rangeCount == 0 ? Long.MAX_VALUE : length / rangeCount + length % rangeCount;
+    }
+
+    /**
+     * Returns the length of the resource from an open-ended request's position, from the {@code
+     * Content-Range} of a response to a range request, or from the {@code Content-Length} of one
+     * that served the whole resource, or {@link C#LENGTH_UNSET} if neither is known.
+     */
+    private static long getResolvedLength(
+            DataSpec dataSpec, Map<String, List<String>> responseHeaders) {
+        @Nullable String contentRange = getHeader(responseHeaders, "Content-Range");
+        if (contentRange != null) {
+            Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange);
+            return matcher.find()
+                    ? Long.parseLong(matcher.group(3)) - dataSpec.position
+                    : C.LENGTH_UNSET;
+        }
+        @Nullable String contentLength = getHeader(responseHeaders, "Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim()) - dataSpec.position;
+            } catch (NumberFormatException e) {
+                // Treated as unknown.
+            }
+        }
+        return C.LENGTH_UNSET;
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    private int readUpstream(byte[] buffer, int offset, int readLength) throws IOException {
+        DataSource upstream = Assertions.checkNotNull(this.upstream);
+        if (firstRangeBytesRemaining == C.LENGTH_UNSET) {
+            return upstream.read(buffer, offset, readLength);
+        }
+        if (firstRangeBytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        // Only a resource of unknown length may end within the first range.
+        boolean mayEndEarly = tailSpec != null && tailSpec.length == C.LENGTH_UNSET;
+        int bytesRead;
+        try {
+            bytesRead =
+                    upstream.read(
+                            buffer, offset, (int) Math.min(readLength, firstRangeBytesRemaining));
+        } catch (EOFException e) {
+            if (!mayEndEarly) {
+                throw e;
+            }
+            // The upstream fails a bounded request that the end of the resource cuts short.
+            bytesRead = C.RESULT_END_OF_INPUT;
+        }
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+            if (!mayEndEarly) {
+                throw new IOException("Unexpected end of first range");
+            }
+            firstRangeBytesRemaining = 0;
+            tailSpec = null;
+            return C.RESULT_END_OF_INPUT;
+        }
+        firstRangeBytesRemaining -= bytesRead;
+        return bytesRead;
+    }
+
+    /** Reopens the upstream for the bytes after the first range and any buffered ones. */
+    private void openTail() throws IOException {
+        DataSpec tailSpec = Assertions.checkNotNull(this.tailSpec);
+        this.tailSpec = null;
+        DataSource upstream = Assertions.checkNotNull(this.upstream);
+        upstream.close();
+        currentRange = null;
+        firstRangeBytesRemaining = C.LENGTH_UNSET;
+        upstream.open(tailSpec);
+    }
+
+    private DataSource createUpstream() {
+        DataSource dataSource = factory.upstreamFactory.createDataSource();
+        for (int i = 0; i < transferListeners.size(); i++) {
+            dataSource.addTransferListener(transferListeners.get(i));
+        }
+        return dataSource;
+    }
+
+    private byte[] awaitRange(int index) throws IOException {
+        try {
+            return pendingRanges.get(index).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private byte[] loadRange(
+            DataSpec rangeSpec, Semaphore rangePermits, AtomicBoolean canceled) throws IOException {
+        try {
+            // Ranges are at most maxRangeLength, so the length fits in an int.
+            byte[] data = new byte[(int) rangeSpec.length];
+            if (canceled.get()) {
+                return data;
+            }
+            DataSource dataSource = createUpstream();
+            try {
+                dataSource.open(rangeSpec);
+                int position = 0;
+                while (position < data.length && !canceled.get()) {
+                    int bytesRead = dataSource.read(data, position, data.length - position);
+                    if (bytesRead == C.RESULT_END_OF_INPUT) {
+                        throw new IOException("Unexpected end of range: " + rangeSpec);
+                    }
+                    position += bytesRead;
+                }
+            } finally {
+                dataSource.close();
+            }
+            return data;
+        } finally {
+            rangePermits.release();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.RenderersFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceFactory;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps released players prepared and paused, so that a later {@link #acquire(MediaItem)} can hand
+ * out a warm player instead of building a new one and re-initializing its codecs.
+ *
+ * <p>Idle players are released after {@link #setIdleTimeoutMs(long) the idle timeout}, or when
+ * {@link #onTrimMemory(int)} reports memory pressure. A caller that keeps a player alive itself
+ * hands it back with {@link #discard(PooledPlayer)}, so that each player has a single keep-alive.
+ * Time-to-first-frame is recorded separately for warm and cold acquisitions. All methods must be
+ * called on the main thread.
+ */
+public final class PlayerPool {
+
+    /** The default number of idle players kept warm. */
+    public static final int DEFAULT_MAX_IDLE_PLAYERS = 1;
+    /** The default time after which an idle player is released, in milliseconds. */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+
+    /** A player handed out by the pool, with the track selector it was built with. */
+    public static final class PooledPlayer {
+
+        public final SimpleExoPlayer player;
+        public final DefaultTrackSelector trackSelector;
+        public final MemoryAwareLoadControl loadControl;
+
+        private final FirstFrameListener firstFrameListener;
+        private long idleSinceMs;
+
+        private PooledPlayer(
+                SimpleExoPlayer player,
+                DefaultTrackSelector trackSelector,
+                MemoryAwareLoadControl loadControl,
+                FirstFrameListener firstFrameListener) {
+            this.player = player;
+            this.trackSelector = trackSelector;
+            this.loadControl = loadControl;
+            this.firstFrameListener = firstFrameListener;
+            player.addAnalyticsListener(firstFrameListener);
+        }
+    }
+
+    private final Context context;
+    private final MediaSourceFactory mediaSourceFactory;
+    private final RenderersFactory renderersFactory;
+    private final BandwidthMeter bandwidthMeter;
+    private final Handler handler;
+    private final ArrayDeque<PooledPlayer> idlePlayers;
+    private final ArrayDeque<PooledPlayer> acquiredPlayers;
+    private final Runnable evictIdlePlayersRunnable;
+
+    private int maxIdlePlayers;
+    private long idleTimeoutMs;
+
+    private int warmAcquireCount;
+    private int coldAcquireCount;
+    private int warmFirstFrameCount;
+    private int coldFirstFrameCount;
+    private long warmFirstFrameTotalMs;
+    private long coldFirstFrameTotalMs;
+
+    /** Creates a pool of players built from the {@link DemoUtil} factories. */
+    public PlayerPool(Context context) {
+        this(
+                context,
+                new ManifestCachingMediaSourceFactory(
+                        DemoUtil.getDataSourceFactory(context), DemoUtil.getManifestCache(context)),
+                DemoUtil.buildRenderersFactory(context, /* preferExtensionRenderer= */ false),
+                DemoUtil.getBandwidthMeter(context));
+    }
+
+    /**
+     * @param context A context.
+     * @param mediaSourceFactory The factory of the players' media sources.
+     * @param renderersFactory The factory of the players' renderers.
+     * @param bandwidthMeter The bandwidth meter shared by the players.
+     */
+    public PlayerPool(
+            Context context,
+            MediaSourceFactory mediaSourceFactory,
+            RenderersFactory renderersFactory,
+            BandwidthMeter bandwidthMeter) {
+        this.context = context.getApplicationContext();
+        this.mediaSourceFactory = mediaSourceFactory;
+        this.renderersFactory = renderersFactory;
+        this.bandwidthMeter = bandwidthMeter;
+        handler = new Handler(Looper.getMainLooper());
+        idlePlayers = new ArrayDeque<>();
+        acquiredPlayers = new ArrayDeque<>();
+        evictIdlePlayersRunnable = this::evictIdlePlayers;
+        maxIdlePlayers = DEFAULT_MAX_IDLE_PLAYERS;
+        idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    }
+
+    /** Sets the maximum number of idle players kept warm. Zero disables pooling. */
+    public void setMaxIdlePlayers(int maxIdlePlayers) {
+        this.maxIdlePlayers = maxIdlePlayers;
+        while (idlePlayers.size() > maxIdlePlayers) {
+            idlePlayers.removeFirst().player.release();
+        }
+    }
+
+    /** Sets the time after which an idle player is released, in milliseconds. */
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        scheduleEviction();
+    }
+
+    /**
+     * Returns a player for {@code mediaItem}. An idle player still prepared with the same item is
+     * preferred, then any idle player, then a newly built one. Only the first counts as a warm
+     * acquisition: an idle player with another item saves building the player, but its media has
+     * to be prepared from scratch. The caller should call {@link #release(PooledPlayer)} or {@link
+     * #discard(PooledPlayer)} rather than {@link SimpleExoPlayer#release()} when done with it.
+     */
+    public PooledPlayer acquire(@Nullable MediaItem mediaItem) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        @Nullable PooledPlayer pooledPlayer = null;
+        for (PooledPlayer idlePlayer : idlePlayers) {
+            if (idlePlayer.player.getPlaybackState() != Player.STATE_IDLE
+                    && Util.areEqual(idlePlayer.player.getCurrentMediaItem(), mediaItem)) {
+                pooledPlayer = idlePlayer;
+                break;
+            }
+        }
+        boolean warm = pooledPlayer != null;
+        if (pooledPlayer == null) {
+            pooledPlayer = idlePlayers.pollLast();
+        } else {
+            idlePlayers.remove(pooledPlayer);
+        }
+        if (pooledPlayer == null) {
+            pooledPlayer = buildPlayer();
+        }
+        if (warm) {
+            warmAcquireCount++;
+        } else {
+            coldAcquireCount++;
+        }
+        pooledPlayer.firstFrameListener.onAcquired(SystemClock.elapsedRealtime(), warm);
+        acquiredPlayers.add(pooledPlayer);
+        scheduleEviction();
+        return pooledPlayer;
+    }
+
+    /**
+     * Returns a player to the pool. It is paused and kept prepared for {@link
+     * #setIdleTimeoutMs(long) the idle timeout} if there is room, or released otherwise.
+     */
+    public void release(PooledPlayer pooledPlayer) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        pooledPlayer.firstFrameListener.onReleased();
+        acquiredPlayers.remove(pooledPlayer);
+        if (maxIdlePlayers == 0 || pooledPlayer.player.getPlayerError() != null) {
+            pooledPlayer.player.release();
+            return;
+        }
+        pooledPlayer.player.setPlayWhenReady(false);
+        pooledPlayer.idleSinceMs = SystemClock.elapsedRealtime();
+        idlePlayers.addLast(pooledPlayer);
+        while (idlePlayers.size() > maxIdlePlayers) {
+            idlePlayers.removeFirst().player.release();
+        }
+        scheduleEviction();
+    }
+
+    /**
+     * Releases a player without keeping it idle. Should be used by callers that already kept the
+     * player alive for a keep-alive window of their own, such as a playback session outliving its
+     * activity, so that the idle timeout does not extend that window further.
+     */
+    public void discard(PooledPlayer pooledPlayer) {
+        Assertions.checkState(Looper.myLooper() == Looper.getMainLooper());
+        pooledPlayer.firstFrameListener.onReleased();
+        acquiredPlayers.remove(pooledPlayer);
+        pooledPlayer.player.release();
+    }
+
+    /**
+     * Should be called from {@link ComponentCallbacks2#onTrimMemory(int)}. Shrinks the buffers of
+     * players in use, and releases all idle players once the system reports that memory is running
+     * low or the app is in the background.
+     */
+    public void onTrimMemory(int level) {
+        for (PooledPlayer pooledPlayer : acquiredPlayers) {
+            pooledPlayer.loadControl.onTrimMemory(level);
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            releaseIdlePlayers();
+        }
+    }
+
+    /** Releases all idle players. */
+    public void releaseIdlePlayers() {
+        while (!idlePlayers.isEmpty()) {
+            idlePlayers.removeFirst().player.release();
+        }
+        handler.removeCallbacks(evictIdlePlayersRunnable);
+    }
+
+    /** Returns the number of players currently acquired and not yet released. */
+    public int getAcquiredPlayerCount() {
+        return acquiredPlayers.size();
+    }
+
+    /** Returns the number of idle players currently kept warm. */
+    public int getIdlePlayerCount() {
+        return idlePlayers.size();
+    }
+
+    /** Returns the number of acquisitions served by an idle player still prepared with the item. */
+    public int getWarmAcquireCount() {
+        return warmAcquireCount;
+    }
+
+    /** Returns the number of acquisitions whose media had to be prepared from scratch. */
+    public int getColdAcquireCount() {
+        return coldAcquireCount;
+    }
+
+    /**
+     * Returns the mean time from a warm acquisition to the first rendered frame, in milliseconds, or
+     * {@link C#TIME_UNSET} if unknown.
+     */
+    public long getAverageWarmTimeToFirstFrameMs() {
+        return warmFirstFrameCount == 0
+                ? C.TIME_UNSET
+                : warmFirstFrameTotalMs / warmFirstFrameCount;
+    }
+
+    /**
+     * Returns the mean time from a cold acquisition to the first rendered frame, in milliseconds, or
+     * {@link C#TIME_UNSET} if unknown.
+     */
+    public long getAverageColdTimeToFirstFrameMs() {
+        return coldFirstFrameCount == 0
+                ? C.TIME_UNSET
+                : coldFirstFrameTotalMs / coldFirstFrameCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PlayerPool{idle=" + idlePlayers.size()
+                + ", warm=" + warmAcquireCount
+                + ", cold=" + coldAcquireCount
+                + ", warmTtffMs=" + getAverageWarmTimeToFirstFrameMs()
+                + ", coldTtffMs=" + getAverageColdTimeToFirstFrameMs()
+                + "}";
+    }
+
+    private PooledPlayer buildPlayer() {
+        DefaultTrackSelector trackSelector = new DefaultTrackSelector(context);
+        MemoryAwareLoadControl loadControl = new MemoryAwareLoadControl(context);
+        long startTimeNs = StartupTrace.begin();
+        SimpleExoPlayer player =
+                new SimpleExoPlayer.Builder(context, renderersFactory)
+                        .setMediaSourceFactory(mediaSourceFactory)
+                        .setTrackSelector(trackSelector)
+                        .setLoadControl(loadControl)
+                        .setBandwidthMeter(bandwidthMeter)
+                        .build();
+        StartupTrace.end(StartupTrace.SPAN_PLAYER_BUILD, startTimeNs);
+        return new PooledPlayer(player, trackSelector, loadControl, new FirstFrameListener());
+    }
+
+    private void scheduleEviction() {
+        handler.removeCallbacks(evictIdlePlayersRunnable);
+        if (!idlePlayers.isEmpty()) {
+            long oldestIdleSinceMs = idlePlayers.peekFirst().idleSinceMs;
+            long delayMs = oldestIdleSinceMs + idleTimeoutMs - SystemClock.elapsedRealtime();
+            handler.postDelayed(evictIdlePlayersRunnable, Math.max(0, delayMs));
+        }
+    }
+
+    private void evictIdlePlayers() {
+        long nowMs = SystemClock.elapsedRealtime();
+        while (!idlePlayers.isEmpty() && nowMs - idlePlayers.peekFirst().idleSinceMs >= idleTimeoutMs) {
+            idlePlayers.removeFirst().player.release();
+        }
+        scheduleEviction();
+    }
+
+    private void onFirstFrame(boolean warm, long timeToFirstFrameMs) {
+        if (warm) {
+            warmFirstFrameCount++;
+            warmFirstFrameTotalMs += timeToFirstFrameMs;
+        } else {
+            coldFirstFrameCount++;
+            coldFirstFrameTotalMs += timeToFirstFrameMs;
+        }
+    }
+
+    private final class FirstFrameListener implements AnalyticsListener {
+
+        private long acquiredAtMs;
+        private boolean warm;
+
+        public FirstFrameListener() {
+            acquiredAtMs = C.TIME_UNSET;
+        }
+
+        public void onAcquired(long acquiredAtMs, boolean warm) {
+            this.acquiredAtMs = acquiredAtMs;
+            this.warm = warm;
+        }
+
+        public void onReleased() {
+            acquiredAtMs = C.TIME_UNSET;
+        }
+
+        @Override
+        public void onRenderedFirstFrame(@NonNull EventTime eventTime, @Nullable Surface surface) {
+            if (acquiredAtMs != C.TIME_UNSET) {
+                onFirstFrame(warm, eventTime.realtimeMs - acquiredAtMs);
+                acquiredAtMs = C.TIME_UNSET;
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the start of the next item in the player's playlist into the cache while the current item
+ * plays, so that the transition does not wait on the network.
+ *
+ * <p>For HLS, the first segments of the variant the player would start on are cached, honouring
+ * their byte ranges; for progressive media, the first bytes. Playlists and manifests are loaded
+ * over a separate factory, so that they never land in the media cache; for DASH and
+ * SmoothStreaming only the manifest is loaded, which warms the connection. The type of an item is
+ * inferred from its MIME type, or from its URI if it has none.
+ *
+ * <p>A preload is used by the next transition to its item, and goes stale after a time: for live
+ * HLS once its segments have left the live window, otherwise after {@link
+ * #DEFAULT_PRELOAD_TTL_MS}, as the cache may have evicted them. The item is then preloaded again
+ * the next time it is up next, such as when the playlist repeats. The stall at each
+ * transition, from the item change until the player is ready again, is recorded separately for
+ * preloaded and non-preloaded items. All methods must be called on the application thread of the
+ * player.
+ */
+public final class PlaylistPreloader implements AnalyticsListener {
+
+    private static final String TAG = "PlaylistPreloader";
+
+    /** The default number of HLS segments to preload. */
+    public static final int DEFAULT_SEGMENTS_TO_PRELOAD = 2;
+    /** The default number of bytes of progressive media to preload. */
+    public static final long DEFAULT_PROGRESSIVE_BYTES_TO_PRELOAD = 1024 * 1024;
+    /** How long a preload of anything but live HLS is counted, in milliseconds. */
+    public static final long DEFAULT_PRELOAD_TTL_MS = 5 * 60 * 1000;
+
+    private final DataSource.Factory manifestDataSourceFactory;
+    private final CacheDataSource.Factory cacheDataSourceFactory;
+    private final BandwidthMeter bandwidthMeter;
+    private final HlsPlaylistLoader playlistLoader;
+    private final int segmentsToPreload;
+    private final ExecutorService preloadExecutor;
+    /** The {@link SystemClock#elapsedRealtime()} at which each preload goes stale, by URI. */
+    private final Map<Uri, Long> preloadExpiryTimesMs;
+
+    @Nullable private Player player;
+    @Nullable private DefaultTrackSelector trackSelector;
+    private long transitionAtMs;
+    private long stallStartMs;
+    private boolean transitionPreloaded;
+
+    private int preloadedTransitionCount;
+    private long preloadedStallTotalMs;
+    private int coldTransitionCount;
+    private long coldStallTotalMs;
+
+    /**
+     * @param manifestDataSourceFactory The factory for loading playlists and manifests, which must
+     *     not write to the media cache, typically {@link DemoUtil#getUpstreamDataSourceFactory}.
+     * @param cacheDataSourceFactory A factory whose sources write to the cache, typically {@link
+     *     DemoUtil#getPrefetchDataSourceFactory}.
+     * @param bandwidthMeter The player's bandwidth meter, from which the HLS variant to preload is
+     *     chosen.
+     * @param segmentsToPreload The number of HLS segments to preload.
+     */
+    public PlaylistPreloader(
+            DataSource.Factory manifestDataSourceFactory,
+            CacheDataSource.Factory cacheDataSourceFactory,
+            BandwidthMeter bandwidthMeter,
+            int segmentsToPreload) {
+        this.manifestDataSourceFactory = manifestDataSourceFactory;
+        this.cacheDataSourceFactory = cacheDataSourceFactory;
+        this.bandwidthMeter = bandwidthMeter;
+        this.segmentsToPreload = segmentsToPreload;
+        playlistLoader = new HlsPlaylistLoader(manifestDataSourceFactory);
+        preloadExecutor = Executors.newSingleThreadExecutor();
+        preloadExpiryTimesMs = new HashMap<>();
+        transitionAtMs = C.TIME_UNSET;
+        stallStartMs = C.TIME_UNSET;
+    }
+
+    /**
+     * Attaches to {@code player}, or detaches if {@code null}.
+     *
+     * @param player The player.
+     * @param trackSelector The player's track selector, whose parameters limit the HLS variant to
+     *     preload, or {@code null} if there are no limits.
+     */
+    public void setPlayer(@Nullable Player player, @Nullable DefaultTrackSelector trackSelector) {
+        this.player = player;
+        this.trackSelector = trackSelector;
+        transitionAtMs = C.TIME_UNSET;
+        if (player != null) {
+            preloadNextItem();
+        }
+    }
+
+    /** Stops preloading. */
+    public void release() {
+        player = null;
+        preloadExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the mean stall at transitions to preloaded items, in milliseconds, or {@link
+     * C#TIME_UNSET} if there were none.
+     */
+    public long getAveragePreloadedStallMs() {
+        return preloadedTransitionCount == 0
+                ? C.TIME_UNSET
+                : preloadedStallTotalMs / preloadedTransitionCount;
+    }
+
+    /**
+     * Returns the mean stall at transitions to items that were not preloaded, in milliseconds, or
+     * {@link C#TIME_UNSET} if there were none.
+     */
+    public long getAverageColdStallMs() {
+        return coldTransitionCount == 0 ? C.TIME_UNSET : coldStallTotalMs / coldTransitionCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PlaylistPreloader{preloaded=" + preloadedTransitionCount
+                + ", preloadedStallMs=" + getAveragePreloadedStallMs()
+                + ", cold=" + coldTransitionCount
+                + ", coldStallMs=" + getAverageColdStallMs()
+                + "}";
+    }
+
+    // AnalyticsListener implementation
+
+    @Override
+    public void onMediaItemTransition(
+            @NonNull EventTime eventTime,
+            @Nullable MediaItem mediaItem,
+            @Player.MediaItemTransitionReason int reason) {
+        if (player == null || mediaItem == null || mediaItem.playbackProperties == null) {
+            return;
+        }
+        transitionAtMs = eventTime.realtimeMs;
+        synchronized (preloadExpiryTimesMs) {
+            // Playing the item uses up its preload.
+            @Nullable Long expiryTimeMs =
+                    preloadExpiryTimesMs.remove(mediaItem.playbackProperties.uri);
+            transitionPreloaded =
+                    expiryTimeMs != null && SystemClock.elapsedRealtime() < expiryTimeMs;
+        }
+        if (player.getPlaybackState() == Player.STATE_READY) {
+            // Gapless transition.
+            onTransitionCompleted(/* stallMs= */ 0);
+        } else {
+            stallStartMs = eventTime.realtimeMs;
+        }
+        preloadNextItem();
+    }
+
+    @Override
+    public void onPlaybackStateChanged(@NonNull EventTime eventTime, @Player.State int state) {
+        if (transitionAtMs == C.TIME_UNSET) {
+            return;
+        }
+        if (state == Player.STATE_BUFFERING && stallStartMs == C.TIME_UNSET) {
+            stallStartMs = eventTime.realtimeMs;
+        } else if (state == Player.STATE_READY) {
+            onTransitionCompleted(
+                    stallStartMs == C.TIME_UNSET ? 0 : eventTime.realtimeMs - stallStartMs);
+        }
+    }
+
+    private void onTransitionCompleted(long stallMs) {
+        if (transitionPreloaded) {
+            preloadedTransitionCount++;
+            preloadedStallTotalMs += stallMs;
+        } else {
+            coldTransitionCount++;
+            coldStallTotalMs += stallMs;
+        }
+        transitionAtMs = C.TIME_UNSET;
+        stallStartMs = C.TIME_UNSET;
+    }
+
+    private void preloadNextItem() {
+        if (player == null) {
+            return;
+        }
+        int nextWindowIndex = player.getNextWindowIndex();
+        if (nextWindowIndex == C.INDEX_UNSET) {
+            return;
+        }
+        MediaItem nextItem = player.getMediaItemAt(nextWindowIndex);
+        if (nextItem.playbackProperties == null) {
+            return;
+        }
+        Uri uri = nextItem.playbackProperties.uri;
+        @Nullable String mimeType = nextItem.playbackProperties.mimeType;
+        synchronized (preloadExpiryTimesMs) {
+            @Nullable Long expiryTimeMs = preloadExpiryTimesMs.get(uri);
+            if (expiryTimeMs != null && SystemClock.elapsedRealtime() < expiryTimeMs) {
+                return;
+            }
+        }
+        DefaultTrackSelector.Parameters parameters =
+                trackSelector != null
+                        ? trackSelector.getParameters()
+                        : DefaultTrackSelector.Parameters.DEFAULT_WITHOUT_CONTEXT;
+        preloadExecutor.execute(() -> preload(uri, mimeType, parameters));
+    }
+
+    private void preload(
+            Uri uri, @Nullable String mimeType, DefaultTrackSelector.Parameters parameters) {
+        try {
+            long preloadedAtMs = SystemClock.elapsedRealtime();
+            long ttlMs = DEFAULT_PRELOAD_TTL_MS;
+            @C.ContentType int contentType = Util.inferContentTypeForUriAndMimeType(uri, mimeType);
+            if (contentType == C.TYPE_HLS) {
+                HlsMediaPlaylist mediaPlaylist = loadMediaPlaylist(uri, parameters);
+                List<HlsMediaPlaylist.Segment> segments = mediaPlaylist.segments;
+                // Live playback starts near the end of the window, VOD at the start.
+                int firstIndex =
+                        mediaPlaylist.hasEndTag
+                                ? 0
+                                : Math.max(0, segments.size() - segmentsToPreload);
+                int endIndex = Math.min(segments.size(), firstIndex + segmentsToPreload);
+                @Nullable HlsMediaPlaylist.Segment initializationSegment = null;
+                for (int i = firstIndex; i < endIndex; i++) {
+                    HlsMediaPlaylist.Segment segment = segments.get(i);
+                    if (segment.initializationSegment != null
+                            && segment.initializationSegment != initializationSegment) {
+                        initializationSegment = segment.initializationSegment;
+                        cache(getDataSpec(mediaPlaylist, initializationSegment));
+                    }
+                    cache(getDataSpec(mediaPlaylist, segment));
+                }
+                if (!mediaPlaylist.hasEndTag) {
+                    // The preloaded segments leave the live window as new ones are appended.
+                    ttlMs = C.usToMs(mediaPlaylist.targetDurationUs) * segmentsToPreload;
+                }
+            } else if (contentType == C.TYPE_DASH || contentType == C.TYPE_SS) {
+                loadManifest(uri);
+            } else {
+                cache(
+                        new DataSpec.Builder()
+                                .setUri(uri)
+                                .setLength(DEFAULT_PROGRESSIVE_BYTES_TO_PRELOAD)
+                                .build());
+            }
+            synchronized (preloadExpiryTimesMs) {
+                preloadExpiryTimesMs.put(uri, preloadedAtMs + ttlMs);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Preload failed: " + uri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the media playlist at {@code uri}, or for a master playlist that of the variant the
+     * player would start on, given its current bandwidth estimate and {@code parameters}.
+     */
+    private HlsMediaPlaylist loadMediaPlaylist(
+            Uri uri, DefaultTrackSelector.Parameters parameters) throws IOException {
+        HlsPlaylist playlist = playlistLoader.load(uri);
+        if (playlist instanceof HlsMediaPlaylist) {
+            return (HlsMediaPlaylist) playlist;
+        }
+        HlsMasterPlaylist masterPlaylist = (HlsMasterPlaylist) playlist;
+        if (masterPlaylist.variants.isEmpty()) {
+            throw new IOException("Master playlist has no variants");
+        }
+        HlsMasterPlaylist.Variant variant =
+                HlsPlaylistLoader.selectVariant(
+                        masterPlaylist, bandwidthMeter.getBitrateEstimate(), parameters);
+        return (HlsMediaPlaylist) playlistLoader.load(variant.url);
+    }
+
+    /** Returns the {@link DataSpec} the player loads {@code segment} with, byte range included. */
+    private static DataSpec getDataSpec(
+            HlsMediaPlaylist mediaPlaylist, HlsMediaPlaylist.Segment segment) {
+        return new DataSpec(
+                UriUtil.resolveToUri(mediaPlaylist.baseUri, segment.url),
+                segment.byteRangeOffset,
+                segment.byteRangeLength);
+    }
+
+    private void loadManifest(Uri uri) throws IOException {
+        DataSourceInputStream inputStream =
+                new DataSourceInputStream(
+                        manifestDataSourceFactory.createDataSource(), new DataSpec(uri));
+        try {
+            Util.toByteArray(inputStream);
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+    }
+
+    private void cache(DataSpec dataSpec) throws IOException, InterruptedException {
+        new CacheWriter(
+                        cacheDataSourceFactory.createDataSourceForDownloading(),
+                        dataSpec,
+                        /* allowShortContent= */ true,
+                        /* temporaryBuffer= */ null,
+                        /* progressListener= */ null)
+                .cache();
+    }
+}
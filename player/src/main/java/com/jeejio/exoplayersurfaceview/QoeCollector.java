@@ -0,0 +1,289 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.SystemClock;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Collects playback quality-of-experience metrics from {@link AnalyticsListener} callbacks.
+ *
+ * <p>Each session, from {@link #startSession()} to {@link #endSession()}, is recorded as one row of
+ * primitive counters in a fixed-size ring buffer, so that callbacks never allocate. Completed rows
+ * are exported in batches of {@code batchSize} to a {@link Sink} on a background thread; if the
+ * sink falls behind, the oldest unexported rows are overwritten.
+ *
+ * <p>Buffering after playback first became ready counts as a rebuffer, unless a seek caused it.
+ */
+public final class QoeCollector implements AnalyticsListener {
+
+    /** Receives batches of completed session rows. Called on a background thread. */
+    public interface Sink {
+
+        /**
+         * Called with a batch of rows.
+         *
+         * @param rows The rows, flattened: the value of field {@code f} of row {@code r} is at
+         *     {@code rows[r * FIELD_COUNT + f]}.
+         * @param rowCount The number of rows.
+         */
+        void onBatch(long[] rows, int rowCount) throws IOException;
+    }
+
+    /** Wall-clock time at which the session started, in milliseconds. */
+    public static final int FIELD_START_TIME_MS = 0;
+    /** Time from session start to the first rendered frame, or {@link C#TIME_UNSET}. */
+    public static final int FIELD_TIME_TO_FIRST_FRAME_MS = 1;
+    /** Number of rebuffers after playback first became ready, not counting seeks. */
+    public static final int FIELD_REBUFFER_COUNT = 2;
+    /** Total duration of rebuffers, in milliseconds. */
+    public static final int FIELD_REBUFFER_DURATION_MS = 3;
+    /** Number of dropped video frames. */
+    public static final int FIELD_DROPPED_FRAMES = 4;
+    /** Number of video bitrate switches. */
+    public static final int FIELD_BITRATE_SWITCHES = 5;
+    /** Total number of bytes loaded. */
+    public static final int FIELD_BYTES_LOADED = 6;
+    /** Number of player errors. */
+    public static final int FIELD_ERROR_COUNT = 7;
+    /** Number of fields per row. */
+    public static final int FIELD_COUNT = 8;
+
+    /** Names of the fields, indexed by field, as used by {@link JsonLinesFileSink}. */
+    public static final String[] FIELD_NAMES = {
+        "startTimeMs",
+        "timeToFirstFrameMs",
+        "rebufferCount",
+        "rebufferDurationMs",
+        "droppedFrames",
+        "bitrateSwitches",
+        "bytesLoaded",
+        "errorCount"
+    };
+
+    /** The default number of completed sessions retained in the ring buffer. */
+    public static final int DEFAULT_CAPACITY = 64;
+    /** The default number of completed sessions exported per batch. */
+    public static final int DEFAULT_BATCH_SIZE = 8;
+
+    private final Sink sink;
+    private final int capacity;
+    private final int batchSize;
+    private final long[] ring;
+    private final long[] current;
+    private final ExecutorService exportExecutor;
+
+    private long writtenRows;
+    private long exportedRows;
+
+    private boolean inSession;
+    private long sessionStartRealtimeMs;
+    private boolean hasBeenReady;
+    private boolean seeking;
+    private boolean bufferingForSeek;
+    private long rebufferStartRealtimeMs;
+    private int lastVideoBitrate;
+
+    private long eventCount;
+    private long eventOverheadNs;
+
+    public QoeCollector(Sink sink) {
+        this(sink, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param sink The {@link Sink} to export to.
+     * @param capacity The number of completed sessions retained in the ring buffer.
+     * @param batchSize The number of completed sessions exported per batch.
+     */
+    public QoeCollector(Sink sink, int capacity, int batchSize) {
+        this.sink = sink;
+        this.capacity = capacity;
+        this.batchSize = Math.min(batchSize, capacity);
+        ring = new long[capacity * FIELD_COUNT];
+        current = new long[FIELD_COUNT];
+        exportExecutor = Executors.newSingleThreadExecutor();
+        rebufferStartRealtimeMs = C.TIME_UNSET;
+    }
+
+    /** Starts a new session, ending the current one if any. */
+    public void startSession() {
+        if (inSession) {
+            endSession();
+        }
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            current[i] = 0;
+        }
+        current[FIELD_START_TIME_MS] = System.currentTimeMillis();
+        current[FIELD_TIME_TO_FIRST_FRAME_MS] = C.TIME_UNSET;
+        sessionStartRealtimeMs = SystemClock.elapsedRealtime();
+        hasBeenReady = false;
+        seeking = false;
+        bufferingForSeek = false;
+        rebufferStartRealtimeMs = C.TIME_UNSET;
+        lastVideoBitrate = Format.NO_VALUE;
+        inSession = true;
+    }
+
+    /** Ends the current session and records it. Exports a batch if one is complete. */
+    public void endSession() {
+        if (!inSession) {
+            return;
+        }
+        if (rebufferStartRealtimeMs != C.TIME_UNSET) {
+            current[FIELD_REBUFFER_DURATION_MS] +=
+                    SystemClock.elapsedRealtime() - rebufferStartRealtimeMs;
+            rebufferStartRealtimeMs = C.TIME_UNSET;
+        }
+        inSession = false;
+        System.arraycopy(
+                current, 0, ring, (int) (writtenRows % capacity) * FIELD_COUNT, FIELD_COUNT);
+        writtenRows++;
+        if (writtenRows - exportedRows > capacity) {
+            exportedRows = writtenRows - capacity;
+        }
+        if (writtenRows - exportedRows >= batchSize) {
+            flush();
+        }
+    }
+
+    /** Exports all completed sessions that have not been exported yet. */
+    public void flush() {
+        int rowCount = (int) (writtenRows - exportedRows);
+        if (rowCount == 0) {
+            return;
+        }
+        long[] rows = new long[rowCount * FIELD_COUNT];
+        for (int i = 0; i < rowCount; i++) {
+            int ringRow = (int) ((exportedRows + i) % capacity);
+            System.arraycopy(ring, ringRow * FIELD_COUNT, rows, i * FIELD_COUNT, FIELD_COUNT);
+        }
+        exportedRows = writtenRows;
+        exportExecutor.execute(
+                () -> {
+                    try {
+                        sink.onBatch(rows, rowCount);
+                    } catch (IOException e) {
+                        // Dropping a batch is preferable to blocking playback.
+                    }
+                });
+    }
+
+    /** Returns the value of {@code field} for the current session. */
+    public long getCurrentValue(int field) {
+        return current[field];
+    }
+
+    /** Returns the mean time spent in each callback, in nanoseconds. */
+    public long getAverageEventOverheadNs() {
+        return eventCount == 0 ? 0 : eventOverheadNs / eventCount;
+    }
+
+    // AnalyticsListener implementation
+
+    @Override
+    public void onPlaybackStateChanged(@NonNull EventTime eventTime, @Player.State int state) {
+        long startNs = System.nanoTime();
+        if (state == Player.STATE_READY) {
+            hasBeenReady = true;
+            bufferingForSeek = false;
+            if (rebufferStartRealtimeMs != C.TIME_UNSET) {
+                current[FIELD_REBUFFER_DURATION_MS] +=
+                        eventTime.realtimeMs - rebufferStartRealtimeMs;
+                rebufferStartRealtimeMs = C.TIME_UNSET;
+            }
+        } else if (state == Player.STATE_BUFFERING) {
+            if (seeking) {
+                // Lasts until the player is ready again, which may be after the seek is processed.
+                bufferingForSeek = true;
+            } else if (hasBeenReady
+                    && !bufferingForSeek
+                    && rebufferStartRealtimeMs == C.TIME_UNSET) {
+                current[FIELD_REBUFFER_COUNT]++;
+                rebufferStartRealtimeMs = eventTime.realtimeMs;
+            }
+        }
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onSeekStarted(@NonNull EventTime eventTime) {
+        long startNs = System.nanoTime();
+        seeking = true;
+        onEventHandled(startNs);
+    }
+
+    @SuppressWarnings("deprecation") // Called after the seek's state changes, which is all we need.
+    @Override
+    public void onSeekProcessed(@NonNull EventTime eventTime) {
+        long startNs = System.nanoTime();
+        seeking = false;
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onRenderedFirstFrame(@NonNull EventTime eventTime, @Nullable Surface surface) {
+        long startNs = System.nanoTime();
+        if (inSession && current[FIELD_TIME_TO_FIRST_FRAME_MS] == C.TIME_UNSET) {
+            current[FIELD_TIME_TO_FIRST_FRAME_MS] = eventTime.realtimeMs - sessionStartRealtimeMs;
+        }
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onDroppedVideoFrames(
+            @NonNull EventTime eventTime, int droppedFrames, long elapsedMs) {
+        long startNs = System.nanoTime();
+        current[FIELD_DROPPED_FRAMES] += droppedFrames;
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(
+            @NonNull EventTime eventTime, @NonNull MediaLoadData mediaLoadData) {
+        long startNs = System.nanoTime();
+        if (mediaLoadData.trackType == C.TRACK_TYPE_VIDEO && mediaLoadData.trackFormat != null) {
+            int bitrate = mediaLoadData.trackFormat.bitrate;
+            if (lastVideoBitrate != Format.NO_VALUE && bitrate != lastVideoBitrate) {
+                current[FIELD_BITRATE_SWITCHES]++;
+            }
+            lastVideoBitrate = bitrate;
+        }
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onLoadCompleted(
+            @NonNull EventTime eventTime,
+            @NonNull LoadEventInfo loadEventInfo,
+            @NonNull MediaLoadData mediaLoadData) {
+        long startNs = System.nanoTime();
+        current[FIELD_BYTES_LOADED] += loadEventInfo.bytesLoaded;
+        onEventHandled(startNs);
+    }
+
+    @Override
+    public void onPlayerError(@NonNull EventTime eventTime, @NonNull ExoPlaybackException error) {
+        long startNs = System.nanoTime();
+        current[FIELD_ERROR_COUNT]++;
+        onEventHandled(startNs);
+    }
+
+    private void onEventHandled(long startNs) {
+        eventCount++;
+        eventOverheadNs += System.nanoTime() - startNs;
+    }
+}
@@ -0,0 +1,284 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.util.UriUtil;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ahead in a live HLS playlist and loads the next media segments into the cache before the
+ * player requests them.
+ *
+ * <p>The playlist is refreshed every target duration. Up to {@code segmentsAhead} segments from the
+ * live edge are loaded, at most {@code maxConcurrentLoads} at a time, through a write-through
+ * {@link CacheDataSource}. For a master playlist, only the variant the player is loading is
+ * prefetched, so nothing is loaded until {@link #onVariantSelected(Format)} has been called with
+ * its format. Call {@link #onSegmentLoaded(Uri)} whenever the player completes a load, so that
+ * prefetched bytes can be reported as used or wasted.
+ */
+public final class SegmentPrefetcher {
+
+    private static final String TAG = "SegmentPrefetcher";
+
+    /** The default number of segments to load ahead of the player. */
+    public static final int DEFAULT_SEGMENTS_AHEAD = 3;
+    /** The default maximum number of segments loaded in parallel. */
+    public static final int DEFAULT_MAX_CONCURRENT_LOADS = 2;
+
+    private static final long DEFAULT_REFRESH_INTERVAL_MS = 2_000;
+
+    private final Uri playlistUri;
+    private final CacheDataSource.Factory cacheDataSourceFactory;
+    private final int segmentsAhead;
+    private final HlsPlaylistLoader playlistLoader;
+    private final ScheduledExecutorService refreshExecutor;
+    private final ExecutorService loadExecutor;
+    private final Set<Uri> inFlight;
+    /** Prefetched segments not yet requested by the player, with their sizes in bytes. */
+    private final Map<Uri, Long> prefetched;
+
+    @Nullable private HlsMasterPlaylist masterPlaylist;
+    @Nullable private Uri mediaPlaylistUri;
+    @Nullable private volatile Format variantFormat;
+    private boolean released;
+
+    private long prefetchedBytes;
+    private long usedBytes;
+    private long wastedBytes;
+    private int failedLoads;
+
+    /**
+     * @param playlistUri The URI of the master or media playlist.
+     * @param playlistDataSourceFactory A factory for loading playlists, which must not be served
+     *     from the cache.
+     * @param cacheDataSourceFactory A factory whose sources write to the cache, typically {@link
+     *     DemoUtil#getPrefetchDataSourceFactory}.
+     * @param segmentsAhead The number of segments from the live edge to load ahead.
+     * @param maxConcurrentLoads The maximum number of segments loaded in parallel.
+     */
+    public SegmentPrefetcher(
+            Uri playlistUri,
+            DataSource.Factory playlistDataSourceFactory,
+            CacheDataSource.Factory cacheDataSourceFactory,
+            int segmentsAhead,
+            int maxConcurrentLoads) {
+        this.playlistUri = playlistUri;
+        this.cacheDataSourceFactory = cacheDataSourceFactory;
+        this.segmentsAhead = segmentsAhead;
+        playlistLoader = new HlsPlaylistLoader(playlistDataSourceFactory);
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+        loadExecutor = Executors.newFixedThreadPool(maxConcurrentLoads);
+        inFlight = new HashSet<>();
+        prefetched = new LinkedHashMap<>();
+    }
+
+    /** Starts refreshing the playlist and prefetching segments. */
+    public void start() {
+        refreshExecutor.execute(this::refresh);
+    }
+
+    /** Stops prefetching. Segments prefetched but never requested are counted as wasted. */
+    public void release() {
+        synchronized (this) {
+            released = true;
+            for (long bytes : prefetched.values()) {
+                wastedBytes += bytes;
+            }
+            prefetched.clear();
+        }
+        refreshExecutor.shutdownNow();
+        loadExecutor.shutdownNow();
+    }
+
+    /**
+     * Should be called with the format of each media load the player starts, for example the
+     * {@code trackFormat} passed to {@code AnalyticsListener.onLoadStarted}. Formats that match no
+     * variant of the master playlist, such as those of separate audio renditions, are ignored.
+     */
+    public void onVariantSelected(Format format) {
+        variantFormat = format;
+    }
+
+    /**
+     * Should be called when the player completes loading {@code uri}, for example from {@code
+     * AnalyticsListener.onLoadCompleted}.
+     */
+    public synchronized void onSegmentLoaded(Uri uri) {
+        @Nullable Long bytes = prefetched.remove(uri);
+        if (bytes != null) {
+            usedBytes += bytes;
+        }
+    }
+
+    /**
+     * Returns the total number of bytes this prefetcher loaded from upstream into the cache.
+     * Segments already cached, in full or in part, only count the bytes that were missing.
+     */
+    public synchronized long getPrefetchedBytes() {
+        return prefetchedBytes;
+    }
+
+    /** Returns the number of prefetched bytes that were later requested by the player. */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of prefetched bytes whose segments left the live window, or were still
+     * pending at release, without being requested by the player.
+     */
+    public synchronized long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    /** Returns the number of segment loads that failed. */
+    public synchronized int getFailedLoadCount() {
+        return failedLoads;
+    }
+
+    private void refresh() {
+        long nextRefreshMs = DEFAULT_REFRESH_INTERVAL_MS;
+        try {
+            @Nullable HlsMediaPlaylist mediaPlaylist = loadMediaPlaylist();
+            // Without a media playlist, the player has not selected a variant yet.
+            if (mediaPlaylist != null) {
+                if (mediaPlaylist.targetDurationUs != C.TIME_UNSET) {
+                    nextRefreshMs = C.usToMs(mediaPlaylist.targetDurationUs);
+                }
+                scheduleLoads(mediaPlaylist);
+                if (mediaPlaylist.hasEndTag) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Playlist refresh failed", e);
+        }
+        synchronized (this) {
+            if (!released) {
+                refreshExecutor.schedule(this::refresh, nextRefreshMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Loads the media playlist of the variant the player is loading, or returns {@code null} if
+     * that is not known yet. The master playlist is only loaded once.
+     */
+    @Nullable
+    private HlsMediaPlaylist loadMediaPlaylist() throws IOException {
+        if (masterPlaylist == null && mediaPlaylistUri == null) {
+            HlsPlaylist playlist = playlistLoader.load(playlistUri);
+            if (playlist instanceof HlsMediaPlaylist) {
+                mediaPlaylistUri = playlistUri;
+                return (HlsMediaPlaylist) playlist;
+            }
+            masterPlaylist = (HlsMasterPlaylist) playlist;
+        }
+        if (masterPlaylist != null) {
+            @Nullable Format format = variantFormat;
+            @Nullable HlsMasterPlaylist.Variant variant =
+                    format == null ? null : HlsPlaylistLoader.getVariant(masterPlaylist, format);
+            if (variant != null) {
+                mediaPlaylistUri = variant.url;
+            } else if (mediaPlaylistUri == null) {
+                return null;
+            }
+        }
+        return (HlsMediaPlaylist) playlistLoader.load(mediaPlaylistUri);
+    }
+
+    private synchronized void scheduleLoads(HlsMediaPlaylist mediaPlaylist) {
+        if (released) {
+            return;
+        }
+        Set<Uri> window = new HashSet<>();
+        List<HlsMediaPlaylist.Segment> segments = mediaPlaylist.segments;
+        for (int i = 0; i < segments.size(); i++) {
+            window.add(UriUtil.resolveToUri(mediaPlaylist.baseUri, segments.get(i).url));
+        }
+        // Segments that slid out of the window will never be requested.
+        Iterator<Map.Entry<Uri, Long>> iterator = prefetched.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Uri, Long> entry = iterator.next();
+            if (!window.contains(entry.getKey())) {
+                wastedBytes += entry.getValue();
+                iterator.remove();
+            }
+        }
+        for (int i = Math.max(0, segments.size() - segmentsAhead); i < segments.size(); i++) {
+            Uri segmentUri = UriUtil.resolveToUri(mediaPlaylist.baseUri, segments.get(i).url);
+            if (!prefetched.containsKey(segmentUri) && inFlight.add(segmentUri)) {
+                loadExecutor.execute(() -> loadSegment(segmentUri));
+            }
+        }
+    }
+
+    private void loadSegment(Uri segmentUri) {
+        // Only bytes fetched from upstream, not those the cache already held.
+        long[] bytesLoaded = new long[1];
+        CacheWriter cacheWriter =
+                new CacheWriter(
+                        cacheDataSourceFactory.createDataSourceForDownloading(),
+                        new DataSpec(segmentUri),
+                        /* allowShortContent= */ true,
+                        /* temporaryBuffer= */ null,
+                        (requestLength, bytesCached, newBytesCached) ->
+                                bytesLoaded[0] += newBytesCached);
+        boolean succeeded = false;
+        try {
+            cacheWriter.cache();
+            succeeded = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Prefetch failed: " + segmentUri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            inFlight.remove(segmentUri);
+            if (!succeeded) {
+                failedLoads++;
+                return;
+            }
+            prefetchedBytes += bytesLoaded[0];
+            if (released) {
+                wastedBytes += bytesLoaded[0];
+            } else {
+                prefetched.put(segmentUri, bytesLoaded[0]);
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "SegmentPrefetcher{prefetched=" + prefetchedBytes
+                + ", used=" + usedBytes
+                + ", wasted=" + wastedBytes
+                + ", failed=" + failedLoads
+                + "}";
+    }
+}
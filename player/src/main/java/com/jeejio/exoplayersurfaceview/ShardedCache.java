@@ -0,0 +1,206 @@
+package com.jeejio.exoplayersurfaceview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * A {@link Cache} that spreads content keys over several {@link SimpleCache} shards, each with its
+ * own directory, index and lock, so that concurrent loads of different keys do not contend.
+ *
+ * <p>All operations on a key go to the shard its hash selects, so a key's spans never straddle
+ * shards. The shard count must not change for a given directory, or existing content would be
+ * looked up in the wrong shard. Each shard evicts independently, with an equal share of the size
+ * cap.
+ */
+public final class ShardedCache implements Cache {
+
+    private final SimpleCache[] shards;
+    private final File[] shardDirectories;
+
+    /**
+     * @param directory The directory holding one subdirectory per shard.
+     * @param shardCount The number of shards.
+     * @param maxBytes The size cap across all shards, or {@link
+     *     com.google.android.exoplayer2.C#LENGTH_UNSET} for no cap.
+     * @param databaseProvider The provider of the database holding the shards' indices.
+     */
+    public ShardedCache(
+            File directory, int shardCount, long maxBytes, DatabaseProvider databaseProvider) {
+        Assertions.checkArgument(shardCount > 0);
+        shards = new SimpleCache[shardCount];
+        shardDirectories = new File[shardCount];
+        long maxShardBytes = maxBytes < 0 ? maxBytes : maxBytes / shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            shardDirectories[i] = new File(directory, Integer.toString(i));
+            shards[i] =
+                    new SimpleCache(
+                            shardDirectories[i],
+                            DemoUtil.buildCacheEvictor(maxShardBytes),
+                            databaseProvider);
+        }
+    }
+
+    /** Returns the number of shards. */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Derived from the uids of all shards, so that it changes if any shard's content is lost. -1
+     * while any shard has no uid.
+     */
+    @Override
+    public long getUid() {
+        long uid = 0;
+        for (SimpleCache shard : shards) {
+            long shardUid = shard.getUid();
+            if (shardUid < 0) {
+                return -1;
+            }
+            uid = 31 * uid + shardUid;
+        }
+        return uid & Long.MAX_VALUE;
+    }
+
+    @Override
+    public void release() {
+        for (SimpleCache shard : shards) {
+            shard.release();
+        }
+    }
+
+    @NonNull
+    @Override
+    public NavigableSet<CacheSpan> addListener(@NonNull String key, @NonNull Listener listener) {
+        return getShard(key).addListener(key, listener);
+    }
+
+    @Override
+    public void removeListener(@NonNull String key, @NonNull Listener listener) {
+        getShard(key).removeListener(key, listener);
+    }
+
+    @NonNull
+    @Override
+    public NavigableSet<CacheSpan> getCachedSpans(@NonNull String key) {
+        return getShard(key).getCachedSpans(key);
+    }
+
+    @NonNull
+    @Override
+    public Set<String> getKeys() {
+        Set<String> keys = new HashSet<>();
+        for (SimpleCache shard : shards) {
+            keys.addAll(shard.getKeys());
+        }
+        return keys;
+    }
+
+    @Override
+    public long getCacheSpace() {
+        long cacheSpace = 0;
+        for (SimpleCache shard : shards) {
+            cacheSpace += shard.getCacheSpace();
+        }
+        return cacheSpace;
+    }
+
+    @NonNull
+    @Override
+    public CacheSpan startReadWrite(@NonNull String key, long position, long length)
+            throws InterruptedException, CacheException {
+        return getShard(key).startReadWrite(key, position, length);
+    }
+
+    @Nullable
+    @Override
+    public CacheSpan startReadWriteNonBlocking(@NonNull String key, long position, long length)
+            throws CacheException {
+        return getShard(key).startReadWriteNonBlocking(key, position, length);
+    }
+
+    @NonNull
+    @Override
+    public File startFile(@NonNull String key, long position, long length) throws CacheException {
+        return getShard(key).startFile(key, position, length);
+    }
+
+    @Override
+    public void commitFile(@NonNull File file, long length) throws CacheException {
+        getShard(file).commitFile(file, length);
+    }
+
+    @Override
+    public void releaseHoleSpan(@NonNull CacheSpan holeSpan) {
+        getShard(holeSpan.key).releaseHoleSpan(holeSpan);
+    }
+
+    @Override
+    public void removeResource(@NonNull String key) {
+        getShard(key).removeResource(key);
+    }
+
+    @Override
+    public void removeSpan(@NonNull CacheSpan span) {
+        getShard(span.key).removeSpan(span);
+    }
+
+    @Override
+    public boolean isCached(@NonNull String key, long position, long length) {
+        return getShard(key).isCached(key, position, length);
+    }
+
+    @Override
+    public long getCachedLength(@NonNull String key, long position, long length) {
+        return getShard(key).getCachedLength(key, position, length);
+    }
+
+    @Override
+    public long getCachedBytes(@NonNull String key, long position, long length) {
+        return getShard(key).getCachedBytes(key, position, length);
+    }
+
+    @Override
+    public void applyContentMetadataMutations(
+            @NonNull String key, @NonNull ContentMetadataMutations mutations) throws CacheException {
+        getShard(key).applyContentMetadataMutations(key, mutations);
+    }
+
+    @NonNull
+    @Override
+    public ContentMetadata getContentMetadata(@NonNull String key) {
+        return getShard(key).getContentMetadata(key);
+    }
+
+    private SimpleCache getShard(String key) {
+        // Spreads the hash, since keys are URIs that often share long prefixes.
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return shards[(hash & Integer.MAX_VALUE) % shards.length];
+    }
+
+    private SimpleCache getShard(File file) {
+        String path = file.getAbsolutePath();
+        for (int i = 0; i < shards.length; i++) {
+            if (path.startsWith(shardDirectories[i].getAbsolutePath() + File.separator)) {
+                return shards[i];
+            }
+        }
+        throw new IllegalArgumentException("File not in any shard: " + file);
+    }
+}
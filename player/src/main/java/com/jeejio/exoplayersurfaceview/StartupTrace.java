@@ -0,0 +1,193 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.SystemClock;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records named spans on the startup path and writes them in the Chrome trace event format, which
+ * can be opened in {@code chrome://tracing} or Perfetto.
+ *
+ * <p>Spans are timed with {@link SystemClock#elapsedRealtimeNanos()}. A span is started with {@link
+ * #begin()} and recorded with {@link #end(String, long)}; span names should be constants, so that
+ * tracing allocates nothing. While disabled, each call is a single volatile read. Spans are kept in
+ * a fixed-size buffer; those beyond its capacity are counted and dropped. All methods are
+ * thread-safe.
+ */
+public final class StartupTrace {
+
+    /** Creation of the Cronet engine. */
+    public static final String SPAN_CRONET_ENGINE = "DemoUtil.cronetEngine";
+    /** Construction of the {@code ExoDatabaseProvider}. The database is opened on first use. */
+    public static final String SPAN_DATABASE_PROVIDER = "DemoUtil.databaseProvider";
+    /**
+     * Construction of the {@code SimpleCache}. The scan of its directory runs on the cache's own
+     * initialization thread, and shows up as a longer first load.
+     */
+    public static final String SPAN_SIMPLE_CACHE = "DemoUtil.simpleCache";
+    /** Construction of the {@link ManifestCache}. */
+    public static final String SPAN_MANIFEST_CACHE = "DemoUtil.manifestCache";
+    /** {@code SimpleExoPlayer.Builder.build()}. */
+    public static final String SPAN_PLAYER_BUILD = "SimpleExoPlayer.Builder.build";
+    /** {@code MainActivity.onCreate}. */
+    public static final String SPAN_ACTIVITY_CREATE = "MainActivity.onCreate";
+    /** {@code MainActivity.initializePlayer}. */
+    public static final String SPAN_INITIALIZE_PLAYER = "MainActivity.initializePlayer";
+    /** A manifest or playlist load. */
+    public static final String SPAN_MANIFEST_LOAD = "manifestLoad";
+    /** From the start of the process to {@code DemoApplication.onCreate}. */
+    public static final String SPAN_PROCESS_START = "processStart";
+    /** From the first {@code initializePlayer} to the first rendered frame. */
+    public static final String SPAN_TIME_TO_FIRST_FRAME = "timeToFirstFrame";
+
+    /** The default number of spans kept. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final Object lock = new Object();
+
+    private static volatile boolean enabled;
+
+    private static final String[] names = new String[DEFAULT_CAPACITY];
+    private static final long[] startTimesNs = new long[DEFAULT_CAPACITY];
+    private static final long[] durationsNs = new long[DEFAULT_CAPACITY];
+    private static final long[] threadIds = new long[DEFAULT_CAPACITY];
+    private static final String[] threadNames = new String[DEFAULT_CAPACITY];
+    private static int spanCount;
+    private static int droppedSpanCount;
+
+    /** Enables or disables recording. Spans already recorded are kept. */
+    public static void setEnabled(boolean enabled) {
+        StartupTrace.enabled = enabled;
+    }
+
+    /** Returns whether spans are being recorded. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time of a span, to be passed to {@link #end(String, long)}, or 0 if tracing
+     * is disabled.
+     */
+    public static long begin() {
+        return enabled ? SystemClock.elapsedRealtimeNanos() : 0;
+    }
+
+    /**
+     * Records a span from {@code startTimeNs} to now on the calling thread. Does nothing if {@code
+     * startTimeNs} is 0, or tracing is disabled.
+     *
+     * @param name The name of the span.
+     * @param startTimeNs The value returned by {@link #begin()}.
+     */
+    public static void end(String name, long startTimeNs) {
+        if (startTimeNs != 0 && enabled) {
+            record(name, startTimeNs, SystemClock.elapsedRealtimeNanos());
+        }
+    }
+
+    /**
+     * Records a span whose times were measured elsewhere, such as those reported to an {@code
+     * AnalyticsListener}. Does nothing if tracing is disabled.
+     *
+     * @param name The name of the span.
+     * @param startTimeNs The start of the span, in the {@link SystemClock#elapsedRealtimeNanos()}
+     *     time base.
+     * @param endTimeNs The end of the span, in the same time base.
+     */
+    public static void record(String name, long startTimeNs, long endTimeNs) {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        synchronized (lock) {
+            if (spanCount == names.length) {
+                droppedSpanCount++;
+                return;
+            }
+            names[spanCount] = name;
+            startTimesNs[spanCount] = startTimeNs;
+            durationsNs[spanCount] = Math.max(0, endTimeNs - startTimeNs);
+            threadIds[spanCount] = thread.getId();
+            threadNames[spanCount] = thread.getName();
+            spanCount++;
+        }
+    }
+
+    /** Returns the number of spans recorded. */
+    public static int getSpanCount() {
+        synchronized (lock) {
+            return spanCount;
+        }
+    }
+
+    /** Returns the number of spans dropped because the buffer was full. */
+    public static int getDroppedSpanCount() {
+        synchronized (lock) {
+            return droppedSpanCount;
+        }
+    }
+
+    /** Discards the recorded spans. */
+    public static void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < spanCount; i++) {
+                names[i] = null;
+                threadNames[i] = null;
+            }
+            spanCount = 0;
+            droppedSpanCount = 0;
+        }
+    }
+
+    /**
+     * Writes the recorded spans to {@code file} as a Chrome trace event JSON document, replacing its
+     * contents.
+     *
+     * @param file The file to write.
+     * @throws IOException If an error occurs writing the file.
+     */
+    public static void writeTo(File file) throws IOException {
+        StringBuilder json = new StringBuilder();
+        synchronized (lock) {
+            json.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            int pid = android.os.Process.myPid();
+            for (int i = 0; i < spanCount; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                // Complete events, with times in microseconds.
+                json.append("{\"ph\":\"X\",\"name\":\"")
+                        .append(names[i])
+                        .append("\",\"ts\":")
+                        .append(startTimesNs[i] / 1000)
+                        .append(",\"dur\":")
+                        .append(durationsNs[i] / 1000)
+                        .append(",\"pid\":")
+                        .append(pid)
+                        .append(",\"tid\":")
+                        .append(threadIds[i])
+                        .append(",\"args\":{\"thread\":\"")
+                        .append(threadNames[i].replace("\\", "\\\\").replace("\"", "\\\""))
+                        .append("\"}}");
+            }
+            json.append("],\"otherData\":{\"droppedSpans\":")
+                    .append(droppedSpanCount)
+                    .append("}}\n");
+        }
+        try (Writer writer =
+                     new BufferedWriter(
+                             new OutputStreamWriter(
+                                     new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write(json.toString());
+        }
+    }
+
+    private StartupTrace() {}
+}
@@ -0,0 +1,116 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.text.Cue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Draws subtitle cues that were laid out and rasterized on a background thread.
+ *
+ * <p>{@link #setCues(List)} hands the cues to a worker thread, where a {@link CueRasterizer} places
+ * them and draws text cues into cached bitmaps. Only finished bitmaps and their positions are
+ * posted back to the main thread, so {@link #onDraw(Canvas)} does no layout work. Cues superseded
+ * before their layout completes are dropped.
+ */
+public final class SubtitleOverlayView extends View {
+
+    private final Handler mainHandler;
+    private final Paint bitmapPaint;
+    private final CueRasterizer cueRasterizer;
+
+    @Nullable private HandlerThread layoutThread;
+    @Nullable private Handler layoutHandler;
+    private List<Cue> cues;
+    private List<CueRasterizer.RenderedCue> renderedCues;
+    private int generation;
+
+    public SubtitleOverlayView(Context context) {
+        this(context, /* attrs= */ null);
+    }
+
+    public SubtitleOverlayView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        mainHandler = new Handler(Looper.getMainLooper());
+        bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        cueRasterizer = new CueRasterizer();
+        cues = Collections.emptyList();
+        renderedCues = Collections.emptyList();
+    }
+
+    /** Sets the cues to display. Must be called on the main thread. */
+    public void setCues(List<Cue> cues) {
+        this.cues = cues;
+        int generation = ++this.generation;
+        if (cues.isEmpty()) {
+            if (!renderedCues.isEmpty()) {
+                renderedCues = Collections.emptyList();
+                invalidate();
+            }
+            return;
+        }
+        int width = getWidth();
+        int height = getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        getLayoutHandler().post(() -> layOut(cues, width, height, generation));
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        setCues(cues);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (layoutThread != null) {
+            layoutThread.quit();
+            layoutThread = null;
+            layoutHandler = null;
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        for (int i = 0; i < renderedCues.size(); i++) {
+            CueRasterizer.RenderedCue renderedCue = renderedCues.get(i);
+            canvas.drawBitmap(
+                    renderedCue.bitmap, /* src= */ null, renderedCue.destination, bitmapPaint);
+        }
+    }
+
+    private Handler getLayoutHandler() {
+        if (layoutHandler == null) {
+            layoutThread = new HandlerThread("ExoPlayerView:Subtitles");
+            layoutThread.start();
+            layoutHandler = new Handler(layoutThread.getLooper());
+        }
+        return layoutHandler;
+    }
+
+    /** Lays out and rasterizes {@code cues}. Runs on the layout thread. */
+    private void layOut(List<Cue> cues, int width, int height, int generation) {
+        List<CueRasterizer.RenderedCue> renderedCues = cueRasterizer.layOut(cues, width, height);
+        mainHandler.post(
+                () -> {
+                    if (this.generation == generation) {
+                        this.renderedCues = renderedCues;
+                        invalidate();
+                    }
+                });
+    }
+}
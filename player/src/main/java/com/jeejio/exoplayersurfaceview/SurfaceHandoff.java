@@ -0,0 +1,164 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.util.Assertions;
+
+/**
+ * Moves a {@link SimpleExoPlayer} between several {@link ExoPlayerView}s and measures each switch.
+ *
+ * <p>Two durations are reported per switch: the gap during which the player had no surface able to
+ * receive frames, which is zero when the target surface was ready beforehand, and the latency from
+ * the switch to the first frame rendered on the target. The frames the video renderer dropped in
+ * between are reported too, read from the {@link DecoderCounters} the player hands its analytics
+ * listeners, which count every drop rather than the batches reported to {@link
+ * AnalyticsListener#onDroppedVideoFrames}. {@link #preload(ExoPlayerView)} makes a target create
+ * its surface ahead of the switch so that the gap is avoided. All methods must be called on the
+ * main thread.
+ */
+public final class SurfaceHandoff {
+
+    /** Listener of completed switches. */
+    public interface Listener {
+
+        /**
+         * Called when the first frame is rendered on the target of a switch.
+         *
+         * @param target The view the player was moved to.
+         * @param surfaceGapMs The time the player spent without a ready surface, in milliseconds.
+         * @param firstFrameLatencyMs The time from the switch to the first rendered frame, in
+         *     milliseconds.
+         * @param droppedFrames The number of video frames dropped from the switch to the first
+         *     rendered frame.
+         */
+        void onSwitchCompleted(
+                ExoPlayerView target,
+                long surfaceGapMs,
+                long firstFrameLatencyMs,
+                int droppedFrames);
+    }
+
+    private final SimpleExoPlayer player;
+    private final Listener listener;
+    private final ComponentListener componentListener;
+
+    @Nullable private ExoPlayerView currentTarget;
+    @Nullable private DecoderCounters videoDecoderCounters;
+    private long switchStartMs;
+    private long surfaceGapMs;
+    private int droppedFramesAtSwitch;
+
+    /**
+     * @param player The player to move between views.
+     * @param listener The listener of completed switches.
+     */
+    public SurfaceHandoff(SimpleExoPlayer player, Listener listener) {
+        this.player = player;
+        this.listener = listener;
+        componentListener = new ComponentListener();
+        switchStartMs = C.TIME_UNSET;
+        videoDecoderCounters = player.getVideoDecoderCounters();
+        player.addAnalyticsListener(componentListener);
+    }
+
+    /**
+     * Makes {@code target} visible so that it creates its video surface before a switch. The view
+     * should be laid out, for example behind the current view, for the surface to be created.
+     */
+    public void preload(ExoPlayerView target) {
+        target.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Moves the player from {@code oldPlayerView} to {@code newPlayerView}, as {@link
+     * ExoPlayerView#switchTargetView} does, and starts measuring the switch.
+     */
+    public void switchTo(@Nullable ExoPlayerView oldPlayerView, ExoPlayerView newPlayerView) {
+        Assertions.checkNotNull(newPlayerView);
+        if (oldPlayerView == newPlayerView) {
+            return;
+        }
+        if (currentTarget != null) {
+            currentTarget.setVideoSurfaceListener(null);
+        }
+        currentTarget = newPlayerView;
+        switchStartMs = SystemClock.elapsedRealtime();
+        surfaceGapMs = newPlayerView.isVideoSurfaceReady() ? 0 : C.TIME_UNSET;
+        droppedFramesAtSwitch = getDroppedFrameCount();
+        newPlayerView.setVideoSurfaceListener(componentListener);
+        ExoPlayerView.switchTargetView(player, oldPlayerView, newPlayerView);
+    }
+
+    /** Stops measuring switches. The player stays on the view it was last moved to. */
+    public void release() {
+        player.removeAnalyticsListener(componentListener);
+        if (currentTarget != null) {
+            currentTarget.setVideoSurfaceListener(null);
+            currentTarget = null;
+        }
+        switchStartMs = C.TIME_UNSET;
+    }
+
+    private int getDroppedFrameCount() {
+        if (videoDecoderCounters == null) {
+            return 0;
+        }
+        // Written on the playback thread.
+        videoDecoderCounters.ensureUpdated();
+        return videoDecoderCounters.droppedBufferCount;
+    }
+
+    private final class ComponentListener
+            implements ExoPlayerView.VideoSurfaceListener, AnalyticsListener {
+
+        // ExoPlayerView.VideoSurfaceListener implementation
+
+        @Override
+        public void onVideoSurfaceReady(ExoPlayerView view) {
+            if (switchStartMs != C.TIME_UNSET && surfaceGapMs == C.TIME_UNSET) {
+                surfaceGapMs = SystemClock.elapsedRealtime() - switchStartMs;
+            }
+        }
+
+        @Override
+        public void onRenderedFirstFrame(ExoPlayerView view) {
+            if (switchStartMs == C.TIME_UNSET) {
+                return;
+            }
+            long firstFrameLatencyMs = SystemClock.elapsedRealtime() - switchStartMs;
+            if (surfaceGapMs == C.TIME_UNSET) {
+                surfaceGapMs = firstFrameLatencyMs;
+            }
+            switchStartMs = C.TIME_UNSET;
+            listener.onSwitchCompleted(
+                    view,
+                    surfaceGapMs,
+                    firstFrameLatencyMs,
+                    getDroppedFrameCount() - droppedFramesAtSwitch);
+        }
+
+        // AnalyticsListener implementation
+
+        @Override
+        public void onVideoEnabled(
+                @NonNull EventTime eventTime, @NonNull DecoderCounters counters) {
+            // A renderer enabled mid-switch counts its drops from zero.
+            videoDecoderCounters = counters;
+            droppedFramesAtSwitch = 0;
+        }
+
+        @Override
+        public void onVideoDisabled(
+                @NonNull EventTime eventTime, @NonNull DecoderCounters counters) {
+            videoDecoderCounters = null;
+        }
+    }
+}
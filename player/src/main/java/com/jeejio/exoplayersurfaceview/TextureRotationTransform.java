@@ -0,0 +1,87 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.view.TextureView;
+
+/**
+ * Computes the transform that rotates the content of a {@link TextureView} by the rotation the
+ * video decoder left unapplied, scaled to fit the view.
+ *
+ * <p>The matrix and rects are reused, and the transform is only recomputed when the view size or
+ * the rotation changed since the last {@link #update(int, int, int)}, since this runs on every
+ * layout pass. Not thread-safe.
+ */
+public final class TextureRotationTransform {
+
+    private final Matrix matrix;
+    private final RectF originalTextureRect;
+    private final RectF rotatedTextureRect;
+
+    private int width;
+    private int height;
+    private int rotationDegrees;
+
+    public TextureRotationTransform() {
+        matrix = new Matrix();
+        originalTextureRect = new RectF();
+        rotatedTextureRect = new RectF();
+    }
+
+    /**
+     * Updates the transform for a view of the given size and a rotation.
+     *
+     * @param width The width of the view, in pixels.
+     * @param height The height of the view, in pixels.
+     * @param rotationDegrees The rotation to apply, in degrees.
+     * @return Whether the transform changed, and should be set on the view again.
+     */
+    public boolean update(int width, int height, int rotationDegrees) {
+        if (width == this.width
+                && height == this.height
+                && rotationDegrees == this.rotationDegrees) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+
+        matrix.reset();
+        float textureViewWidth = width;
+        float textureViewHeight = height;
+        if (textureViewWidth != 0 && textureViewHeight != 0 && rotationDegrees != 0) {
+            float pivotX = textureViewWidth / 2;
+            float pivotY = textureViewHeight / 2;
+            matrix.postRotate(rotationDegrees, pivotX, pivotY);
+
+            // After rotation, scale the rotated texture to fit the TextureView size.
+            originalTextureRect.set(0, 0, textureViewWidth, textureViewHeight);
+            matrix.mapRect(rotatedTextureRect, originalTextureRect);
+            matrix.postScale(
+                    textureViewWidth / rotatedTextureRect.width(),
+                    textureViewHeight / rotatedTextureRect.height(),
+                    pivotX,
+                    pivotY);
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the last update, so that the next {@link #update(int, int, int)} recomputes the
+     * transform. Should be called when the transform is to be set on a new view.
+     */
+    public void reset() {
+        width = 0;
+        height = 0;
+        rotationDegrees = 0;
+        matrix.reset();
+    }
+
+    /**
+     * Returns the current transform. The returned matrix is reused by later updates, which is safe
+     * for {@link TextureView#setTransform(Matrix)} since it copies it.
+     */
+    public Matrix getMatrix() {
+        return matrix;
+    }
+}
@@ -0,0 +1,154 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that limits the combined read rate of all sources created by the same
+ * {@link Factory}, using a token bucket that holds at most one second of bytes. The bucket is
+ * refilled against the factory's {@link Clock}.
+ */
+public final class ThrottledDataSource implements DataSource {
+
+    /** {@link DataSource.Factory} for {@link ThrottledDataSource} instances. */
+    public static final class Factory implements DataSource.Factory {
+
+        private final DataSource.Factory upstreamFactory;
+        private final Clock clock;
+
+        private long maxBytesPerSecond;
+        private long availableBytes;
+        private long lastRefillMs;
+
+        /** @param upstreamFactory The factory for the upstream data sources. */
+        public Factory(DataSource.Factory upstreamFactory) {
+            this(upstreamFactory, Clock.DEFAULT);
+        }
+
+        /**
+         * @param upstreamFactory The factory for the upstream data sources.
+         * @param clock The {@link Clock} against which the bucket is refilled.
+         */
+        public Factory(DataSource.Factory upstreamFactory, Clock clock) {
+            this.upstreamFactory = upstreamFactory;
+            this.clock = clock;
+            maxBytesPerSecond = C.LENGTH_UNSET;
+        }
+
+        /**
+         * Sets the combined read rate limit, in bytes per second. {@link C#LENGTH_UNSET} removes the
+         * limit. May be called at any time, and takes effect for reads already waiting.
+         *
+         * @param maxBytesPerSecond The limit, which must be positive, or {@link C#LENGTH_UNSET}.
+         */
+        public synchronized void setMaxBytesPerSecond(long maxBytesPerSecond) {
+            Assertions.checkArgument(maxBytesPerSecond > 0 || maxBytesPerSecond == C.LENGTH_UNSET);
+            this.maxBytesPerSecond = maxBytesPerSecond;
+            availableBytes = 0;
+            lastRefillMs = clock.elapsedRealtime();
+            notifyAll();
+        }
+
+        @Override
+        public ThrottledDataSource createDataSource() {
+            return new ThrottledDataSource(this, upstreamFactory.createDataSource());
+        }
+
+        /**
+         * Blocks until some bytes may be read, and returns how many, up to {@code
+         * requestedLength}.
+         */
+        private synchronized int acquire(int requestedLength) throws InterruptedException {
+            while (maxBytesPerSecond != C.LENGTH_UNSET) {
+                long nowMs = clock.elapsedRealtime();
+                availableBytes =
+                        Math.min(
+                                maxBytesPerSecond,
+                                availableBytes + (nowMs - lastRefillMs) * maxBytesPerSecond / 1000);
+                lastRefillMs = nowMs;
+                if (availableBytes > 0) {
+                    int grantedLength = (int) Math.min(requestedLength, availableBytes);
+                    availableBytes -= grantedLength;
+                    return grantedLength;
+                }
+                wait(Math.max(1, 1000 * (1 - availableBytes) / maxBytesPerSecond));
+            }
+            return requestedLength;
+        }
+
+        /** Returns bytes granted by {@link #acquire(int)} but not read. */
+        private synchronized void refund(int length) {
+            if (maxBytesPerSecond != C.LENGTH_UNSET) {
+                availableBytes = Math.min(maxBytesPerSecond, availableBytes + length);
+                notifyAll();
+            }
+        }
+    }
+
+    private final Factory factory;
+    private final DataSource upstream;
+
+    private ThrottledDataSource(Factory factory, DataSource upstream) {
+        this.factory = factory;
+        this.upstream = upstream;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        upstream.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        return upstream.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) throws IOException {
+        if (readLength == 0) {
+            return 0;
+        }
+        int grantedLength;
+        try {
+            grantedLength = factory.acquire(readLength);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        int bytesRead = upstream.read(buffer, offset, grantedLength);
+        int unusedLength = bytesRead == C.RESULT_END_OF_INPUT ? grantedLength : grantedLength - bytesRead;
+        if (unusedLength > 0) {
+            factory.refund(unusedLength);
+        }
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return upstream.getUri();
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return upstream.getResponseHeaders();
+    }
+
+    @Override
+    public void close() throws IOException {
+        upstream.close();
+    }
+}
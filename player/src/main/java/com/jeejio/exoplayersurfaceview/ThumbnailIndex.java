@@ -0,0 +1,234 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.util.Assertions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped file of low-resolution thumbnails of one content item, one per fixed interval of
+ * its timeline, for previewing a seek position without loading media.
+ *
+ * <p>The file holds a header followed by one slot per interval. Each slot holds the position the
+ * thumbnail was taken at and its pixels in {@link Bitmap.Config#RGB_565}, so a lookup is an index
+ * computation and a copy out of the page cache, with no decoding. Slots are filled in any order,
+ * and an unfilled slot is served from the nearest filled neighbour. Thread safe.
+ */
+public final class ThumbnailIndex implements Closeable {
+
+    /** The default thumbnail width, in pixels. */
+    public static final int DEFAULT_WIDTH = 128;
+    /** The default thumbnail height, in pixels. */
+    public static final int DEFAULT_HEIGHT = 72;
+    /** The default interval between thumbnails, in milliseconds. */
+    public static final long DEFAULT_INTERVAL_MS = 10_000;
+    /** The default number of slots, which at the default interval covers about 2.8 hours. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int MAGIC = 0x54504958; // "TPIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int BYTES_PER_PIXEL = 2;
+    /** The number of slots either side searched for a filled neighbour. */
+    private static final int MAX_NEIGHBOUR_DISTANCE = 3;
+
+    private final int width;
+    private final int height;
+    private final long intervalMs;
+    private final int capacity;
+    private final int slotBytes;
+    private final MappedByteBuffer buffer;
+
+    private int thumbnailCount;
+
+    /**
+     * Opens the index in {@code file}, creating it if it does not exist or was written with a
+     * different layout.
+     *
+     * @param file The index file.
+     * @param width The thumbnail width, in pixels.
+     * @param height The thumbnail height, in pixels.
+     * @param intervalMs The interval between thumbnails, in milliseconds.
+     * @param capacity The number of slots.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public ThumbnailIndex(File file, int width, int height, long intervalMs, int capacity)
+            throws IOException {
+        Assertions.checkArgument(width > 0 && height > 0 && intervalMs > 0 && capacity > 0);
+        this.width = width;
+        this.height = height;
+        this.intervalMs = intervalMs;
+        this.capacity = capacity;
+        slotBytes = 8 + width * height * BYTES_PER_PIXEL;
+        long fileBytes = HEADER_BYTES + (long) capacity * slotBytes;
+        Assertions.checkArgument(fileBytes <= Integer.MAX_VALUE);
+        @Nullable File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent);
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            boolean valid = randomAccessFile.length() == fileBytes && hasHeader(randomAccessFile);
+            if (!valid) {
+                // Unwritten slots stay zero, which marks them empty, and sparse on disk.
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(fileBytes);
+            }
+            buffer =
+                    randomAccessFile
+                            .getChannel()
+                            .map(FileChannel.MapMode.READ_WRITE, /* position= */ 0, fileBytes);
+        }
+        if (hasHeader(buffer)) {
+            for (int i = 0; i < capacity; i++) {
+                if (buffer.getLong(getSlotOffset(i)) != 0) {
+                    thumbnailCount++;
+                }
+            }
+        } else {
+            buffer.putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .putInt(8, width)
+                    .putInt(12, height)
+                    .putLong(16, intervalMs)
+                    .putInt(24, capacity);
+        }
+    }
+
+    /** Returns the thumbnail width, in pixels. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Returns the thumbnail height, in pixels. */
+    public int getHeight() {
+        return height;
+    }
+
+    /** Returns a bitmap suitable for {@link #put} and {@link #get}. */
+    public Bitmap createBitmap() {
+        return Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+    }
+
+    /** Returns whether the slot covering {@code positionMs} holds a thumbnail. */
+    public synchronized boolean contains(long positionMs) {
+        int slot = getSlot(positionMs);
+        return slot != -1 && buffer.getLong(getSlotOffset(slot)) != 0;
+    }
+
+    /**
+     * Stores the thumbnail for {@code positionMs}, replacing any in the slot that covers it.
+     * Positions past the end of the index are ignored.
+     *
+     * @param positionMs The position the thumbnail was taken at, in milliseconds.
+     * @param bitmap The thumbnail, as returned by {@link #createBitmap()}.
+     */
+    public synchronized void put(long positionMs, Bitmap bitmap) {
+        Assertions.checkArgument(
+                bitmap.getWidth() == width
+                        && bitmap.getHeight() == height
+                        && bitmap.getConfig() == Bitmap.Config.RGB_565);
+        int slot = getSlot(positionMs);
+        if (slot == -1) {
+            return;
+        }
+        int slotOffset = getSlotOffset(slot);
+        ByteBuffer pixels = buffer.duplicate();
+        pixels.limit(slotOffset + slotBytes).position(slotOffset + 8);
+        bitmap.copyPixelsToBuffer(pixels);
+        if (buffer.getLong(slotOffset) == 0) {
+            thumbnailCount++;
+        }
+        // Written after the pixels, so that the slot is not marked filled before they are.
+        buffer.putLong(slotOffset, positionMs + 1);
+    }
+
+    /**
+     * Copies the thumbnail nearest to {@code positionMs} into {@code bitmap}.
+     *
+     * @param positionMs The position to preview, in milliseconds.
+     * @param bitmap The bitmap to copy into, as returned by {@link #createBitmap()}.
+     * @return Whether a thumbnail near enough to {@code positionMs} was found.
+     */
+    public synchronized boolean get(long positionMs, Bitmap bitmap) {
+        int slot = getSlot(positionMs);
+        if (slot == -1) {
+            return false;
+        }
+        for (int distance = 0; distance <= MAX_NEIGHBOUR_DISTANCE; distance++) {
+            if (copySlot(slot - distance, bitmap) || copySlot(slot + distance, bitmap)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the number of thumbnails stored. */
+    public synchronized int getThumbnailCount() {
+        return thumbnailCount;
+    }
+
+    /** Writes the stored thumbnails through to the file. */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "ThumbnailIndex{thumbnails=" + thumbnailCount + ", capacity=" + capacity + "}";
+    }
+
+    private boolean copySlot(int slot, Bitmap bitmap) {
+        if (slot < 0 || slot >= capacity) {
+            return false;
+        }
+        int slotOffset = getSlotOffset(slot);
+        if (buffer.getLong(slotOffset) == 0) {
+            return false;
+        }
+        ByteBuffer pixels = buffer.duplicate();
+        pixels.limit(slotOffset + slotBytes).position(slotOffset + 8);
+        bitmap.copyPixelsFromBuffer(pixels);
+        return true;
+    }
+
+    private int getSlot(long positionMs) {
+        long slot = positionMs / intervalMs;
+        return positionMs < 0 || slot >= capacity ? -1 : (int) slot;
+    }
+
+    private int getSlotOffset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private boolean hasHeader(ByteBuffer header) {
+        return header.getInt(0) == MAGIC
+                && header.getInt(4) == VERSION
+                && header.getInt(8) == width
+                && header.getInt(12) == height
+                && header.getLong(16) == intervalMs
+                && header.getInt(24) == capacity;
+    }
+
+    private boolean hasHeader(RandomAccessFile file) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        file.seek(0);
+        file.readFully(header);
+        return hasHeader(ByteBuffer.wrap(header));
+    }
+}
@@ -0,0 +1,269 @@
+package com.jeejio.exoplayersurfaceview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.PixelCopy;
+import android.view.SurfaceView;
+import android.view.TextureView;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fills a {@link ThumbnailIndex} for the content being played, and serves the seek previews of an
+ * {@link ExoPlayerView} from it.
+ *
+ * <p>While the player is playing, the frame on the video surface is copied into the index whenever
+ * the current position falls in an interval that has no thumbnail yet. The index is kept per
+ * content URI in {@link DemoUtil#getThumbnailDirectory(Context)}, named by the SHA-1 of the URI, so
+ * scrubbing over any part of an item that has been watched before is served from the file without
+ * loading media. Positions in a live window are only stable within a session, so the index of live
+ * content is started afresh on each attachment. The index is opened on the first capture, once the
+ * current window is known. All methods must be called on the main thread.
+ */
+public final class TrickPlayThumbnailer implements ExoPlayerView.SeekPreviewProvider {
+
+    /** The interval between checks of the current position, in milliseconds. */
+    public static final long CAPTURE_CHECK_INTERVAL_MS = 1_000;
+
+    private static final String TAG = "TrickPlayThumbnailer";
+
+    private final Context context;
+    private final Handler handler;
+    private final Runnable captureRunnable;
+    private final Timeline.Window window;
+    private final Paint paint;
+    private final TextureRotationTransform captureTransform;
+
+    @Nullable private SimpleExoPlayer player;
+    @Nullable private ExoPlayerView playerView;
+    @Nullable private String fileName;
+    @Nullable private ThumbnailIndex thumbnailIndex;
+    @Nullable private Bitmap captureBitmap;
+    @Nullable private Bitmap thumbnailBitmap;
+    private boolean captureInProgress;
+    private int captureRotationDegrees;
+    private int capturedCount;
+    private int failedCount;
+
+    public TrickPlayThumbnailer(Context context) {
+        this.context = context.getApplicationContext();
+        handler = new Handler(Looper.getMainLooper());
+        captureRunnable = this::maybeCapture;
+        window = new Timeline.Window();
+        paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        captureTransform = new TextureRotationTransform();
+    }
+
+    /**
+     * Starts capturing thumbnails of {@code uri} from the video surface of {@code playerView},
+     * which {@code player} renders to. Replaces any previous attachment.
+     */
+    public void attach(SimpleExoPlayer player, ExoPlayerView playerView, Uri uri) {
+        detach();
+        this.player = player;
+        this.playerView = playerView;
+        fileName = getFileName(uri);
+        handler.postDelayed(captureRunnable, CAPTURE_CHECK_INTERVAL_MS);
+    }
+
+    /**
+     * Stops capturing, writes the captured thumbnails through to the index file and closes it.
+     * Previews are unavailable until the next attachment.
+     */
+    public void detach() {
+        handler.removeCallbacks(captureRunnable);
+        if (thumbnailIndex != null) {
+            thumbnailIndex.close();
+            thumbnailIndex = null;
+        }
+        player = null;
+        playerView = null;
+        fileName = null;
+        captureBitmap = null;
+        thumbnailBitmap = null;
+        captureInProgress = false;
+    }
+
+    /** Returns a bitmap to pass to {@link #getPreview}, or null if not attached. */
+    @Override
+    @Nullable
+    public Bitmap createPreviewBitmap() {
+        return thumbnailIndex != null ? thumbnailIndex.createBitmap() : null;
+    }
+
+    /**
+     * Copies the preview for a position in the current window into {@code bitmap}.
+     *
+     * @param windowPositionMs The position to preview, in milliseconds from the window start.
+     * @param bitmap The bitmap to copy into, as returned by {@link #createPreviewBitmap()}.
+     * @return Whether a preview near enough to the position was available.
+     */
+    @Override
+    public boolean getPreview(long windowPositionMs, Bitmap bitmap) {
+        long periodPositionMs = getPeriodPositionMs(windowPositionMs);
+        return periodPositionMs != C.TIME_UNSET
+                && thumbnailIndex != null
+                && thumbnailIndex.get(periodPositionMs, bitmap);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TrickPlayThumbnailer{captured="
+                + capturedCount
+                + ", failed="
+                + failedCount
+                + ", index="
+                + thumbnailIndex
+                + "}";
+    }
+
+    private void maybeCapture() {
+        if (player == null || playerView == null) {
+            return;
+        }
+        handler.postDelayed(captureRunnable, CAPTURE_CHECK_INTERVAL_MS);
+        if (captureInProgress
+                || !player.isPlaying()
+                || player.isPlayingAd()
+                || player.getVideoFormat() == null) {
+            return;
+        }
+        long positionMs = getPeriodPositionMs(player.getCurrentPosition());
+        if (positionMs == C.TIME_UNSET
+                || !maybeOpenThumbnailIndex()
+                || thumbnailIndex.contains(positionMs)) {
+            return;
+        }
+        View surfaceView = playerView.getVideoSurfaceView();
+        if (surfaceView instanceof TextureView) {
+            // Scales the current frame into the bitmap, without the view's rotation transform.
+            ((TextureView) surfaceView).getBitmap(captureBitmap);
+            captureRotationDegrees = playerView.getTextureViewRotation();
+            onCaptured(positionMs);
+        } else if (surfaceView instanceof SurfaceView
+                && ((SurfaceView) surfaceView).getHolder().getSurface().isValid()) {
+            captureInProgress = true;
+            // The copy is of the surface as composited, which the decoder already rotated.
+            captureRotationDegrees = 0;
+            PixelCopy.request(
+                    (SurfaceView) surfaceView,
+                    captureBitmap,
+                    result -> {
+                        if (!captureInProgress) {
+                            // Detached while the copy was in progress.
+                            return;
+                        }
+                        captureInProgress = false;
+                        if (result == PixelCopy.SUCCESS) {
+                            onCaptured(positionMs);
+                        } else {
+                            failedCount++;
+                        }
+                    },
+                    handler);
+        }
+    }
+
+    /**
+     * Opens the index of the attached content, if not already open. Must be called once the
+     * current window is known, as whether it is live decides whether earlier thumbnails are kept.
+     *
+     * @return Whether the index is open.
+     */
+    private boolean maybeOpenThumbnailIndex() {
+        if (thumbnailIndex != null) {
+            return true;
+        }
+        if (player == null || fileName == null) {
+            return false;
+        }
+        boolean live = player.isCurrentWindowLive();
+        File file =
+                new File(
+                        DemoUtil.getThumbnailDirectory(context),
+                        live ? fileName + ".live" : fileName);
+        if (live && file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete " + file);
+        }
+        try {
+            thumbnailIndex =
+                    new ThumbnailIndex(
+                            file,
+                            ThumbnailIndex.DEFAULT_WIDTH,
+                            ThumbnailIndex.DEFAULT_HEIGHT,
+                            ThumbnailIndex.DEFAULT_INTERVAL_MS,
+                            ThumbnailIndex.DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to open " + file, e);
+            // Not retried for this attachment.
+            fileName = null;
+            return false;
+        }
+        captureBitmap =
+                Bitmap.createBitmap(
+                        thumbnailIndex.getWidth(),
+                        thumbnailIndex.getHeight(),
+                        Bitmap.Config.ARGB_8888);
+        thumbnailBitmap = thumbnailIndex.createBitmap();
+        return true;
+    }
+
+    private void onCaptured(long positionMs) {
+        // The index stores RGB_565, which halves its size, so the capture is converted here. The
+        // rotation is applied as the view applies it, scaled to fit the thumbnail.
+        captureTransform.update(
+                thumbnailBitmap.getWidth(), thumbnailBitmap.getHeight(), captureRotationDegrees);
+        Canvas canvas = new Canvas(thumbnailBitmap);
+        // A rotated frame may not cover the whole thumbnail, so the last one is cleared first.
+        canvas.drawColor(Color.BLACK);
+        canvas.drawBitmap(captureBitmap, captureTransform.getMatrix(), paint);
+        thumbnailIndex.put(positionMs, thumbnailBitmap);
+        capturedCount++;
+    }
+
+    /**
+     * Returns the name of the index file of {@code uri}, the hex SHA-1 of the URI, which does not
+     * collide with that of another URI.
+     */
+    /* package */ static String getFileName(Uri uri) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return Util.toHexString(digest.digest(Util.getUtf8Bytes(uri.toString())));
+        } catch (NoSuchAlgorithmException e) {
+            // Every platform implementation provides SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long getPeriodPositionMs(long windowPositionMs) {
+        if (player == null) {
+            return C.TIME_UNSET;
+        }
+        Timeline timeline = player.getCurrentTimeline();
+        if (timeline.isEmpty()) {
+            return C.TIME_UNSET;
+        }
+        timeline.getWindow(player.getCurrentWindowIndex(), window);
+        return window.getPositionInFirstPeriodMs() + windowPositionMs;
+    }
+}